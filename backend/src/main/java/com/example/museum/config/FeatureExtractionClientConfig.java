@@ -0,0 +1,89 @@
+package com.example.museum.config;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Python特征提取服务的HTTP客户端配置
+ * 使用长连接池复用TCP连接，并为连接、读取和租用连接分别设置超时，避免特征提取服务卡住时请求线程无限等待
+ */
+@Configuration
+public class FeatureExtractionClientConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeatureExtractionClientConfig.class);
+
+    @Value("${feature.extraction.client.max-total:50}")
+    private int maxTotal;
+
+    @Value("${feature.extraction.client.max-per-route:20}")
+    private int maxPerRoute;
+
+    @Value("${feature.extraction.client.connect-timeout-ms:2000}")
+    private int connectTimeoutMillis;
+
+    // 读取超时（秒），即单次特征提取的最长等待时间
+    @Value("${museum.feature.extraction.timeout:30}")
+    private int readTimeoutSeconds;
+
+    // 从连接池获取连接的最长等待时间，连接耗尽时快速失败而不是堆积请求线程
+    @Value("${feature.extraction.client.connection-request-timeout-ms:1000}")
+    private int connectionRequestTimeoutMillis;
+
+    @Value("${feature.extraction.client.keep-alive-ms:30000}")
+    private long keepAliveMillis;
+
+    @Value("${feature.extraction.client.idle-evict-ms:60000}")
+    private long idleEvictMillis;
+
+    @Bean(destroyMethod = "shutdown")
+    public InstrumentedConnectionManager extractionConnectionManager() {
+        InstrumentedConnectionManager connectionManager =
+                new InstrumentedConnectionManager(keepAliveMillis, TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        // 空闲超过该时间的连接在复用前先检查是否仍然可用
+        connectionManager.setValidateAfterInactivity(2000);
+        return connectionManager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient extractionHttpClient(
+            @Qualifier("extractionConnectionManager") InstrumentedConnectionManager connectionManager) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMillis)
+                .setSocketTimeout(readTimeoutSeconds * 1000)
+                .setConnectionRequestTimeout(connectionRequestTimeoutMillis)
+                .build();
+
+        logger.info("特征提取HTTP连接池 - 最大连接数: {}, 单路由最大连接数: {}, 连接超时: {} ms, 读取超时: {} s",
+                maxTotal, maxPerRoute, connectTimeoutMillis, readTimeoutSeconds);
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy((response, context) -> keepAliveMillis)
+                .evictExpiredConnections()
+                .evictIdleConnections(idleEvictMillis, TimeUnit.MILLISECONDS)
+                .disableAutomaticRetries()
+                .build();
+    }
+
+    @Bean
+    public RestTemplate extractionRestTemplate(@Qualifier("extractionHttpClient") CloseableHttpClient httpClient) {
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        // 请求体直接写入连接，不在内存中额外缓冲一份图像数据
+        requestFactory.setBufferRequestBody(false);
+        return new RestTemplate(requestFactory);
+    }
+}
@@ -1,10 +1,26 @@
 package com.example.museum.controller;
 
 import com.example.museum.dto.ApiResponse;
-import com.example.museum.entity.Artifact;
+import com.example.museum.dto.SimilarArtifactDTO;
+import com.example.museum.search.ArtifactAttributeIndex;
+import com.example.museum.search.ArtifactIndexUpdater;
+import com.example.museum.search.ArtifactVectorStore;
+import com.example.museum.search.AttributeFilter;
+import com.example.museum.service.ImagePreprocessor;
 import com.example.museum.service.ImageSearchService;
+import com.example.museum.service.InvalidImageException;
 import com.example.museum.service.ArtifactService;
+import com.example.museum.service.ExtractorWorkerPool;
+import com.example.museum.service.FeatureCacheService;
+import com.example.museum.service.FeatureExtractionBatcher;
 import com.example.museum.service.FeatureExtractionService;
+import com.example.museum.service.FeatureMigrationService;
+import com.example.museum.service.FeatureServiceGuard;
+import com.example.museum.service.FeatureServiceUnavailableException;
+import com.example.museum.service.HistogramIndexService;
+import com.example.museum.service.PerceptualHashIndexService;
+import com.example.museum.service.SearchResultCacheService;
+import com.example.museum.service.UnixSocketExtractionClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -40,6 +56,45 @@ public class ImageSearchController {
     @Autowired
     private FeatureExtractionService featureExtractionService;
     
+    @Autowired
+    private ArtifactVectorStore artifactVectorStore;
+    
+    @Autowired
+    private ArtifactIndexUpdater artifactIndexUpdater;
+    
+    @Autowired
+    private ArtifactAttributeIndex artifactAttributeIndex;
+    
+    @Autowired
+    private FeatureMigrationService featureMigrationService;
+    
+    @Autowired
+    private FeatureCacheService featureCacheService;
+    
+    @Autowired
+    private SearchResultCacheService searchResultCacheService;
+    
+    @Autowired
+    private FeatureServiceGuard featureServiceGuard;
+    
+    @Autowired
+    private FeatureExtractionBatcher featureExtractionBatcher;
+    
+    @Autowired
+    private ExtractorWorkerPool extractorWorkerPool;
+    
+    @Autowired
+    private UnixSocketExtractionClient unixSocketExtractionClient;
+    
+    @Autowired
+    private ImagePreprocessor imagePreprocessor;
+    
+    @Autowired
+    private HistogramIndexService histogramIndexService;
+    
+    @Autowired
+    private PerceptualHashIndexService perceptualHashIndexService;
+    
     @Value("${museum.temp.path:temp}")
     private String tempPath;
     
@@ -47,40 +102,54 @@ public class ImageSearchController {
      * 以图搜图API端点
      * @param imageData 图片二进制数据
      * @param limit 限制结果数量，默认为10
+     * @param era 只检索该年代的文物，可选
+     * @param type 只检索该类型的文物，可选
+     * @param museum 只检索该博物馆的文物，可选
      * @return 搜索结果
      */
     @PostMapping(value = "/artifacts/search/image", consumes = MediaType.IMAGE_JPEG_VALUE)
-    public ApiResponse<List<Artifact>> searchByImage(
+    public ResponseEntity<ApiResponse<List<SimilarArtifactDTO>>> searchByImage(
             @RequestBody byte[] imageData,
-            @RequestParam(required = false, defaultValue = "10") int limit) {
+            @RequestParam(required = false, defaultValue = "10") int limit,
+            @RequestParam(required = false) String era,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String museum) {
         
-        logger.info("接收到图像搜索请求，图像大小: {} 字节，限制结果数量: {}", imageData.length, limit);
+        AttributeFilter filter = AttributeFilter.of(era, type, museum);
+        logger.info("接收到图像搜索请求，图像大小: {} 字节，限制结果数量: {}，过滤条件: {}", imageData.length, limit, filter);
         
         try {
             if (imageData.length == 0) {
-                return ApiResponse.error("图像数据为空");
+                return ResponseEntity.ok(ApiResponse.error("图像数据为空"));
             }
             
             // 调用服务层进行搜索
-            List<Artifact> results = imageSearchService.searchSimilarArtifacts(imageData, limit);
+            List<SimilarArtifactDTO> results = imageSearchService.searchSimilarArtifacts(imageData, limit, filter);
             
             // 日志记录搜索结果及相似度
             if (!results.isEmpty()) {
-                for (Artifact artifact : results) {
+                for (SimilarArtifactDTO artifact : results) {
                     logger.debug("返回给前端 - 文物ID: {}, 名称: {}, 相似度: {}", 
                         artifact.getId(), artifact.getName(), artifact.getSimilarity());
                 }
             }
             
             if (results.isEmpty()) {
-                return ApiResponse.success("未找到相似文物", results);
+                return ResponseEntity.ok(ApiResponse.success("未找到相似文物", results));
             }
             
-            return ApiResponse.success("搜索成功", results);
+            return ResponseEntity.ok(ApiResponse.success("搜索成功", results));
             
+        } catch (FeatureServiceUnavailableException e) {
+            // 熔断或超出并发上限时快速失败
+            logger.warn("特征提取服务不可用: {}", e.getMessage());
+            return ResponseEntity.status(503).body(ApiResponse.error(e.getMessage()));
+        } catch (InvalidImageException e) {
+            logger.warn("拒绝无效图像: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         } catch (Exception e) {
             logger.error("图像搜索处理失败", e);
-            return ApiResponse.error("图像搜索失败: " + e.getMessage());
+            return ResponseEntity.ok(ApiResponse.error("图像搜索失败: " + e.getMessage()));
         }
     }
 
@@ -88,11 +157,14 @@ public class ImageSearchController {
      * 提供备用API端点
      */
     @PostMapping(value = "/search/image", consumes = MediaType.IMAGE_JPEG_VALUE)
-    public ApiResponse<List<Artifact>> searchByImageAlternative(
+    public ResponseEntity<ApiResponse<List<SimilarArtifactDTO>>> searchByImageAlternative(
             @RequestBody byte[] imageData,
-            @RequestParam(required = false, defaultValue = "10") int limit) {
+            @RequestParam(required = false, defaultValue = "10") int limit,
+            @RequestParam(required = false) String era,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String museum) {
         // 复用主方法实现
-        return searchByImage(imageData, limit);
+        return searchByImage(imageData, limit, era, type, museum);
     }
 
     /**
@@ -102,26 +174,73 @@ public class ImageSearchController {
     public ResponseEntity<?> searchByUploadedImage(
             @RequestParam("image") MultipartFile image,
             @RequestParam(value = "threshold", defaultValue = "0.6") double threshold,
-            @RequestParam(value = "maxResults", defaultValue = "10") int maxResults) {
+            @RequestParam(value = "maxResults", defaultValue = "10") int maxResults,
+            @RequestParam(value = "era", required = false) String era,
+            @RequestParam(value = "type", required = false) String type,
+            @RequestParam(value = "museum", required = false) String museum) {
         
         Map<String, Object> response = new HashMap<>();
         
         try {
-            // 检查服务健康状态
-            if (!imageSearchService.isFeatureServiceHealthy()) {
-                response.put("success", false);
-                response.put("message", "特征提取服务不可用，请稍后再试");
-                return ResponseEntity.status(503).body(response);
-            }
-            
             // 处理图片并查找相似文物
-            List<Artifact> similarArtifacts = imageSearchService.searchSimilarArtifacts(image, threshold, maxResults);
+            List<SimilarArtifactDTO> similarArtifacts = imageSearchService.searchSimilarArtifacts(image, threshold, maxResults,
+                    AttributeFilter.of(era, type, museum));
             
             response.put("success", true);
             response.put("message", "成功查找到相似文物");
             response.put("data", similarArtifacts);
             
             return ResponseEntity.ok(response);
+        } catch (FeatureServiceUnavailableException e) {
+            // 熔断或超出并发上限时快速失败
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(503).body(response);
+        } catch (InvalidImageException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "查找相似文物失败: " + e.getMessage());
+            return ResponseEntity.status(500).body(response);
+        }
+    }
+    
+    /**
+     * 批量上传图片并分别搜索相似文物，用于藏品导入、自助终端等一次提交多张图片的场景
+     * 全部图片一次批量提取特征并一起检索，每张图片的成本低于逐张调用上传搜索
+     */
+    @PostMapping("/upload/batch")
+    public ResponseEntity<?> searchByUploadedImages(
+            @RequestParam("images") List<MultipartFile> images,
+            @RequestParam(value = "threshold", defaultValue = "0.6") double threshold,
+            @RequestParam(value = "maxResults", defaultValue = "10") int maxResults,
+            @RequestParam(value = "era", required = false) String era,
+            @RequestParam(value = "type", required = false) String type,
+            @RequestParam(value = "museum", required = false) String museum) {
+        
+        Map<String, Object> response = new HashMap<>();
+        
+        try {
+            // 逐张返回结果，单张图片失败时在对应结果中给出原因
+            List<ImageSearchService.BatchSearchResult> results = imageSearchService.searchSimilarArtifactsBatch(
+                    images, threshold, maxResults, AttributeFilter.of(era, type, museum));
+            
+            response.put("success", true);
+            response.put("message", "成功查找到相似文物");
+            response.put("data", results);
+            
+            return ResponseEntity.ok(response);
+        } catch (FeatureServiceUnavailableException e) {
+            // 熔断或超出并发上限时快速失败
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(503).body(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
             response.put("success", false);
             response.put("message", "查找相似文物失败: " + e.getMessage());
@@ -136,26 +255,28 @@ public class ImageSearchController {
     public ResponseEntity<?> searchByImagePath(
             @RequestParam("imagePath") String imagePath,
             @RequestParam(value = "threshold", defaultValue = "0.6") double threshold,
-            @RequestParam(value = "maxResults", defaultValue = "10") int maxResults) {
+            @RequestParam(value = "maxResults", defaultValue = "10") int maxResults,
+            @RequestParam(value = "era", required = false) String era,
+            @RequestParam(value = "type", required = false) String type,
+            @RequestParam(value = "museum", required = false) String museum) {
         
         Map<String, Object> response = new HashMap<>();
         
         try {
-            // 检查服务健康状态
-            if (!imageSearchService.isFeatureServiceHealthy()) {
-                response.put("success", false);
-                response.put("message", "特征提取服务不可用，请稍后再试");
-                return ResponseEntity.status(503).body(response);
-            }
-            
             // 通过路径查找相似文物
-            List<Artifact> similarArtifacts = imageSearchService.searchSimilarArtifactsByPath(imagePath, threshold, maxResults);
+            List<SimilarArtifactDTO> similarArtifacts = imageSearchService.searchSimilarArtifactsByPath(imagePath, threshold, maxResults,
+                    AttributeFilter.of(era, type, museum));
             
             response.put("success", true);
             response.put("message", "成功查找到相似文物");
             response.put("data", similarArtifacts);
             
             return ResponseEntity.ok(response);
+        } catch (FeatureServiceUnavailableException e) {
+            // 熔断或超出并发上限时快速失败
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(503).body(response);
         } catch (Exception e) {
             response.put("success", false);
             response.put("message", "查找相似文物失败: " + e.getMessage());
@@ -176,4 +297,30 @@ public class ImageSearchController {
         
         return ResponseEntity.ok(response);
     }
+    
+    /**
+     * 以图搜图运行统计端点
+     */
+    @GetMapping("/search/stats")
+    public ResponseEntity<?> searchStats() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("vectorStore", artifactVectorStore.getStats());
+        response.put("incrementalUpdates", artifactIndexUpdater.getStats());
+        response.put("attributeFilter", artifactAttributeIndex.getStats());
+        response.put("searchEngines", artifactService.getSearchEngineStats());
+        response.put("featureMigration", featureMigrationService.getStatus());
+        response.put("featureCache", featureCacheService.getStats());
+        response.put("resultCache", searchResultCacheService.getStats());
+        response.put("extractionClient", featureExtractionService.getClientStats());
+        response.put("extractionGuard", featureServiceGuard.getStats());
+        response.put("extractionBatch", featureExtractionBatcher.getStats());
+        response.put("extractionWorkers", extractorWorkerPool.getStats());
+        response.put("extractionSocket", unixSocketExtractionClient.getStats());
+        response.put("imagePreprocess", imagePreprocessor.getStats());
+        response.put("histogramIndex", histogramIndexService.getStats());
+        response.put("degradedSearch", imageSearchService.getDegradedStats());
+        response.put("nearDuplicate", perceptualHashIndexService.getStats());
+        
+        return ResponseEntity.ok(response);
+    }
 }
@@ -0,0 +1,95 @@
+package com.example.museum.dto;
+
+import com.example.museum.entity.Artifact;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * 以图搜图结果（不可变）
+ * 字段与Artifact实体序列化后的JSON保持一致，可被检索结果缓存安全地并发返回
+ */
+public final class SimilarArtifactDTO {
+
+    private final Integer id;
+    private final String name;
+    private final String era;
+    private final String type;
+    private final String museum;
+    private final String description;
+    private final String imageUrl;
+    private final Integer likes;
+    private final String similarity;
+
+    public SimilarArtifactDTO(Integer id, String name, String era, String type, String museum,
+                              String description, String imageUrl, Integer likes, String similarity) {
+        this.id = id;
+        this.name = name;
+        this.era = era;
+        this.type = type;
+        this.museum = museum;
+        this.description = description;
+        this.imageUrl = imageUrl;
+        this.likes = likes;
+        this.similarity = similarity;
+    }
+
+    /**
+     * 由文物实体和相似度构建结果
+     */
+    public static SimilarArtifactDTO of(Artifact artifact, double similarity) {
+        return new SimilarArtifactDTO(artifact.getId(), artifact.getName(), artifact.getEra(),
+                artifact.getType(), artifact.getMuseum(), artifact.getDescription(),
+                artifact.getImageUrl(), artifact.getLikes(), String.valueOf(similarity));
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getEra() {
+        return era;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getMuseum() {
+        return museum;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public Integer getLikes() {
+        return likes;
+    }
+
+    public String getSimilarity() {
+        return similarity;
+    }
+
+    // 与Artifact实体相同的前端字段别名
+    @JsonProperty("dynasty")
+    public String getDynasty() {
+        return era;
+    }
+
+    @JsonProperty("category")
+    public String getCategory() {
+        return type;
+    }
+
+    @JsonProperty("artifactId")
+    public Integer getArtifactId() {
+        return id;
+    }
+}
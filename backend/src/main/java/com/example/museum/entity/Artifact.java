@@ -1,13 +1,17 @@
 package com.example.museum.entity;
 
+import com.example.museum.search.ArtifactChangeListener;
+import com.example.museum.utils.FeatureUtils;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import javax.persistence.*;
+import java.util.Date;
 
 @Entity
 @Table(name = "artifact")
+@EntityListeners(ArtifactChangeListener.class)
 public class Artifact {
 
     @Id
@@ -35,6 +39,33 @@ public class Artifact {
     @JsonIgnore
     private String feature;
     
+    // 二进制特征向量（小端float32，带维度和模型版本头部）
+    @Lob
+    @Column(name = "feature_bin", columnDefinition = "MEDIUMBLOB")
+    @JsonIgnore
+    private byte[] featureBin;
+    
+    // 纯Java提取的颜色与边缘直方图特征（二进制格式），用于降级检索和粗筛
+    @Lob
+    @Column(name = "hist_feature", columnDefinition = "MEDIUMBLOB")
+    @JsonIgnore
+    private byte[] histFeature;
+    
+    // 图片的64位感知哈希（pHash/dHash），用于识别馆藏图片的翻拍和重新压缩版本
+    @Column(name = "phash")
+    @JsonIgnore
+    private Long phash;
+    
+    @Column(name = "dhash")
+    @JsonIgnore
+    private Long dhash;
+    
+    // 最后更新时间，由数据库在任何途径修改记录时自动维护，作为向量快照文件的高水位
+    @Column(name = "updated_at", insertable = false, updatable = false,
+            columnDefinition = "TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)")
+    @JsonIgnore
+    private Date updatedAt;
+    
     // 非持久化字段，用于返回相似度
     @Transient
     @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -113,8 +144,88 @@ public class Artifact {
         return feature;
     }
 
+    /**
+     * 写入文本格式特征，同时清除二进制特征，避免getFeatureVector继续返回旧的二进制特征
+     * 从数据库加载时两列均非空说明尚未清除旧文本列，二者内容相同，清除后回退到文本格式仍得到相同向量
+     */
     public void setFeature(String feature) {
         this.feature = feature;
+        this.featureBin = null;
+    }
+
+    @JsonIgnore
+    public byte[] getFeatureBin() {
+        return featureBin;
+    }
+
+    @JsonIgnore
+    public void setFeatureBin(byte[] featureBin) {
+        this.featureBin = featureBin;
+    }
+
+    @JsonIgnore
+    public byte[] getHistFeature() {
+        return histFeature;
+    }
+
+    @JsonIgnore
+    public void setHistFeature(byte[] histFeature) {
+        this.histFeature = histFeature;
+    }
+
+    @JsonIgnore
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    @JsonIgnore
+    public void setUpdatedAt(Date updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    @JsonIgnore
+    public Long getPhash() {
+        return phash;
+    }
+
+    @JsonIgnore
+    public void setPhash(Long phash) {
+        this.phash = phash;
+    }
+
+    @JsonIgnore
+    public Long getDhash() {
+        return dhash;
+    }
+
+    @JsonIgnore
+    public void setDhash(Long dhash) {
+        this.dhash = dhash;
+    }
+
+    /**
+     * 获取特征向量，优先使用二进制格式，未迁移的记录回退到文本格式
+     * @return 特征向量，没有特征时返回null
+     */
+    @JsonIgnore
+    public float[] getFeatureVector() {
+        if (featureBin != null && featureBin.length > 0) {
+            return FeatureUtils.decodeFeatures(featureBin);
+        }
+        if (feature != null && !feature.isEmpty()) {
+            return FeatureUtils.stringToFloatFeatures(feature);
+        }
+        return null;
+    }
+
+    /**
+     * 以二进制格式写入特征向量
+     * @param features 特征向量
+     * @param modelVersion 生成该特征的模型版本
+     */
+    @JsonIgnore
+    public void setFeatureVector(float[] features, int modelVersion) {
+        this.featureBin = features == null ? null : FeatureUtils.encodeFeatures(features, modelVersion);
     }
 
     @JsonProperty("similarity")
@@ -155,7 +266,7 @@ public class Artifact {
     
     @JsonIgnore
     public void setFeatures(String features) {
-        this.feature = features;
+        setFeature(features);
     }
     
     @JsonIgnore
@@ -0,0 +1,65 @@
+package com.example.museum.entity;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * 文物变更记录（outbox），对应artifact_change表
+ * 不经过JPA写入文物数据的程序（MyBatis、导入脚本等）在同一事务中插入一条记录，
+ * 由增量更新线程按change_id顺序读取并同步到向量库
+ */
+@Entity
+@Table(name = "artifact_change")
+public class ArtifactChange {
+
+    public static final String UPSERT = "UPSERT";
+    public static final String DELETE = "DELETE";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "change_id")
+    private Long changeId;
+
+    @Column(name = "artifact_id", nullable = false)
+    private Integer artifactId;
+
+    // UPSERT(新增或修改) / DELETE(删除)
+    @Column(name = "change_type", nullable = false, length = 16)
+    private String changeType;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "created_at", nullable = false)
+    private Date createdAt;
+
+    public Long getChangeId() {
+        return changeId;
+    }
+
+    public void setChangeId(Long changeId) {
+        this.changeId = changeId;
+    }
+
+    public Integer getArtifactId() {
+        return artifactId;
+    }
+
+    public void setArtifactId(Integer artifactId) {
+        this.artifactId = artifactId;
+    }
+
+    public String getChangeType() {
+        return changeType;
+    }
+
+    public void setChangeType(String changeType) {
+        this.changeType = changeType;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+}
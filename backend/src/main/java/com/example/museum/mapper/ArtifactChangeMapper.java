@@ -0,0 +1,56 @@
+package com.example.museum.mapper;
+
+import com.example.museum.entity.ArtifactChange;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 文物变更记录（outbox）Mapper
+ */
+@Mapper
+public interface ArtifactChangeMapper {
+
+    /**
+     * 记录一次文物变更，通过MyBatis修改文物数据时应在同一事务中调用
+     *
+     * @param artifactId 文物ID
+     * @param changeType UPSERT / DELETE
+     * @return 受影响的行数
+     */
+    @Insert("INSERT INTO artifact_change(artifact_id, change_type, created_at) " +
+            "VALUES(#{artifactId}, #{changeType}, NOW())")
+    int insertChange(@Param("artifactId") Integer artifactId, @Param("changeType") String changeType);
+
+    /**
+     * 按change_id顺序读取一批变更
+     *
+     * @param afterId 已处理的最大change_id
+     * @param limit   批大小
+     * @return 变更记录
+     */
+    @Select("SELECT change_id, artifact_id, change_type, created_at FROM artifact_change " +
+            "WHERE change_id > #{afterId} ORDER BY change_id LIMIT #{limit}")
+    List<ArtifactChange> findChangesAfter(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    /**
+     * 指定时间之前的最大change_id，没有记录时返回0
+     */
+    @Select("SELECT COALESCE(MAX(change_id), 0) FROM artifact_change WHERE created_at < #{before}")
+    long findMaxChangeIdBefore(@Param("before") Date before);
+
+    /**
+     * 删除已处理且超过保留时间的变更记录
+     *
+     * @param upToId 已处理的最大change_id
+     * @param before 保留时间的起点
+     * @return 删除的行数
+     */
+    @Delete("DELETE FROM artifact_change WHERE change_id <= #{upToId} AND created_at < #{before}")
+    int deleteProcessedChanges(@Param("upToId") long upToId, @Param("before") Date before);
+}
@@ -2,8 +2,11 @@ package com.example.museum.mapper;
 
 import com.example.museum.entity.Artifact;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
+import java.util.Date;
 import java.util.List;
 
 @Mapper
@@ -18,7 +21,173 @@ public interface ArtifactMapper {
     @Select("SELECT * FROM artifact WHERE type = #{type}")
     List<Artifact> findByType(String type);
     
-    // 查询所有有特征向量的文物
-    @Select("SELECT * FROM artifact WHERE feature IS NOT NULL AND feature != ''")
+    // 查询所有有特征向量的文物（二进制或文本格式）
+    @Select("SELECT * FROM artifact WHERE feature_bin IS NOT NULL OR (feature IS NOT NULL AND feature != '')")
     List<Artifact> findAllWithFeatures();
+    
+    /**
+     * 仅查询加载向量库所需的列
+     * 已迁移为二进制格式的记录不再读取文本特征列
+     */
+    @Select("SELECT artifact_id, feature_bin, " +
+            "CASE WHEN feature_bin IS NULL THEN feature END AS feature " +
+            "FROM artifact " +
+            "WHERE feature_bin IS NOT NULL OR (feature IS NOT NULL AND feature != '') " +
+            "ORDER BY artifact_id")
+    List<Artifact> findAllFeatureVectors();
+    
+    /**
+     * 按ID游标分批查询加载向量库所需的列，避免一次性读取全部特征
+     * 
+     * @param afterId 上一批最后一条记录的ID
+     * @param limit   批大小
+     * @return 文物ID和特征列，按ID升序
+     */
+    @Select("SELECT artifact_id, feature_bin, " +
+            "CASE WHEN feature_bin IS NULL THEN feature END AS feature " +
+            "FROM artifact " +
+            "WHERE artifact_id > #{afterId} " +
+            "AND (feature_bin IS NOT NULL OR (feature IS NOT NULL AND feature != '')) " +
+            "ORDER BY artifact_id LIMIT #{limit}")
+    List<Artifact> findFeatureVectorsAfter(@Param("afterId") Integer afterId, @Param("limit") int limit);
+    
+    /**
+     * 按ID批量查询特征向量，用于压缩索引的全精度重排
+     * 
+     * @param ids 文物ID列表
+     * @return 文物ID和特征列
+     */
+    @Select("<script>" +
+            "SELECT artifact_id, feature_bin, " +
+            "CASE WHEN feature_bin IS NULL THEN feature END AS feature " +
+            "FROM artifact WHERE artifact_id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<Artifact> findFeatureVectorsByIds(@Param("ids") List<Integer> ids);
+    
+    /**
+     * 查询指定时间及之后更新过的文物特征，用于从向量快照文件启动后补读变更
+     * updated_at只应随特征向量变化：特征回填、直方图、感知哈希和点赞等不改变特征向量的更新
+     * 须写明 updated_at = updated_at，否则下次启动时会补读全部被回填过的文物
+     * 
+     * @param since 快照对应的高水位
+     * @return 文物ID和特征列
+     */
+    @Select("SELECT artifact_id, feature_bin, " +
+            "CASE WHEN feature_bin IS NULL THEN feature END AS feature " +
+            "FROM artifact WHERE updated_at >= #{since}")
+    List<Artifact> findFeatureVectorsUpdatedSince(@Param("since") Date since);
+    
+    /**
+     * 查询所有有特征向量的文物ID，用于识别向量快照生成后被删除的文物
+     */
+    @Select("SELECT artifact_id FROM artifact " +
+            "WHERE feature_bin IS NOT NULL OR (feature IS NOT NULL AND feature != '')")
+    List<Integer> findFeatureArtifactIds();
+    
+    /**
+     * 查询全部文物的过滤属性，用于构建以图搜图的属性过滤位图
+     */
+    @Select("SELECT artifact_id, era, type, museum FROM artifact")
+    List<Artifact> findFilterAttributes();
+    
+    /**
+     * 按ID批量查询文物的过滤属性，用于增量更新属性过滤位图
+     * 
+     * @param ids 文物ID列表
+     * @return 文物ID、年代、类型和博物馆
+     */
+    @Select("<script>" +
+            "SELECT artifact_id, era, type, museum FROM artifact WHERE artifact_id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<Artifact> findFilterAttributesByIds(@Param("ids") List<Integer> ids);
+    
+    /**
+     * 文物表的更新时间高水位
+     */
+    @Select("SELECT MAX(updated_at) FROM artifact")
+    Date findMaxUpdatedAt();
+    
+    /**
+     * 按ID游标分批查询尚未迁移为二进制格式的文本特征
+     * 
+     * @param afterId 上一批最后一条记录的ID
+     * @param limit   批大小
+     * @return 文物ID和文本特征
+     */
+    @Select("SELECT artifact_id, feature FROM artifact " +
+            "WHERE artifact_id > #{afterId} AND feature_bin IS NULL " +
+            "AND feature IS NOT NULL AND feature != '' " +
+            "ORDER BY artifact_id LIMIT #{limit}")
+    List<Artifact> findUnmigratedFeatures(@Param("afterId") Integer afterId, @Param("limit") int limit);
+    
+    /**
+     * 统计尚未迁移为二进制格式的记录数
+     */
+    @Select("SELECT COUNT(*) FROM artifact " +
+            "WHERE feature_bin IS NULL AND feature IS NOT NULL AND feature != ''")
+    long countUnmigratedFeatures();
+    
+    /**
+     * 写入二进制特征，已存在二进制特征的记录不会被覆盖，不修改updated_at
+     * 
+     * @param id         文物ID
+     * @param featureBin 二进制特征
+     * @param clearText  是否同时清空文本特征列
+     * @return 受影响的行数
+     */
+    @Update("<script>" +
+            "UPDATE artifact SET feature_bin = #{featureBin}, updated_at = updated_at" +
+            "<if test='clearText'>, feature = NULL</if> " +
+            "WHERE artifact_id = #{id} AND feature_bin IS NULL" +
+            "</script>")
+    int updateFeatureBin(@Param("id") Integer id, @Param("featureBin") byte[] featureBin,
+                         @Param("clearText") boolean clearText);
+    
+    /**
+     * 查询有图片的文物及其直方图特征，用于构建纯Java特征索引
+     */
+    @Select("SELECT artifact_id, image_url, hist_feature FROM artifact " +
+            "WHERE image_url IS NOT NULL AND image_url != '' ORDER BY artifact_id")
+    List<Artifact> findHistogramSources();
+    
+    /**
+     * 写入直方图特征，不修改updated_at
+     * 
+     * @param id            文物ID
+     * @param histFeature   二进制直方图特征
+     * @return 受影响的行数
+     */
+    @Update("UPDATE artifact SET hist_feature = #{histFeature}, updated_at = updated_at WHERE artifact_id = #{id}")
+    int updateHistFeature(@Param("id") Integer id, @Param("histFeature") byte[] histFeature);
+    
+    /**
+     * 查询有图片的文物及其感知哈希，用于构建近重复图片索引
+     */
+    @Select("SELECT artifact_id, image_url, phash, dhash FROM artifact " +
+            "WHERE image_url IS NOT NULL AND image_url != '' ORDER BY artifact_id")
+    List<Artifact> findPerceptualHashSources();
+    
+    /**
+     * 按ID查询有图片的文物及其感知哈希，用于增量更新近重复图片索引
+     */
+    @Select("<script>" +
+            "SELECT artifact_id, image_url, phash, dhash FROM artifact " +
+            "WHERE image_url IS NOT NULL AND image_url != '' AND artifact_id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<Artifact> findPerceptualHashSourcesByIds(@Param("ids") List<Integer> ids);
+    
+    /**
+     * 写入感知哈希，不修改updated_at
+     * 
+     * @param id      文物ID
+     * @param phash   64位pHash
+     * @param dhash   64位dHash
+     * @return 受影响的行数
+     */
+    @Update("UPDATE artifact SET phash = #{phash}, dhash = #{dhash}, updated_at = updated_at " +
+            "WHERE artifact_id = #{id}")
+    int updatePerceptualHash(@Param("id") Integer id, @Param("phash") long phash, @Param("dhash") long dhash);
 }
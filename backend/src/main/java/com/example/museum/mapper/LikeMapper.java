@@ -66,21 +66,22 @@ public interface LikeMapper {
     int checkLikeExists(@Param("userId") Integer userId, @Param("artifactId") Integer artifactId);
 
     /**
-     * 增加文物的点赞数
+     * 增加文物的点赞数，不修改updated_at
      * 
      * @param artifactId 文物ID
      * @return 受影响的行数
      */
-    @Update("UPDATE artifact SET likes = likes + 1 WHERE artifact_id = #{artifactId}")
+    @Update("UPDATE artifact SET likes = likes + 1, updated_at = updated_at WHERE artifact_id = #{artifactId}")
     int incrementArtifactLikes(Integer artifactId);
 
     /**
-     * 减少文物的点赞数（确保不小于0）
+     * 减少文物的点赞数（确保不小于0），不修改updated_at
      * 
      * @param artifactId 文物ID
      * @return 受影响的行数
      */
-    @Update("UPDATE artifact SET likes = GREATEST(0, likes - 1) WHERE artifact_id = #{artifactId}")
+    @Update("UPDATE artifact SET likes = GREATEST(0, likes - 1), updated_at = updated_at " +
+            "WHERE artifact_id = #{artifactId}")
     int decrementArtifactLikes(Integer artifactId);
 
     /**
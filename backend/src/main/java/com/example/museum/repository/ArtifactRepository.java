@@ -33,19 +33,19 @@ public interface ArtifactRepository extends JpaRepository<Artifact, Integer> {
     List<Artifact> findByMuseum(String museum);
     
     /**
-     * 增加文物的点赞数
+     * 增加文物的点赞数，不修改updated_at
      */
     @Modifying
     @Transactional
-    @Query("UPDATE Artifact a SET a.likes = a.likes + 1 WHERE a.id = :id")
+    @Query("UPDATE Artifact a SET a.likes = a.likes + 1, a.updatedAt = a.updatedAt WHERE a.id = :id")
     void incrementLikes(@Param("id") Integer id);
     
     /**
-     * 减少文物的点赞数
+     * 减少文物的点赞数，不修改updated_at
      */
     @Modifying
     @Transactional
-    @Query("UPDATE Artifact a SET a.likes = a.likes - 1 WHERE a.id = :id AND a.likes > 0")
+    @Query("UPDATE Artifact a SET a.likes = a.likes - 1, a.updatedAt = a.updatedAt WHERE a.id = :id AND a.likes > 0")
     void decrementLikes(@Param("id") Integer id);
     
     /**
@@ -0,0 +1,205 @@
+package com.example.museum.search;
+
+import com.example.museum.entity.Artifact;
+import com.example.museum.mapper.ArtifactMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 以图搜图属性过滤位图
+ * 为年代、类型、博物馆的每个取值预先计算一个文物ID位图，检索时按条件取出对应位图按位与，
+ * 得到的过滤位图交给检索引擎在打分时跳过不满足条件的文物，而不是取前k个结果后再过滤。
+ * 全量加载随向量库一起进行，之后的文物变更由增量同步线程写入；
+ * 位图发布后不再修改，变更时复制受影响的位图后整体原子替换，检索无需加锁
+ */
+@Component
+public class ArtifactAttributeIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArtifactAttributeIndex.class);
+
+    private static final String[] ATTRIBUTES = {"era", "type", "museum"};
+
+    private static final FilterMask NONE = new FilterMask(new long[0]);
+
+    @Autowired
+    private ArtifactMapper artifactMapper;
+
+    /**
+     * 每个属性一张取值到文物ID位图的映射，顺序与ATTRIBUTES一致
+     */
+    private volatile List<Map<String, long[]>> bitsets = emptyBitsets();
+
+    private volatile int loadedArtifacts;
+
+    private volatile long loadTimeMillis;
+
+    private volatile long loadedAt;
+
+    private final AtomicLong appliedChanges = new AtomicLong();
+
+    private final AtomicLong resolvedFilters = new AtomicLong();
+
+    /**
+     * 从数据库重新加载全部文物的过滤属性，加载失败时保留原位图
+     */
+    public synchronized void reload() {
+        long start = System.currentTimeMillis();
+        try {
+            List<Map<String, long[]>> loaded = emptyBitsets();
+            Set<long[]> writable = Collections.newSetFromMap(new IdentityHashMap<>());
+            int count = 0;
+            for (Artifact artifact : artifactMapper.findFilterAttributes()) {
+                set(loaded, artifact, writable);
+                count++;
+            }
+            this.bitsets = loaded;
+            this.loadedArtifacts = count;
+            this.loadedAt = System.currentTimeMillis();
+            this.loadTimeMillis = loadedAt - start;
+            logger.info("文物属性过滤位图加载完成 - 文物数: {}, 年代: {}, 类型: {}, 博物馆: {}, 内存占用: {} KB, 耗时: {} ms",
+                    count, loaded.get(0).size(), loaded.get(1).size(), loaded.get(2).size(),
+                    memoryBytes(loaded) / 1024, loadTimeMillis);
+        } catch (Exception e) {
+            logger.error("加载文物属性过滤位图失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 应用文物变更，updated为变更后的文物属性（需包含ID、年代、类型、博物馆），deletes为已删除的文物ID
+     */
+    public synchronized void apply(Collection<Artifact> updated, Collection<Integer> deletes) {
+        if (updated.isEmpty() && deletes.isEmpty()) {
+            return;
+        }
+        List<Map<String, long[]>> next = new ArrayList<>(ATTRIBUTES.length);
+        for (Map<String, long[]> values : bitsets) {
+            next.add(new HashMap<>(values));
+        }
+        // 本次复制出的位图，尚未发布，可以直接修改
+        Set<long[]> writable = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Integer id : deletes) {
+            clear(next, id, writable);
+        }
+        for (Artifact artifact : updated) {
+            clear(next, artifact.getId(), writable);
+            set(next, artifact, writable);
+        }
+        this.bitsets = next;
+        appliedChanges.addAndGet(updated.size() + deletes.size());
+    }
+
+    /**
+     * 计算满足过滤条件的文物ID位图
+     * @param filter 过滤条件，为null时返回null表示不过滤
+     */
+    public FilterMask resolve(AttributeFilter filter) {
+        if (filter == null) {
+            return null;
+        }
+        resolvedFilters.incrementAndGet();
+        List<Map<String, long[]>> current = bitsets;
+        String[] values = {filter.getEra(), filter.getType(), filter.getMuseum()};
+        List<long[]> selected = new ArrayList<>(ATTRIBUTES.length);
+        for (int a = 0; a < ATTRIBUTES.length; a++) {
+            if (values[a] == null) {
+                continue;
+            }
+            long[] bits = current.get(a).get(values[a]);
+            if (bits == null) {
+                // 不存在的取值，没有文物满足条件
+                return NONE;
+            }
+            selected.add(bits);
+        }
+        return FilterMask.intersect(selected.toArray(new long[0][]));
+    }
+
+    private static List<Map<String, long[]>> emptyBitsets() {
+        List<Map<String, long[]>> empty = new ArrayList<>(ATTRIBUTES.length);
+        for (int a = 0; a < ATTRIBUTES.length; a++) {
+            empty.add(new HashMap<>());
+        }
+        return empty;
+    }
+
+    private static void set(List<Map<String, long[]>> target, Artifact artifact, Set<long[]> writable) {
+        String[] values = {artifact.getEra(), artifact.getType(), artifact.getMuseum()};
+        int id = artifact.getId();
+        for (int a = 0; a < ATTRIBUTES.length; a++) {
+            if (values[a] != null) {
+                long[] bits = writable(target.get(a), values[a], (id >>> 6) + 1, writable);
+                bits[id >>> 6] |= 1L << id;
+            }
+        }
+    }
+
+    private static void clear(List<Map<String, long[]>> target, int id, Set<long[]> writable) {
+        int word = id >>> 6;
+        for (Map<String, long[]> values : target) {
+            for (Map.Entry<String, long[]> entry : values.entrySet()) {
+                long[] bits = entry.getValue();
+                if (word < bits.length && (bits[word] & (1L << id)) != 0) {
+                    writable(values, entry.getKey(), word + 1, writable)[word] &= ~(1L << id);
+                }
+            }
+        }
+    }
+
+    /**
+     * 取得可修改的位图：已发布的位图先复制，长度不足时按倍数扩容
+     */
+    private static long[] writable(Map<String, long[]> values, String value, int minWords, Set<long[]> writable) {
+        long[] bits = values.get(value);
+        if (bits != null && bits.length >= minWords && writable.contains(bits)) {
+            return bits;
+        }
+        int length = bits == null ? minWords
+                : bits.length >= minWords ? bits.length : Math.max(minWords, bits.length * 2);
+        long[] copy = bits == null ? new long[length] : Arrays.copyOf(bits, length);
+        values.put(value, copy);
+        writable.add(copy);
+        return copy;
+    }
+
+    private static long memoryBytes(List<Map<String, long[]>> bitsets) {
+        long bytes = 0;
+        for (Map<String, long[]> values : bitsets) {
+            for (long[] bits : values.values()) {
+                bytes += bits.length * 8L;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 过滤位图统计信息
+     */
+    public Map<String, Object> getStats() {
+        List<Map<String, long[]>> current = bitsets;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("loadedArtifacts", loadedArtifacts);
+        for (int a = 0; a < ATTRIBUTES.length; a++) {
+            stats.put(ATTRIBUTES[a] + "Values", current.get(a).size());
+        }
+        stats.put("memoryBytes", memoryBytes(current));
+        stats.put("loadTimeMillis", loadTimeMillis);
+        stats.put("loadedAt", loadedAt);
+        stats.put("appliedChanges", appliedChanges.get());
+        stats.put("resolvedFilters", resolvedFilters.get());
+        return stats;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.museum.search;
+
+import java.util.Collection;
+
+/**
+ * 文物变更的附加处理，增量更新线程把一批变更同步到向量库后依次通知
+ * 实现方按ID从数据库读取文物的当前状态，读不到的按已删除处理
+ */
+public interface ArtifactChangeHandler {
+
+    /**
+     * @param artifactIds 本批新增、修改或删除的文物ID
+     */
+    void onArtifactsChanged(Collection<Integer> artifactIds);
+}
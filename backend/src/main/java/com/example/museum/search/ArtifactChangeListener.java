@@ -0,0 +1,34 @@
+package com.example.museum.search;
+
+import com.example.museum.entity.Artifact;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * 文物实体监听器，通过JPA保存或删除文物后通知增量更新线程
+ * 由Hibernate通过Spring容器创建，绕过JPA的写入（JPQL批量更新、MyBatis）不会触发，需写入artifact_change表
+ */
+@Component
+public class ArtifactChangeListener {
+
+    // 延迟注入，避免EntityManagerFactory初始化时提前创建向量库
+    @Lazy
+    @Autowired
+    private ArtifactIndexUpdater artifactIndexUpdater;
+
+    @PostPersist
+    @PostUpdate
+    public void onSaved(Artifact artifact) {
+        artifactIndexUpdater.notifyChanged(artifact.getId(), false);
+    }
+
+    @PostRemove
+    public void onRemoved(Artifact artifact) {
+        artifactIndexUpdater.notifyChanged(artifact.getId(), true);
+    }
+}
@@ -0,0 +1,378 @@
+package com.example.museum.search;
+
+import com.example.museum.entity.Artifact;
+import com.example.museum.entity.ArtifactChange;
+import com.example.museum.mapper.ArtifactChangeMapper;
+import com.example.museum.mapper.ArtifactMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 将文物变更增量同步到向量库
+ * 变更来源有两个：本实例通过JPA保存或删除文物时由实体监听器在事务提交后通知；
+ * 其他写入途径在artifact_change表中记录变更，由本线程按change_id定期拉取。
+ * 同一文物的多次变更合并为一次，新增和修改从数据库重新读取特征向量，读不到特征的按删除处理。
+ * 同步到向量库后再通知其他变更处理方（如近重复图片索引）。
+ * 每轮处理后调用向量库的后台维护（移除已合并的增量、按需合并快照）
+ */
+@Component
+public class ArtifactIndexUpdater {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArtifactIndexUpdater.class);
+
+    /**
+     * 按ID批量读取特征向量的批大小
+     */
+    private static final int FETCH_BATCH = 500;
+
+    /**
+     * 启动时从outbox回放的时间余量，覆盖向量库加载期间写入的变更（重复处理无副作用）
+     */
+    private static final long STARTUP_REPLAY_MILLIS = 60_000;
+
+    /**
+     * 读取outbox连续失败时的最大重试间隔
+     */
+    private static final long MAX_OUTBOX_BACKOFF_MILLIS = 60_000;
+
+    /**
+     * MySQL表不存在的SQLState和错误码
+     */
+    private static final String MISSING_TABLE_SQL_STATE = "42S02";
+
+    private static final int MISSING_TABLE_ERROR_CODE = 1146;
+
+    @Autowired
+    private ArtifactVectorStore artifactVectorStore;
+
+    @Autowired
+    private ArtifactMapper artifactMapper;
+
+    @Autowired
+    private ArtifactAttributeIndex artifactAttributeIndex;
+
+    @Autowired
+    private ArtifactChangeMapper artifactChangeMapper;
+
+    @Autowired(required = false)
+    private List<ArtifactChangeHandler> changeHandlers = Collections.emptyList();
+
+    @Value("${museum.search.incremental.enabled:true}")
+    private boolean enabled;
+
+    // 拉取outbox和执行后台维护的间隔
+    @Value("${museum.search.incremental.poll-interval-ms:2000}")
+    private long pollIntervalMillis;
+
+    @Value("${museum.search.incremental.outbox-batch-size:1000}")
+    private int outboxBatchSize;
+
+    // 已处理的outbox记录保留时间，便于其他实例和排查问题
+    @Value("${museum.search.incremental.outbox-retention-ms:3600000}")
+    private long outboxRetentionMillis;
+
+    private static final class Change {
+        final int artifactId;
+        final boolean deleted;
+
+        Change(int artifactId, boolean deleted) {
+            this.artifactId = artifactId;
+            this.deleted = deleted;
+        }
+    }
+
+    private final BlockingQueue<Change> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * 上一轮应用失败、等待重试的变更，只在更新线程中访问
+     */
+    private final Map<Integer, Boolean> retry = new LinkedHashMap<>();
+
+    private volatile Thread worker;
+
+    private volatile long outboxHighWaterMark = -1;
+
+    private volatile boolean outboxAvailable = true;
+
+    /**
+     * 读取outbox连续失败的次数，决定下次重试的退避间隔
+     */
+    private volatile int outboxFailures;
+
+    private volatile long lastAppliedAt;
+
+    private final AtomicLong listenerEvents = new AtomicLong();
+
+    private final AtomicLong outboxEvents = new AtomicLong();
+
+    private final AtomicLong appliedBatches = new AtomicLong();
+
+    private final AtomicLong failedBatches = new AtomicLong();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(this::run, "artifact-index-updater");
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Thread thread = worker;
+        worker = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * 通知文物已新增、修改或删除，在事务中调用时推迟到事务提交后生效
+     */
+    public void notifyChanged(Integer artifactId, boolean deleted) {
+        if (!enabled || artifactId == null) {
+            return;
+        }
+        Change change = new Change(artifactId, deleted);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    listenerEvents.incrementAndGet();
+                    queue.offer(change);
+                }
+            });
+        } else {
+            listenerEvents.incrementAndGet();
+            queue.offer(change);
+        }
+    }
+
+    private void run() {
+        long nextOutboxPoll = 0;
+        long nextCleanup = System.currentTimeMillis() + outboxRetentionMillis;
+        while (worker != null) {
+            Map<Integer, Boolean> pending = new LinkedHashMap<>(retry);
+            retry.clear();
+            try {
+                Change first = queue.poll(pollIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    List<Change> changes = new ArrayList<>();
+                    changes.add(first);
+                    queue.drainTo(changes);
+                    for (Change change : changes) {
+                        pending.put(change.artifactId, change.deleted);
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            long highWaterMark = outboxHighWaterMark;
+            if (now >= nextOutboxPoll) {
+                highWaterMark = pollOutbox(pending);
+                nextOutboxPoll = now + outboxPollDelay();
+            }
+            if (!pending.isEmpty()) {
+                try {
+                    apply(pending);
+                    outboxHighWaterMark = highWaterMark;
+                } catch (Exception e) {
+                    failedBatches.incrementAndGet();
+                    retry.putAll(pending);
+                    logger.warn("同步文物变更到向量库失败，稍后重试 - 变更数: {}, 原因: {}", pending.size(), e.getMessage());
+                }
+            } else {
+                outboxHighWaterMark = highWaterMark;
+            }
+            try {
+                artifactVectorStore.maintain();
+            } catch (Exception e) {
+                logger.error("向量库后台维护失败: {}", e.getMessage(), e);
+            }
+            if (outboxAvailable && now >= nextCleanup) {
+                cleanupOutbox();
+                nextCleanup = now + outboxRetentionMillis;
+            }
+        }
+    }
+
+    /**
+     * 拉取outbox中的新变更并入pending，返回拉取后的high-water mark（应用成功后才提交）
+     */
+    private long pollOutbox(Map<Integer, Boolean> pending) {
+        if (!outboxAvailable) {
+            return outboxHighWaterMark;
+        }
+        try {
+            long highWaterMark = outboxHighWaterMark;
+            if (highWaterMark < 0) {
+                highWaterMark = artifactChangeMapper.findMaxChangeIdBefore(
+                        new Date(artifactVectorStore.getLoadedAt() - STARTUP_REPLAY_MILLIS));
+            }
+            List<ArtifactChange> changes;
+            do {
+                changes = artifactChangeMapper.findChangesAfter(highWaterMark, outboxBatchSize);
+                for (ArtifactChange change : changes) {
+                    pending.put(change.getArtifactId(), ArtifactChange.DELETE.equalsIgnoreCase(change.getChangeType()));
+                    highWaterMark = change.getChangeId();
+                }
+                outboxEvents.addAndGet(changes.size());
+            } while (changes.size() == outboxBatchSize);
+            outboxFailures = 0;
+            return highWaterMark;
+        } catch (Exception e) {
+            if (isMissingTable(e)) {
+                // 只有表确实不存在时才停止拉取，其他途径写入的文物变更将不再同步，直到下次全量加载
+                outboxAvailable = false;
+                logger.error("文物变更记录表artifact_change不存在，已停止拉取outbox，只同步本实例通过JPA写入的变更。"
+                        + "请执行建表脚本后重启: {}", e.getMessage());
+            } else {
+                outboxFailures++;
+                logger.warn("读取文物变更记录表失败，{} ms后重试 - 连续失败: {} 次, 原因: {}",
+                        outboxPollDelay(), outboxFailures, e.getMessage());
+            }
+            return outboxHighWaterMark;
+        }
+    }
+
+    /**
+     * 下次拉取outbox的间隔，连续失败时按指数退避
+     */
+    private long outboxPollDelay() {
+        int failures = outboxFailures;
+        if (failures == 0) {
+            return pollIntervalMillis;
+        }
+        long delay = pollIntervalMillis << Math.min(failures, 16);
+        return Math.max(pollIntervalMillis, Math.min(MAX_OUTBOX_BACKOFF_MILLIS, delay));
+    }
+
+    private static boolean isMissingTable(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                SQLException sqlException = (SQLException) cause;
+                if (MISSING_TABLE_SQL_STATE.equals(sqlException.getSQLState())
+                        || sqlException.getErrorCode() == MISSING_TABLE_ERROR_CODE) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void apply(Map<Integer, Boolean> pending) {
+        List<Integer> upsertIds = new ArrayList<>();
+        List<Integer> deletes = new ArrayList<>();
+        for (Map.Entry<Integer, Boolean> entry : pending.entrySet()) {
+            if (entry.getValue()) {
+                deletes.add(entry.getKey());
+            } else {
+                upsertIds.add(entry.getKey());
+            }
+        }
+        Map<Integer, float[]> upserts = new HashMap<>();
+        List<Artifact> attributes = new ArrayList<>();
+        for (int from = 0; from < upsertIds.size(); from += FETCH_BATCH) {
+            List<Integer> batch = upsertIds.subList(from, Math.min(upsertIds.size(), from + FETCH_BATCH));
+            attributes.addAll(artifactMapper.findFilterAttributesByIds(batch));
+            for (Artifact artifact : artifactMapper.findFeatureVectorsByIds(batch)) {
+                try {
+                    float[] vector = artifact.getFeatureVector();
+                    if (vector != null) {
+                        upserts.put(artifact.getId(), vector);
+                    }
+                } catch (Exception e) {
+                    logger.warn("文物特征解析失败，已从向量库移除 - 文物ID: {}", artifact.getId());
+                }
+            }
+        }
+        for (Integer id : upsertIds) {
+            if (!upserts.containsKey(id)) {
+                // 文物已删除或没有特征
+                deletes.add(id);
+            }
+        }
+        // 先更新过滤位图再发布向量变更，向量库版本号递增后的检索能看到新的属性
+        artifactAttributeIndex.apply(attributes, deletes);
+        artifactVectorStore.applyChanges(upserts, deletes);
+        appliedBatches.incrementAndGet();
+        lastAppliedAt = System.currentTimeMillis();
+        logger.info("文物变更已同步到向量库 - 新增/修改: {}, 删除: {}", upserts.size(), deletes.size());
+        notifyHandlers(pending.keySet());
+    }
+
+    /**
+     * 通知其他变更处理方，处理失败不影响已同步的向量变更，也不触发整批重试
+     */
+    private void notifyHandlers(Collection<Integer> artifactIds) {
+        List<Integer> ids = new ArrayList<>(artifactIds);
+        for (ArtifactChangeHandler handler : changeHandlers) {
+            try {
+                handler.onArtifactsChanged(ids);
+            } catch (Exception e) {
+                logger.warn("文物变更处理失败 - 处理方: {}, 变更数: {}, 原因: {}",
+                        handler.getClass().getSimpleName(), ids.size(), e.getMessage());
+            }
+        }
+    }
+
+    private void cleanupOutbox() {
+        try {
+            long upTo = outboxHighWaterMark;
+            if (upTo > 0) {
+                int deleted = artifactChangeMapper.deleteProcessedChanges(upTo,
+                        new Date(System.currentTimeMillis() - outboxRetentionMillis));
+                if (deleted > 0) {
+                    logger.info("已清理过期的文物变更记录: {} 条", deleted);
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("清理文物变更记录失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 增量同步统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("running", worker != null);
+        stats.put("queued", queue.size());
+        stats.put("listenerEvents", listenerEvents.get());
+        stats.put("outboxAvailable", outboxAvailable);
+        stats.put("outboxFailures", outboxFailures);
+        stats.put("outboxEvents", outboxEvents.get());
+        stats.put("outboxHighWaterMark", outboxHighWaterMark);
+        stats.put("appliedBatches", appliedBatches.get());
+        stats.put("failedBatches", failedBatches.get());
+        stats.put("lastAppliedAt", lastAppliedAt);
+        return stats;
+    }
+}
@@ -0,0 +1,618 @@
+package com.example.museum.search;
+
+import com.example.museum.entity.Artifact;
+import com.example.museum.mapper.ArtifactMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * 常驻内存的文物特征向量库
+ * 启动时从数据库一次性加载所有特征向量，避免每次以图搜图都查询全表并重新解析特征。
+ * 之后的文物变更以增量（新增/修改的向量和删除标记）发布，检索时与各引擎的基础索引结果合并；
+ * 增量积累到一定规模后在后台合并为新的基础快照并通知引擎重建，引擎重建完成前增量继续保留。
+ * 基础快照、增量和引擎索引都以不可变对象原子替换，检索无需加锁
+ */
+@Component
+public class ArtifactVectorStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArtifactVectorStore.class);
+
+    @Autowired
+    private ArtifactMapper artifactMapper;
+
+    @Autowired
+    private List<VectorSearchEngine> searchEngines;
+
+    @Autowired
+    private VectorSnapshotFile vectorSnapshotFile;
+
+    @Autowired
+    private ArtifactAttributeIndex artifactAttributeIndex;
+
+    /**
+     * 是否在内存中保留原始向量矩阵，内存有限的节点可关闭并配合ivfpq压缩索引使用
+     */
+    @Value("${museum.search.vector-store.resident:true}")
+    private boolean resident;
+
+    // 从数据库加载特征向量时每批读取的行数
+    @Value("${museum.search.vector-store.load-batch-size:1000}")
+    private int loadBatchSize;
+
+    // 增量达到该条数时合并为新的基础快照
+    @Value("${museum.search.incremental.compaction-threshold:1000}")
+    private int compactionThreshold;
+
+    // 增量非空时最长的合并间隔
+    @Value("${museum.search.incremental.compaction-interval-ms:600000}")
+    private long compactionIntervalMillis;
+
+    private volatile VectorSnapshot snapshot = VectorSnapshot.EMPTY;
+
+    private volatile VectorDelta delta = VectorDelta.EMPTY;
+
+    /**
+     * 增量条目，vector为null表示已删除，seq为变更序号；只在持有对象锁时访问
+     */
+    private static final class DeltaEntry {
+        final float[] vector;
+        final long seq;
+
+        DeltaEntry(float[] vector, long seq) {
+            this.vector = vector;
+            this.seq = seq;
+        }
+    }
+
+    private final Map<Integer, DeltaEntry> deltaEntries = new HashMap<>();
+
+    private long deltaSeq;
+
+    /**
+     * 已合并进基础快照、待引擎重建完成后移除的增量序号上限，-1表示没有待移除的增量
+     */
+    private long compactedSeq = -1;
+
+    private volatile long lastCompactionAt = System.currentTimeMillis();
+
+    /**
+     * 当前基础快照对应的数据库高水位（artifact.updated_at最大值，毫秒），-1表示未知
+     */
+    private volatile long catalogHighWaterMark = -1;
+
+    private volatile String loadSource = "none";
+
+    private final AtomicLong appliedUpserts = new AtomicLong();
+
+    private final AtomicLong appliedDeletes = new AtomicLong();
+
+    private final AtomicLong compactions = new AtomicLong();
+
+    private volatile long loadTimeMillis;
+
+    private volatile long loadedAt;
+
+    private volatile int skippedRows;
+
+    private volatile int loadedVectors;
+
+    private volatile int loadedDimension;
+
+    /**
+     * 分批加载时引擎使用的数据库来源，数量和跳过行数在引擎遍历后才确定；全量加载到内存时为null
+     */
+    private volatile DatabaseVectorSource streamingSource;
+
+    private volatile long loadedBytes;
+
+    /**
+     * 向量库版本号，重新加载或文物数据变更时递增，检索结果缓存以此判断是否过期
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        try {
+            if (!loadFromSnapshotFile()) {
+                reload();
+            }
+        } catch (Exception e) {
+            logger.error("加载文物特征向量失败，以图搜图暂不可用: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 从数据库按ID游标分批重新加载全部特征向量，加载完成后原子替换快照
+     * 非常驻模式且所有引擎都支持分批构建时，不在内存中拼装完整矩阵，由各引擎直接分批读取数据库构建索引
+     */
+    public synchronized void reload() {
+        long start = System.currentTimeMillis();
+        // 先取高水位再读取特征，读取期间更新的文物在下次从快照文件启动时补读
+        long highWaterMark = currentHighWaterMark();
+        artifactAttributeIndex.reload();
+        DatabaseVectorSource source = new DatabaseVectorSource(artifactMapper, loadBatchSize);
+        long seqAtLoad = deltaSeq;
+
+        if (!resident && supportsStreamingBuild()) {
+            publish(source, start);
+            this.catalogHighWaterMark = highWaterMark;
+            this.loadSource = "database-streaming";
+            if (!deltaEntries.isEmpty()) {
+                compactedSeq = seqAtLoad;
+            }
+            // 没有完整矩阵可写入快照文件，下次启动仍从数据库分批加载
+            logger.info("文物特征向量改为由检索引擎分批加载 - 每批: {} 条", loadBatchSize);
+            return;
+        }
+
+        List<VectorSnapshot> batches = new ArrayList<>();
+        long[] rows = new long[1];
+        source.forEachBatch(batch -> {
+            rows[0] += batch.size();
+            // 逐批检查容量，超出单个数组上限时在读完全部数据之前失败
+            VectorSnapshot.matrixLength(rows[0], batch.getDimension());
+            batches.add(batch);
+        });
+        VectorSnapshot loaded = concat(batches, source.getDimension(), (int) rows[0]);
+
+        this.streamingSource = null;
+        this.skippedRows = source.skipped();
+        publish(loaded, start);
+        this.catalogHighWaterMark = highWaterMark;
+        this.loadSource = "database";
+        if (highWaterMark >= 0) {
+            vectorSnapshotFile.writeAsync(loaded, highWaterMark);
+        }
+        if (!deltaEntries.isEmpty()) {
+            // 全量加载已包含此前的全部变更，引擎重建完成后移除
+            compactedSeq = seqAtLoad;
+        }
+
+        logger.info("文物特征向量加载完成 - 数量: {}, 维度: {}, 跳过: {}, 内存占用: {} KB, 耗时: {} ms",
+            loaded.size(), loaded.getDimension(), source.skipped(), loaded.memoryBytes() / 1024, loadTimeMillis);
+    }
+
+    private boolean supportsStreamingBuild() {
+        for (VectorSearchEngine engine : searchEngines) {
+            if (!engine.supportsStreamingBuild()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按顺序拼接各批向量，各批ID升序且互不重叠，拼接结果仍然有序
+     */
+    private static VectorSnapshot concat(List<VectorSnapshot> batches, int dimension, int rows) {
+        if (rows == 0) {
+            return VectorSnapshot.EMPTY;
+        }
+        if (batches.size() == 1) {
+            return batches.get(0);
+        }
+        int[] ids = new int[rows];
+        float[] vectors = new float[VectorSnapshot.matrixLength(rows, dimension)];
+        int row = 0;
+        for (int i = 0; i < batches.size(); i++) {
+            VectorSnapshot batch = batches.get(i);
+            for (int r = 0; r < batch.size(); r++) {
+                ids[row + r] = batch.idAt(r);
+            }
+            System.arraycopy(batch.matrix(), 0, vectors, row * dimension, batch.size() * dimension);
+            row += batch.size();
+            // 拷贝后即释放该批，拼接期间两份向量的占用逐批降为一份
+            batches.set(i, null);
+        }
+        return new VectorSnapshot(dimension, ids, vectors);
+    }
+
+    /**
+     * 从快照文件启动：校验数据库高水位后，只从数据库补读快照之后更新的文物，并按ID清单剔除已删除的文物
+     * @return 快照文件不可用或已失效时返回false，由调用方全量加载
+     */
+    private synchronized boolean loadFromSnapshotFile() {
+        if (!vectorSnapshotFile.isEnabled() || (!resident && supportsStreamingBuild())) {
+            return false;
+        }
+        VectorSnapshotFile.Loaded file = vectorSnapshotFile.read();
+        if (file == null) {
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        long highWaterMark = currentHighWaterMark();
+        if (highWaterMark < file.getHighWaterMark()) {
+            logger.warn("数据库高水位早于向量快照文件（数据库可能已恢复到旧版本），改为全量加载");
+            return false;
+        }
+        VectorSnapshot base = file.getSnapshot();
+        if (base.isEmpty()) {
+            // 空快照没有可复用的数据，全量加载的代价也很小
+            return false;
+        }
+        int dimension = base.getDimension();
+        // 属性过滤位图很小，总是从数据库全量加载
+        artifactAttributeIndex.reload();
+
+        Map<Integer, float[]> changes = new HashMap<>();
+        for (Artifact artifact : artifactMapper.findFeatureVectorsUpdatedSince(new Date(file.getHighWaterMark()))) {
+            changes.put(artifact.getId(), replayVector(artifact, dimension));
+        }
+        List<Integer> liveIds = artifactMapper.findFeatureArtifactIds();
+        int[] live = new int[liveIds.size()];
+        for (int i = 0; i < live.length; i++) {
+            live[i] = liveIds.get(i);
+        }
+        Arrays.sort(live);
+        for (int row = 0; row < base.size(); row++) {
+            int id = base.idAt(row);
+            if (Arrays.binarySearch(live, id) < 0) {
+                changes.put(id, null);
+            }
+        }
+        // 不在快照中、也不在补读结果中的文物（如时钟回拨导致updated_at偏小）按ID补读
+        List<Integer> missing = new ArrayList<>();
+        for (int id : live) {
+            if (base.rowOf(id) < 0 && !changes.containsKey(id)) {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (Artifact artifact : artifactMapper.findFeatureVectorsByIds(missing)) {
+                changes.put(artifact.getId(), replayVector(artifact, dimension));
+            }
+        }
+
+        VectorSnapshot merged = changes.isEmpty() ? base
+                : VectorDelta.applyTo(base, VectorDelta.of(changes, dimension), dimension);
+        this.streamingSource = null;
+        this.skippedRows = 0;
+        publish(merged, start);
+        this.catalogHighWaterMark = highWaterMark;
+        this.loadSource = "snapshot-file";
+        if (!changes.isEmpty()) {
+            vectorSnapshotFile.writeAsync(merged, highWaterMark);
+        }
+        logger.info("向量快照文件补读完成 - 快照数量: {}, 补读变更: {}, 当前数量: {}, 耗时: {} ms",
+            base.size(), changes.size(), merged.size(), System.currentTimeMillis() - start);
+        for (VectorSearchEngine engine : searchEngines) {
+            if (!engine.isReady()) {
+                // 快照文件不含引擎索引结构，重建完成前检索由精确检索兜底
+                logger.info("检索引擎仍需基于快照重建索引 - 引擎: {}", engine.getName());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 补读的特征向量，无法解析或维度与快照不一致时返回null（按删除处理）
+     */
+    private float[] replayVector(Artifact artifact, int dimension) {
+        try {
+            float[] vector = artifact.getFeatureVector();
+            if (vector != null && (dimension == 0 || vector.length == dimension)) {
+                return vector;
+            }
+        } catch (Exception e) {
+            logger.warn("文物特征解析失败，已跳过 - 文物ID: {}", artifact.getId());
+        }
+        return null;
+    }
+
+    /**
+     * 数据库当前高水位，读取失败（如updated_at列尚不存在）时返回-1
+     */
+    private long currentHighWaterMark() {
+        try {
+            Date maxUpdatedAt = artifactMapper.findMaxUpdatedAt();
+            return maxUpdatedAt != null ? maxUpdatedAt.getTime() : 0;
+        } catch (Exception e) {
+            logger.warn("读取文物更新时间高水位失败，不使用向量快照文件: {}", e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * 发布新的基础快照并通知各检索引擎重建索引
+     */
+    private void publish(VectorSnapshot loaded, long start) {
+        this.snapshot = loaded;
+        this.loadedDimension = loaded.getDimension();
+        this.loadedVectors = loaded.size();
+        this.loadedBytes = loaded.memoryBytes();
+        this.loadTimeMillis = System.currentTimeMillis() - start;
+        this.loadedAt = System.currentTimeMillis();
+        this.lastCompactionAt = loadedAt;
+
+        // 通知各检索引擎基于新快照重建索引
+        for (VectorSearchEngine engine : searchEngines) {
+            try {
+                engine.rebuild(loaded);
+            } catch (Exception e) {
+                logger.error("检索引擎重建索引失败 - 引擎: {}, 原因: {}", engine.getName(), e.getMessage());
+            }
+        }
+
+        if (!resident) {
+            // 索引构建完成后原始矩阵由各引擎自行决定是否保留
+            this.snapshot = VectorSnapshot.EMPTY;
+        }
+        generation.incrementAndGet();
+    }
+
+    /**
+     * 通知各检索引擎从分批的向量来源重建索引，向量库本身不持有原始矩阵
+     */
+    private void publish(DatabaseVectorSource source, long start) {
+        this.streamingSource = source;
+        this.snapshot = VectorSnapshot.EMPTY;
+        this.loadedBytes = 0;
+        this.loadTimeMillis = System.currentTimeMillis() - start;
+        this.loadedAt = System.currentTimeMillis();
+        this.lastCompactionAt = loadedAt;
+        for (VectorSearchEngine engine : searchEngines) {
+            try {
+                engine.rebuild(source);
+            } catch (Exception e) {
+                logger.error("检索引擎重建索引失败 - 引擎: {}, 原因: {}", engine.getName(), e.getMessage());
+            }
+        }
+        generation.incrementAndGet();
+    }
+
+    /**
+     * 发布一批文物变更：upserts为新增或修改后的特征向量，deletes为已删除或不再有特征的文物
+     * 维度与向量库不一致的向量按删除处理。发布后新的检索立即可见，已缓存的检索结果失效
+     */
+    public synchronized void applyChanges(Map<Integer, float[]> upserts, Collection<Integer> deletes) {
+        int dimension = expectedDimension();
+        for (Map.Entry<Integer, float[]> entry : upserts.entrySet()) {
+            float[] vector = entry.getValue();
+            if (dimension > 0 && vector.length != dimension) {
+                logger.warn("文物特征维度不一致，已从向量库移除 - 文物ID: {}, 维度: {}, 期望: {}",
+                    entry.getKey(), vector.length, dimension);
+                vector = null;
+            } else {
+                dimension = vector.length;
+            }
+            deltaEntries.put(entry.getKey(), new DeltaEntry(vector, ++deltaSeq));
+            appliedUpserts.incrementAndGet();
+        }
+        for (Integer id : deletes) {
+            deltaEntries.put(id, new DeltaEntry(null, ++deltaSeq));
+            appliedDeletes.incrementAndGet();
+        }
+        publishDelta();
+        generation.incrementAndGet();
+    }
+
+    private int expectedDimension() {
+        int loaded = loadedDimension();
+        if (loaded > 0) {
+            return loaded;
+        }
+        for (DeltaEntry entry : deltaEntries.values()) {
+            if (entry.vector != null) {
+                return entry.vector.length;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 基础数据的向量维度；分批加载时为数据库来源最近一次遍历确定的维度
+     */
+    private int loadedDimension() {
+        DatabaseVectorSource source = streamingSource;
+        return source != null ? source.getDimension() : loadedDimension;
+    }
+
+    private void publishDelta() {
+        Map<Integer, float[]> changes = new HashMap<>(deltaEntries.size() * 2);
+        for (Map.Entry<Integer, DeltaEntry> entry : deltaEntries.entrySet()) {
+            changes.put(entry.getKey(), entry.getValue().vector);
+        }
+        delta = VectorDelta.of(changes, expectedDimension());
+    }
+
+    /**
+     * 后台维护，由增量更新线程定期调用：
+     * 引擎完成重建后移除已合并的增量；增量过多或过久时合并为新的基础快照
+     */
+    public synchronized void maintain() {
+        if (compactedSeq >= 0) {
+            for (VectorSearchEngine engine : searchEngines) {
+                if (engine.isBuilding()) {
+                    return;
+                }
+            }
+            long upTo = compactedSeq;
+            deltaEntries.values().removeIf(entry -> entry.seq <= upTo);
+            compactedSeq = -1;
+            publishDelta();
+            generation.incrementAndGet();
+            logger.info("检索引擎已基于新快照完成重建，剩余增量: {}", deltaEntries.size());
+            return;
+        }
+        if (deltaEntries.isEmpty()) {
+            return;
+        }
+        boolean large = deltaEntries.size() >= compactionThreshold;
+        boolean stale = System.currentTimeMillis() - lastCompactionAt >= compactionIntervalMillis;
+        if (large || stale) {
+            compact();
+        }
+    }
+
+    /**
+     * 将增量合并进基础快照并通知引擎重建；非常驻模式下没有可合并的基础矩阵，改为从数据库分批重新加载
+     */
+    private void compact() {
+        compactions.incrementAndGet();
+        if (!resident) {
+            reload();
+            return;
+        }
+        long start = System.currentTimeMillis();
+        VectorSnapshot merged = VectorDelta.applyTo(snapshot, delta, expectedDimension());
+        int mergedEntries = deltaEntries.size();
+        publish(merged, start);
+        compactedSeq = deltaSeq;
+        if (catalogHighWaterMark >= 0) {
+            // 高水位仍取上次从数据库加载时的值，下次启动补读的变更会多于必要，但不会遗漏
+            vectorSnapshotFile.writeAsync(merged, catalogHighWaterMark);
+        }
+        logger.info("文物向量增量已合并 - 增量: {}, 合并后数量: {}, 耗时: {} ms",
+            mergedEntries, merged.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 用指定引擎检索并合并增量：剔除已变更文物的旧结果，加入增量向量的精确检索结果
+     * 引擎和增量各自读取一次不可变快照，检索过程不受并发变更影响
+     */
+    public List<SearchHit> search(VectorSearchEngine engine, float[] query, double threshold, int maxResults) {
+        return search(engine, query, threshold, maxResults, null);
+    }
+
+    /**
+     * 同上，只检索满足过滤条件的文物
+     * @param filter 过滤位图，为null时不过滤
+     */
+    public List<SearchHit> search(VectorSearchEngine engine, float[] query, double threshold, int maxResults,
+                                  FilterMask filter) {
+        VectorDelta current = delta;
+        if (current.isEmpty()) {
+            return engine.search(query, threshold, maxResults, filter);
+        }
+        // 多取一些结果，弥补被剔除的已变更文物
+        int extra = Math.min(current.tombstoneCount(), maxResults);
+        return current.merge(engine.search(query, threshold, maxResults + extra, filter),
+                query, threshold, maxResults, filter);
+    }
+
+    /**
+     * 用精确检索引擎批量检索多个查询并逐个合并增量，结果与逐个调用search相同
+     * @param filter 过滤位图，对全部查询生效，为null时不过滤
+     * @return 与queries顺序一致的检索结果
+     */
+    public List<List<SearchHit>> searchBatch(ExactSearchEngine engine, float[][] queries, double threshold,
+                                             int maxResults, FilterMask filter) {
+        VectorDelta current = delta;
+        if (current.isEmpty()) {
+            return engine.searchBatch(queries, threshold, maxResults, filter);
+        }
+        int extra = Math.min(current.tombstoneCount(), maxResults);
+        List<List<SearchHit>> baseHits = engine.searchBatch(queries, threshold, maxResults + extra, filter);
+        List<List<SearchHit>> merged = new ArrayList<>(queries.length);
+        for (int q = 0; q < queries.length; q++) {
+            merged.add(current.merge(baseHits.get(q), queries[q], threshold, maxResults, filter));
+        }
+        return merged;
+    }
+
+    /**
+     * 用其他途径（如粗筛后的候选集检索）检索基础快照并合并增量，与search一样多取结果弥补被剔除的已变更文物
+     * @param baseSearch 按给定结果数检索基础快照
+     */
+    public List<SearchHit> searchWithDelta(IntFunction<List<SearchHit>> baseSearch, float[] query, double threshold,
+                                           int maxResults) {
+        VectorDelta current = delta;
+        if (current.isEmpty()) {
+            return baseSearch.apply(maxResults);
+        }
+        int extra = Math.min(current.tombstoneCount(), maxResults);
+        return current.merge(baseSearch.apply(maxResults + extra), query, threshold, maxResults);
+    }
+
+    /**
+     * 当前增量，读取方拿到后可无锁使用
+     */
+    public VectorDelta getDelta() {
+        return delta;
+    }
+
+    /**
+     * 最近一次全量加载或合并完成的时间
+     */
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * 当前向量库版本号
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * 标记文物数据已变更（新增、删除、过滤属性或特征变化），使已缓存的检索结果失效
+     * 点赞数等不影响检索排序的字段由结果缓存在返回时读取当前记录，不需要调用
+     * 在事务中调用时推迟到事务提交后生效，避免提交前的并发查询以新版本号缓存旧数据
+     */
+    public void markChanged() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    generation.incrementAndGet();
+                }
+            });
+        } else {
+            generation.incrementAndGet();
+        }
+    }
+
+    /**
+     * 当前向量快照，读取方拿到后可无锁使用
+     */
+    public VectorSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 向量库统计信息
+     */
+    public Map<String, Object> getStats() {
+        VectorSnapshot current = snapshot;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("resident", resident);
+        stats.put("generation", generation.get());
+        DatabaseVectorSource source = streamingSource;
+        stats.put("vectors", source != null ? source.size() : loadedVectors);
+        stats.put("dimension", loadedDimension());
+        stats.put("skippedRows", source != null ? source.skipped() : skippedRows);
+        stats.put("rawVectorBytes", loadedBytes);
+        stats.put("memoryBytes", current.memoryBytes());
+        stats.put("loadTimeMillis", loadTimeMillis);
+        stats.put("loadedAt", loadedAt);
+        stats.put("loadSource", loadSource);
+        stats.put("catalogHighWaterMark", catalogHighWaterMark);
+        stats.put("snapshotFile", vectorSnapshotFile.getStats());
+        VectorDelta currentDelta = delta;
+        stats.put("deltaUpserts", currentDelta.getUpserts().size());
+        stats.put("deltaTombstones", currentDelta.tombstoneCount());
+        stats.put("appliedUpserts", appliedUpserts.get());
+        stats.put("appliedDeletes", appliedDeletes.get());
+        stats.put("compactions", compactions.get());
+        stats.put("lastCompactionAt", lastCompactionAt);
+        return stats;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.museum.search;
+
+import java.util.Objects;
+
+/**
+ * 以图搜图的属性过滤条件（年代、类型、博物馆），按值精确匹配，未指定的属性不过滤
+ * 实现了equals/hashCode，可直接作为检索结果缓存键的一部分
+ */
+public final class AttributeFilter {
+
+    private final String era;
+
+    private final String type;
+
+    private final String museum;
+
+    private AttributeFilter(String era, String type, String museum) {
+        this.era = era;
+        this.type = type;
+        this.museum = museum;
+    }
+
+    /**
+     * 创建过滤条件，空白值视为未指定
+     * @return 三个属性都未指定时返回null，表示不过滤
+     */
+    public static AttributeFilter of(String era, String type, String museum) {
+        era = normalize(era);
+        type = normalize(type);
+        museum = normalize(museum);
+        if (era == null && type == null && museum == null) {
+            return null;
+        }
+        return new AttributeFilter(era, type, museum);
+    }
+
+    private static String normalize(String value) {
+        if (value == null) {
+            return null;
+        }
+        value = value.trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    public String getEra() {
+        return era;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getMuseum() {
+        return museum;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AttributeFilter)) {
+            return false;
+        }
+        AttributeFilter other = (AttributeFilter) o;
+        return Objects.equals(era, other.era)
+                && Objects.equals(type, other.type)
+                && Objects.equals(museum, other.museum);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(era, type, museum);
+    }
+
+    @Override
+    public String toString() {
+        return "era=" + era + ", type=" + type + ", museum=" + museum;
+    }
+}
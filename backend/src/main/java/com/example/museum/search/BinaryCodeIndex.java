@@ -0,0 +1,198 @@
+package com.example.museum.search;
+
+import com.example.museum.search.kernel.VectorKernels;
+
+import java.util.Random;
+
+/**
+ * 二值编码索引：每个向量压缩为若干64位字的比特串，按汉明距离粗排
+ * sign编码取中心化后各维的符号位（ResNet池化特征非负，不中心化时符号位全为1）；
+ * hyperplane编码取中心化向量在随机高斯超平面上投影的符号，位数可少于维度。
+ * 汉明距离近似反映向量夹角，粗排后须用全精度向量重排
+ */
+final class BinaryCodeIndex {
+
+    static final String SIGN = "sign";
+    static final String HYPERPLANE = "hyperplane";
+
+    private final int dimension;
+    private final int bits;
+    private final int words;
+    private final int[] ids;
+    private final long[] codes;
+    private final float[] mean;
+
+    /**
+     * 随机超平面，bits x dimension，sign编码时为null
+     */
+    private final float[] planes;
+
+    private final ThreadLocal<int[]> distanceBuffers;
+
+    private BinaryCodeIndex(int dimension, int bits, int[] ids, float[] mean, float[] planes) {
+        this.dimension = dimension;
+        this.bits = bits;
+        this.words = (bits + 63) / 64;
+        this.ids = ids;
+        this.codes = new long[ids.length * words];
+        this.mean = mean;
+        this.planes = planes;
+        int capacity = ids.length;
+        this.distanceBuffers = ThreadLocal.withInitial(() -> new int[capacity]);
+    }
+
+    static BinaryCodeIndex build(VectorSnapshot snapshot, String encoding, int hyperplaneBits, long seed) {
+        int dimension = snapshot.getDimension();
+        int n = snapshot.size();
+        float[] matrix = snapshot.matrix();
+        float[] mean = new float[dimension];
+        for (int row = 0; row < n; row++) {
+            int offset = snapshot.offsetOf(row);
+            for (int d = 0; d < dimension; d++) {
+                mean[d] += matrix[offset + d];
+            }
+        }
+        for (int d = 0; d < dimension; d++) {
+            mean[d] /= n;
+        }
+
+        float[] planes = null;
+        int bits = dimension;
+        if (HYPERPLANE.equalsIgnoreCase(encoding)) {
+            bits = Math.max(64, hyperplaneBits);
+            planes = new float[bits * dimension];
+            Random random = new Random(seed);
+            for (int i = 0; i < planes.length; i++) {
+                planes[i] = (float) random.nextGaussian();
+            }
+        } else if (!SIGN.equalsIgnoreCase(encoding)) {
+            throw new IllegalArgumentException("未知的二值编码方式: " + encoding);
+        }
+
+        int[] ids = new int[n];
+        BinaryCodeIndex index = new BinaryCodeIndex(dimension, bits, ids, mean, planes);
+        float[] centered = new float[dimension];
+        for (int row = 0; row < n; row++) {
+            ids[row] = snapshot.idAt(row);
+            int offset = snapshot.offsetOf(row);
+            for (int d = 0; d < dimension; d++) {
+                centered[d] = matrix[offset + d] - mean[d];
+            }
+            index.encodeCentered(centered, index.codes, row * index.words);
+        }
+        return index;
+    }
+
+    int getDimension() {
+        return dimension;
+    }
+
+    int getBits() {
+        return bits;
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    int idAt(int row) {
+        return ids[row];
+    }
+
+    long memoryBytes() {
+        return codes.length * 8L + ids.length * 4L + mean.length * 4L + (planes != null ? planes.length * 4L : 0);
+    }
+
+    long[] encode(float[] vector) {
+        float[] centered = new float[dimension];
+        for (int d = 0; d < dimension; d++) {
+            centered[d] = vector[d] - mean[d];
+        }
+        long[] code = new long[words];
+        encodeCentered(centered, code, 0);
+        return code;
+    }
+
+    private void encodeCentered(float[] centered, long[] target, int offset) {
+        for (int bit = 0; bit < bits; bit++) {
+            float value = planes == null ? centered[bit]
+                    : VectorKernels.get().dot(planes, bit * dimension, centered, 0, dimension);
+            if (value > 0) {
+                target[offset + (bit >>> 6)] |= 1L << (bit & 63);
+            }
+        }
+    }
+
+    /**
+     * 计算查询编码与每一行的汉明距离，返回的数组由当前线程复用
+     */
+    int[] distances(long[] query) {
+        return distances(query, null);
+    }
+
+    /**
+     * 计算查询编码与满足过滤条件的行的汉明距离，不满足条件的行记为bits+1
+     */
+    private int[] distances(long[] query, FilterMask filter) {
+        int[] distances = distanceBuffers.get();
+        int n = ids.length;
+        for (int row = 0, offset = 0; row < n; row++, offset += words) {
+            if (filter != null && !filter.contains(ids[row])) {
+                distances[row] = bits + 1;
+                continue;
+            }
+            int distance = 0;
+            for (int w = 0; w < words; w++) {
+                distance += Long.bitCount(codes[offset + w] ^ query[w]);
+            }
+            distances[row] = distance;
+        }
+        return distances;
+    }
+
+    /**
+     * 取满足过滤条件的行中汉明距离最小的size行（行号）
+     * 距离只有bits+1种取值，用计数直方图找到截断距离后再收集，不需要排序或堆
+     * @param filter 过滤位图，为null时不过滤
+     */
+    int[] shortlist(long[] query, int size, FilterMask filter) {
+        int n = ids.length;
+        int[] distances = distances(query, filter);
+        int excluded = bits + 1;
+        int[] histogram = new int[bits + 2];
+        for (int row = 0; row < n; row++) {
+            histogram[distances[row]]++;
+        }
+        int allowed = n - histogram[excluded];
+        if (size >= allowed) {
+            int[] all = new int[allowed];
+            int count = 0;
+            for (int row = 0; row < n; row++) {
+                if (distances[row] != excluded) {
+                    all[count++] = row;
+                }
+            }
+            return all;
+        }
+        int cutoff = 0;
+        int below = 0;
+        while (below + histogram[cutoff] < size) {
+            below += histogram[cutoff];
+            cutoff++;
+        }
+        // 距离小于截断值的全部入选，等于截断值的按行号顺序补足
+        int tiesAllowed = size - below;
+        int[] rows = new int[size];
+        int count = 0;
+        for (int row = 0; row < n; row++) {
+            int distance = distances[row];
+            if (distance < cutoff) {
+                rows[count++] = row;
+            } else if (distance == cutoff && tiesAllowed > 0) {
+                rows[count++] = row;
+                tiesAllowed--;
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.museum.search;
+
+import com.example.museum.entity.Artifact;
+import com.example.museum.mapper.ArtifactMapper;
+import com.example.museum.search.kernel.VectorKernels;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 两阶段检索引擎：先按二值编码的汉明距离从全部文物中筛出候选集，再用全精度向量重排
+ * 通过 museum.search.engine=binary 启用。粗排每个文物只读取bits/8字节（2048维sign编码为256字节，
+ * 原始向量为8KB），重排只对候选集计算浮点点积。
+ * 构建后用快照中的抽样向量作为查询测量召回率；配置了target-recall时按测量结果确定候选集大小
+ */
+@Component
+@ConditionalOnProperty(name = "museum.search.engine", havingValue = BinarySearchEngine.NAME)
+public class BinarySearchEngine implements VectorSearchEngine {
+
+    public static final String NAME = "binary";
+
+    private static final Logger logger = LoggerFactory.getLogger(BinarySearchEngine.class);
+
+    @Autowired
+    private ArtifactMapper artifactMapper;
+
+    // 编码方式: sign(中心化后逐维取符号) / hyperplane(随机超平面投影)
+    @Value("${museum.search.binary.encoding:sign}")
+    private String encoding;
+
+    @Value("${museum.search.binary.hyperplane-bits:512}")
+    private int hyperplaneBits;
+
+    @Value("${museum.search.binary.shortlist:300}")
+    private int shortlist;
+
+    // 大于0时按构建后测量的召回率自动确定候选集大小
+    @Value("${museum.search.binary.target-recall:0}")
+    private double targetRecall;
+
+    @Value("${museum.search.binary.calibration-queries:100}")
+    private int calibrationQueries;
+
+    @Value("${museum.search.binary.calibration-k:10}")
+    private int calibrationK;
+
+    @Value("${museum.search.binary.seed:42}")
+    private long seed;
+
+    @Value("${museum.search.vector-store.resident:true}")
+    private boolean residentVectors;
+
+    private final ExecutorService buildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "binary-index-build");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile BinaryCodeIndex index;
+
+    /**
+     * 用于内存重排的全精度向量，非常驻模式下为null
+     */
+    private volatile VectorSnapshot rerankSnapshot;
+
+    /**
+     * 实际使用的候选集大小
+     */
+    private volatile int effectiveShortlist;
+
+    private volatile double measuredRecall = -1;
+
+    private volatile long rawVectorBytes;
+
+    private volatile long buildTimeMillis;
+
+    /**
+     * 已提交尚未完成的构建任务数，多次重建排队时直到最后一次完成才归零
+     */
+    private final AtomicInteger pendingBuilds = new AtomicInteger();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void rebuild(VectorSnapshot snapshot) {
+        pendingBuilds.incrementAndGet();
+        buildExecutor.submit(() -> {
+            try {
+                long start = System.currentTimeMillis();
+                BinaryCodeIndex newIndex = snapshot.isEmpty() ? null :
+                        BinaryCodeIndex.build(snapshot, encoding, hyperplaneBits, seed);
+                int newShortlist = shortlist;
+                double recall = -1;
+                if (newIndex != null && calibrationQueries > 0) {
+                    int[] ranks = neighbourRanks(snapshot, newIndex);
+                    if (ranks.length > 0) {
+                        if (targetRecall > 0) {
+                            int needed = (int) Math.ceil(Math.min(1.0, targetRecall) * ranks.length);
+                            newShortlist = Math.max(1, ranks[Math.max(0, needed - 1)]);
+                        }
+                        recall = recallAt(ranks, newShortlist);
+                    }
+                }
+                this.rerankSnapshot = residentVectors ? snapshot : null;
+                this.effectiveShortlist = newShortlist;
+                this.measuredRecall = recall;
+                this.index = newIndex;
+                this.rawVectorBytes = snapshot.memoryBytes();
+                this.buildTimeMillis = System.currentTimeMillis() - start;
+                if (newIndex != null) {
+                    logger.info("二值编码索引构建完成 - 向量数: {}, 编码: {}, 位数: {}, 编码内存: {} KB, 原始向量: {} KB, "
+                                    + "候选集: {}, 测量召回率@{}: {}, 耗时: {} ms",
+                            newIndex.size(), encoding, newIndex.getBits(), newIndex.memoryBytes() / 1024,
+                            rawVectorBytes / 1024, newShortlist, calibrationK, recall, buildTimeMillis);
+                }
+            } catch (Exception e) {
+                logger.error("二值编码索引构建失败: {}", e.getMessage(), e);
+            } finally {
+                pendingBuilds.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * 抽样快照中的向量作为查询，求其精确前k近邻（不含自身）在汉明距离排序中的名次
+     * 名次按距离不大于该近邻的行数计（保守估计并列），返回升序排列的全部名次
+     */
+    private int[] neighbourRanks(VectorSnapshot snapshot, BinaryCodeIndex binaryIndex) {
+        int n = snapshot.size();
+        int queries = Math.min(calibrationQueries, n);
+        int k = Math.min(calibrationK, n - 1);
+        if (k <= 0) {
+            return new int[0];
+        }
+        Random random = new Random(seed);
+        int[] ranks = new int[queries * k];
+        int count = 0;
+        for (int q = 0; q < queries; q++) {
+            int queryRow = random.nextInt(n);
+            float[] query = snapshot.vectorAt(queryRow);
+            int[] distances = binaryIndex.distances(binaryIndex.encode(query));
+            int[] histogram = new int[binaryIndex.getBits() + 1];
+            for (int row = 0; row < n; row++) {
+                if (row != queryRow) {
+                    histogram[distances[row]]++;
+                }
+            }
+            for (int d = 1; d < histogram.length; d++) {
+                histogram[d] += histogram[d - 1];
+            }
+            for (SearchHit hit : ExactSearchEngine.scan(snapshot, query, -1, k + 1)) {
+                int row = snapshot.rowOf(hit.getArtifactId());
+                if (row == queryRow || count >= ranks.length) {
+                    continue;
+                }
+                ranks[count++] = histogram[distances[row]];
+            }
+        }
+        int[] result = Arrays.copyOf(ranks, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static double recallAt(int[] sortedRanks, int shortlistSize) {
+        int found = 0;
+        while (found < sortedRanks.length && sortedRanks[found] <= shortlistSize) {
+            found++;
+        }
+        return (double) found / sortedRanks.length;
+    }
+
+    @Override
+    public boolean isReady() {
+        return index != null;
+    }
+
+    @Override
+    public boolean isBuilding() {
+        return pendingBuilds.get() > 0;
+    }
+
+    @Override
+    public List<SearchHit> search(float[] query, double threshold, int maxResults, FilterMask filter) {
+        BinaryCodeIndex current = index;
+        List<SearchHit> hits = new ArrayList<>();
+        if (current == null || maxResults <= 0) {
+            return hits;
+        }
+        if (query.length != current.getDimension()) {
+            throw new IllegalArgumentException("特征向量维度不一致: " +
+                    query.length + " vs " + current.getDimension());
+        }
+
+        int shortlistSize = Math.max(effectiveShortlist, maxResults);
+        int[] candidateIds;
+        if (filter != null && filter.cardinality() <= shortlistSize) {
+            // 满足过滤条件的文物不多于候选集大小时，跳过汉明距离粗排直接全部精确重排
+            candidateIds = filter.toIds();
+        } else {
+            int[] candidateRows = current.shortlist(current.encode(query), shortlistSize, filter);
+            candidateIds = new int[candidateRows.length];
+            for (int i = 0; i < candidateRows.length; i++) {
+                candidateIds[i] = current.idAt(candidateRows[i]);
+            }
+        }
+
+        // 用全精度向量对候选集重排
+        ScoreHeap reranked = new ScoreHeap(maxResults + 1, true);
+        VectorSnapshot snapshot = rerankSnapshot;
+        if (snapshot != null) {
+            for (int id : candidateIds) {
+                int row = snapshot.rowOf(id);
+                if (row >= 0) {
+                    reranked.offer(id, (float) snapshot.dot(query, row), maxResults);
+                }
+            }
+        } else {
+            List<Integer> ids = new ArrayList<>(candidateIds.length);
+            for (int id : candidateIds) {
+                ids.add(id);
+            }
+            if (!ids.isEmpty()) {
+                for (Artifact artifact : artifactMapper.findFeatureVectorsByIds(ids)) {
+                    float[] vector = artifact.getFeatureVector();
+                    if (vector == null || vector.length != query.length) {
+                        continue;
+                    }
+                    reranked.offer(artifact.getId(), VectorKernels.dot(query, vector), maxResults);
+                }
+            }
+        }
+
+        SearchHit[] ordered = new SearchHit[reranked.size()];
+        for (int i = ordered.length - 1; i >= 0; i--) {
+            float score = reranked.topScore();
+            ordered[i] = new SearchHit(reranked.pop(), score);
+        }
+        for (SearchHit hit : ordered) {
+            if (hit.getSimilarity() >= threshold) {
+                hits.add(hit);
+            }
+        }
+        return hits;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        BinaryCodeIndex current = index;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready", current != null);
+        stats.put("building", isBuilding());
+        stats.put("vectors", current != null ? current.size() : 0);
+        stats.put("encoding", encoding);
+        stats.put("bits", current != null ? current.getBits() : 0);
+        stats.put("configuredShortlist", shortlist);
+        stats.put("targetRecall", targetRecall);
+        stats.put("shortlist", effectiveShortlist);
+        stats.put("measuredRecall", measuredRecall);
+        stats.put("calibrationK", calibrationK);
+        stats.put("rerankFromMemory", rerankSnapshot != null);
+        long indexBytes = current != null ? current.memoryBytes() : 0;
+        stats.put("indexMemoryBytes", indexBytes);
+        stats.put("rawVectorBytes", rawVectorBytes);
+        stats.put("compressionRatio", indexBytes > 0 ? (double) rawVectorBytes / indexBytes : 0);
+        stats.put("buildTimeMillis", buildTimeMillis);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        buildExecutor.shutdownNow();
+    }
+}
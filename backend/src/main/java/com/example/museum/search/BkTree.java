@@ -0,0 +1,175 @@
+package com.example.museum.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 64位哈希的BK树，按汉明距离检索半径内的所有条目
+ * 每个子节点按其与父节点的距离挂在父节点下，检索时利用三角不等式只访问距离在[d-r, d+r]内的子树。
+ * 插入和删除需由调用方串行执行；检索不加锁，可与插入并发（并发插入的条目可能暂时不可见）。
+ * BK树无法摘除中间节点，删除和重复插入同一文物时把旧节点标记为已删除，检索时跳过，重建时才真正清除
+ */
+public final class BkTree {
+
+    private static final int MAX_DISTANCE = 64;
+
+    private Node root;
+    private int size;
+    private int removed;
+
+    /**
+     * 每个文物当前有效的节点
+     */
+    private final Map<Integer, Node> nodesById = new HashMap<>();
+
+    /**
+     * 检索命中的条目及其与查询哈希的距离
+     */
+    public static final class Match {
+        private final int artifactId;
+        private final long hash;
+        private final long secondaryHash;
+        private final int distance;
+
+        Match(Node node, int distance) {
+            this.artifactId = node.artifactId;
+            this.hash = node.hash;
+            this.secondaryHash = node.secondaryHash;
+            this.distance = distance;
+        }
+
+        public int getArtifactId() {
+            return artifactId;
+        }
+
+        public long getHash() {
+            return hash;
+        }
+
+        public long getSecondaryHash() {
+            return secondaryHash;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+    }
+
+    private static final class Node {
+        final long hash;
+        // 不参与树结构的附加哈希（dHash），供调用方二次确认
+        final long secondaryHash;
+        final int artifactId;
+        Node[] children;
+        volatile boolean removed;
+
+        Node(long hash, long secondaryHash, int artifactId) {
+            this.hash = hash;
+            this.secondaryHash = secondaryHash;
+            this.artifactId = artifactId;
+        }
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * 加入文物的哈希，同一文物已有条目时替换旧条目
+     */
+    public void add(long hash, long secondaryHash, int artifactId) {
+        Node node = new Node(hash, secondaryHash, artifactId);
+        markRemoved(nodesById.put(artifactId, node));
+        size++;
+        if (root == null) {
+            root = node;
+            return;
+        }
+        Node current = root;
+        while (true) {
+            int d = distance(hash, current.hash);
+            if (current.children == null) {
+                current.children = new Node[MAX_DISTANCE + 1];
+            }
+            Node child = current.children[d];
+            if (child == null) {
+                current.children[d] = node;
+                return;
+            }
+            current = child;
+        }
+    }
+
+    /**
+     * 删除文物的条目
+     * @return 文物不在树中时返回false
+     */
+    public boolean remove(int artifactId) {
+        return markRemoved(nodesById.remove(artifactId));
+    }
+
+    public boolean contains(int artifactId) {
+        return nodesById.containsKey(artifactId);
+    }
+
+    private boolean markRemoved(Node node) {
+        if (node == null) {
+            return false;
+        }
+        node.removed = true;
+        size--;
+        removed++;
+        return true;
+    }
+
+    /**
+     * 返回与hash的汉明距离不超过radius的所有条目，顺序不定
+     */
+    public List<Match> search(long hash, int radius) {
+        List<Match> matches = new ArrayList<>();
+        Node start = root;
+        if (start == null) {
+            return matches;
+        }
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(start);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            int d = distance(hash, node.hash);
+            if (d <= radius && !node.removed) {
+                matches.add(new Match(node, d));
+            }
+            Node[] children = node.children;
+            if (children == null) {
+                continue;
+            }
+            int from = Math.max(0, d - radius);
+            int to = Math.min(MAX_DISTANCE, d + radius);
+            for (int i = from; i <= to; i++) {
+                Node child = children[i];
+                if (child != null) {
+                    stack.push(child);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * 有效条目数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 已标记删除、仍留在树中的节点数
+     */
+    public int removedCount() {
+        return removed;
+    }
+}
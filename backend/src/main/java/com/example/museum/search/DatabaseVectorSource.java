@@ -0,0 +1,106 @@
+package com.example.museum.search;
+
+import com.example.museum.entity.Artifact;
+import com.example.museum.mapper.ArtifactMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 按文物ID游标分批从数据库读取特征向量，每批只在内存中保留batchSize条记录
+ * 第一条可解析的向量确定维度，维度不一致或无法解析的记录跳过
+ */
+final class DatabaseVectorSource implements VectorSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseVectorSource.class);
+
+    private final ArtifactMapper artifactMapper;
+
+    private final int batchSize;
+
+    private volatile int dimension;
+
+    private volatile int size;
+
+    private volatile int skipped;
+
+    DatabaseVectorSource(ArtifactMapper artifactMapper, int batchSize) {
+        this.artifactMapper = artifactMapper;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Override
+    public int getDimension() {
+        return dimension;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 最近一次完整遍历跳过的记录数
+     */
+    int skipped() {
+        return skipped;
+    }
+
+    @Override
+    public void forEachBatch(Consumer<VectorSnapshot> consumer) {
+        int count = 0;
+        int skippedRows = 0;
+        int afterId = Integer.MIN_VALUE;
+        while (true) {
+            List<Artifact> artifacts = artifactMapper.findFeatureVectorsAfter(afterId, batchSize);
+            if (artifacts.isEmpty()) {
+                break;
+            }
+            afterId = artifacts.get(artifacts.size() - 1).getId();
+
+            int[] ids = new int[artifacts.size()];
+            float[] vectors = null;
+            int rows = 0;
+            for (Artifact artifact : artifacts) {
+                float[] feature;
+                try {
+                    feature = artifact.getFeatureVector();
+                } catch (Exception e) {
+                    logger.warn("文物特征解析失败，已跳过 - 文物ID: {}", artifact.getId());
+                    skippedRows++;
+                    continue;
+                }
+                if (feature == null) {
+                    skippedRows++;
+                    continue;
+                }
+                if (dimension == 0) {
+                    dimension = feature.length;
+                }
+                if (feature.length != dimension) {
+                    logger.warn("文物特征维度不一致，已跳过 - 文物ID: {}, 维度: {}, 期望: {}",
+                        artifact.getId(), feature.length, dimension);
+                    skippedRows++;
+                    continue;
+                }
+                if (vectors == null) {
+                    vectors = new float[VectorSnapshot.matrixLength(artifacts.size(), dimension)];
+                }
+                ids[rows] = artifact.getId();
+                System.arraycopy(feature, 0, vectors, rows * dimension, dimension);
+                rows++;
+            }
+            if (rows > 0) {
+                consumer.accept(VectorSnapshot.copyOf(dimension, ids, vectors, rows));
+                count += rows;
+            }
+            if (artifacts.size() < batchSize) {
+                break;
+            }
+        }
+        this.size = count;
+        this.skipped = skippedRows;
+    }
+}
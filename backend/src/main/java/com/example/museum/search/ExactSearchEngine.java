@@ -0,0 +1,432 @@
+package com.example.museum.search;
+
+import com.example.museum.search.kernel.VectorKernels;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 精确检索引擎：对快照中的全部向量逐一计算相似度
+ * 向量常驻内存时始终可用，其他引擎未就绪时作为兜底
+ * 大规模文物库按行分段并行扫描，每段维护容量为maxResults的原始类型最小堆，最后合并各段结果。
+ * 带属性过滤时只对满足条件的行打分；满足条件的文物很少时直接按过滤位图逐个定位行，不再扫描全部行。
+ * 多张图片的批量检索按行分块，每块向量与全部查询一次算完（分块矩阵乘法），每块只从内存读入一次
+ */
+@Component
+public class ExactSearchEngine implements VectorSearchEngine {
+
+    public static final String NAME = "exact";
+
+    /**
+     * 批量打分的分块行数
+     */
+    private static final int SCAN_BLOCK = 256;
+
+    /**
+     * 过滤后的文物数少于总数的1/SPARSE_FILTER_RATIO时，按过滤位图逐个二分查找行号，否则顺序扫描并跳过不满足条件的行
+     */
+    private static final int SPARSE_FILTER_RATIO = 32;
+
+    /**
+     * 批量检索每块的行数，2048维时一块256KB，可留在L2缓存中被全部查询复用
+     */
+    private static final int TILE_ROWS = 32;
+
+    @Value("${museum.search.vector-store.resident:true}")
+    private boolean residentVectors;
+
+    /**
+     * 扫描线程池大小，0表示使用CPU核数
+     */
+    @Value("${museum.search.exact.parallelism:0}")
+    private int parallelism;
+
+    /**
+     * 单次查询最多拆分的并行段数，防止一次大扫描占满线程池
+     */
+    @Value("${museum.search.exact.max-query-parallelism:4}")
+    private int maxQueryParallelism;
+
+    /**
+     * 每段最少行数，文物数量较少时直接在请求线程扫描
+     */
+    @Value("${museum.search.exact.min-rows-per-task:8192}")
+    private int minRowsPerTask;
+
+    private ForkJoinPool scanPool;
+
+    private volatile VectorSnapshot snapshot = VectorSnapshot.EMPTY;
+
+    private final AtomicLong batchSearches = new AtomicLong();
+
+    private final AtomicLong batchQueries = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        scanPool = new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("exact-scan-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void rebuild(VectorSnapshot snapshot) {
+        // 非常驻模式下不持有原始向量，交由压缩索引检索
+        this.snapshot = residentVectors ? snapshot : VectorSnapshot.EMPTY;
+    }
+
+    @Override
+    public boolean supportsStreamingBuild() {
+        return !residentVectors;
+    }
+
+    @Override
+    public void rebuild(VectorSource source) {
+        this.snapshot = VectorSnapshot.EMPTY;
+    }
+
+    @Override
+    public boolean isReady() {
+        return residentVectors;
+    }
+
+    @Override
+    public List<SearchHit> search(float[] query, double threshold, int maxResults, FilterMask filter) {
+        VectorSnapshot current = snapshot;
+        if (current.isEmpty() || maxResults <= 0) {
+            return new ArrayList<>();
+        }
+        if (query.length != current.getDimension()) {
+            throw new IllegalArgumentException("特征向量维度不一致: " +
+                    query.length + " vs " + current.getDimension());
+        }
+
+        int total = current.size();
+        float minScore = (float) threshold;
+        if (isSparse(current, filter)) {
+            return toHits(current, scanIds(current, query, filter, minScore, maxResults));
+        }
+        // 带过滤时按需要打分的行数决定并行度，过滤条件越窄拆分越少
+        int scoredRows = filter == null ? total : Math.min(total, filter.cardinality());
+        int tasks = scanPool == null ? 1 :
+                Math.max(1, Math.min(maxQueryParallelism, scoredRows / Math.max(1, minRowsPerTask)));
+
+        ScoreHeap merged;
+        if (tasks == 1) {
+            merged = scanRange(current, query, 0, total, minScore, maxResults, filter);
+        } else {
+            int rowsPerTask = (total + tasks - 1) / tasks;
+            List<ForkJoinTask<ScoreHeap>> partials = new ArrayList<>(tasks - 1);
+            for (int t = 1; t < tasks; t++) {
+                int start = t * rowsPerTask;
+                int end = Math.min(total, start + rowsPerTask);
+                partials.add(scanPool.submit(() -> scanRange(current, query, start, end, minScore, maxResults, filter)));
+            }
+            // 请求线程负责第一段，其余段由扫描线程池并行处理
+            merged = scanRange(current, query, 0, Math.min(total, rowsPerTask), minScore, maxResults, filter);
+            for (ForkJoinTask<ScoreHeap> partial : partials) {
+                ScoreHeap heap = partial.join();
+                for (int i = 0; i < heap.size(); i++) {
+                    merged.offer(heap.rowAt(i), heap.scoreAt(i), maxResults);
+                }
+            }
+        }
+
+        return toHits(current, merged);
+    }
+
+    /**
+     * 批量检索：多个查询向量一起扫描全部向量，结果与逐个调用search相同
+     * @param filter 过滤位图，对全部查询生效，为null时不过滤
+     * @return 与queries顺序一致的检索结果
+     */
+    public List<List<SearchHit>> searchBatch(float[][] queries, double threshold, int maxResults, FilterMask filter) {
+        VectorSnapshot current = snapshot;
+        List<List<SearchHit>> results = new ArrayList<>(queries.length);
+        if (current.isEmpty() || maxResults <= 0) {
+            for (int q = 0; q < queries.length; q++) {
+                results.add(new ArrayList<>());
+            }
+            return results;
+        }
+        int dimension = current.getDimension();
+        float[] packed = new float[queries.length * dimension];
+        for (int q = 0; q < queries.length; q++) {
+            if (queries[q].length != dimension) {
+                throw new IllegalArgumentException("特征向量维度不一致: " +
+                        queries[q].length + " vs " + dimension);
+            }
+            System.arraycopy(queries[q], 0, packed, q * dimension, dimension);
+        }
+        batchSearches.incrementAndGet();
+        batchQueries.addAndGet(queries.length);
+
+        int total = current.size();
+        float minScore = (float) threshold;
+        if (isSparse(current, filter)) {
+            // 满足条件的行很少，逐个查询按位图定位行即可
+            for (float[] query : queries) {
+                results.add(toHits(current, scanIds(current, query, filter, minScore, maxResults)));
+            }
+            return results;
+        }
+        int scoredRows = filter == null ? total : Math.min(total, filter.cardinality());
+        int tasks = scanPool == null ? 1 :
+                Math.max(1, Math.min(maxQueryParallelism, scoredRows / Math.max(1, minRowsPerTask)));
+
+        int queryCount = queries.length;
+        ScoreHeap[] merged;
+        if (tasks == 1) {
+            merged = scanRangeBatch(current, packed, queryCount, 0, total, minScore, maxResults, filter);
+        } else {
+            int rowsPerTask = (total + tasks - 1) / tasks;
+            List<ForkJoinTask<ScoreHeap[]>> partials = new ArrayList<>(tasks - 1);
+            for (int t = 1; t < tasks; t++) {
+                int start = t * rowsPerTask;
+                int end = Math.min(total, start + rowsPerTask);
+                partials.add(scanPool.submit(() ->
+                        scanRangeBatch(current, packed, queryCount, start, end, minScore, maxResults, filter)));
+            }
+            merged = scanRangeBatch(current, packed, queryCount, 0, Math.min(total, rowsPerTask),
+                    minScore, maxResults, filter);
+            for (ForkJoinTask<ScoreHeap[]> partial : partials) {
+                ScoreHeap[] heaps = partial.join();
+                for (int q = 0; q < queryCount; q++) {
+                    for (int i = 0; i < heaps[q].size(); i++) {
+                        merged[q].offer(heaps[q].rowAt(i), heaps[q].scoreAt(i), maxResults);
+                    }
+                }
+            }
+        }
+
+        for (ScoreHeap heap : merged) {
+            results.add(toHits(current, heap));
+        }
+        return results;
+    }
+
+    /**
+     * 只对给定文物打分，用于粗筛得到候选集后的精确重排
+     * @param artifactIds 候选文物ID，不在快照中的ID会被忽略
+     */
+    public List<SearchHit> searchCandidates(float[] query, int[] artifactIds, double threshold, int maxResults) {
+        VectorSnapshot current = snapshot;
+        if (current.isEmpty() || maxResults <= 0) {
+            return new ArrayList<>();
+        }
+        if (query.length != current.getDimension()) {
+            throw new IllegalArgumentException("特征向量维度不一致: " +
+                    query.length + " vs " + current.getDimension());
+        }
+        ScoreHeap heap = new ScoreHeap(Math.min(maxResults, artifactIds.length) + 1, true);
+        float minScore = (float) threshold;
+        for (int id : artifactIds) {
+            int row = current.rowOf(id);
+            if (row >= 0) {
+                float score = (float) current.dot(query, row);
+                if (score >= minScore) {
+                    heap.offer(row, score, maxResults);
+                }
+            }
+        }
+        return toHits(current, heap);
+    }
+
+    /**
+     * 在调用线程中精确扫描任意快照，供不经过文物向量库的小型索引使用
+     */
+    public static List<SearchHit> scan(VectorSnapshot snapshot, float[] query, double threshold, int maxResults) {
+        return scan(snapshot, query, threshold, maxResults, null);
+    }
+
+    /**
+     * 在调用线程中精确扫描任意快照中满足过滤条件的文物
+     * @param filter 过滤位图，为null时不过滤
+     */
+    public static List<SearchHit> scan(VectorSnapshot snapshot, float[] query, double threshold, int maxResults,
+                                       FilterMask filter) {
+        if (snapshot.isEmpty() || maxResults <= 0) {
+            return new ArrayList<>();
+        }
+        if (query.length != snapshot.getDimension()) {
+            throw new IllegalArgumentException("特征向量维度不一致: " +
+                    query.length + " vs " + snapshot.getDimension());
+        }
+        float minScore = (float) threshold;
+        ScoreHeap heap = isSparse(snapshot, filter)
+                ? scanIds(snapshot, query, filter, minScore, maxResults)
+                : scanRange(snapshot, query, 0, snapshot.size(), minScore, maxResults, filter);
+        return toHits(snapshot, heap);
+    }
+
+    private static boolean isSparse(VectorSnapshot snapshot, FilterMask filter) {
+        return filter != null && (long) filter.cardinality() * SPARSE_FILTER_RATIO < snapshot.size();
+    }
+
+    private static List<SearchHit> toHits(VectorSnapshot snapshot, ScoreHeap heap) {
+        // 最小堆依次弹出为升序，倒序写入得到降序结果
+        SearchHit[] ordered = new SearchHit[heap.size()];
+        for (int i = ordered.length - 1; i >= 0; i--) {
+            float score = heap.topScore();
+            ordered[i] = new SearchHit(snapshot.idAt(heap.pop()), score);
+        }
+        List<SearchHit> hits = new ArrayList<>(ordered.length);
+        for (SearchHit hit : ordered) {
+            hits.add(hit);
+        }
+        return hits;
+    }
+
+    /**
+     * 扫描[start, end)行，返回相似度不低于minScore的前maxResults行，filter不为null时跳过不满足条件的行
+     */
+    private static ScoreHeap scanRange(VectorSnapshot snapshot, float[] query, int start, int end,
+                                       float minScore, int maxResults, FilterMask filter) {
+        float[] matrix = snapshot.matrix();
+        int dimension = snapshot.getDimension();
+        ScoreHeap heap = new ScoreHeap(Math.min(maxResults, end - start) + 1, true);
+        if (filter != null) {
+            for (int row = start; row < end; row++) {
+                if (filter.contains(snapshot.idAt(row))) {
+                    float score = VectorKernels.dot(query, 0, matrix, row * dimension, dimension);
+                    if (score >= minScore) {
+                        heap.offer(row, score, maxResults);
+                    }
+                }
+            }
+            return heap;
+        }
+        float[] scores = new float[SCAN_BLOCK];
+        for (int block = start; block < end; block += SCAN_BLOCK) {
+            int rows = Math.min(SCAN_BLOCK, end - block);
+            VectorKernels.dotBatch(query, matrix, block, rows, dimension, scores, 0);
+            for (int i = 0; i < rows; i++) {
+                if (scores[i] >= minScore) {
+                    heap.offer(block + i, scores[i], maxResults);
+                }
+            }
+        }
+        return heap;
+    }
+
+    /**
+     * 批量扫描[start, end)行，每TILE_ROWS行与全部查询一次求点积，返回每个查询的前maxResults行
+     * 带过滤时先把满足条件的行复制到连续的缓冲区凑满一块再打分，不满足条件的行不参与计算
+     * @param queries 行优先存放的queryCount个查询向量
+     */
+    private static ScoreHeap[] scanRangeBatch(VectorSnapshot snapshot, float[] queries, int queryCount,
+                                              int start, int end, float minScore, int maxResults, FilterMask filter) {
+        float[] matrix = snapshot.matrix();
+        int dimension = snapshot.getDimension();
+        ScoreHeap[] heaps = new ScoreHeap[queryCount];
+        for (int q = 0; q < queryCount; q++) {
+            heaps[q] = new ScoreHeap(Math.min(maxResults, end - start) + 1, true);
+        }
+        float[] scores = new float[queryCount * TILE_ROWS];
+        if (filter == null) {
+            for (int block = start; block < end; block += TILE_ROWS) {
+                int rows = Math.min(TILE_ROWS, end - block);
+                VectorKernels.dotTile(queries, queryCount, matrix, block, rows, dimension, scores);
+                collect(heaps, scores, rows, block, null, minScore, maxResults);
+            }
+            return heaps;
+        }
+        float[] gathered = new float[TILE_ROWS * dimension];
+        int[] gatheredRows = new int[TILE_ROWS];
+        int count = 0;
+        for (int row = start; row < end; row++) {
+            if (!filter.contains(snapshot.idAt(row))) {
+                continue;
+            }
+            System.arraycopy(matrix, row * dimension, gathered, count * dimension, dimension);
+            gatheredRows[count++] = row;
+            if (count == TILE_ROWS) {
+                VectorKernels.dotTile(queries, queryCount, gathered, 0, count, dimension, scores);
+                collect(heaps, scores, count, 0, gatheredRows, minScore, maxResults);
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            VectorKernels.dotTile(queries, queryCount, gathered, 0, count, dimension, scores);
+            collect(heaps, scores, count, 0, gatheredRows, minScore, maxResults);
+        }
+        return heaps;
+    }
+
+    /**
+     * 将一块的打分结果放入各查询的堆
+     * @param rowIndex 块内第r行对应的快照行号，为null时为firstRow + r
+     */
+    private static void collect(ScoreHeap[] heaps, float[] scores, int rows, int firstRow, int[] rowIndex,
+                                float minScore, int maxResults) {
+        for (int q = 0; q < heaps.length; q++) {
+            int offset = q * rows;
+            for (int r = 0; r < rows; r++) {
+                float score = scores[offset + r];
+                if (score >= minScore) {
+                    heaps[q].offer(rowIndex == null ? firstRow + r : rowIndex[r], score, maxResults);
+                }
+            }
+        }
+    }
+
+    /**
+     * 按过滤位图逐个定位满足条件的行并打分，用于过滤条件很窄的查询
+     */
+    private static ScoreHeap scanIds(VectorSnapshot snapshot, float[] query, FilterMask filter,
+                                     float minScore, int maxResults) {
+        ScoreHeap heap = new ScoreHeap(Math.min(maxResults, filter.cardinality()) + 1, true);
+        for (int id = filter.nextId(0); id >= 0; id = filter.nextId(id + 1)) {
+            int row = snapshot.rowOf(id);
+            if (row >= 0) {
+                float score = snapshot.dot(query, 0, row);
+                if (score >= minScore) {
+                    heap.offer(row, score, maxResults);
+                }
+            }
+        }
+        return heap;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("vectors", snapshot.size());
+        stats.put("maxQueryParallelism", maxQueryParallelism);
+        stats.put("minRowsPerTask", minRowsPerTask);
+        stats.put("batchSearches", batchSearches.get());
+        stats.put("batchQueries", batchQueries.get());
+        if (scanPool != null) {
+            stats.put("poolParallelism", scanPool.getParallelism());
+            stats.put("poolActiveThreads", scanPool.getActiveThreadCount());
+            stats.put("poolQueuedTasks", scanPool.getQueuedSubmissionCount());
+            stats.put("poolStealCount", scanPool.getStealCount());
+        }
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scanPool != null) {
+            scanPool.shutdownNow();
+        }
+    }
+}
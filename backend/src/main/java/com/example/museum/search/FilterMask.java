@@ -0,0 +1,92 @@
+package com.example.museum.search;
+
+/**
+ * 检索过滤位图（不可变），第id位为1表示文物id满足过滤条件
+ * 位图按文物ID编号：各检索引擎的索引、增量向量和数据库重排都以文物ID标识向量，同一位图可直接用于所有环节
+ */
+public final class FilterMask {
+
+    private final long[] words;
+
+    private final int cardinality;
+
+    FilterMask(long[] words) {
+        this.words = words;
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        this.cardinality = count;
+    }
+
+    /**
+     * 文物是否满足过滤条件
+     */
+    public boolean contains(int artifactId) {
+        int word = artifactId >>> 6;
+        return word < words.length && (words[word] & (1L << artifactId)) != 0;
+    }
+
+    /**
+     * 满足过滤条件的文物数量（包括没有特征向量的文物）
+     */
+    public int cardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * 不小于fromId的下一个满足条件的文物ID
+     * @return 没有时返回-1
+     */
+    public int nextId(int fromId) {
+        int word = fromId >>> 6;
+        if (word >= words.length) {
+            return -1;
+        }
+        long bits = words[word] & (-1L << fromId);
+        while (true) {
+            if (bits != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            if (++word == words.length) {
+                return -1;
+            }
+            bits = words[word];
+        }
+    }
+
+    /**
+     * 按升序返回全部满足条件的文物ID
+     */
+    public int[] toIds() {
+        int[] ids = new int[cardinality];
+        int count = 0;
+        for (int id = nextId(0); id >= 0; id = nextId(id + 1)) {
+            ids[count++] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * 多个位图按位与
+     */
+    static FilterMask intersect(long[]... bitsets) {
+        int length = Integer.MAX_VALUE;
+        for (long[] bitset : bitsets) {
+            length = Math.min(length, bitset.length);
+        }
+        long[] words = new long[length];
+        for (int w = 0; w < length; w++) {
+            long word = -1L;
+            for (long[] bitset : bitsets) {
+                word &= bitset[w];
+            }
+            words[w] = word;
+        }
+        return new FilterMask(words);
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.museum.search;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HNSW（分层可导航小世界图）近似最近邻索引
+ * 节点即快照中的行号，相似度为点积（向量已L2归一化）
+ * 支持多线程并发插入：邻接表修改按节点分段加锁，入口点更新使用全局锁
+ */
+final class HnswIndex {
+
+    private static final int LOCK_STRIPES = 1024;
+
+    private final VectorSnapshot snapshot;
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final long seed;
+
+    /**
+     * links[node][level]，首元素为邻居数量，其后为邻居行号
+     */
+    private final int[][][] links;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final Object entryLock = new Object();
+
+    private volatile int entryPoint = -1;
+    private volatile int maxLevel = -1;
+    private final AtomicInteger insertedCount = new AtomicInteger();
+
+    private final ThreadLocal<VisitedSet> visitedSets;
+
+    HnswIndex(VectorSnapshot snapshot, int m, int efConstruction, long seed) {
+        this.snapshot = snapshot;
+        this.dimension = snapshot.getDimension();
+        this.m = Math.max(2, m);
+        this.maxM0 = this.m * 2;
+        this.efConstruction = Math.max(efConstruction, this.m);
+        this.levelMultiplier = 1.0 / Math.log(this.m);
+        this.seed = seed;
+        this.links = new int[snapshot.size()][][];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        int capacity = snapshot.size();
+        this.visitedSets = ThreadLocal.withInitial(() -> new VisitedSet(capacity));
+    }
+
+    VectorSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    int size() {
+        return insertedCount.get();
+    }
+
+    int getMaxLevel() {
+        return maxLevel;
+    }
+
+    /**
+     * 将第row行插入图中，可被多个线程并发调用（每行只能插入一次）
+     */
+    void insert(int row) {
+        float[] matrix = snapshot.matrix();
+        int queryOffset = row * dimension;
+        int level = randomLevel(row);
+
+        int[][] nodeLinks = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            nodeLinks[l] = new int[(l == 0 ? maxM0 : m) + 1];
+        }
+        links[row] = nodeLinks;
+
+        int currentEntry;
+        int currentMaxLevel;
+        synchronized (entryLock) {
+            if (entryPoint < 0) {
+                maxLevel = level;
+                entryPoint = row;
+                insertedCount.incrementAndGet();
+                return;
+            }
+            currentEntry = entryPoint;
+            currentMaxLevel = maxLevel;
+        }
+
+        int entry = currentEntry;
+        for (int l = currentMaxLevel; l > level; l--) {
+            entry = greedySearch(matrix, queryOffset, entry, l);
+        }
+
+        for (int l = Math.min(level, currentMaxLevel); l >= 0; l--) {
+            ScoreHeap candidates = searchLayer(matrix, queryOffset, entry, efConstruction, l, null);
+            entry = bestOf(candidates);
+
+            int[] selected = selectNeighbors(candidates, m);
+            synchronized (lockFor(row)) {
+                int[] own = links[row][l];
+                own[0] = selected.length;
+                System.arraycopy(selected, 0, own, 1, selected.length);
+            }
+            for (int neighbor : selected) {
+                connect(neighbor, row, l);
+            }
+        }
+
+        if (level > currentMaxLevel) {
+            synchronized (entryLock) {
+                if (level > maxLevel) {
+                    maxLevel = level;
+                    entryPoint = row;
+                }
+            }
+        }
+        insertedCount.incrementAndGet();
+    }
+
+    /**
+     * 检索与查询向量最相似的节点
+     * @param ef 搜索宽度，越大召回越高
+     * @param filter 过滤位图，不满足条件的节点仍参与图的遍历但不进入结果，为null时不过滤
+     * @return 最小堆，包含至多ef个结果
+     */
+    ScoreHeap search(float[] query, int ef, FilterMask filter) {
+        int entry = entryPoint;
+        if (entry < 0) {
+            return new ScoreHeap(1, true);
+        }
+        for (int l = maxLevel; l > 0; l--) {
+            entry = greedySearch(query, 0, entry, l);
+        }
+        return searchLayer(query, 0, entry, ef, 0, filter);
+    }
+
+    private int greedySearch(float[] query, int queryOffset, int entry, int level) {
+        int current = entry;
+        float currentScore = snapshot.dot(query, queryOffset, current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int neighbor : neighbors(current, level)) {
+                float score = snapshot.dot(query, queryOffset, neighbor);
+                if (score > currentScore) {
+                    currentScore = score;
+                    current = neighbor;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    private ScoreHeap searchLayer(float[] query, int queryOffset, int entry, int ef, int level, FilterMask filter) {
+        VisitedSet visited = visitedSets.get();
+        visited.reset();
+        visited.add(entry);
+
+        float entryScore = snapshot.dot(query, queryOffset, entry);
+        ScoreHeap candidates = new ScoreHeap(ef * 2, false);
+        ScoreHeap results = new ScoreHeap(ef + 1, true);
+        candidates.push(entry, entryScore);
+        if (filter == null || filter.contains(snapshot.idAt(entry))) {
+            results.push(entry, entryScore);
+        }
+
+        while (!candidates.isEmpty()) {
+            float candidateScore = candidates.topScore();
+            if (results.size() >= ef && candidateScore < results.topScore()) {
+                break;
+            }
+            int candidate = candidates.pop();
+            for (int neighbor : neighbors(candidate, level)) {
+                if (!visited.add(neighbor)) {
+                    continue;
+                }
+                float score = snapshot.dot(query, queryOffset, neighbor);
+                if (results.size() < ef || score > results.topScore()) {
+                    candidates.push(neighbor, score);
+                    if (filter == null || filter.contains(snapshot.idAt(neighbor))) {
+                        results.offer(neighbor, score, ef);
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 启发式选择邻居：候选节点只有比已选邻居更接近查询点时才被选中，保持图的连通性和多样性
+     */
+    private int[] selectNeighbors(ScoreHeap candidates, int maxCount) {
+        int count = candidates.size();
+        int[] sortedRows = new int[count];
+        float[] sortedScores = new float[count];
+        // 最小堆依次弹出得到升序，倒序写入得到降序
+        for (int i = count - 1; i >= 0; i--) {
+            sortedScores[i] = candidates.topScore();
+            sortedRows[i] = candidates.pop();
+        }
+
+        int[] selected = new int[Math.min(maxCount, count)];
+        int selectedCount = 0;
+        for (int i = 0; i < count && selectedCount < selected.length; i++) {
+            int candidate = sortedRows[i];
+            boolean keep = true;
+            for (int j = 0; j < selectedCount; j++) {
+                if (snapshot.dotRows(candidate, selected[j]) > sortedScores[i]) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                selected[selectedCount++] = candidate;
+            }
+        }
+        if (selectedCount < selected.length) {
+            int[] trimmed = new int[selectedCount];
+            System.arraycopy(selected, 0, trimmed, 0, selectedCount);
+            return trimmed;
+        }
+        return selected;
+    }
+
+    /**
+     * 在node的第level层邻接表中加入newNeighbor，超出容量时用启发式重新裁剪
+     */
+    private void connect(int node, int newNeighbor, int level) {
+        int capacity = level == 0 ? maxM0 : m;
+        synchronized (lockFor(node)) {
+            int[] nodeLinks = links[node][level];
+            int count = nodeLinks[0];
+            if (count < capacity) {
+                nodeLinks[count + 1] = newNeighbor;
+                nodeLinks[0] = count + 1;
+                return;
+            }
+            ScoreHeap candidates = new ScoreHeap(count + 1, true);
+            candidates.push(newNeighbor, snapshot.dotRows(node, newNeighbor));
+            for (int i = 1; i <= count; i++) {
+                candidates.push(nodeLinks[i], snapshot.dotRows(node, nodeLinks[i]));
+            }
+            int[] selected = selectNeighbors(candidates, capacity);
+            nodeLinks[0] = selected.length;
+            System.arraycopy(selected, 0, nodeLinks, 1, selected.length);
+        }
+    }
+
+    /**
+     * 复制邻接表，避免与并发写入冲突
+     */
+    private int[] neighbors(int node, int level) {
+        synchronized (lockFor(node)) {
+            int[][] nodeLinks = links[node];
+            if (nodeLinks == null || level >= nodeLinks.length) {
+                return new int[0];
+            }
+            int[] levelLinks = nodeLinks[level];
+            int[] copy = new int[levelLinks[0]];
+            System.arraycopy(levelLinks, 1, copy, 0, copy.length);
+            return copy;
+        }
+    }
+
+    private static int bestOf(ScoreHeap results) {
+        int best = results.rowAt(0);
+        float bestScore = results.scoreAt(0);
+        for (int i = 1; i < results.size(); i++) {
+            if (results.scoreAt(i) > bestScore) {
+                bestScore = results.scoreAt(i);
+                best = results.rowAt(i);
+            }
+        }
+        return best;
+    }
+
+    private int randomLevel(int row) {
+        double u = new SplittableRandom(seed ^ (row * 0x9E3779B97F4A7C15L)).nextDouble();
+        return (int) (-Math.log(1.0 - u) * levelMultiplier);
+    }
+
+    private Object lockFor(int node) {
+        return locks[node & (LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * 基于版本号的访问标记，避免每次检索重新分配数组
+     */
+    private static final class VisitedSet {
+        private final int[] marks;
+        private int epoch;
+
+        VisitedSet(int capacity) {
+            this.marks = new int[capacity];
+        }
+
+        void reset() {
+            epoch++;
+            if (epoch == 0) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+        }
+
+        boolean add(int node) {
+            if (marks[node] == epoch) {
+                return false;
+            }
+            marks[node] = epoch;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.museum.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于HNSW图的近似检索引擎
+ * 查询复杂度近似对数级，适合数十万以上规模的文物库
+ * 通过 museum.search.engine=hnsw 启用，索引在后台构建，构建完成前由精确检索兜底
+ * 带属性过滤时不满足条件的节点仍用于图遍历但不进入结果，搜索宽度按满足条件的比例放大；
+ * 满足条件的文物很少时图遍历需要走过大量节点，改为直接精确扫描这些文物
+ */
+@Component
+@ConditionalOnProperty(name = "museum.search.engine", havingValue = HnswSearchEngine.NAME)
+public class HnswSearchEngine implements VectorSearchEngine {
+
+    public static final String NAME = "hnsw";
+
+    private static final Logger logger = LoggerFactory.getLogger(HnswSearchEngine.class);
+
+    /**
+     * 带过滤时搜索宽度按满足条件的比例放大的倍数上限
+     */
+    private static final int FILTER_EF_MAX_FACTOR = 8;
+
+    @Value("${museum.search.hnsw.m:16}")
+    private int m;
+
+    @Value("${museum.search.hnsw.ef-construction:200}")
+    private int efConstruction;
+
+    @Value("${museum.search.hnsw.ef-search:64}")
+    private int efSearch;
+
+    @Value("${museum.search.hnsw.build-threads:0}")
+    private int buildThreads;
+
+    @Value("${museum.search.hnsw.seed:42}")
+    private long seed;
+
+    // 满足过滤条件的文物数不超过该值时精确扫描，不走图遍历
+    @Value("${museum.search.hnsw.filter-exact-limit:10000}")
+    private int filterExactLimit;
+
+    private final ExecutorService buildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "hnsw-build");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile HnswIndex index;
+
+    private volatile long buildTimeMillis;
+
+    /**
+     * 已提交尚未完成的构建任务数，多次重建排队时直到最后一次完成才归零
+     */
+    private final AtomicInteger pendingBuilds = new AtomicInteger();
+
+    private final AtomicLong filteredSearches = new AtomicLong();
+
+    private final AtomicLong filteredExactScans = new AtomicLong();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void rebuild(VectorSnapshot snapshot) {
+        pendingBuilds.incrementAndGet();
+        buildExecutor.submit(() -> {
+            try {
+                build(snapshot);
+            } catch (Exception e) {
+                logger.error("HNSW索引构建失败: {}", e.getMessage(), e);
+            } finally {
+                pendingBuilds.decrementAndGet();
+            }
+        });
+    }
+
+    private void build(VectorSnapshot snapshot) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        HnswIndex newIndex = new HnswIndex(snapshot, m, efConstruction, seed);
+        int total = snapshot.size();
+        if (total > 0) {
+            // 先插入第一个节点作为入口，其余节点并发插入
+            newIndex.insert(0);
+            int threads = buildThreads > 0 ? buildThreads : Runtime.getRuntime().availableProcessors();
+            AtomicInteger next = new AtomicInteger(1);
+            ExecutorService workers = Executors.newFixedThreadPool(threads);
+            for (int t = 0; t < threads; t++) {
+                workers.submit(() -> {
+                    int row;
+                    while ((row = next.getAndIncrement()) < total) {
+                        newIndex.insert(row);
+                    }
+                });
+            }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        }
+        this.index = newIndex;
+        this.buildTimeMillis = System.currentTimeMillis() - start;
+        logger.info("HNSW索引构建完成 - 节点数: {}, 最高层: {}, M: {}, efConstruction: {}, 耗时: {} ms",
+            newIndex.size(), newIndex.getMaxLevel(), m, efConstruction, buildTimeMillis);
+    }
+
+    @Override
+    public boolean isReady() {
+        return index != null;
+    }
+
+    @Override
+    public boolean isBuilding() {
+        return pendingBuilds.get() > 0;
+    }
+
+    @Override
+    public List<SearchHit> search(float[] query, double threshold, int maxResults, FilterMask filter) {
+        HnswIndex current = index;
+        List<SearchHit> hits = new ArrayList<>();
+        if (current == null || maxResults <= 0) {
+            return hits;
+        }
+        VectorSnapshot snapshot = current.getSnapshot();
+        if (snapshot.isEmpty()) {
+            return hits;
+        }
+        if (query.length != snapshot.getDimension()) {
+            throw new IllegalArgumentException("特征向量维度不一致: " +
+                    query.length + " vs " + snapshot.getDimension());
+        }
+
+        if (filter != null) {
+            filteredSearches.incrementAndGet();
+            if (filter.cardinality() <= filterExactLimit) {
+                filteredExactScans.incrementAndGet();
+                return ExactSearchEngine.scan(snapshot, query, threshold, maxResults, filter);
+            }
+        }
+
+        int ef = Math.max(efSearch, maxResults);
+        if (filter != null && filter.cardinality() < snapshot.size()) {
+            // 结果只取满足条件的节点，按比例放大搜索宽度以保持召回率
+            ef = (int) Math.min((long) ef * FILTER_EF_MAX_FACTOR,
+                    (long) Math.ceil((double) ef * snapshot.size() / filter.cardinality()));
+        }
+        ScoreHeap results = current.search(query, ef, filter);
+        // 丢弃多余的低分结果，剩余结果从最小堆依次弹出后倒序即为降序
+        while (results.size() > maxResults) {
+            results.pop();
+        }
+        SearchHit[] ordered = new SearchHit[results.size()];
+        for (int i = ordered.length - 1; i >= 0; i--) {
+            float score = results.topScore();
+            int row = results.pop();
+            ordered[i] = new SearchHit(snapshot.idAt(row), score);
+        }
+        for (SearchHit hit : ordered) {
+            if (hit.getSimilarity() >= threshold) {
+                hits.add(hit);
+            }
+        }
+        return hits;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        HnswIndex current = index;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready", current != null);
+        stats.put("building", isBuilding());
+        stats.put("nodes", current != null ? current.size() : 0);
+        stats.put("maxLevel", current != null ? current.getMaxLevel() : -1);
+        stats.put("m", m);
+        stats.put("efConstruction", efConstruction);
+        stats.put("efSearch", efSearch);
+        stats.put("filterExactLimit", filterExactLimit);
+        stats.put("filteredSearches", filteredSearches.get());
+        stats.put("filteredExactScans", filteredExactScans.get());
+        stats.put("buildTimeMillis", buildTimeMillis);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        buildExecutor.shutdownNow();
+    }
+}
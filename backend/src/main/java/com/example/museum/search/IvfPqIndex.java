@@ -0,0 +1,327 @@
+package com.example.museum.search;
+
+import com.example.museum.search.kernel.VectorKernels;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * IVF + PQ 压缩索引
+ * 先用k-means粗聚类把向量划分到nlist个倒排列表，再对每个向量与其聚类中心的残差做乘积量化：
+ * 向量维度切分为pqM个子空间，每个子空间用256个中心的码本编码为1个字节
+ * 查询时只扫描最近的nprobe个列表，用查表法（非对称距离）估算残差距离
+ */
+final class IvfPqIndex {
+
+    private static final int MAX_SUB_CENTROIDS = 256;
+
+    private static final int ENCODE_BLOCK_ROWS = 1024;
+
+    private final int dimension;
+    private final int nlist;
+    private final int pqM;
+    private final int ksub;
+    private final int[] subStart;
+
+    private final float[] coarseCentroids;
+    private final float[] coarseNorms;
+    /**
+     * codebooks[m]为第m个子空间的 ksub×subDim 码本
+     */
+    private final float[][] codebooks;
+
+    private final int[][] listIds;
+    private final byte[][] listCodes;
+    private final int size;
+
+    private IvfPqIndex(int dimension, int nlist, int pqM, int ksub, int[] subStart,
+                       float[] coarseCentroids, float[][] codebooks,
+                       int[][] listIds, byte[][] listCodes, int size) {
+        this.dimension = dimension;
+        this.nlist = nlist;
+        this.pqM = pqM;
+        this.ksub = ksub;
+        this.subStart = subStart;
+        this.coarseCentroids = coarseCentroids;
+        this.coarseNorms = KMeans.squaredNorms(coarseCentroids, nlist, dimension);
+        this.codebooks = codebooks;
+        this.listIds = listIds;
+        this.listCodes = listCodes;
+        this.size = size;
+    }
+
+    /**
+     * 训练并构建索引
+     * @param nlist 倒排列表数量，小于等于0时取sqrt(n)
+     * @param pqM 子空间数量，即每个向量的编码字节数
+     * @param trainSize 训练样本数上限
+     */
+    static IvfPqIndex build(VectorSnapshot snapshot, int nlist, int pqM, int trainSize,
+                            int iterations, long seed) {
+        return build(VectorSource.of(snapshot), nlist, pqM, trainSize, iterations, seed);
+    }
+
+    /**
+     * 分两遍训练并构建索引：第一遍蓄水池抽样出至多trainSize条训练样本，第二遍逐批编码写入倒排列表。
+     * 任何时刻只持有一批原始向量、训练样本和压缩编码，内存占用与文物总数的原始向量大小无关
+     * @return 来源中没有向量时返回null
+     */
+    static IvfPqIndex build(VectorSource source, int nlist, int pqM, int trainSize,
+                            int iterations, long seed) {
+        Reservoir reservoir = new Reservoir(Math.max(1, trainSize), seed);
+        source.forEachBatch(reservoir::add);
+        int n = reservoir.seen;
+        if (n == 0) {
+            return null;
+        }
+        int dim = reservoir.dimension;
+        int sampleSize = reservoir.size();
+        float[] sample = reservoir.sample;
+        // 聚类中心数不能超过训练样本数
+        int lists = Math.min(sampleSize, nlist > 0 ? nlist : Math.max(1, (int) Math.sqrt(n)));
+        int subspaces = Math.max(1, Math.min(pqM, dim));
+
+        int[] subStart = new int[subspaces + 1];
+        for (int m = 0; m <= subspaces; m++) {
+            subStart[m] = m * dim / subspaces;
+        }
+
+        // 粗聚类
+        float[] coarse = KMeans.train(sample, sampleSize, dim, lists, iterations, seed);
+
+        // 样本残差上训练各子空间的PQ码本
+        int[] sampleAssign = new int[sampleSize];
+        KMeans.assign(sample, sampleSize, dim, coarse, lists, sampleAssign);
+        subtractCentroids(sample, sampleSize, dim, coarse, sampleAssign, 0);
+
+        int ksub = Math.min(MAX_SUB_CENTROIDS, sampleSize);
+        float[][] codebooks = new float[subspaces][];
+        for (int m = 0; m < subspaces; m++) {
+            int subDim = subStart[m + 1] - subStart[m];
+            float[] subData = extractSubspace(sample, sampleSize, dim, subStart[m], subDim);
+            codebooks[m] = KMeans.train(subData, sampleSize, subDim, ksub, iterations, seed + m + 1);
+        }
+        reservoir.sample = null;
+
+        // 逐批分块编码，编码直接追加到所属的倒排列表
+        ListBuilder[] builders = new ListBuilder[lists];
+        for (int l = 0; l < lists; l++) {
+            builders[l] = new ListBuilder(subspaces);
+        }
+        int[] coarseAssign = new int[ENCODE_BLOCK_ROWS];
+        int[] subAssign = new int[ENCODE_BLOCK_ROWS];
+        float[] residual = new float[VectorSnapshot.matrixLength(ENCODE_BLOCK_ROWS, dim)];
+        byte[] blockCodes = new byte[ENCODE_BLOCK_ROWS * subspaces];
+        source.forEachBatch(batch -> {
+            float[] matrix = batch.matrix();
+            for (int start = 0; start < batch.size(); start += ENCODE_BLOCK_ROWS) {
+                int rows = Math.min(ENCODE_BLOCK_ROWS, batch.size() - start);
+                System.arraycopy(matrix, start * dim, residual, 0, rows * dim);
+                KMeans.assign(residual, rows, dim, coarse, lists, coarseAssign);
+                subtractCentroids(residual, rows, dim, coarse, coarseAssign, 0);
+                for (int m = 0; m < subspaces; m++) {
+                    int subDim = subStart[m + 1] - subStart[m];
+                    float[] subData = extractSubspace(residual, rows, dim, subStart[m], subDim);
+                    KMeans.assign(subData, rows, subDim, codebooks[m], ksub, subAssign);
+                    for (int i = 0; i < rows; i++) {
+                        blockCodes[i * subspaces + m] = (byte) subAssign[i];
+                    }
+                }
+                for (int i = 0; i < rows; i++) {
+                    builders[coarseAssign[i]].add(batch.idAt(start + i), blockCodes, i * subspaces);
+                }
+            }
+        });
+
+        int[][] listIds = new int[lists][];
+        byte[][] listCodes = new byte[lists][];
+        long encoded = 0;
+        for (int l = 0; l < lists; l++) {
+            listIds[l] = Arrays.copyOf(builders[l].ids, builders[l].size);
+            listCodes[l] = Arrays.copyOf(builders[l].codes, builders[l].size * subspaces);
+            encoded += builders[l].size;
+            builders[l] = null;
+        }
+        if (encoded > Integer.MAX_VALUE) {
+            throw new IllegalStateException("IVF-PQ索引向量数超出上限: " + encoded);
+        }
+
+        return new IvfPqIndex(dim, lists, subspaces, ksub, subStart, coarse, codebooks, listIds, listCodes,
+                (int) encoded);
+    }
+
+    /**
+     * 检索候选集
+     * @param nprobe 扫描的倒排列表数量
+     * @param shortlist 候选集大小
+     * @param filter 过滤位图，不满足条件的文物不计算距离，为null时不过滤
+     * @return 最小堆，分数为负的估计平方距离，行号字段存放文物ID
+     */
+    ScoreHeap search(float[] query, int nprobe, int shortlist, FilterMask filter) {
+        int probes = Math.max(1, Math.min(nprobe, nlist));
+
+        // 选出最近的nprobe个聚类中心（||q||²对排序无影响，省略）
+        ScoreHeap nearestLists = new ScoreHeap(probes + 1, true);
+        for (int l = 0; l < nlist; l++) {
+            float dot = VectorKernels.dot(query, 0, coarseCentroids, l * dimension, dimension);
+            nearestLists.offer(l, 2f * dot - coarseNorms[l], probes);
+        }
+
+        ScoreHeap candidates = new ScoreHeap(shortlist + 1, true);
+        float[] residual = new float[dimension];
+        float[] table = new float[pqM * ksub];
+        for (int p = 0; p < nearestLists.size(); p++) {
+            int list = nearestLists.rowAt(p);
+            int[] ids = listIds[list];
+            if (ids.length == 0) {
+                continue;
+            }
+            int centroidOffset = list * dimension;
+            for (int d = 0; d < dimension; d++) {
+                residual[d] = query[d] - coarseCentroids[centroidOffset + d];
+            }
+            buildDistanceTable(residual, table);
+
+            byte[] codes = listCodes[list];
+            for (int i = 0; i < ids.length; i++) {
+                if (filter != null && !filter.contains(ids[i])) {
+                    continue;
+                }
+                int codeOffset = i * pqM;
+                float distance = 0f;
+                for (int m = 0; m < pqM; m++) {
+                    distance += table[m * ksub + (codes[codeOffset + m] & 0xFF)];
+                }
+                candidates.offer(ids[i], -distance, shortlist);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * 计算查询残差到各子空间码字的平方距离表
+     */
+    private void buildDistanceTable(float[] residual, float[] table) {
+        for (int m = 0; m < pqM; m++) {
+            int start = subStart[m];
+            int subDim = subStart[m + 1] - start;
+            float[] codebook = codebooks[m];
+            for (int k = 0; k < ksub; k++) {
+                table[m * ksub + k] = VectorKernels.squaredL2(residual, start, codebook, k * subDim, subDim);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getDimension() {
+        return dimension;
+    }
+
+    int getNlist() {
+        return nlist;
+    }
+
+    int getPqM() {
+        return pqM;
+    }
+
+    /**
+     * 索引占用的内存（字节）：编码、ID、粗聚类中心和码本
+     */
+    long memoryBytes() {
+        long bytes = (long) coarseCentroids.length * Float.BYTES;
+        for (float[] codebook : codebooks) {
+            bytes += (long) codebook.length * Float.BYTES;
+        }
+        for (int l = 0; l < nlist; l++) {
+            bytes += (long) listIds[l].length * Integer.BYTES + listCodes[l].length;
+        }
+        return bytes;
+    }
+
+    /**
+     * 蓄水池抽样：遍历全部向量，等概率保留至多capacity条作为训练样本
+     */
+    private static final class Reservoir {
+        private final int capacity;
+        private final Random random;
+        private float[] sample;
+        private int dimension;
+        private int seen;
+
+        Reservoir(int capacity, long seed) {
+            this.capacity = capacity;
+            this.random = new Random(seed);
+        }
+
+        void add(VectorSnapshot batch) {
+            if (sample == null) {
+                dimension = batch.getDimension();
+                sample = new float[VectorSnapshot.matrixLength(capacity, dimension)];
+            }
+            float[] matrix = batch.matrix();
+            for (int row = 0; row < batch.size(); row++) {
+                int slot = seen < capacity ? seen : random.nextInt(seen + 1);
+                if (slot < capacity) {
+                    System.arraycopy(matrix, row * dimension, sample, slot * dimension, dimension);
+                }
+                seen++;
+            }
+        }
+
+        int size() {
+            return Math.min(seen, capacity);
+        }
+    }
+
+    /**
+     * 构建中的倒排列表，按倍数扩容
+     */
+    private static final class ListBuilder {
+        private final int codeBytes;
+        private int[] ids = new int[16];
+        private byte[] codes;
+        private int size;
+
+        ListBuilder(int codeBytes) {
+            this.codeBytes = codeBytes;
+            this.codes = new byte[ids.length * codeBytes];
+        }
+
+        void add(int id, byte[] source, int offset) {
+            if (size == ids.length) {
+                long capacity = Math.min((long) size * 2, VectorSnapshot.MAX_MATRIX_LENGTH / codeBytes);
+                if (capacity <= size) {
+                    throw new IllegalStateException("IVF-PQ倒排列表超出单个数组容量: " + size);
+                }
+                ids = Arrays.copyOf(ids, (int) capacity);
+                codes = Arrays.copyOf(codes, (int) capacity * codeBytes);
+            }
+            ids[size] = id;
+            System.arraycopy(source, offset, codes, size * codeBytes, codeBytes);
+            size++;
+        }
+    }
+
+    private static void subtractCentroids(float[] data, int rows, int dim, float[] centroids,
+                                          int[] assignment, int assignmentOffset) {
+        for (int i = 0; i < rows; i++) {
+            int offset = i * dim;
+            int centroidOffset = assignment[assignmentOffset + i] * dim;
+            for (int d = 0; d < dim; d++) {
+                data[offset + d] -= centroids[centroidOffset + d];
+            }
+        }
+    }
+
+    private static float[] extractSubspace(float[] data, int rows, int dim, int start, int subDim) {
+        float[] sub = new float[rows * subDim];
+        for (int i = 0; i < rows; i++) {
+            System.arraycopy(data, i * dim + start, sub, i * subDim, subDim);
+        }
+        return sub;
+    }
+}
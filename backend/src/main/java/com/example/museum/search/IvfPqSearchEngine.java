@@ -0,0 +1,238 @@
+package com.example.museum.search;
+
+import com.example.museum.entity.Artifact;
+import com.example.museum.mapper.ArtifactMapper;
+import com.example.museum.search.kernel.VectorKernels;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于IVF + PQ压缩索引的检索引擎，适合内存有限的节点
+ * 通过 museum.search.engine=ivfpq 启用；配合 museum.search.vector-store.resident=false 时
+ * 内存中只保留压缩编码，候选集的全精度重排改为按ID从数据库读取二进制特征
+ */
+@Component
+@ConditionalOnProperty(name = "museum.search.engine", havingValue = IvfPqSearchEngine.NAME)
+public class IvfPqSearchEngine implements VectorSearchEngine {
+
+    public static final String NAME = "ivfpq";
+
+    private static final Logger logger = LoggerFactory.getLogger(IvfPqSearchEngine.class);
+
+    @Autowired
+    private ArtifactMapper artifactMapper;
+
+    @Value("${museum.search.ivfpq.nlist:0}")
+    private int nlist;
+
+    @Value("${museum.search.ivfpq.pq-m:128}")
+    private int pqM;
+
+    @Value("${museum.search.ivfpq.nprobe:8}")
+    private int nprobe;
+
+    @Value("${museum.search.ivfpq.rerank-size:100}")
+    private int rerankSize;
+
+    @Value("${museum.search.ivfpq.train-size:10000}")
+    private int trainSize;
+
+    @Value("${museum.search.ivfpq.iterations:15}")
+    private int iterations;
+
+    @Value("${museum.search.ivfpq.seed:42}")
+    private long seed;
+
+    @Value("${museum.search.vector-store.resident:true}")
+    private boolean residentVectors;
+
+    private final ExecutorService buildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "ivfpq-build");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile IvfPqIndex index;
+
+    /**
+     * 用于内存重排的全精度向量，非常驻模式下为null
+     */
+    private volatile VectorSnapshot rerankSnapshot;
+
+    private volatile long rawVectorBytes;
+
+    private volatile long buildTimeMillis;
+
+    /**
+     * 已提交尚未完成的构建任务数，多次重建排队时直到最后一次完成才归零
+     */
+    private final AtomicInteger pendingBuilds = new AtomicInteger();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void rebuild(VectorSnapshot snapshot) {
+        submitBuild(VectorSource.of(snapshot), residentVectors ? snapshot : null);
+    }
+
+    @Override
+    public boolean supportsStreamingBuild() {
+        return true;
+    }
+
+    /**
+     * 从数据库分批训练和编码，不在内存中保留原始向量，重排改为按ID读取数据库
+     */
+    @Override
+    public void rebuild(VectorSource source) {
+        submitBuild(source, null);
+    }
+
+    private void submitBuild(VectorSource source, VectorSnapshot rerank) {
+        pendingBuilds.incrementAndGet();
+        buildExecutor.submit(() -> {
+            try {
+                long start = System.currentTimeMillis();
+                IvfPqIndex newIndex = IvfPqIndex.build(source, nlist, pqM, trainSize, iterations, seed);
+                this.rerankSnapshot = rerank;
+                this.index = newIndex;
+                this.rawVectorBytes = newIndex != null
+                        ? (long) newIndex.size() * newIndex.getDimension() * Float.BYTES
+                            + (long) newIndex.size() * Integer.BYTES
+                        : 0;
+                this.buildTimeMillis = System.currentTimeMillis() - start;
+                if (newIndex != null) {
+                    logger.info("IVF-PQ索引构建完成 - 向量数: {}, nlist: {}, pqM: {}, 压缩后内存: {} KB, 原始向量: {} KB, 耗时: {} ms",
+                        newIndex.size(), newIndex.getNlist(), newIndex.getPqM(), newIndex.memoryBytes() / 1024,
+                        rawVectorBytes / 1024, buildTimeMillis);
+                }
+            } catch (Exception e) {
+                logger.error("IVF-PQ索引构建失败: {}", e.getMessage(), e);
+            } finally {
+                pendingBuilds.decrementAndGet();
+            }
+        });
+    }
+
+    @Override
+    public boolean isReady() {
+        return index != null;
+    }
+
+    @Override
+    public boolean isBuilding() {
+        return pendingBuilds.get() > 0;
+    }
+
+    @Override
+    public List<SearchHit> search(float[] query, double threshold, int maxResults, FilterMask filter) {
+        IvfPqIndex current = index;
+        List<SearchHit> hits = new ArrayList<>();
+        if (current == null || maxResults <= 0) {
+            return hits;
+        }
+        if (query.length != current.getDimension()) {
+            throw new IllegalArgumentException("特征向量维度不一致: " +
+                    query.length + " vs " + current.getDimension());
+        }
+
+        int shortlist = Math.max(rerankSize, maxResults);
+        int[] candidateIds;
+        if (filter != null && filter.cardinality() <= shortlist) {
+            // 满足过滤条件的文物不多于候选集大小时，跳过倒排列表直接全部精确重排
+            candidateIds = filter.toIds();
+        } else {
+            int probes = nprobe;
+            if (filter != null) {
+                // 按过滤比例扩大扫描的倒排列表数，使候选集中满足条件的文物数与不过滤时相当
+                probes = (int) Math.min(current.getNlist(),
+                        Math.max(nprobe, Math.ceil((double) nprobe * current.size() / filter.cardinality())));
+            }
+            ScoreHeap candidates = current.search(query, probes, shortlist, filter);
+            candidateIds = new int[candidates.size()];
+            for (int i = 0; i < candidateIds.length; i++) {
+                candidateIds[i] = candidates.rowAt(i);
+            }
+        }
+
+        // 用全精度向量对候选集重排
+        ScoreHeap reranked = new ScoreHeap(maxResults + 1, true);
+        VectorSnapshot snapshot = rerankSnapshot;
+        if (snapshot != null) {
+            for (int id : candidateIds) {
+                int row = snapshot.rowOf(id);
+                if (row >= 0) {
+                    reranked.offer(id, (float) snapshot.dot(query, row), maxResults);
+                }
+            }
+        } else {
+            List<Integer> ids = new ArrayList<>(candidateIds.length);
+            for (int id : candidateIds) {
+                ids.add(id);
+            }
+            if (!ids.isEmpty()) {
+                for (Artifact artifact : artifactMapper.findFeatureVectorsByIds(ids)) {
+                    float[] vector = artifact.getFeatureVector();
+                    if (vector == null || vector.length != query.length) {
+                        continue;
+                    }
+                    float similarity = VectorKernels.dot(query, vector);
+                    reranked.offer(artifact.getId(), similarity, maxResults);
+                }
+            }
+        }
+
+        SearchHit[] ordered = new SearchHit[reranked.size()];
+        for (int i = ordered.length - 1; i >= 0; i--) {
+            float score = reranked.topScore();
+            ordered[i] = new SearchHit(reranked.pop(), score);
+        }
+        for (SearchHit hit : ordered) {
+            if (hit.getSimilarity() >= threshold) {
+                hits.add(hit);
+            }
+        }
+        return hits;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        IvfPqIndex current = index;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready", current != null);
+        stats.put("building", isBuilding());
+        stats.put("vectors", current != null ? current.size() : 0);
+        stats.put("nlist", current != null ? current.getNlist() : nlist);
+        stats.put("pqM", current != null ? current.getPqM() : pqM);
+        stats.put("nprobe", nprobe);
+        stats.put("rerankSize", rerankSize);
+        stats.put("rerankFromMemory", rerankSnapshot != null);
+        long indexBytes = current != null ? current.memoryBytes() : 0;
+        stats.put("indexMemoryBytes", indexBytes);
+        stats.put("rawVectorBytes", rawVectorBytes);
+        stats.put("compressionRatio", indexBytes > 0 ? (double) rawVectorBytes / indexBytes : 0);
+        stats.put("buildTimeMillis", buildTimeMillis);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        buildExecutor.shutdownNow();
+    }
+}
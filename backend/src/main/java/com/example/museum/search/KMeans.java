@@ -0,0 +1,124 @@
+package com.example.museum.search;
+
+import org.ejml.data.FMatrixRMaj;
+import org.ejml.dense.row.CommonOps_FDRM;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 基于EJML矩阵乘法的k-means聚类，用于训练IVF粗聚类中心和PQ码本
+ * 距离计算 ||x - c||² = ||x||² - 2x·c + ||c||²，其中x·c按块通过矩阵乘法批量求得
+ */
+final class KMeans {
+
+    /**
+     * 每次矩阵乘法处理的行数，控制中间结果的内存占用
+     */
+    private static final int BLOCK_ROWS = 1024;
+
+    private KMeans() {
+    }
+
+    /**
+     * 训练聚类中心
+     * @param data 行优先存放的n×dim数据
+     * @param k 聚类中心数量（不超过n）
+     * @return 行优先存放的k×dim聚类中心
+     */
+    static float[] train(float[] data, int n, int dim, int k, int iterations, long seed) {
+        Random random = new Random(seed);
+        float[] centroids = new float[k * dim];
+
+        // 随机选取k个不同样本作为初始中心
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        for (int i = 0; i < k; i++) {
+            int j = i + random.nextInt(n - i);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+            System.arraycopy(data, order[i] * dim, centroids, i * dim, dim);
+        }
+
+        int[] assignment = new int[n];
+        double[] sums = new double[k * dim];
+        int[] counts = new int[k];
+        for (int iter = 0; iter < iterations; iter++) {
+            assign(data, n, dim, centroids, k, assignment);
+
+            Arrays.fill(sums, 0);
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) {
+                int c = assignment[i];
+                counts[c]++;
+                int base = c * dim;
+                int offset = i * dim;
+                for (int d = 0; d < dim; d++) {
+                    sums[base + d] += data[offset + d];
+                }
+            }
+            for (int c = 0; c < k; c++) {
+                int base = c * dim;
+                if (counts[c] == 0) {
+                    // 空簇重新随机选一个样本作为中心
+                    System.arraycopy(data, random.nextInt(n) * dim, centroids, base, dim);
+                    continue;
+                }
+                for (int d = 0; d < dim; d++) {
+                    centroids[base + d] = (float) (sums[base + d] / counts[c]);
+                }
+            }
+        }
+        return centroids;
+    }
+
+    /**
+     * 为每个样本分配最近的聚类中心
+     * @param assignment 输出，长度不小于n
+     */
+    static void assign(float[] data, int n, int dim, float[] centroids, int k, int[] assignment) {
+        float[] centroidNorms = squaredNorms(centroids, k, dim);
+        FMatrixRMaj centroidMatrix = FMatrixRMaj.wrap(k, dim, centroids);
+        FMatrixRMaj block = new FMatrixRMaj(Math.min(BLOCK_ROWS, n), dim);
+        FMatrixRMaj products = new FMatrixRMaj(Math.min(BLOCK_ROWS, n), k);
+
+        for (int start = 0; start < n; start += BLOCK_ROWS) {
+            int rows = Math.min(BLOCK_ROWS, n - start);
+            block.reshape(rows, dim);
+            products.reshape(rows, k);
+            System.arraycopy(data, start * dim, block.data, 0, rows * dim);
+            CommonOps_FDRM.multTransB(block, centroidMatrix, products);
+
+            float[] p = products.data;
+            for (int i = 0; i < rows; i++) {
+                int best = 0;
+                float bestDistance = Float.MAX_VALUE;
+                int base = i * k;
+                for (int c = 0; c < k; c++) {
+                    float distance = centroidNorms[c] - 2f * p[base + c];
+                    if (distance < bestDistance) {
+                        bestDistance = distance;
+                        best = c;
+                    }
+                }
+                assignment[start + i] = best;
+            }
+        }
+    }
+
+    static float[] squaredNorms(float[] rows, int count, int dim) {
+        float[] norms = new float[count];
+        for (int r = 0; r < count; r++) {
+            float sum = 0f;
+            int offset = r * dim;
+            for (int d = 0; d < dim; d++) {
+                sum += rows[offset + d] * rows[offset + d];
+            }
+            norms[r] = sum;
+        }
+        return norms;
+    }
+}
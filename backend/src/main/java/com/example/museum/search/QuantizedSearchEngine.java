@@ -0,0 +1,320 @@
+package com.example.museum.search;
+
+import com.example.museum.entity.Artifact;
+import com.example.museum.mapper.ArtifactMapper;
+import com.example.museum.search.kernel.VectorKernels;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于标量量化（int8 / fp16）向量的检索引擎
+ * 通过 museum.search.engine=quantized 启用；配合 museum.search.vector-store.resident=false 时
+ * 内存中只保留量化编码（2048维int8约2KB/文物，原始float32为8KB），前rerank-size名按ID从数据库读取全精度特征重排。
+ * 构建后抽样比较量化检索与精确检索的排序一致性，结果见引擎统计信息中的report
+ */
+@Component
+@ConditionalOnProperty(name = "museum.search.engine", havingValue = QuantizedSearchEngine.NAME)
+public class QuantizedSearchEngine implements VectorSearchEngine {
+
+    public static final String NAME = "quantized";
+
+    private static final Logger logger = LoggerFactory.getLogger(QuantizedSearchEngine.class);
+
+    @Autowired
+    private ArtifactMapper artifactMapper;
+
+    // 量化方式: int8(每向量缩放) / int8-dim(每维缩放) / fp16
+    @Value("${museum.search.quantized.mode:int8}")
+    private String mode;
+
+    // 全精度重排的候选数量，0表示直接使用量化分数
+    @Value("${museum.search.quantized.rerank-size:100}")
+    private int rerankSize;
+
+    @Value("${museum.search.quantized.report-queries:100}")
+    private int reportQueries;
+
+    @Value("${museum.search.quantized.report-k:10}")
+    private int reportK;
+
+    @Value("${museum.search.vector-store.resident:true}")
+    private boolean residentVectors;
+
+    private final ExecutorService buildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "quantized-build");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile QuantizedVectorIndex index;
+
+    /**
+     * 用于内存重排的全精度向量，非常驻模式下为null
+     */
+    private volatile VectorSnapshot rerankSnapshot;
+
+    private volatile Map<String, Object> report = new LinkedHashMap<>();
+
+    private volatile long rawVectorBytes;
+
+    private volatile long buildTimeMillis;
+
+    /**
+     * 已提交尚未完成的构建任务数，多次重建排队时直到最后一次完成才归零
+     */
+    private final AtomicInteger pendingBuilds = new AtomicInteger();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void rebuild(VectorSnapshot snapshot) {
+        pendingBuilds.incrementAndGet();
+        buildExecutor.submit(() -> {
+            try {
+                long start = System.currentTimeMillis();
+                QuantizedVectorIndex newIndex = snapshot.isEmpty() ? null :
+                        QuantizedVectorIndex.build(snapshot, mode);
+                this.buildTimeMillis = System.currentTimeMillis() - start;
+                this.rerankSnapshot = residentVectors ? snapshot : null;
+                this.index = newIndex;
+                this.report = new LinkedHashMap<>();
+                this.rawVectorBytes = snapshot.memoryBytes();
+                if (newIndex == null) {
+                    return;
+                }
+                logger.info("量化向量索引构建完成 - 向量数: {}, 方式: {}, 量化后内存: {} KB, 原始向量: {} KB, 耗时: {} ms",
+                        newIndex.size(), newIndex.getMode(), newIndex.memoryBytes() / 1024,
+                        rawVectorBytes / 1024, buildTimeMillis);
+
+                // 索引发布后再计算排序一致性报告，报告耗时或失败不影响检索
+                try {
+                    Map<String, Object> newReport = agreementReport(snapshot, newIndex);
+                    if (index == newIndex) {
+                        this.report = newReport;
+                    }
+                    if (!newReport.isEmpty()) {
+                        logger.info("量化向量索引排序一致性: {}", newReport);
+                    }
+                } catch (Exception e) {
+                    logger.warn("量化向量索引排序一致性报告计算失败: {}", e.getMessage(), e);
+                }
+            } catch (Exception e) {
+                logger.error("量化向量索引构建失败: {}", e.getMessage(), e);
+            } finally {
+                pendingBuilds.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * 抽样快照中的向量作为查询，比较量化检索（重排前后）与精确检索的前k名
+     * @return 未配置抽样查询数或k时返回空报告
+     */
+    private Map<String, Object> agreementReport(VectorSnapshot snapshot, QuantizedVectorIndex quantized) {
+        int n = snapshot.size();
+        int queries = Math.min(reportQueries, n);
+        int k = Math.min(reportK, n);
+        if (queries <= 0 || k <= 0) {
+            return new LinkedHashMap<>();
+        }
+        Random random = new Random(42);
+        double overlap = 0;
+        double rerankedOverlap = 0;
+        int top1 = 0;
+        double errorSum = 0;
+        double maxError = 0;
+        int errorCount = 0;
+        for (int q = 0; q < queries; q++) {
+            float[] query = snapshot.vectorAt(random.nextInt(n));
+            List<SearchHit> exact = ExactSearchEngine.scan(snapshot, query, -1, k);
+            QuantizedVectorIndex.Query prepared = quantized.prepare(query);
+            List<Integer> approximate = topIds(quantized, quantized.top(prepared, k, null));
+            Set<Integer> exactIds = new HashSet<>();
+            for (SearchHit hit : exact) {
+                exactIds.add(hit.getArtifactId());
+                float error = Math.abs(quantized.score(prepared, snapshot.rowOf(hit.getArtifactId()))
+                        - (float) hit.getSimilarity());
+                errorSum += error;
+                maxError = Math.max(maxError, error);
+                errorCount++;
+            }
+            overlap += countIn(approximate, exactIds) / (double) k;
+            if (!approximate.isEmpty() && approximate.get(0) == exact.get(0).getArtifactId()) {
+                top1++;
+            }
+            if (rerankSize > 0) {
+                List<Integer> candidates = topIds(quantized, quantized.top(prepared, Math.max(rerankSize, k), null));
+                ScoreHeap reranked = new ScoreHeap(k + 1, true);
+                for (int id : candidates) {
+                    reranked.offer(id, (float) snapshot.dot(query, snapshot.rowOf(id)), k);
+                }
+                List<Integer> rerankedIds = new ArrayList<>();
+                for (int i = 0; i < reranked.size(); i++) {
+                    rerankedIds.add(reranked.rowAt(i));
+                }
+                rerankedOverlap += countIn(rerankedIds, exactIds) / (double) k;
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("queries", queries);
+        result.put("k", k);
+        result.put("overlapAtK", overlap / queries);
+        result.put("top1Agreement", (double) top1 / queries);
+        if (rerankSize > 0) {
+            result.put("rerankedOverlapAtK", rerankedOverlap / queries);
+        }
+        result.put("meanScoreError", errorCount == 0 ? 0 : errorSum / errorCount);
+        result.put("maxScoreError", maxError);
+        long quantizedBytes = quantized.memoryBytes();
+        result.put("memorySavedBytes", snapshot.memoryBytes() - quantizedBytes);
+        result.put("compressionRatio", quantizedBytes > 0 ? (double) snapshot.memoryBytes() / quantizedBytes : 0);
+        return result;
+    }
+
+    /**
+     * 按分数降序取出堆中的文物ID（会清空堆）
+     */
+    private static List<Integer> topIds(QuantizedVectorIndex quantized, ScoreHeap heap) {
+        Integer[] ordered = new Integer[heap.size()];
+        for (int i = ordered.length - 1; i >= 0; i--) {
+            ordered[i] = quantized.idAt(heap.pop());
+        }
+        List<Integer> ids = new ArrayList<>(ordered.length);
+        for (Integer id : ordered) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private static int countIn(List<Integer> ids, Set<Integer> expected) {
+        int count = 0;
+        for (Integer id : ids) {
+            if (expected.contains(id)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isReady() {
+        return index != null;
+    }
+
+    @Override
+    public boolean isBuilding() {
+        return pendingBuilds.get() > 0;
+    }
+
+    @Override
+    public List<SearchHit> search(float[] query, double threshold, int maxResults, FilterMask filter) {
+        QuantizedVectorIndex current = index;
+        List<SearchHit> hits = new ArrayList<>();
+        if (current == null || maxResults <= 0) {
+            return hits;
+        }
+        if (query.length != current.getDimension()) {
+            throw new IllegalArgumentException("特征向量维度不一致: " +
+                    query.length + " vs " + current.getDimension());
+        }
+
+        QuantizedVectorIndex.Query prepared = current.prepare(query);
+        ScoreHeap results;
+        if (rerankSize <= 0) {
+            ScoreHeap approximate = current.top(prepared, maxResults, filter);
+            results = new ScoreHeap(maxResults + 1, true);
+            for (int i = 0; i < approximate.size(); i++) {
+                results.offer(current.idAt(approximate.rowAt(i)), approximate.scoreAt(i), maxResults);
+            }
+        } else if (filter != null && filter.cardinality() <= Math.max(rerankSize, maxResults)) {
+            // 满足过滤条件的文物不多于重排数量时，跳过量化打分直接全部精确重排
+            List<Integer> candidateIds = new ArrayList<>(filter.cardinality());
+            for (int id : filter.toIds()) {
+                candidateIds.add(id);
+            }
+            results = rerank(query, candidateIds, maxResults);
+        } else {
+            List<Integer> candidateIds = topIds(current, current.top(prepared, Math.max(rerankSize, maxResults), filter));
+            results = rerank(query, candidateIds, maxResults);
+        }
+
+        SearchHit[] ordered = new SearchHit[results.size()];
+        for (int i = ordered.length - 1; i >= 0; i--) {
+            float score = results.topScore();
+            ordered[i] = new SearchHit(results.pop(), score);
+        }
+        for (SearchHit hit : ordered) {
+            if (hit.getSimilarity() >= threshold) {
+                hits.add(hit);
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * 用全精度向量对候选集重排，向量非常驻时从数据库读取
+     */
+    private ScoreHeap rerank(float[] query, List<Integer> candidateIds, int maxResults) {
+        ScoreHeap reranked = new ScoreHeap(maxResults + 1, true);
+        VectorSnapshot snapshot = rerankSnapshot;
+        if (snapshot != null) {
+            for (int id : candidateIds) {
+                int row = snapshot.rowOf(id);
+                if (row >= 0) {
+                    reranked.offer(id, (float) snapshot.dot(query, row), maxResults);
+                }
+            }
+        } else if (!candidateIds.isEmpty()) {
+            for (Artifact artifact : artifactMapper.findFeatureVectorsByIds(candidateIds)) {
+                float[] vector = artifact.getFeatureVector();
+                if (vector == null || vector.length != query.length) {
+                    continue;
+                }
+                reranked.offer(artifact.getId(), VectorKernels.dot(query, vector), maxResults);
+            }
+        }
+        return reranked;
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        QuantizedVectorIndex current = index;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready", current != null);
+        stats.put("building", isBuilding());
+        stats.put("vectors", current != null ? current.size() : 0);
+        stats.put("mode", current != null ? current.getMode() : mode);
+        stats.put("rerankSize", rerankSize);
+        stats.put("rerankFromMemory", rerankSnapshot != null);
+        long indexBytes = current != null ? current.memoryBytes() : 0;
+        stats.put("indexMemoryBytes", indexBytes);
+        stats.put("rawVectorBytes", rawVectorBytes);
+        stats.put("buildTimeMillis", buildTimeMillis);
+        stats.put("report", report);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        buildExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.museum.search;
+
+import com.example.museum.search.kernel.VectorKernels;
+
+import java.util.Arrays;
+
+/**
+ * 标量量化的向量存储
+ * int8：每个向量一个缩放系数，对称量化到[-127, 127]，查询向量同样量化后用整数点积打分；
+ * int8-dim：每一维按全库的最小值和最大值非对称量化到256级，维度缩放系数折算进查询向量，
+ * 零点带来的偏移只与查询有关，每次查询计算一次；
+ * fp16：半精度存储，打分时查表还原为float。
+ * 分数为近似值，调用方可对前若干名用全精度向量重排
+ */
+final class QuantizedVectorIndex {
+
+    static final String INT8 = "int8";
+    static final String INT8_PER_DIMENSION = "int8-dim";
+    static final String FP16 = "fp16";
+
+    private static final float[] HALF_TO_FLOAT = new float[1 << 16];
+
+    static {
+        for (int h = 0; h < HALF_TO_FLOAT.length; h++) {
+            HALF_TO_FLOAT[h] = halfToFloat(h);
+        }
+    }
+
+    private final String mode;
+    private final int dimension;
+    private final int[] ids;
+    private final byte[] int8Codes;
+    private final short[] halfCodes;
+
+    /**
+     * int8模式下每行的缩放系数
+     */
+    private final float[] rowScales;
+
+    /**
+     * int8-dim模式下每维的缩放系数和零点偏移（code=-128对应的原始值）
+     */
+    private final float[] dimensionScales;
+    private final float[] dimensionOffsets;
+
+    /**
+     * 量化后的查询向量
+     */
+    static final class Query {
+        final float[] vector;
+        final byte[] codes;
+        final float scale;
+        final float constant;
+
+        private Query(float[] vector, byte[] codes, float scale, float constant) {
+            this.vector = vector;
+            this.codes = codes;
+            this.scale = scale;
+            this.constant = constant;
+        }
+    }
+
+    private QuantizedVectorIndex(String mode, int dimension, int[] ids, byte[] int8Codes, short[] halfCodes,
+                                 float[] rowScales, float[] dimensionScales, float[] dimensionOffsets) {
+        this.mode = mode;
+        this.dimension = dimension;
+        this.ids = ids;
+        this.int8Codes = int8Codes;
+        this.halfCodes = halfCodes;
+        this.rowScales = rowScales;
+        this.dimensionScales = dimensionScales;
+        this.dimensionOffsets = dimensionOffsets;
+    }
+
+    static QuantizedVectorIndex build(VectorSnapshot snapshot, String mode) {
+        int dimension = snapshot.getDimension();
+        int n = snapshot.size();
+        float[] matrix = snapshot.matrix();
+        int[] ids = new int[n];
+        for (int row = 0; row < n; row++) {
+            ids[row] = snapshot.idAt(row);
+        }
+
+        if (FP16.equalsIgnoreCase(mode)) {
+            short[] codes = new short[n * dimension];
+            for (int row = 0; row < n; row++) {
+                int offset = snapshot.offsetOf(row);
+                for (int d = 0; d < dimension; d++) {
+                    codes[row * dimension + d] = (short) floatToHalf(matrix[offset + d]);
+                }
+            }
+            return new QuantizedVectorIndex(FP16, dimension, ids, null, codes, null, null, null);
+        }
+
+        byte[] codes = new byte[n * dimension];
+        if (INT8.equalsIgnoreCase(mode)) {
+            float[] scales = new float[n];
+            for (int row = 0; row < n; row++) {
+                int offset = snapshot.offsetOf(row);
+                float max = 0;
+                for (int d = 0; d < dimension; d++) {
+                    max = Math.max(max, Math.abs(matrix[offset + d]));
+                }
+                float scale = max > 0 ? max / 127 : 1;
+                scales[row] = scale;
+                for (int d = 0; d < dimension; d++) {
+                    codes[row * dimension + d] = (byte) Math.round(matrix[offset + d] / scale);
+                }
+            }
+            return new QuantizedVectorIndex(INT8, dimension, ids, codes, null, scales, null, null);
+        }
+
+        if (!INT8_PER_DIMENSION.equalsIgnoreCase(mode)) {
+            throw new IllegalArgumentException("未知的量化方式: " + mode);
+        }
+        float[] min = new float[dimension];
+        float[] max = new float[dimension];
+        Arrays.fill(min, Float.POSITIVE_INFINITY);
+        Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        for (int row = 0; row < n; row++) {
+            int offset = snapshot.offsetOf(row);
+            for (int d = 0; d < dimension; d++) {
+                min[d] = Math.min(min[d], matrix[offset + d]);
+                max[d] = Math.max(max[d], matrix[offset + d]);
+            }
+        }
+        float[] scales = new float[dimension];
+        float[] offsets = new float[dimension];
+        for (int d = 0; d < dimension; d++) {
+            float range = max[d] - min[d];
+            scales[d] = range > 0 ? range / 255 : 1;
+            offsets[d] = min[d] + 128 * scales[d];
+        }
+        for (int row = 0; row < n; row++) {
+            int offset = snapshot.offsetOf(row);
+            for (int d = 0; d < dimension; d++) {
+                int level = Math.round((matrix[offset + d] - min[d]) / scales[d]);
+                codes[row * dimension + d] = (byte) (Math.max(0, Math.min(255, level)) - 128);
+            }
+        }
+        return new QuantizedVectorIndex(INT8_PER_DIMENSION, dimension, ids, codes, null, null, scales, offsets);
+    }
+
+    String getMode() {
+        return mode;
+    }
+
+    int getDimension() {
+        return dimension;
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    int idAt(int row) {
+        return ids[row];
+    }
+
+    long memoryBytes() {
+        long codeBytes = int8Codes != null ? int8Codes.length : halfCodes.length * 2L;
+        long scaleBytes = (rowScales != null ? rowScales.length * 4L : 0)
+                + (dimensionScales != null ? dimensionScales.length * 8L : 0);
+        return codeBytes + scaleBytes + ids.length * 4L;
+    }
+
+    Query prepare(float[] query) {
+        if (halfCodes != null) {
+            return new Query(query, null, 1, 0);
+        }
+        float[] folded = query;
+        float constant = 0;
+        if (dimensionScales != null) {
+            // x_d ≈ offset_d + scale_d * code_d，q·x = Σq_d·offset_d + Σ(q_d·scale_d)·code_d
+            folded = new float[dimension];
+            for (int d = 0; d < dimension; d++) {
+                folded[d] = query[d] * dimensionScales[d];
+                constant += query[d] * dimensionOffsets[d];
+            }
+        }
+        float max = 0;
+        for (float value : folded) {
+            max = Math.max(max, Math.abs(value));
+        }
+        float scale = max > 0 ? max / 127 : 1;
+        byte[] codes = new byte[dimension];
+        for (int d = 0; d < dimension; d++) {
+            codes[d] = (byte) Math.round(folded[d] / scale);
+        }
+        return new Query(query, codes, scale, constant);
+    }
+
+    /**
+     * 查询与第row行的近似点积
+     */
+    float score(Query query, int row) {
+        int offset = row * dimension;
+        if (halfCodes != null) {
+            float sum = 0;
+            for (int d = 0; d < dimension; d++) {
+                sum += query.vector[d] * HALF_TO_FLOAT[halfCodes[offset + d] & 0xFFFF];
+            }
+            return sum;
+        }
+        int dot = VectorKernels.dotInt8(query.codes, 0, int8Codes, offset, dimension);
+        float rowScale = rowScales != null ? rowScales[row] : 1;
+        return query.constant + query.scale * rowScale * dot;
+    }
+
+    /**
+     * 近似分数最高的前count行，filter不为null时只对满足过滤条件的文物打分
+     */
+    ScoreHeap top(Query query, int count, FilterMask filter) {
+        ScoreHeap heap = new ScoreHeap(Math.min(count, ids.length) + 1, true);
+        for (int row = 0; row < ids.length; row++) {
+            if (filter == null || filter.contains(ids[row])) {
+                heap.offer(row, score(query, row), count);
+            }
+        }
+        return heap;
+    }
+
+    private static float halfToFloat(int half) {
+        int sign = (half & 0x8000) << 16;
+        int exponent = (half >>> 10) & 0x1F;
+        int mantissa = half & 0x3FF;
+        if (exponent == 0) {
+            float value = mantissa * 0x1p-24f;
+            return sign != 0 ? -value : value;
+        }
+        if (exponent == 0x1F) {
+            return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+        }
+        return Float.intBitsToFloat(sign | ((exponent + 112) << 23) | (mantissa << 13));
+    }
+
+    /**
+     * float转半精度，舍入到最近值
+     */
+    private static int floatToHalf(float value) {
+        int bits = Float.floatToIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int rounded = (bits & 0x7FFFFFFF) + 0x1000;
+        if (rounded >= 0x47800000) {
+            // 超出半精度范围或为NaN/无穷大
+            if ((bits & 0x7FFFFFFF) >= 0x47800000) {
+                if (rounded < 0x7F800000) {
+                    return sign | 0x7C00;
+                }
+                return sign | 0x7C00 | ((bits & 0x007FFFFF) >>> 13);
+            }
+            return sign | 0x7BFF;
+        }
+        if (rounded >= 0x38800000) {
+            return sign | ((rounded - 0x38000000) >>> 13);
+        }
+        if (rounded < 0x33000000) {
+            return sign;
+        }
+        // 非规格化数
+        int exponent = (bits & 0x7FFFFFFF) >>> 23;
+        return sign | ((((bits & 0x7FFFFF) | 0x800000) + (0x800000 >>> (exponent - 102))) >>> (126 - exponent));
+    }
+}
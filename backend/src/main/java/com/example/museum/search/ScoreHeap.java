@@ -0,0 +1,126 @@
+package com.example.museum.search;
+
+import java.util.Arrays;
+
+/**
+ * 基于原始类型数组的(分数, 行号)二叉堆，避免检索过程中装箱
+ * minHeap为true时堆顶是最小分数，否则堆顶是最大分数
+ */
+final class ScoreHeap {
+
+    private final boolean minHeap;
+    private float[] scores;
+    private int[] rows;
+    private int size;
+
+    ScoreHeap(int initialCapacity, boolean minHeap) {
+        int capacity = Math.max(initialCapacity, 4);
+        this.minHeap = minHeap;
+        this.scores = new float[capacity];
+        this.rows = new int[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    float topScore() {
+        return scores[0];
+    }
+
+    int topRow() {
+        return rows[0];
+    }
+
+    float scoreAt(int index) {
+        return scores[index];
+    }
+
+    int rowAt(int index) {
+        return rows[index];
+    }
+
+    void push(int row, float score) {
+        if (size == scores.length) {
+            scores = Arrays.copyOf(scores, size * 2);
+            rows = Arrays.copyOf(rows, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(score, scores[parent])) {
+                break;
+            }
+            scores[i] = scores[parent];
+            rows[i] = rows[parent];
+            i = parent;
+        }
+        scores[i] = score;
+        rows[i] = row;
+    }
+
+    /**
+     * 维持容量为capacity的有界堆（仅对最小堆有意义：保留分数最大的capacity个元素）
+     * @return 元素是否被保留
+     */
+    boolean offer(int row, float score, int capacity) {
+        if (size < capacity) {
+            push(row, score);
+            return true;
+        }
+        if (score <= scores[0]) {
+            return false;
+        }
+        scores[0] = score;
+        rows[0] = row;
+        siftDown(0);
+        return true;
+    }
+
+    /**
+     * 弹出堆顶，返回其行号
+     */
+    int pop() {
+        int top = rows[0];
+        size--;
+        if (size > 0) {
+            scores[0] = scores[size];
+            rows[0] = rows[size];
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftDown(int i) {
+        float score = scores[i];
+        int row = rows[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && before(scores[right], scores[child])) {
+                child = right;
+            }
+            if (!before(scores[child], score)) {
+                break;
+            }
+            scores[i] = scores[child];
+            rows[i] = rows[child];
+            i = child;
+        }
+        scores[i] = score;
+        rows[i] = row;
+    }
+
+    private boolean before(float a, float b) {
+        return minHeap ? a < b : a > b;
+    }
+}
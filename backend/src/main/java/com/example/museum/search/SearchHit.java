@@ -0,0 +1,23 @@
+package com.example.museum.search;
+
+/**
+ * 向量检索命中结果（文物ID和相似度）
+ */
+public final class SearchHit {
+
+    private final int artifactId;
+    private final double similarity;
+
+    public SearchHit(int artifactId, double similarity) {
+        this.artifactId = artifactId;
+        this.similarity = similarity;
+    }
+
+    public int getArtifactId() {
+        return artifactId;
+    }
+
+    public double getSimilarity() {
+        return similarity;
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.museum.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 文物向量库的增量部分（不可变）
+ * 记录上次全量构建后新增、修改和删除的文物：upserts为新增或修改后的向量，
+ * tombstones为所有变更过的文物ID（已删除的和已被upserts取代的），检索时从引擎结果中剔除
+ */
+public final class VectorDelta {
+
+    public static final VectorDelta EMPTY = new VectorDelta(VectorSnapshot.EMPTY, new int[0]);
+
+    private final VectorSnapshot upserts;
+    private final int[] tombstones;
+
+    /**
+     * @param upserts 按文物ID升序存放的增量向量
+     * @param tombstones 升序排列的变更文物ID
+     */
+    VectorDelta(VectorSnapshot upserts, int[] tombstones) {
+        this.upserts = upserts;
+        this.tombstones = tombstones;
+    }
+
+    /**
+     * 由变更构建增量，值为null表示删除；维度与dimension不一致的向量由调用方预先剔除
+     */
+    static VectorDelta of(Map<Integer, float[]> changes, int dimension) {
+        if (changes.isEmpty()) {
+            return EMPTY;
+        }
+        int[] tombstones = new int[changes.size()];
+        int count = 0;
+        int upsertCount = 0;
+        for (Map.Entry<Integer, float[]> entry : changes.entrySet()) {
+            tombstones[count++] = entry.getKey();
+            if (entry.getValue() != null) {
+                upsertCount++;
+            }
+        }
+        Arrays.sort(tombstones);
+        int[] ids = new int[upsertCount];
+        float[] vectors = new float[upsertCount * dimension];
+        int row = 0;
+        for (int id : tombstones) {
+            float[] vector = changes.get(id);
+            if (vector != null) {
+                ids[row] = id;
+                System.arraycopy(vector, 0, vectors, row * dimension, dimension);
+                row++;
+            }
+        }
+        return new VectorDelta(upsertCount == 0 ? VectorSnapshot.EMPTY : new VectorSnapshot(dimension, ids, vectors),
+                tombstones);
+    }
+
+    /**
+     * 将增量合并进基础快照，得到按文物ID升序存放的新快照
+     * 基础快照与增量均按ID升序，线性归并，未变更的连续行整段复制
+     */
+    static VectorSnapshot applyTo(VectorSnapshot base, VectorDelta delta, int dimension) {
+        VectorSnapshot upserts = delta.upserts;
+        int[] tombstones = delta.tombstones;
+        int removed = 0;
+        for (int id : tombstones) {
+            if (base.rowOf(id) >= 0) {
+                removed++;
+            }
+        }
+        int count = base.size() - removed + upserts.size();
+        if (count == 0) {
+            return VectorSnapshot.EMPTY;
+        }
+        int[] ids = new int[count];
+        float[] vectors = new float[VectorSnapshot.matrixLength(count, dimension)];
+        float[] baseMatrix = base.matrix();
+        float[] upsertMatrix = upserts.matrix();
+        int out = 0;
+        int row = 0;
+        int t = 0;
+        int u = 0;
+        while (row < base.size()) {
+            int id = base.idAt(row);
+            while (t < tombstones.length && tombstones[t] < id) {
+                t++;
+            }
+            // 先放入ID更小的增量向量
+            while (u < upserts.size() && upserts.idAt(u) < id) {
+                ids[out] = upserts.idAt(u);
+                System.arraycopy(upsertMatrix, u * dimension, vectors, out * dimension, dimension);
+                out++;
+                u++;
+            }
+            if (t < tombstones.length && tombstones[t] == id) {
+                row++;
+                continue;
+            }
+            // 增量向量的ID都在tombstones中，下一个变更ID之前的基础行可以整段复制
+            int limit = t < tombstones.length ? tombstones[t] : Integer.MAX_VALUE;
+            int runEnd = row + 1;
+            while (runEnd < base.size() && base.idAt(runEnd) < limit) {
+                runEnd++;
+            }
+            for (int r = row; r < runEnd; r++) {
+                ids[out + r - row] = base.idAt(r);
+            }
+            System.arraycopy(baseMatrix, row * dimension, vectors, out * dimension, (runEnd - row) * dimension);
+            out += runEnd - row;
+            row = runEnd;
+        }
+        if (u < upserts.size()) {
+            for (int r = u; r < upserts.size(); r++) {
+                ids[out + r - u] = upserts.idAt(r);
+            }
+            System.arraycopy(upsertMatrix, u * dimension, vectors, out * dimension, (upserts.size() - u) * dimension);
+        }
+        return new VectorSnapshot(dimension, ids, vectors);
+    }
+
+    public boolean isEmpty() {
+        return tombstones.length == 0;
+    }
+
+    public VectorSnapshot getUpserts() {
+        return upserts;
+    }
+
+    public int tombstoneCount() {
+        return tombstones.length;
+    }
+
+    public boolean isTombstoned(int artifactId) {
+        return Arrays.binarySearch(tombstones, artifactId) >= 0;
+    }
+
+    /**
+     * 剔除基础索引结果中已变更的文物，与增量向量的精确检索结果合并后取前maxResults个
+     */
+    public List<SearchHit> merge(List<SearchHit> baseHits, float[] query, double threshold, int maxResults) {
+        return merge(baseHits, query, threshold, maxResults, null);
+    }
+
+    /**
+     * 同上，增量向量只检索满足过滤条件的文物（基础索引结果应已按同一条件过滤）
+     */
+    public List<SearchHit> merge(List<SearchHit> baseHits, float[] query, double threshold, int maxResults,
+                                 FilterMask filter) {
+        if (isEmpty()) {
+            return baseHits;
+        }
+        List<SearchHit> deltaHits = upserts.isEmpty() || query.length != upserts.getDimension()
+                ? new ArrayList<>() : ExactSearchEngine.scan(upserts, query, threshold, maxResults, filter);
+        List<SearchHit> merged = new ArrayList<>(Math.min(maxResults, baseHits.size() + deltaHits.size()));
+        int i = 0;
+        int j = 0;
+        while (merged.size() < maxResults) {
+            while (i < baseHits.size() && isTombstoned(baseHits.get(i).getArtifactId())) {
+                i++;
+            }
+            boolean hasBase = i < baseHits.size();
+            boolean hasDelta = j < deltaHits.size();
+            if (!hasBase && !hasDelta) {
+                break;
+            }
+            if (hasBase && (!hasDelta || baseHits.get(i).getSimilarity() >= deltaHits.get(j).getSimilarity())) {
+                merged.add(baseHits.get(i++));
+            } else {
+                merged.add(deltaHits.get(j++));
+            }
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.museum.search;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 文物特征向量检索引擎
+ * 向量库每次加载出新快照都会通知所有引擎重建索引
+ */
+public interface VectorSearchEngine {
+
+    /**
+     * 引擎名称，对应配置项museum.search.engine
+     */
+    String getName();
+
+    /**
+     * 基于新的向量快照重建索引
+     */
+    void rebuild(VectorSnapshot snapshot);
+
+    /**
+     * 是否支持从分批的向量来源重建索引，所有引擎都支持时非常驻模式不再在内存中拼装完整矩阵
+     */
+    default boolean supportsStreamingBuild() {
+        return false;
+    }
+
+    /**
+     * 从分批的向量来源重建索引，来源可多次遍历，每次只持有一批原始向量
+     */
+    default void rebuild(VectorSource source) {
+        throw new UnsupportedOperationException(getName() + "引擎不支持分批构建索引");
+    }
+
+    /**
+     * 索引是否已可用于检索
+     */
+    boolean isReady();
+
+    /**
+     * 是否有尚未完成的后台重建，完成前检索仍使用旧索引
+     */
+    default boolean isBuilding() {
+        return false;
+    }
+
+    /**
+     * 检索与查询向量相似度不低于threshold的前maxResults个文物，按相似度降序排列
+     */
+    default List<SearchHit> search(float[] query, double threshold, int maxResults) {
+        return search(query, threshold, maxResults, null);
+    }
+
+    /**
+     * 只在满足过滤条件的文物中检索，不满足条件的文物在打分阶段即被跳过
+     * @param filter 过滤位图，为null时不过滤
+     */
+    List<SearchHit> search(float[] query, double threshold, int maxResults, FilterMask filter);
+
+    /**
+     * 引擎统计信息
+     */
+    Map<String, Object> getStats();
+}
@@ -0,0 +1,150 @@
+package com.example.museum.search;
+
+import com.example.museum.search.kernel.VectorKernels;
+
+import java.util.Arrays;
+
+/**
+ * 文物特征向量快照（不可变）
+ * 所有向量按行连续存放在一个float数组中，第i行对应ids[i]
+ */
+public final class VectorSnapshot {
+
+    public static final VectorSnapshot EMPTY = new VectorSnapshot(0, new int[0], new float[0]);
+
+    /**
+     * 单个float数组可容纳的最大元素数（JVM数组长度上限略小于Integer.MAX_VALUE）
+     */
+    public static final int MAX_MATRIX_LENGTH = Integer.MAX_VALUE - 8;
+
+    private final int dimension;
+    private final int[] ids;
+    private final float[] vectors;
+    private final boolean idsSorted;
+
+    public VectorSnapshot(int dimension, int[] ids, float[] vectors) {
+        if ((long) dimension * ids.length != vectors.length) {
+            throw new IllegalArgumentException("向量矩阵大小与ID数量不一致");
+        }
+        this.dimension = dimension;
+        this.ids = ids;
+        this.vectors = vectors;
+        boolean sorted = true;
+        for (int i = 1; i < ids.length && sorted; i++) {
+            sorted = ids[i - 1] < ids[i];
+        }
+        this.idsSorted = sorted;
+    }
+
+    /**
+     * 计算rows行dimension维矩阵的数组长度，超出单个数组容量时抛出异常而不是溢出为错误的长度
+     * @throws IllegalStateException 如果矩阵超出单个数组容量
+     */
+    public static int matrixLength(long rows, int dimension) {
+        long length = rows * dimension;
+        if (length > MAX_MATRIX_LENGTH) {
+            throw new IllegalStateException("向量矩阵超出单个数组容量: " + rows + "行 × " + dimension
+                    + "维，请设置 museum.search.vector-store.resident=false 并使用压缩索引");
+        }
+        return (int) length;
+    }
+
+    /**
+     * 用ids和vectors的前rows行创建快照，长度正好时不复制
+     */
+    static VectorSnapshot copyOf(int dimension, int[] ids, float[] vectors, int rows) {
+        int length = matrixLength(rows, dimension);
+        return new VectorSnapshot(dimension,
+                ids.length == rows ? ids : Arrays.copyOf(ids, rows),
+                vectors.length == length ? vectors : Arrays.copyOf(vectors, length));
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public boolean isEmpty() {
+        return ids.length == 0;
+    }
+
+    /**
+     * 第row行对应的文物ID
+     */
+    public int idAt(int row) {
+        return ids[row];
+    }
+
+    /**
+     * 根据文物ID查找所在行，ID按升序存放时使用二分查找
+     * @return 行号，不存在时返回-1
+     */
+    public int rowOf(int id) {
+        if (idsSorted) {
+            int row = Arrays.binarySearch(ids, id);
+            return row >= 0 ? row : -1;
+        }
+        for (int row = 0; row < ids.length; row++) {
+            if (ids[row] == id) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 第row行向量在矩阵中的起始偏移
+     */
+    public int offsetOf(int row) {
+        return row * dimension;
+    }
+
+    /**
+     * 原始矩阵（只读，调用方不得修改）
+     */
+    float[] matrix() {
+        return vectors;
+    }
+
+    /**
+     * 计算查询向量与第row行向量的点积
+     * 向量均已L2归一化，点积即余弦相似度
+     */
+    public double dot(float[] query, int row) {
+        return VectorKernels.dot(query, 0, vectors, row * dimension, dimension);
+    }
+
+    /**
+     * 计算query中从queryOffset开始的向量与第row行向量的点积
+     * query可以是本快照的矩阵本身，用于计算两行之间的相似度
+     */
+    public float dot(float[] query, int queryOffset, int row) {
+        return VectorKernels.dot(query, queryOffset, vectors, row * dimension, dimension);
+    }
+
+    /**
+     * 计算两行向量之间的点积
+     */
+    public float dotRows(int rowA, int rowB) {
+        return dot(vectors, rowA * dimension, rowB);
+    }
+
+    /**
+     * 复制第row行向量
+     */
+    public float[] vectorAt(int row) {
+        float[] copy = new float[dimension];
+        System.arraycopy(vectors, row * dimension, copy, 0, dimension);
+        return copy;
+    }
+
+    /**
+     * 估算占用的堆内存（字节）
+     */
+    public long memoryBytes() {
+        return (long) vectors.length * Float.BYTES + (long) ids.length * Integer.BYTES;
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.museum.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * 向量库基础快照的磁盘文件，用于快速冷启动
+ * 文件格式（小端）：magic、格式版本、维度、向量数、数据库高水位（artifact.updated_at最大值，毫秒）、
+ * 写入时间、载荷CRC32，之后依次为文物ID数组和向量矩阵。
+ * 启动时以FileChannel.map分段映射读取并校验，避免从MySQL逐行读取全部特征；写入在后台线程进行，
+ * 先写临时文件再原子替换，进程中途退出不会留下损坏的快照。
+ * 文件只保存原始向量矩阵，加载后精确检索立即可用；HNSW、IVF-PQ、二值和量化引擎的索引结构不持久化，
+ * 启动后仍在后台基于矩阵完整重建（大规模文物库上可能需要数分钟），重建完成前检索由精确检索兜底
+ */
+@Component
+public class VectorSnapshotFile {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorSnapshotFile.class);
+
+    private static final int MAGIC = 0x4E53564D; // "MVSN"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 40;
+
+    /**
+     * 单次映射的最大字节数，超过2GB的矩阵分段映射
+     */
+    private static final int MAP_CHUNK_BYTES = 1 << 28;
+
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+    @Value("${museum.search.snapshot.enabled:true}")
+    private boolean enabled;
+
+    @Value("${museum.search.snapshot.path:data/vector-snapshot.bin}")
+    private String path;
+
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "vector-snapshot-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile long lastWrittenAt;
+
+    private volatile long lastWriteMillis;
+
+    private volatile long lastReadMillis;
+
+    private volatile String lastReadResult = "none";
+
+    /**
+     * 从快照文件读取的基础快照及其数据库高水位
+     */
+    public static final class Loaded {
+        private final VectorSnapshot snapshot;
+        private final long highWaterMark;
+
+        Loaded(VectorSnapshot snapshot, long highWaterMark) {
+            this.snapshot = snapshot;
+            this.highWaterMark = highWaterMark;
+        }
+
+        public VectorSnapshot getSnapshot() {
+            return snapshot;
+        }
+
+        public long getHighWaterMark() {
+            return highWaterMark;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 读取并校验快照文件
+     * @return 文件不存在、格式不符或校验失败时返回null
+     */
+    public Loaded read() {
+        Path file = Paths.get(path);
+        if (!enabled || !Files.isRegularFile(file)) {
+            lastReadResult = "missing";
+            return null;
+        }
+        long start = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES) {
+                return invalid("文件过短");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+                return invalid("格式或版本不符");
+            }
+            int dimension = header.getInt();
+            int count = header.getInt();
+            long highWaterMark = header.getLong();
+            header.getLong();
+            long expectedChecksum = header.getLong();
+            if (dimension < 0 || count < 0 || (count > 0 && dimension == 0)
+                    || fileSize != HEADER_BYTES + count * 4L + (long) count * dimension * 4L) {
+                return invalid("文件大小与头部不一致");
+            }
+
+            CRC32 crc = new CRC32();
+            int[] ids = new int[count];
+            MappedByteBuffer idBuffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, count * 4L);
+            crc.update(idBuffer.duplicate());
+            idBuffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(ids);
+
+            float[] vectors = new float[VectorSnapshot.matrixLength(count, dimension)];
+            long position = HEADER_BYTES + count * 4L;
+            int rowsPerChunk = dimension == 0 ? count : Math.max(1, MAP_CHUNK_BYTES / (dimension * 4));
+            for (int row = 0; row < count; row += rowsPerChunk) {
+                int rows = Math.min(rowsPerChunk, count - row);
+                long bytes = (long) rows * dimension * 4;
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, bytes);
+                crc.update(chunk.duplicate());
+                chunk.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vectors, row * dimension, rows * dimension);
+                position += bytes;
+            }
+            if (crc.getValue() != expectedChecksum) {
+                return invalid("校验和不符");
+            }
+            for (int i = 1; i < count; i++) {
+                if (ids[i - 1] >= ids[i]) {
+                    return invalid("文物ID未按升序存放");
+                }
+            }
+            lastReadMillis = System.currentTimeMillis() - start;
+            lastReadResult = "loaded";
+            VectorSnapshot snapshot = count == 0 ? VectorSnapshot.EMPTY : new VectorSnapshot(dimension, ids, vectors);
+            logger.info("已从快照文件加载文物特征向量 - 文件: {}, 数量: {}, 维度: {}, 耗时: {} ms",
+                    file, count, dimension, lastReadMillis);
+            return new Loaded(snapshot, highWaterMark);
+        } catch (IOException | RuntimeException e) {
+            return invalid(e.getMessage());
+        }
+    }
+
+    private Loaded invalid(String reason) {
+        lastReadResult = "invalid";
+        logger.warn("向量快照文件无效，将从数据库全量加载 - 文件: {}, 原因: {}", path, reason);
+        return null;
+    }
+
+    /**
+     * 在后台线程写入快照，snapshot须按文物ID升序存放
+     * @param highWaterMark 快照对应的数据库高水位，此后更新的文物在下次启动时从数据库补读
+     */
+    public void writeAsync(VectorSnapshot snapshot, long highWaterMark) {
+        if (!enabled) {
+            return;
+        }
+        writeExecutor.submit(() -> {
+            try {
+                write(snapshot, highWaterMark);
+            } catch (Exception e) {
+                logger.warn("写入向量快照文件失败 - 文件: {}, 原因: {}", path, e.getMessage());
+            }
+        });
+    }
+
+    private void write(VectorSnapshot snapshot, long highWaterMark) throws IOException {
+        long start = System.currentTimeMillis();
+        Path file = Paths.get(path).toAbsolutePath();
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        int count = snapshot.size();
+        int dimension = snapshot.getDimension();
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.position(HEADER_BYTES);
+            for (int row = 0; row < count; row++) {
+                if (buffer.remaining() < 4) {
+                    flush(channel, buffer, crc);
+                }
+                buffer.putInt(snapshot.idAt(row));
+            }
+            float[] matrix = snapshot.matrix();
+            for (int i = 0; i < matrix.length; i++) {
+                if (buffer.remaining() < 4) {
+                    flush(channel, buffer, crc);
+                }
+                buffer.putFloat(matrix[i]);
+            }
+            flush(channel, buffer, crc);
+
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(dimension).putInt(count)
+                    .putLong(highWaterMark).putLong(System.currentTimeMillis()).putLong(crc.getValue());
+            buffer.flip();
+            channel.position(0);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        lastWrittenAt = System.currentTimeMillis();
+        lastWriteMillis = lastWrittenAt - start;
+        logger.info("向量快照文件已写入 - 文件: {}, 数量: {}, 大小: {} KB, 耗时: {} ms",
+                file, count, Files.size(file) / 1024, lastWriteMillis);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * 快照文件统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("path", path);
+        // 快照文件只能让这些引擎免于冷启动重建，其他引擎仍需重建索引
+        stats.put("coldStartEngines", Collections.singletonList(ExactSearchEngine.NAME));
+        stats.put("lastReadResult", lastReadResult);
+        stats.put("lastReadMillis", lastReadMillis);
+        stats.put("lastWrittenAt", lastWrittenAt);
+        stats.put("lastWriteMillis", lastWriteMillis);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writeExecutor.shutdown();
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.museum.search;
+
+import java.util.function.Consumer;
+
+/**
+ * 按文物ID升序分批提供的特征向量，可多次遍历
+ * 非常驻模式下压缩索引据此分批训练和编码，任何时刻只持有一批原始向量
+ */
+public interface VectorSource {
+
+    /**
+     * 向量维度，尚未遍历过的数据库来源返回0
+     */
+    int getDimension();
+
+    /**
+     * 最近一次完整遍历得到的向量数量
+     */
+    int size();
+
+    /**
+     * 依次处理每一批向量，每批是ID升序、维度一致的小快照
+     */
+    void forEachBatch(Consumer<VectorSnapshot> consumer);
+
+    /**
+     * 把内存中的快照作为只有一批的来源
+     */
+    static VectorSource of(VectorSnapshot snapshot) {
+        return new VectorSource() {
+            @Override
+            public int getDimension() {
+                return snapshot.getDimension();
+            }
+
+            @Override
+            public int size() {
+                return snapshot.size();
+            }
+
+            @Override
+            public void forEachBatch(Consumer<VectorSnapshot> consumer) {
+                if (!snapshot.isEmpty()) {
+                    consumer.accept(snapshot);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.museum.search.kernel;
+
+/**
+ * 标量实现，未启用jdk.incubator.vector模块时使用
+ */
+final class ScalarVectorKernel implements VectorKernel {
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0f;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void dotBatch(float[] query, float[] matrix, int firstRow, int rowCount, int dimension,
+                         float[] out, int outOffset) {
+        for (int r = 0; r < rowCount; r++) {
+            out[outOffset + r] = dot(query, 0, matrix, (firstRow + r) * dimension, dimension);
+        }
+    }
+
+    /**
+     * 每行同时与4个查询累加，4个独立的累加器避免单个累加器的加法延迟成为瓶颈
+     */
+    @Override
+    public void dotTile(float[] queries, int queryCount, float[] matrix, int firstRow, int rowCount, int dimension,
+                        float[] out) {
+        for (int r = 0; r < rowCount; r++) {
+            int o = (firstRow + r) * dimension;
+            int q = 0;
+            for (; q + 4 <= queryCount; q += 4) {
+                int p0 = q * dimension;
+                int p1 = p0 + dimension;
+                int p2 = p1 + dimension;
+                int p3 = p2 + dimension;
+                float s0 = 0f;
+                float s1 = 0f;
+                float s2 = 0f;
+                float s3 = 0f;
+                for (int i = 0; i < dimension; i++) {
+                    float v = matrix[o + i];
+                    s0 += queries[p0 + i] * v;
+                    s1 += queries[p1 + i] * v;
+                    s2 += queries[p2 + i] * v;
+                    s3 += queries[p3 + i] * v;
+                }
+                out[q * rowCount + r] = s0;
+                out[(q + 1) * rowCount + r] = s1;
+                out[(q + 2) * rowCount + r] = s2;
+                out[(q + 3) * rowCount + r] = s3;
+            }
+            for (; q < queryCount; q++) {
+                out[q * rowCount + r] = dot(queries, q * dimension, matrix, o, dimension);
+            }
+        }
+    }
+
+    @Override
+    public float squaredL2(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0f;
+        for (int i = 0; i < length; i++) {
+            float diff = a[aOffset + i] - b[bOffset + i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    @Override
+    public int dotInt8(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.museum.search.kernel;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 基于Java Vector API的SIMD实现
+ * 需要以 --add-modules jdk.incubator.vector 启动JVM，否则由VectorKernels回退到标量实现
+ */
+final class SimdVectorKernel implements VectorKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    /**
+     * 批量点积时同时处理的行数，查询向量每个分块只加载一次
+     */
+    private static final int ROW_BLOCK = 4;
+
+    /**
+     * int8点积每次加载8个字节扩展为8个int累加
+     */
+    private static final VectorSpecies<Byte> BYTE_SPECIES = ByteVector.SPECIES_64;
+    private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_256;
+
+    @Override
+    public String getName() {
+        return "simd-" + SPECIES.vectorBitSize();
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int step = SPECIES.length();
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += step) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, bOffset + i);
+            acc = va.fma(vb, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void dotBatch(float[] query, float[] matrix, int firstRow, int rowCount, int dimension,
+                         float[] out, int outOffset) {
+        int step = SPECIES.length();
+        int bound = SPECIES.loopBound(dimension);
+        int r = 0;
+        for (; r + ROW_BLOCK <= rowCount; r += ROW_BLOCK) {
+            int o0 = (firstRow + r) * dimension;
+            int o1 = o0 + dimension;
+            int o2 = o1 + dimension;
+            int o3 = o2 + dimension;
+            FloatVector acc0 = FloatVector.zero(SPECIES);
+            FloatVector acc1 = FloatVector.zero(SPECIES);
+            FloatVector acc2 = FloatVector.zero(SPECIES);
+            FloatVector acc3 = FloatVector.zero(SPECIES);
+            int i = 0;
+            for (; i < bound; i += step) {
+                FloatVector q = FloatVector.fromArray(SPECIES, query, i);
+                acc0 = q.fma(FloatVector.fromArray(SPECIES, matrix, o0 + i), acc0);
+                acc1 = q.fma(FloatVector.fromArray(SPECIES, matrix, o1 + i), acc1);
+                acc2 = q.fma(FloatVector.fromArray(SPECIES, matrix, o2 + i), acc2);
+                acc3 = q.fma(FloatVector.fromArray(SPECIES, matrix, o3 + i), acc3);
+            }
+            float s0 = acc0.reduceLanes(VectorOperators.ADD);
+            float s1 = acc1.reduceLanes(VectorOperators.ADD);
+            float s2 = acc2.reduceLanes(VectorOperators.ADD);
+            float s3 = acc3.reduceLanes(VectorOperators.ADD);
+            for (; i < dimension; i++) {
+                float q = query[i];
+                s0 += q * matrix[o0 + i];
+                s1 += q * matrix[o1 + i];
+                s2 += q * matrix[o2 + i];
+                s3 += q * matrix[o3 + i];
+            }
+            out[outOffset + r] = s0;
+            out[outOffset + r + 1] = s1;
+            out[outOffset + r + 2] = s2;
+            out[outOffset + r + 3] = s3;
+        }
+        for (; r < rowCount; r++) {
+            out[outOffset + r] = dot(query, 0, matrix, (firstRow + r) * dimension, dimension);
+        }
+    }
+
+    /**
+     * 2行×4个查询的寄存器分块：每次加载的矩阵向量参与4次FMA，查询向量参与2次，8个累加器互相独立
+     */
+    @Override
+    public void dotTile(float[] queries, int queryCount, float[] matrix, int firstRow, int rowCount, int dimension,
+                        float[] out) {
+        int step = SPECIES.length();
+        int bound = SPECIES.loopBound(dimension);
+        int tiledQueries = queryCount & ~3;
+        int r = 0;
+        for (; r + 2 <= rowCount; r += 2) {
+            int o0 = (firstRow + r) * dimension;
+            int o1 = o0 + dimension;
+            for (int q = 0; q < tiledQueries; q += 4) {
+                int p0 = q * dimension;
+                int p1 = p0 + dimension;
+                int p2 = p1 + dimension;
+                int p3 = p2 + dimension;
+                FloatVector acc00 = FloatVector.zero(SPECIES);
+                FloatVector acc01 = FloatVector.zero(SPECIES);
+                FloatVector acc10 = FloatVector.zero(SPECIES);
+                FloatVector acc11 = FloatVector.zero(SPECIES);
+                FloatVector acc20 = FloatVector.zero(SPECIES);
+                FloatVector acc21 = FloatVector.zero(SPECIES);
+                FloatVector acc30 = FloatVector.zero(SPECIES);
+                FloatVector acc31 = FloatVector.zero(SPECIES);
+                int i = 0;
+                for (; i < bound; i += step) {
+                    FloatVector v0 = FloatVector.fromArray(SPECIES, matrix, o0 + i);
+                    FloatVector v1 = FloatVector.fromArray(SPECIES, matrix, o1 + i);
+                    FloatVector x = FloatVector.fromArray(SPECIES, queries, p0 + i);
+                    acc00 = x.fma(v0, acc00);
+                    acc01 = x.fma(v1, acc01);
+                    x = FloatVector.fromArray(SPECIES, queries, p1 + i);
+                    acc10 = x.fma(v0, acc10);
+                    acc11 = x.fma(v1, acc11);
+                    x = FloatVector.fromArray(SPECIES, queries, p2 + i);
+                    acc20 = x.fma(v0, acc20);
+                    acc21 = x.fma(v1, acc21);
+                    x = FloatVector.fromArray(SPECIES, queries, p3 + i);
+                    acc30 = x.fma(v0, acc30);
+                    acc31 = x.fma(v1, acc31);
+                }
+                float s00 = acc00.reduceLanes(VectorOperators.ADD);
+                float s01 = acc01.reduceLanes(VectorOperators.ADD);
+                float s10 = acc10.reduceLanes(VectorOperators.ADD);
+                float s11 = acc11.reduceLanes(VectorOperators.ADD);
+                float s20 = acc20.reduceLanes(VectorOperators.ADD);
+                float s21 = acc21.reduceLanes(VectorOperators.ADD);
+                float s30 = acc30.reduceLanes(VectorOperators.ADD);
+                float s31 = acc31.reduceLanes(VectorOperators.ADD);
+                for (; i < dimension; i++) {
+                    float v0 = matrix[o0 + i];
+                    float v1 = matrix[o1 + i];
+                    s00 += queries[p0 + i] * v0;
+                    s01 += queries[p0 + i] * v1;
+                    s10 += queries[p1 + i] * v0;
+                    s11 += queries[p1 + i] * v1;
+                    s20 += queries[p2 + i] * v0;
+                    s21 += queries[p2 + i] * v1;
+                    s30 += queries[p3 + i] * v0;
+                    s31 += queries[p3 + i] * v1;
+                }
+                out[q * rowCount + r] = s00;
+                out[q * rowCount + r + 1] = s01;
+                out[(q + 1) * rowCount + r] = s10;
+                out[(q + 1) * rowCount + r + 1] = s11;
+                out[(q + 2) * rowCount + r] = s20;
+                out[(q + 2) * rowCount + r + 1] = s21;
+                out[(q + 3) * rowCount + r] = s30;
+                out[(q + 3) * rowCount + r + 1] = s31;
+            }
+        }
+        // 不足一个分块的查询和行逐个计算
+        for (int row = 0; row < rowCount; row++) {
+            int o = (firstRow + row) * dimension;
+            for (int q = row < r ? tiledQueries : 0; q < queryCount; q++) {
+                out[q * rowCount + row] = dot(queries, q * dimension, matrix, o, dimension);
+            }
+        }
+    }
+
+    @Override
+    public float squaredL2(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int step = SPECIES.length();
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += step) {
+            FloatVector diff = FloatVector.fromArray(SPECIES, a, aOffset + i)
+                    .sub(FloatVector.fromArray(SPECIES, b, bOffset + i));
+            acc = diff.fma(diff, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float diff = a[aOffset + i] - b[bOffset + i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    @Override
+    public int dotInt8(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        IntVector acc = IntVector.zero(INT_SPECIES);
+        int step = BYTE_SPECIES.length();
+        int bound = BYTE_SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += step) {
+            IntVector va = (IntVector) ByteVector.fromArray(BYTE_SPECIES, a, aOffset + i)
+                    .convertShape(VectorOperators.B2I, INT_SPECIES, 0);
+            IntVector vb = (IntVector) ByteVector.fromArray(BYTE_SPECIES, b, bOffset + i)
+                    .convertShape(VectorOperators.B2I, INT_SPECIES, 0);
+            acc = acc.add(va.mul(vb));
+        }
+        int sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.museum.search.kernel;
+
+/**
+ * 向量相似度计算内核（float32，以及量化检索使用的int8）
+ */
+public interface VectorKernel {
+
+    /**
+     * 内核名称
+     */
+    String getName();
+
+    /**
+     * 点积 a[aOffset..aOffset+length) · b[bOffset..bOffset+length)
+     */
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * 批量点积：一个查询向量与矩阵中连续rowCount行分别求点积
+     * @param matrix 行优先存放、每行dimension个元素的矩阵
+     * @param out 输出，out[outOffset + i]为查询与第firstRow+i行的点积
+     */
+    void dotBatch(float[] query, float[] matrix, int firstRow, int rowCount, int dimension,
+                  float[] out, int outOffset);
+
+    /**
+     * 分块点积：queryCount个查询向量与矩阵中连续rowCount行两两求点积，
+     * 每次从内存读入的矩阵行同时参与多个查询的计算，相当于一次小规模矩阵乘法
+     * @param queries 行优先存放的查询矩阵，每行dimension个元素
+     * @param out 输出，out[q * rowCount + r]为第q个查询与第firstRow+r行的点积
+     */
+    void dotTile(float[] queries, int queryCount, float[] matrix, int firstRow, int rowCount, int dimension,
+                 float[] out);
+
+    /**
+     * 平方欧氏距离
+     */
+    float squaredL2(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * int8点积，按int累加（2048维时不会溢出）
+     */
+    int dotInt8(byte[] a, int aOffset, byte[] b, int bOffset, int length);
+}
@@ -0,0 +1,74 @@
+package com.example.museum.search.kernel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 向量计算内核入口
+ * JVM启用了jdk.incubator.vector模块时使用SIMD实现，否则自动回退到标量实现
+ * 可通过系统属性 -Dmuseum.search.simd=false 强制使用标量实现
+ */
+public final class VectorKernels {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorKernels.class);
+
+    private static final VectorKernel KERNEL = selectKernel();
+
+    private VectorKernels() {
+    }
+
+    private static VectorKernel selectKernel() {
+        if (!Boolean.parseBoolean(System.getProperty("museum.search.simd", "true"))) {
+            logger.info("已禁用SIMD向量内核，使用标量实现");
+            return new ScalarVectorKernel();
+        }
+        try {
+            // 反射加载，避免未启用模块时在链接阶段失败
+            VectorKernel kernel = (VectorKernel) Class.forName("com.example.museum.search.kernel.SimdVectorKernel")
+                    .getDeclaredConstructor().newInstance();
+            // 预先调用一次，确认Vector API在当前平台可用
+            kernel.dot(new float[1], 0, new float[1], 0, 1);
+            logger.info("使用SIMD向量内核: {}", kernel.getName());
+            return kernel;
+        } catch (Throwable e) {
+            logger.info("jdk.incubator.vector模块不可用，使用标量向量内核（启动参数添加 --add-modules jdk.incubator.vector 可启用SIMD）");
+            return new ScalarVectorKernel();
+        }
+    }
+
+    /**
+     * 当前使用的内核
+     */
+    public static VectorKernel get() {
+        return KERNEL;
+    }
+
+    public static float dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("特征向量维度不一致: " + a.length + " vs " + b.length);
+        }
+        return KERNEL.dot(a, 0, b, 0, a.length);
+    }
+
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return KERNEL.dot(a, aOffset, b, bOffset, length);
+    }
+
+    public static void dotBatch(float[] query, float[] matrix, int firstRow, int rowCount, int dimension,
+                                float[] out, int outOffset) {
+        KERNEL.dotBatch(query, matrix, firstRow, rowCount, dimension, out, outOffset);
+    }
+
+    public static void dotTile(float[] queries, int queryCount, float[] matrix, int firstRow, int rowCount,
+                               int dimension, float[] out) {
+        KERNEL.dotTile(queries, queryCount, matrix, firstRow, rowCount, dimension, out);
+    }
+
+    public static float squaredL2(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return KERNEL.squaredL2(a, aOffset, b, bOffset, length);
+    }
+
+    public static int dotInt8(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        return KERNEL.dotInt8(a, aOffset, b, bOffset, length);
+    }
+}
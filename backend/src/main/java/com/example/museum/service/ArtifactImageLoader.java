@@ -0,0 +1,64 @@
+package com.example.museum.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * 读取文物图片，供后台计算直方图特征、感知哈希等派生特征
+ * image_url为http(s)地址时下载，否则按相对image-root的路径或绝对路径读取本地文件
+ */
+@Component
+public class ArtifactImageLoader {
+
+    // 文物图片为相对路径时的根目录
+    @Value("${museum.search.histogram.image-root:${storage.location:uploads}}")
+    private String imageRoot;
+
+    @Value("${museum.search.histogram.download-timeout-ms:10000}")
+    private long downloadTimeoutMillis;
+
+    private volatile HttpClient httpClient;
+
+    public byte[] load(String imageUrl) throws IOException, InterruptedException {
+        if (imageUrl.startsWith("http://") || imageUrl.startsWith("https://")) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(imageUrl))
+                    .timeout(Duration.ofMillis(downloadTimeoutMillis))
+                    .GET()
+                    .build();
+            HttpResponse<byte[]> response = client().send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                throw new IOException("下载图片失败，HTTP状态码: " + response.statusCode());
+            }
+            return response.body();
+        }
+        Path path = Paths.get(imageRoot).resolve(imageUrl.replaceFirst("^/+", ""));
+        if (!Files.exists(path)) {
+            path = Paths.get(imageUrl);
+        }
+        return Files.readAllBytes(path);
+    }
+
+    private HttpClient client() {
+        if (httpClient == null) {
+            synchronized (this) {
+                if (httpClient == null) {
+                    httpClient = HttpClient.newBuilder()
+                            .connectTimeout(Duration.ofMillis(downloadTimeoutMillis))
+                            .followRedirects(HttpClient.Redirect.NORMAL)
+                            .build();
+                }
+            }
+        }
+        return httpClient;
+    }
+}
@@ -1,15 +1,25 @@
 package com.example.museum.service;
 
+import com.example.museum.dto.SimilarArtifactDTO;
 import com.example.museum.entity.Artifact;
 import com.example.museum.repository.ArtifactRepository;
+import com.example.museum.search.ArtifactAttributeIndex;
+import com.example.museum.search.ArtifactVectorStore;
+import com.example.museum.search.AttributeFilter;
+import com.example.museum.search.ExactSearchEngine;
+import com.example.museum.search.FilterMask;
+import com.example.museum.search.SearchHit;
+import com.example.museum.search.VectorSearchEngine;
 import com.example.museum.utils.FeatureUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Service
@@ -20,6 +30,45 @@ public class ArtifactService {
     @Autowired
     private ArtifactRepository artifactRepository;
     
+    @Autowired
+    private ExactSearchEngine exactSearchEngine;
+    
+    @Autowired
+    private List<VectorSearchEngine> searchEngines;
+    
+    @Autowired
+    private ArtifactVectorStore artifactVectorStore;
+    
+    @Autowired
+    private ArtifactAttributeIndex artifactAttributeIndex;
+    
+    @Autowired
+    private SearchResultCacheService searchResultCacheService;
+    
+    @Autowired
+    private HistogramIndexService histogramIndexService;
+    
+    // 以图搜图检索引擎: exact(精确) / hnsw(近似) / ivfpq(压缩) / binary(二值编码粗排) / quantized(量化)
+    @Value("${museum.search.engine:exact}")
+    private String searchEngineName;
+    
+    // 是否先用直方图特征粗筛候选集，再只对候选文物计算ResNet相似度
+    @Value("${museum.search.prefilter.enabled:false}")
+    private boolean prefilterEnabled;
+    
+    @Value("${museum.search.prefilter.candidates:500}")
+    private int prefilterCandidates;
+    
+    // 直方图索引覆盖的文物比例低于该值时不粗筛，避免漏掉尚未计算直方图特征的文物
+    @Value("${museum.search.prefilter.min-coverage:0.95}")
+    private double prefilterMinCoverage;
+    
+    private final AtomicLong prefilteredSearches = new AtomicLong();
+    
+    private final AtomicLong batchSearches = new AtomicLong();
+    
+    private final AtomicLong batchQueries = new AtomicLong();
+    
     /**
      * 获取所有文物
      */
@@ -95,61 +144,246 @@ public class ArtifactService {
     /**
      * 查找相似文物
      */
-    public List<Artifact> findSimilarArtifacts(String featureJson, double threshold, int maxResults) {
-        double[] queryFeature = FeatureUtils.stringToFeatures(featureJson);
-        List<Artifact> allArtifacts = artifactRepository.findAll();
-        
-        List<ArtifactSimilarity> similarArtifacts = new ArrayList<>();
-        
-        for (Artifact artifact : allArtifacts) {
-            if (artifact.getFeature() == null || artifact.getFeature().isEmpty()) {
-                continue;
-            }
-            
-            double[] artifactFeature = FeatureUtils.stringToFeatures(artifact.getFeature());
-            double similarity = FeatureUtils.calculateCosineSimilarity(queryFeature, artifactFeature);
-            
-            if (similarity >= threshold) {
-                ArtifactSimilarity artifactSimilarity = new ArtifactSimilarity(artifact, similarity);
-                similarArtifacts.add(artifactSimilarity);
+    public List<SimilarArtifactDTO> findSimilarArtifacts(String featureJson, double threshold, int maxResults) {
+        return findSimilarArtifacts(FeatureUtils.stringToFloatFeatures(featureJson), threshold, maxResults);
+    }
+    
+    /**
+     * 查找相似文物
+     * 由配置的检索引擎在常驻内存的向量库上打分，只按ID查询最终的前maxResults条文物记录
+     * 相同查询的结果由结果缓存直接返回，文物数据变更后自动失效
+     */
+    public List<SimilarArtifactDTO> findSimilarArtifacts(float[] queryFeature, double threshold, int maxResults) {
+        return findSimilarArtifacts(queryFeature, threshold, maxResults, null);
+    }
+    
+    /**
+     * 只在满足属性过滤条件的文物中查找相似文物，过滤在检索引擎打分阶段进行，不会因先取前maxResults条再过滤而丢失结果
+     * @param filter 过滤条件，为null时不过滤
+     */
+    public List<SimilarArtifactDTO> findSimilarArtifacts(float[] queryFeature, double threshold, int maxResults,
+                                                         AttributeFilter filter) {
+        return searchResultCacheService.getOrCompute(queryFeature, threshold, maxResults, filter,
+                () -> searchSimilarArtifacts(queryFeature, threshold, maxResults, filter), this::toSimilarArtifacts);
+    }
+    
+    /**
+     * 查找相似文物，启用粗筛且直方图索引已就绪时先按直方图特征取候选集，再在候选集内按ResNet特征精确排序
+     * 带属性过滤时由检索引擎直接在过滤位图内检索，不再粗筛
+     * @param coarseFeature 查询图片的直方图特征，为null时不粗筛
+     * @param filter 属性过滤条件，为null时不过滤
+     */
+    public List<SimilarArtifactDTO> findSimilarArtifacts(float[] queryFeature, float[] coarseFeature,
+                                                         double threshold, int maxResults, AttributeFilter filter) {
+        if (coarseFeature == null || filter != null || !canPrefilter()) {
+            return findSimilarArtifacts(queryFeature, threshold, maxResults, filter);
+        }
+        PrefilterKey key = new PrefilterKey(coarseFeature, prefilterCandidates, histogramIndexService.getVersion());
+        return searchResultCacheService.getOrCompute(queryFeature, threshold, maxResults, key,
+                () -> {
+                    prefilteredSearches.incrementAndGet();
+                    int[] candidates = histogramIndexService.candidates(coarseFeature, prefilterCandidates);
+                    return artifactVectorStore.searchWithDelta(
+                            limit -> exactSearchEngine.searchCandidates(queryFeature, candidates, threshold, limit),
+                            queryFeature, threshold, maxResults);
+                }, this::toSimilarArtifacts);
+    }
+    
+    /**
+     * 批量查找相似文物，多个查询由精确检索引擎一次分块扫描全部向量，文物记录也只查询一次
+     * 向量非常驻时精确检索不可用，改为逐个用配置的检索引擎检索；批量检索不经过结果缓存和粗筛
+     * @param filter 属性过滤条件，对全部查询生效，为null时不过滤
+     * @return 与queryFeatures顺序一致的相似文物列表
+     */
+    public List<List<SimilarArtifactDTO>> findSimilarArtifactsBatch(float[][] queryFeatures, double threshold,
+                                                                    int maxResults, AttributeFilter filter) {
+        FilterMask mask = artifactAttributeIndex.resolve(filter);
+        List<List<SearchHit>> hits;
+        if (exactSearchEngine.isReady()) {
+            hits = artifactVectorStore.searchBatch(exactSearchEngine, queryFeatures, threshold, maxResults, mask);
+        } else {
+            VectorSearchEngine engine = selectSearchEngine();
+            hits = new ArrayList<>(queryFeatures.length);
+            for (float[] queryFeature : queryFeatures) {
+                hits.add(artifactVectorStore.search(engine, queryFeature, threshold, maxResults, mask));
             }
         }
+        batchSearches.incrementAndGet();
+        batchQueries.addAndGet(queryFeatures.length);
         
-        // 根据相似度排序
-        similarArtifacts.sort((a, b) -> Double.compare(b.getSimilarity(), a.getSimilarity()));
+        Map<Integer, Artifact> artifactsById = findArtifactsById(hits.stream()
+                .flatMap(List::stream).map(SearchHit::getArtifactId).distinct().collect(Collectors.toList()));
+        List<List<SimilarArtifactDTO>> results = new ArrayList<>(hits.size());
+        for (List<SearchHit> queryHits : hits) {
+            results.add(toSimilarArtifacts(queryHits, artifactsById));
+        }
+        return results;
+    }
+    
+    /**
+     * 按直方图特征查找相似文物，用于Python特征提取服务不可用时的降级检索
+     */
+    public List<SimilarArtifactDTO> findSimilarArtifactsByHistogram(float[] histogramFeature, double threshold, int maxResults,
+                                                                    AttributeFilter filter) {
+        return toSimilarArtifacts(histogramIndexService.search(histogramFeature, threshold, maxResults,
+                artifactAttributeIndex.resolve(filter)));
+    }
+    
+    /**
+     * 将近重复索引等其他途径得到的命中结果转换为相似文物列表，保持命中顺序
+     */
+    public List<SimilarArtifactDTO> findArtifactsForHits(List<SearchHit> hits) {
+        return toSimilarArtifacts(hits);
+    }
+    
+    /**
+     * 计算满足属性过滤条件的文物ID位图，filter为null时返回null
+     */
+    public FilterMask resolveFilter(AttributeFilter filter) {
+        return artifactAttributeIndex.resolve(filter);
+    }
+    
+    /**
+     * 是否启用粗筛：文物数量明显多于候选集大小，且直方图索引基本覆盖全部文物时才有意义
+     */
+    public boolean isPrefilterActive() {
+        return prefilterEnabled && canPrefilter();
+    }
+    
+    private boolean canPrefilter() {
+        int total = artifactVectorStore.getSnapshot().size();
+        return prefilterEnabled && exactSearchEngine.isReady() && total > prefilterCandidates
+                && histogramIndexService.size() >= total * prefilterMinCoverage;
+    }
+    
+    private List<SearchHit> searchSimilarArtifacts(float[] queryFeature, double threshold, int maxResults,
+                                                   AttributeFilter filter) {
+        return artifactVectorStore.search(selectSearchEngine(), queryFeature, threshold, maxResults,
+                artifactAttributeIndex.resolve(filter));
+    }
+    
+    /**
+     * 按检索命中的顺序查询文物记录并转换为结果
+     */
+    private List<SimilarArtifactDTO> toSimilarArtifacts(List<SearchHit> hits) {
+        if (hits.isEmpty()) {
+            return new ArrayList<>();
+        }
         
-        // 限制结果数量
-        int resultSize = Math.min(maxResults, similarArtifacts.size());
-        List<Artifact> result = new ArrayList<>(resultSize);
+        List<Integer> topIds = new ArrayList<>(hits.size());
+        for (SearchHit hit : hits) {
+            topIds.add(hit.getArtifactId());
+        }
         
-        for (int i = 0; i < resultSize; i++) {
-            ArtifactSimilarity artifactSimilarity = similarArtifacts.get(i);
-            Artifact artifact = artifactSimilarity.getArtifact();
+        return toSimilarArtifacts(hits, findArtifactsById(topIds));
+    }
+    
+    /**
+     * 只查询命中的文物记录
+     */
+    private Map<Integer, Artifact> findArtifactsById(List<Integer> ids) {
+        Map<Integer, Artifact> artifactsById = new HashMap<>();
+        if (ids.isEmpty()) {
+            return artifactsById;
+        }
+        for (Artifact artifact : artifactRepository.findAllById(ids)) {
+            artifactsById.put(artifact.getId(), artifact);
+        }
+        return artifactsById;
+    }
+    
+    private List<SimilarArtifactDTO> toSimilarArtifacts(List<SearchHit> hits, Map<Integer, Artifact> artifactsById) {
+        List<SimilarArtifactDTO> result = new ArrayList<>(hits.size());
+        for (SearchHit hit : hits) {
+            Artifact artifact = artifactsById.get(hit.getArtifactId());
+            if (artifact == null) {
+                // 向量库加载后文物已被删除
+                continue;
+            }
             
-            // 设置相似度
-            artifact.setSimilarity(String.valueOf(artifactSimilarity.getSimilarity()));
-            result.add(artifact);
+            result.add(SimilarArtifactDTO.of(artifact, hit.getSimilarity()));
         }
         
         return result;
     }
     
-    // 内部类，用于存储文物和相似度
-    private static class ArtifactSimilarity {
-        private final Artifact artifact;
-        private final double similarity;
+    /**
+     * 选择配置的检索引擎，引擎不存在或索引尚未就绪时回退到精确检索
+     */
+    private VectorSearchEngine selectSearchEngine() {
+        for (VectorSearchEngine engine : searchEngines) {
+            if (engine.getName().equals(searchEngineName) && engine.isReady()) {
+                return engine;
+            }
+        }
+        if (!exactSearchEngine.isReady()) {
+            // 向量非常驻且压缩索引尚未构建完成
+            throw new IllegalStateException("以图搜图索引尚未就绪，请稍后再试");
+        }
+        return exactSearchEngine;
+    }
+    
+    private String activeSearchEngineName() {
+        try {
+            return selectSearchEngine().getName();
+        } catch (IllegalStateException e) {
+            return "none";
+        }
+    }
+    
+    /**
+     * 检索引擎统计信息
+     */
+    public Map<String, Object> getSearchEngineStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("configured", searchEngineName);
+        stats.put("active", activeSearchEngineName());
+        Map<String, Object> prefilter = new LinkedHashMap<>();
+        prefilter.put("enabled", prefilterEnabled);
+        prefilter.put("active", isPrefilterActive());
+        prefilter.put("candidates", prefilterCandidates);
+        prefilter.put("searches", prefilteredSearches.get());
+        stats.put("prefilter", prefilter);
+        Map<String, Object> batch = new LinkedHashMap<>();
+        batch.put("searches", batchSearches.get());
+        batch.put("queries", batchQueries.get());
+        stats.put("batch", batch);
+        for (VectorSearchEngine engine : searchEngines) {
+            stats.put(engine.getName(), engine.getStats());
+        }
+        return stats;
+    }
+    
+    /**
+     * 粗筛检索结果的缓存键：候选集由直方图特征、候选数量和直方图索引共同决定，任一变化都不能复用旧结果
+     */
+    private static final class PrefilterKey {
+        private final float[] coarseFeature;
+        private final int candidates;
+        private final long indexVersion;
         
-        public ArtifactSimilarity(Artifact artifact, double similarity) {
-            this.artifact = artifact;
-            this.similarity = similarity;
+        private PrefilterKey(float[] coarseFeature, int candidates, long indexVersion) {
+            this.coarseFeature = coarseFeature;
+            this.candidates = candidates;
+            this.indexVersion = indexVersion;
         }
         
-        public Artifact getArtifact() {
-            return artifact;
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PrefilterKey)) {
+                return false;
+            }
+            PrefilterKey other = (PrefilterKey) o;
+            return candidates == other.candidates && indexVersion == other.indexVersion
+                    && Arrays.equals(coarseFeature, other.coarseFeature);
         }
         
-        public double getSimilarity() {
-            return similarity;
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hash(candidates, indexVersion) + Arrays.hashCode(coarseFeature);
         }
     }
 }
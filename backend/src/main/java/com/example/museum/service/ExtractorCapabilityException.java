@@ -0,0 +1,17 @@
+package com.example.museum.service;
+
+/**
+ * 特征提取服务版本过旧、不支持所请求的接口（字节流或批量请求）时抛出，调用方应回退到旧接口
+ */
+public class ExtractorCapabilityException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ExtractorCapabilityException(String message) {
+        super(message);
+    }
+
+    public ExtractorCapabilityException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,680 @@
+package com.example.museum.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Python特征提取服务的工作进程池
+ * 自动启动模式下在不同端口（service.url为unix:地址时为不同套接字文件）上启动多个feature_extractor.py进程，
+ * 定时健康检查并重启异常进程；
+ * 否则使用feature.extraction.service.url中配置的一个或多个（逗号分隔）外部服务地址。
+ * 每次提取请求路由到未完成请求最少的工作进程，超过对冲延迟仍未返回时向另一个进程发送相同请求，取先返回的结果并取消另一个。
+ * 对冲的重复请求须从FeatureServiceGuard额外取得并发名额，服务繁忙或熔断时不对冲。
+ * 批量请求的耗时随图片数变化，不做对冲，也不计入对冲延迟所依据的平均耗时
+ */
+@Service
+public class ExtractorWorkerPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExtractorWorkerPool.class);
+
+    private final RestTemplate restTemplate;
+
+    private final UnixSocketExtractionClient unixSocketClient;
+
+    @Value("${feature.extraction.service.url:http://localhost:5000}")
+    private String serviceUrl;
+
+    @Value("${feature.extraction.service.autostart:true}")
+    private boolean autoStart;
+
+    @Value("${feature.extraction.service.path:}")
+    private String servicePath;
+
+    // 启动工作进程的Python命令，默认沿用museum.python.command；都未配置时使用虚拟环境，再回退到python/python3
+    @Value("${feature.extraction.worker.python-command:${museum.python.command:}}")
+    private String pythonCommand;
+
+    // 虚拟环境中的Python解释器，相对路径按service.path解析
+    @Value("${museum.python.path:}")
+    private String venvPython;
+
+    // 工作进程数量，0表示按CPU核数自动确定
+    @Value("${feature.extraction.worker.count:0}")
+    private int workerCount;
+
+    @Value("${feature.extraction.worker.base-port:5000}")
+    private int basePort;
+
+    @Value("${feature.extraction.worker.health-interval-ms:5000}")
+    private long healthIntervalMillis;
+
+    @Value("${feature.extraction.worker.max-health-failures:3}")
+    private int maxHealthFailures;
+
+    // 工作进程加载模型的最长时间，期间健康检查失败不会触发重启
+    @Value("${feature.extraction.worker.startup-timeout-ms:120000}")
+    private long startupTimeoutMillis;
+
+    // 进程反复退出时两次重启之间的最长间隔，间隔从健康检查间隔起按2倍递增
+    @Value("${feature.extraction.worker.max-restart-backoff-ms:300000}")
+    private long maxRestartBackoffMillis;
+
+    @Value("${feature.extraction.worker.hedge-enabled:true}")
+    private boolean hedgeEnabled;
+
+    @Value("${feature.extraction.worker.hedge-min-delay-ms:200}")
+    private long hedgeMinDelayMillis;
+
+    // 对冲线程数上限，与特征提取服务的并发上限一致
+    @Value("${feature.extraction.guard.max-limit:64}")
+    private int maxHedgeThreads;
+
+    // 与FeatureServiceGuard相互依赖，延迟注入
+    @Autowired
+    @Lazy
+    private FeatureServiceGuard featureServiceGuard;
+
+    private final List<Worker> workers = new ArrayList<>();
+
+    private ScheduledExecutorService healthExecutor;
+
+    private ExecutorService hedgeExecutor;
+
+    private final AtomicInteger rotation = new AtomicInteger();
+
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong hedgesSkipped = new AtomicLong();
+    private final AtomicLong cancellations = new AtomicLong();
+    private final AtomicLong failovers = new AtomicLong();
+
+    /**
+     * 所有工作进程单张提取请求的平均耗时（纳秒，指数移动平均），用于确定对冲延迟
+     */
+    private volatile double avgLatencyNanos;
+
+    public ExtractorWorkerPool(@Qualifier("extractionRestTemplate") RestTemplate restTemplate,
+                               UnixSocketExtractionClient unixSocketClient) {
+        this.restTemplate = restTemplate;
+        this.unixSocketClient = unixSocketClient;
+    }
+
+    private String resolvedPythonCommand;
+
+    @PostConstruct
+    public void init() {
+        if (autoStart) {
+            resolvedPythonCommand = resolvePythonCommand();
+            logger.info("特征提取工作进程使用的Python命令: {}", resolvedPythonCommand);
+            int cores = Runtime.getRuntime().availableProcessors();
+            int count = workerCount > 0 ? workerCount : Math.max(1, cores / 4);
+            int threadsPerWorker = Math.max(1, cores / count);
+            boolean unix = UnixSocketExtractionClient.isUnixAddress(serviceUrl.trim());
+            for (int i = 0; i < count; i++) {
+                // 多个进程时在套接字文件名后追加序号
+                String address = unix ? (count == 1 ? serviceUrl.trim() : serviceUrl.trim() + "." + i)
+                        : "http://127.0.0.1:" + (basePort + i);
+                Worker worker = new Worker(i, address, threadsPerWorker);
+                workers.add(worker);
+                startProcess(worker);
+            }
+            logger.info("已启动{}个特征提取工作进程，每个进程{}个推理线程", count, threadsPerWorker);
+        } else {
+            int index = 0;
+            for (String url : serviceUrl.split(",")) {
+                if (!url.trim().isEmpty()) {
+                    Worker worker = new Worker(index++, url.trim(), 0);
+                    // 外部服务默认可用，由健康检查更新状态
+                    worker.healthy = true;
+                    workers.add(worker);
+                }
+            }
+        }
+
+        healthExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "extractor-worker-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthExecutor.scheduleWithFixedDelay(this::checkWorkers, 1000, healthIntervalMillis, TimeUnit.MILLISECONDS);
+
+        AtomicInteger hedgeIndex = new AtomicInteger();
+        // 线程数有上限，线程全忙时请求直接在调用线程执行、不对冲
+        hedgeExecutor = new ThreadPoolExecutor(0, Math.max(2, maxHedgeThreads), 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, "extractor-hedge-" + hedgeIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        healthExecutor.shutdownNow();
+        hedgeExecutor.shutdownNow();
+        for (Worker worker : workers) {
+            stopProcess(worker);
+        }
+    }
+
+    /**
+     * 是否为自动启动的本地工作进程
+     */
+    public boolean isManaged() {
+        return autoStart;
+    }
+
+    /**
+     * 是否至少有一个工作进程可用（不发起网络请求）
+     */
+    public boolean isAnyHealthy() {
+        for (Worker worker : workers) {
+            if (worker.healthy) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 在选出的工作进程上执行单张提取请求，超过对冲延迟时向另一个进程发送相同请求
+     * @param call 以工作进程基础地址为参数的请求
+     */
+    public <T> T execute(Function<String, T> call) {
+        return execute(call, true);
+    }
+
+    /**
+     * 在选出的工作进程上执行批量提取请求：不对冲，耗时不计入对冲延迟；连接失败或服务端错误时仍换一个进程重试
+     * @param call 以工作进程基础地址为参数的请求
+     */
+    public <T> T executeBatch(Function<String, T> call) {
+        return execute(call, false);
+    }
+
+    private <T> T execute(Function<String, T> call, boolean single) {
+        Worker primary = select(null);
+        if (!single || !hedgeEnabled || healthyCount() < 2) {
+            return invokeWithFailover(primary, call, single);
+        }
+
+        CompletableFuture<T> first = new CompletableFuture<>();
+        Future<?> firstTask;
+        try {
+            firstTask = hedgeExecutor.submit(() -> run(first, () -> invoke(primary, call, true)));
+        } catch (RejectedExecutionException e) {
+            return invokeWithFailover(primary, call, true);
+        }
+        long delayNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(hedgeMinDelayMillis), (long) (avgLatencyNanos * 2));
+        try {
+            return first.get(delayNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // 请求超过对冲延迟仍未返回，在有空闲并发名额时向另一个工作进程发送相同请求
+            Worker secondary = select(primary);
+            if (secondary == null || !featureServiceGuard.tryAcquireHedge()) {
+                hedgesSkipped.incrementAndGet();
+                return await(first, firstTask);
+            }
+            CompletableFuture<T> second = new CompletableFuture<>();
+            Future<?> secondTask;
+            try {
+                secondTask = hedgeExecutor.submit(() -> {
+                    try {
+                        run(second, () -> invoke(secondary, call, true));
+                    } finally {
+                        featureServiceGuard.releaseHedge();
+                    }
+                });
+            } catch (RejectedExecutionException rejected) {
+                featureServiceGuard.releaseHedge();
+                hedgesSkipped.incrementAndGet();
+                return await(first, firstTask);
+            }
+            hedges.incrementAndGet();
+            try {
+                return await(firstSuccessful(first, second), firstTask, secondTask);
+            } finally {
+                // 取消落败的请求，释放其线程和连接（Unix域套接字请求会立即中断，HTTP请求在读取超时前结束）
+                cancel(firstTask, first);
+                cancel(secondTask, second);
+            }
+        } catch (ExecutionException e) {
+            RuntimeException cause = unwrap(e);
+            Worker other = isRetryable(cause) ? select(primary) : null;
+            if (other == null) {
+                throw cause;
+            }
+            failovers.incrementAndGet();
+            return invoke(other, call, true);
+        } catch (InterruptedException e) {
+            firstTask.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("等待特征提取结果时被中断", e);
+        }
+    }
+
+    private <T> T invokeWithFailover(Worker primary, Function<String, T> call, boolean single) {
+        try {
+            return invoke(primary, call, single);
+        } catch (RuntimeException e) {
+            Worker other = isRetryable(e) ? select(primary) : null;
+            if (other == null) {
+                throw e;
+            }
+            failovers.incrementAndGet();
+            return invoke(other, call, single);
+        }
+    }
+
+    private static <T> void run(CompletableFuture<T> future, Supplier<T> call) {
+        try {
+            future.complete(call.get());
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    private void cancel(Future<?> task, CompletableFuture<?> future) {
+        if (!future.isDone() && task.cancel(true)) {
+            cancellations.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param single 是否为单张提取请求，只有单张请求的耗时计入平均耗时
+     */
+    private <T> T invoke(Worker worker, Function<String, T> call, boolean single) {
+        worker.outstanding.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            T result = call.apply(worker.url);
+            long latency = System.nanoTime() - start;
+            worker.requests.incrementAndGet();
+            if (single) {
+                worker.avgLatencyNanos = worker.avgLatencyNanos == 0 ? latency
+                        : worker.avgLatencyNanos * 0.9 + latency * 0.1;
+                avgLatencyNanos = avgLatencyNanos == 0 ? latency : avgLatencyNanos * 0.9 + latency * 0.1;
+            } else {
+                worker.batchRequests.incrementAndGet();
+            }
+            return result;
+        } catch (RuntimeException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                // 对冲中落败被取消的请求，不代表工作进程异常
+                throw e;
+            }
+            worker.errors.incrementAndGet();
+            if (hasCause(e, ResourceAccessException.class)) {
+                // 连接失败时立即标记为不可用，等待健康检查恢复
+                worker.healthy = false;
+            }
+            throw e;
+        } finally {
+            worker.outstanding.decrementAndGet();
+        }
+    }
+
+    /**
+     * 选择未完成请求最少的可用工作进程，相同时轮流选择
+     * @param exclude 排除的工作进程
+     * @return 没有其他可选进程时，exclude不为null则返回null，否则返回任意一个进程
+     */
+    private Worker select(Worker exclude) {
+        int size = workers.size();
+        int offset = Math.floorMod(rotation.getAndIncrement(), size);
+        Worker best = null;
+        for (int i = 0; i < size; i++) {
+            Worker worker = workers.get((offset + i) % size);
+            if (worker == exclude || !worker.healthy) {
+                continue;
+            }
+            if (best == null || worker.outstanding.get() < best.outstanding.get()) {
+                best = worker;
+            }
+        }
+        if (best == null && exclude == null) {
+            // 没有健康的进程时仍然尝试，由调用方处理失败
+            best = workers.get(offset);
+        }
+        return best;
+    }
+
+    private int healthyCount() {
+        int count = 0;
+        for (Worker worker : workers) {
+            if (worker.healthy) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private <T> CompletableFuture<T> firstSuccessful(CompletableFuture<T> first, CompletableFuture<T> second) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        first.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+            } else if (failures.incrementAndGet() == 2) {
+                result.completeExceptionally(error);
+            }
+        });
+        second.whenComplete((value, error) -> {
+            if (error == null) {
+                if (result.complete(value)) {
+                    hedgeWins.incrementAndGet();
+                }
+            } else if (failures.incrementAndGet() == 2) {
+                result.completeExceptionally(error);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 等待结果，调用线程被中断时取消仍在执行的请求
+     */
+    private static <T> T await(CompletableFuture<T> future, Future<?>... tasks) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            for (Future<?> task : tasks) {
+                task.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("等待特征提取结果时被中断", e);
+        }
+    }
+
+    private static RuntimeException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        while (cause instanceof java.util.concurrent.CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof RuntimeException ? (RuntimeException) cause
+                : new RuntimeException("特征提取失败: " + cause.getMessage(), cause);
+    }
+
+    /**
+     * 连接失败和服务端错误可以换一个工作进程重试，客户端错误不重试
+     */
+    private static boolean isRetryable(RuntimeException e) {
+        return hasCause(e, ResourceAccessException.class) || hasCause(e, HttpServerErrorException.class);
+    }
+
+    private static boolean hasCause(Throwable e, Class<? extends Throwable> type) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void checkWorkers() {
+        for (Worker worker : workers) {
+            try {
+                checkWorker(worker);
+            } catch (Exception e) {
+                logger.warn("特征提取工作进程健康检查异常 - {}: {}", worker.url, e.getMessage());
+            }
+        }
+    }
+
+    private void checkWorker(Worker worker) {
+        if (autoStart && (worker.process == null || !worker.process.isAlive())) {
+            worker.healthy = false;
+            restartProcess(worker, "特征提取工作进程已退出");
+            return;
+        }
+
+        boolean ok = probe(worker.url);
+        if (ok) {
+            if (!worker.healthy) {
+                logger.info("特征提取工作进程可用 - {}", worker.url);
+            }
+            worker.healthy = true;
+            worker.everHealthy = true;
+            worker.healthFailures = 0;
+            worker.consecutiveRestarts = 0;
+            return;
+        }
+
+        worker.healthFailures++;
+        boolean starting = !worker.everHealthy
+                && System.currentTimeMillis() - worker.startedAt < startupTimeoutMillis;
+        if (starting) {
+            return;
+        }
+        if (worker.healthy) {
+            logger.warn("特征提取工作进程健康检查失败 - {}", worker.url);
+        }
+        worker.healthy = false;
+        if (autoStart && worker.healthFailures >= maxHealthFailures) {
+            restartProcess(worker, "特征提取工作进程连续" + worker.healthFailures + "次健康检查失败");
+        }
+    }
+
+    /**
+     * 重启工作进程。进程在恢复健康前反复退出时（如缺少依赖、端口被占用）按指数退避，
+     * 避免每次健康检查都重新拉起进程并重复加载模型
+     */
+    private void restartProcess(Worker worker, String reason) {
+        long now = System.currentTimeMillis();
+        if (now < worker.nextRestartAt) {
+            return;
+        }
+        long backoff = worker.consecutiveRestarts == 0 ? 0
+                : Math.min(maxRestartBackoffMillis, healthIntervalMillis << Math.min(worker.consecutiveRestarts, 16));
+        if (backoff > 0 && worker.nextRestartAt == 0) {
+            // 首次进入退避，等待后再重启
+            worker.nextRestartAt = now + backoff;
+            logger.warn("{}，{} ms后重启 - {}, 连续重启: {} 次", reason, backoff, worker.url, worker.consecutiveRestarts);
+            return;
+        }
+        logger.warn("{}，正在重启 - {}", reason, worker.url);
+        worker.nextRestartAt = 0;
+        worker.consecutiveRestarts++;
+        stopProcess(worker);
+        startProcess(worker);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private boolean probe(String url) {
+        if (UnixSocketExtractionClient.isUnixAddress(url)) {
+            return unixSocketClient.isHealthy(url);
+        }
+        try {
+            ResponseEntity<Map> response = restTemplate.getForEntity(url + "/health", Map.class);
+            return response.getStatusCode() == HttpStatus.OK && response.getBody() != null
+                    && "ok".equals(response.getBody().get("status"));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 确定启动工作进程的Python命令：显式配置的命令（路径不存在时忽略）、虚拟环境中的解释器、系统默认命令
+     */
+    private String resolvePythonCommand() {
+        String configured = pythonCommand.trim();
+        if (!configured.isEmpty()) {
+            File file = new File(configured);
+            if (!file.isAbsolute() || file.exists()) {
+                return configured;
+            }
+            logger.warn("配置的Python命令不存在，忽略: {}", configured);
+        }
+        if (!venvPython.trim().isEmpty()) {
+            File venv = new File(venvPython.trim());
+            if (!venv.isAbsolute() && !servicePath.isEmpty()) {
+                venv = new File(servicePath, venvPython.trim());
+            }
+            for (String candidate : new String[]{venv.getPath(), venv.getPath() + ".exe"}) {
+                if (new File(candidate).isFile()) {
+                    return new File(candidate).getAbsolutePath();
+                }
+            }
+        }
+        return System.getProperty("os.name").toLowerCase().startsWith("windows") ? "python" : "python3";
+    }
+
+    private void startProcess(Worker worker) {
+        String command = resolvedPythonCommand;
+        boolean unix = UnixSocketExtractionClient.isUnixAddress(worker.url);
+        String label = unix ? worker.url.substring(UnixSocketExtractionClient.SCHEME.length())
+                : String.valueOf(basePort + worker.index);
+        try {
+            ProcessBuilder pb = new ProcessBuilder(command, "feature_extractor.py");
+            if (!servicePath.isEmpty()) {
+                pb.directory(new File(servicePath));
+            }
+            if (unix) {
+                pb.environment().put("FEATURE_SOCKET", label);
+            } else {
+                pb.environment().put("FEATURE_HOST", "127.0.0.1");
+                pb.environment().put("FEATURE_PORT", label);
+            }
+            pb.environment().put("TORCH_THREADS", String.valueOf(worker.threads));
+            pb.redirectErrorStream(true);
+
+            Process process = pb.start();
+            worker.process = process;
+            worker.startedAt = System.currentTimeMillis();
+            worker.everHealthy = false;
+            worker.healthFailures = 0;
+            worker.restarts.incrementAndGet();
+
+            Thread reader = new Thread(() -> {
+                try (BufferedReader in = new BufferedReader(
+                        new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        logger.info("Python服务[{}]: {}", label, line);
+                    }
+                } catch (Exception e) {
+                    logger.debug("读取Python服务输出结束 - {}", label);
+                }
+            }, "extractor-worker-output-" + worker.index);
+            reader.setDaemon(true);
+            reader.start();
+        } catch (Exception e) {
+            logger.error("启动特征提取工作进程失败 - {}, 原因: {}", label, e.getMessage());
+        }
+    }
+
+    private void stopProcess(Worker worker) {
+        Process process = worker.process;
+        if (process == null || !process.isAlive()) {
+            return;
+        }
+        process.destroy();
+        try {
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroyForcibly();
+        }
+    }
+
+    /**
+     * 工作进程池统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("managed", autoStart);
+        stats.put("hedgeEnabled", hedgeEnabled);
+        stats.put("hedges", hedges.get());
+        stats.put("hedgeWins", hedgeWins.get());
+        stats.put("hedgesSkipped", hedgesSkipped.get());
+        stats.put("cancellations", cancellations.get());
+        stats.put("failovers", failovers.get());
+        List<Map<String, Object>> workerStats = new ArrayList<>();
+        for (Worker worker : workers) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("url", worker.url);
+            item.put("healthy", worker.healthy);
+            item.put("outstanding", worker.outstanding.get());
+            item.put("requests", worker.requests.get());
+            item.put("batchRequests", worker.batchRequests.get());
+            item.put("errors", worker.errors.get());
+            item.put("avgLatencyMillis", worker.avgLatencyNanos / 1_000_000.0);
+            if (autoStart) {
+                Process process = worker.process;
+                item.put("pid", process != null && process.isAlive() ? process.pid() : null);
+                item.put("starts", worker.restarts.get());
+                item.put("consecutiveRestarts", worker.consecutiveRestarts);
+            }
+            workerStats.add(item);
+        }
+        stats.put("workers", workerStats);
+        return stats;
+    }
+
+    private static final class Worker {
+        private final int index;
+        private final String url;
+        private final int threads;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong batchRequests = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicInteger restarts = new AtomicInteger();
+        private volatile boolean healthy;
+        private volatile double avgLatencyNanos;
+        private volatile Process process;
+        private volatile long startedAt;
+        // 以下字段只在健康检查线程中访问
+        private boolean everHealthy;
+        private int healthFailures;
+        // 恢复健康前的连续重启次数和下次允许重启的时间
+        private volatile int consecutiveRestarts;
+        private long nextRestartAt;
+
+        private Worker(int index, String url, int threads) {
+            this.index = index;
+            this.url = url;
+            this.threads = threads;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.example.museum.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 查询图片特征缓存
+ * 以上传图片内容的SHA-256为键缓存归一化后的特征向量，重复提交同一张图片时跳过ResNet50特征提取；
+ * 同一图片的并发请求只会触发一次提取，其余请求等待同一个结果
+ */
+@Service
+public class FeatureCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeatureCacheService.class);
+
+    @Value("${museum.search.feature-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${museum.search.feature-cache.max-entries:1000}")
+    private int maxEntries;
+
+    @Value("${museum.search.feature-cache.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    // 单次特征提取的读超时，合并的请求据此确定等待上限
+    @Value("${museum.feature.extraction.timeout:30}")
+    private int extractionTimeoutSeconds;
+
+    /**
+     * 按访问顺序排列的LRU缓存，所有访问都在锁内进行
+     */
+    private final LinkedHashMap<String, CacheEntry> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * 正在提取中的请求，用于合并同一图片的并发提取
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<float[]>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong waitTimeouts = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong extractions = new AtomicLong();
+    private final AtomicLong extractionNanos = new AtomicLong();
+
+    /**
+     * 获取图片特征，缓存未命中时调用extractor提取
+     * @param imageData 图片字节
+     * @param extractor 实际的特征提取逻辑
+     * @return L2归一化后的特征向量（调用方可自由修改的副本）
+     */
+    public float[] getOrExtract(byte[] imageData, Callable<float[]> extractor) throws IOException {
+        if (!enabled) {
+            return call(extractor);
+        }
+        String key = sha256(imageData);
+
+        float[] cached = lookup(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            logger.debug("查询特征缓存命中: {}", key);
+            return cached.clone();
+        }
+
+        CompletableFuture<float[]> future = new CompletableFuture<>();
+        CompletableFuture<float[]> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            // 同一图片已在提取中，等待其结果
+            coalesced.incrementAndGet();
+            return await(existing).clone();
+        }
+
+        misses.incrementAndGet();
+        try {
+            long start = System.nanoTime();
+            float[] features = normalize(call(extractor));
+            extractions.incrementAndGet();
+            extractionNanos.addAndGet(System.nanoTime() - start);
+            store(key, features);
+            future.complete(features);
+            return features.clone();
+        } catch (Throwable e) {
+            // 包括Error在内的任何失败都要通知等待中的合并请求，否则它们会一直等待
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * 批量获取图片特征：命中缓存的图片直接返回，其余图片去重后交给extractor一次批量提取并写入缓存
+     * @param images 图片字节列表
+     * @param extractor 批量提取逻辑，返回与输入顺序一致的结果
+     * @return 与images顺序一致的结果，特征为L2归一化后调用方可自由修改的副本
+     */
+    public List<FeatureExtractionService.BatchResult> getOrExtractBatch(List<byte[]> images,
+            Function<List<byte[]>, List<FeatureExtractionService.BatchResult>> extractor) {
+        String[] keys = new String[images.size()];
+        float[][] features = new float[images.size()][];
+        // 未命中的图片按内容去重，值为在待提取列表中的位置
+        Map<String, Integer> pending = new HashMap<>();
+        List<byte[]> missed = new ArrayList<>();
+        for (int i = 0; i < images.size(); i++) {
+            byte[] imageData = images.get(i);
+            keys[i] = sha256(imageData);
+            float[] cached = enabled ? lookup(keys[i]) : null;
+            if (cached != null) {
+                hits.incrementAndGet();
+                features[i] = cached;
+            } else if (pending.containsKey(keys[i])) {
+                coalesced.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+                pending.put(keys[i], missed.size());
+                missed.add(imageData);
+            }
+        }
+
+        List<FeatureExtractionService.BatchResult> extracted = new ArrayList<>(missed.size());
+        if (!missed.isEmpty()) {
+            long start = System.nanoTime();
+            for (FeatureExtractionService.BatchResult result : extractor.apply(missed)) {
+                extracted.add(result.getFeatures() == null ? result
+                        : new FeatureExtractionService.BatchResult(normalize(result.getFeatures()), null));
+            }
+            extractions.addAndGet(missed.size());
+            extractionNanos.addAndGet(System.nanoTime() - start);
+            if (enabled) {
+                for (Map.Entry<String, Integer> entry : pending.entrySet()) {
+                    float[] vector = extracted.get(entry.getValue()).getFeatures();
+                    if (vector != null) {
+                        store(entry.getKey(), vector);
+                    }
+                }
+            }
+        }
+
+        List<FeatureExtractionService.BatchResult> results = new ArrayList<>(images.size());
+        for (int i = 0; i < images.size(); i++) {
+            FeatureExtractionService.BatchResult result = features[i] != null
+                    ? new FeatureExtractionService.BatchResult(features[i], null)
+                    : extracted.get(pending.get(keys[i]));
+            results.add(result.getFeatures() == null ? result
+                    : new FeatureExtractionService.BatchResult(result.getFeatures().clone(), null));
+        }
+        return results;
+    }
+
+    private float[] lookup(String key) {
+        synchronized (cache) {
+            CacheEntry entry = cache.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt < System.currentTimeMillis()) {
+                cache.remove(key);
+                evictions.incrementAndGet();
+                return null;
+            }
+            return entry.features;
+        }
+    }
+
+    private void store(String key, float[] features) {
+        synchronized (cache) {
+            cache.put(key, new CacheEntry(features, System.currentTimeMillis() + ttlSeconds * 1000));
+            while (cache.size() > maxEntries) {
+                String eldest = cache.keySet().iterator().next();
+                cache.remove(eldest);
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> getStats() {
+        long extractionCount = extractions.get();
+        long avgExtractionMillis = extractionCount == 0 ? 0 :
+                extractionNanos.get() / extractionCount / 1_000_000;
+        int size;
+        synchronized (cache) {
+            size = cache.size();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("size", size);
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("waitTimeouts", waitTimeouts.get());
+        stats.put("evictions", evictions.get());
+        stats.put("avgExtractionMillis", avgExtractionMillis);
+        // 命中和合并的请求都省去了一次提取
+        stats.put("savedMillis", (hits.get() + coalesced.get()) * avgExtractionMillis);
+        return stats;
+    }
+
+    /**
+     * 等待同一图片的提取结果：负责提取的请求在批量合并中最多等待约两倍提取超时，这里再留一倍余量
+     */
+    private float[] await(CompletableFuture<float[]> future) throws IOException {
+        long timeoutMillis = TimeUnit.SECONDS.toMillis(extractionTimeoutSeconds) * 3;
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            waitTimeouts.incrementAndGet();
+            throw new ResourceAccessException("等待同一图片的特征提取结果超时: " + timeoutMillis + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待特征提取结果时被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException("特征提取失败: " + cause.getMessage(), cause);
+        }
+    }
+
+    private static float[] call(Callable<float[]> extractor) throws IOException {
+        try {
+            return extractor.call();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("特征提取失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * L2归一化，使缓存中的向量与库中向量的点积即为余弦相似度
+     */
+    private static float[] normalize(float[] features) {
+        double norm = 0.0;
+        for (float value : features) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        if (norm == 0.0 || Math.abs(norm - 1.0) < 1e-6) {
+            return features;
+        }
+        float[] normalized = new float[features.length];
+        for (int i = 0; i < features.length; i++) {
+            normalized[i] = (float) (features[i] / norm);
+        }
+        return normalized;
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+
+    private static final class CacheEntry {
+        private final float[] features;
+        private final long expiresAt;
+
+        private CacheEntry(float[] features, long expiresAt) {
+            this.features = features;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
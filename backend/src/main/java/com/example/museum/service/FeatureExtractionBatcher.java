@@ -0,0 +1,267 @@
+package com.example.museum.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 特征提取请求微批处理
+ * 把并发到达的图像在linger时间内或凑满maxBatchSize张后合并为一次批量请求，
+ * ResNet50在CPU上批量推理的单张成本远低于逐张推理；等待时间内只有一张时交还调用线程直接走单张接口。
+ * 调用方在FeatureServiceGuard的并发名额内等待结果，实际并发由其AIMD上限约束，发送线程数只需不少于该上限
+ */
+@Service
+public class FeatureExtractionBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeatureExtractionBatcher.class);
+
+    /**
+     * 批次中只有一个请求时的结果标记，调用线程收到后自行走单张接口
+     */
+    private static final float[] SEND_DIRECTLY = new float[0];
+
+    @Autowired
+    private FeatureExtractionService featureExtractionService;
+
+    @Value("${feature.extraction.batch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${feature.extraction.batch.max-size:8}")
+    private int maxBatchSize;
+
+    @Value("${feature.extraction.batch.linger-ms:5}")
+    private long lingerMillis;
+
+    // 同时发送中的批次数量上限，0表示与特征提取服务的并发上限一致
+    @Value("${feature.extraction.batch.max-concurrent-batches:0}")
+    private int maxConcurrentBatches;
+
+    @Value("${feature.extraction.guard.max-limit:64}")
+    private int guardMaxLimit;
+
+    @Value("${museum.feature.extraction.timeout:30}")
+    private int readTimeoutSeconds;
+
+    private final BlockingQueue<PendingExtraction> queue = new LinkedBlockingQueue<>();
+
+    private Thread dispatcher;
+
+    private ExecutorService senders;
+
+    private volatile boolean batchSupported = true;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong batchedImages = new AtomicLong();
+    private final AtomicLong singleRequests = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicInteger maxObservedBatch = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        AtomicInteger senderIndex = new AtomicInteger();
+        int senderThreads = maxConcurrentBatches > 0 ? maxConcurrentBatches : guardMaxLimit;
+        // 固定线程池按需创建线程，上限较大时空闲也不会占用线程
+        senders = Executors.newFixedThreadPool(Math.max(1, senderThreads), r -> {
+            Thread thread = new Thread(r, "feature-batch-sender-" + senderIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher = new Thread(this::dispatchLoop, "feature-batch-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        logger.info("特征提取微批处理已启用 - 最大批量: {}, 等待时间: {} ms, 发送线程: {}",
+                maxBatchSize, lingerMillis, Math.max(1, senderThreads));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+            senders.shutdownNow();
+        }
+    }
+
+    /**
+     * 提取单张图像的特征，与同时到达的其他请求合并发送
+     * @throws ExtractorCapabilityException 如果Python服务不支持字节流请求
+     */
+    public float[] extract(byte[] imageData) {
+        if (!enabled || !batchSupported) {
+            singleRequests.incrementAndGet();
+            return featureExtractionService.extractFeatures(imageData);
+        }
+        PendingExtraction pending = new PendingExtraction(imageData);
+        queue.add(pending);
+        return await(pending);
+    }
+
+    private void dispatchLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                List<PendingExtraction> batch = new ArrayList<>(maxBatchSize);
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingExtraction next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                if (batch.size() == 1) {
+                    batch.get(0).future.complete(SEND_DIRECTLY);
+                } else {
+                    senders.execute(() -> send(batch));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.error("特征提取批次分发失败: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void send(List<PendingExtraction> batch) {
+        // 已超时返回的请求不再发送
+        batch.removeIf(pending -> pending.future.isDone());
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (batch.size() == 1) {
+            batch.get(0).future.complete(SEND_DIRECTLY);
+            return;
+        }
+        if (!batchSupported) {
+            sendIndividually(batch);
+            return;
+        }
+        List<byte[]> images = new ArrayList<>(batch.size());
+        for (PendingExtraction pending : batch) {
+            images.add(pending.imageData);
+        }
+        try {
+            List<FeatureExtractionService.BatchResult> results = featureExtractionService.extractFeaturesBatch(images);
+            batches.incrementAndGet();
+            batchedImages.addAndGet(batch.size());
+            maxObservedBatch.accumulateAndGet(batch.size(), Math::max);
+            for (int i = 0; i < batch.size(); i++) {
+                FeatureExtractionService.BatchResult result = results.get(i);
+                if (result.getFeatures() != null) {
+                    batch.get(i).future.complete(result.getFeatures());
+                } else {
+                    batch.get(i).future.completeExceptionally(
+                            new IllegalArgumentException("特征提取失败: " + result.getError()));
+                }
+            }
+        } catch (ExtractorCapabilityException e) {
+            // 回退到单张接口
+            batchSupported = false;
+            sendIndividually(batch);
+        } catch (RuntimeException e) {
+            for (PendingExtraction pending : batch) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void sendIndividually(List<PendingExtraction> batch) {
+        for (PendingExtraction pending : batch) {
+            singleRequests.incrementAndGet();
+            try {
+                pending.future.complete(featureExtractionService.extractFeatures(pending.imageData));
+            } catch (RuntimeException e) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * 等待批次结果，最长为微批等待时间加两倍读取超时（批量请求失败后会换一个工作进程重试一次），
+     * 超时后让该请求失败并释放调用方持有的并发名额，迟到的结果被丢弃
+     */
+    private float[] await(PendingExtraction pending) {
+        long timeoutMillis = lingerMillis + TimeUnit.SECONDS.toMillis(readTimeoutSeconds) * 2;
+        float[] result;
+        try {
+            result = pending.future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.incrementAndGet();
+            queue.remove(pending);
+            ResourceAccessException timeout = new ResourceAccessException(
+                    "等待特征提取结果超时: " + timeoutMillis + " ms");
+            if (pending.future.completeExceptionally(timeout)) {
+                throw timeout;
+            }
+            // 超时的同时结果已到达
+            return await(pending);
+        } catch (InterruptedException e) {
+            pending.future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("等待特征提取结果时被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException("特征提取失败: " + cause.getMessage(), cause);
+        }
+        if (result == SEND_DIRECTLY) {
+            singleRequests.incrementAndGet();
+            return featureExtractionService.extractFeatures(pending.imageData);
+        }
+        return result;
+    }
+
+    /**
+     * 微批处理统计信息
+     */
+    public Map<String, Object> getStats() {
+        long batchCount = batches.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("batchSupported", batchSupported);
+        stats.put("maxBatchSize", maxBatchSize);
+        stats.put("lingerMillis", lingerMillis);
+        stats.put("queued", queue.size());
+        stats.put("batches", batchCount);
+        stats.put("batchedImages", batchedImages.get());
+        stats.put("avgBatchSize", batchCount == 0 ? 0 : (double) batchedImages.get() / batchCount);
+        stats.put("maxObservedBatch", maxObservedBatch.get());
+        stats.put("singleRequests", singleRequests.get());
+        stats.put("timeouts", timeouts.get());
+        return stats;
+    }
+
+    private static final class PendingExtraction {
+        private final byte[] imageData;
+        private final CompletableFuture<float[]> future = new CompletableFuture<>();
+
+        private PendingExtraction(byte[] imageData) {
+            this.imageData = imageData;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.example.museum.service;
 
+import com.example.museum.config.InstrumentedConnectionManager;
+import com.example.museum.search.kernel.VectorKernels;
+import com.example.museum.utils.FeatureUtils;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.http.client.methods.CloseableHttpResponse;
@@ -13,15 +16,28 @@ import org.ejml.simple.SimpleMatrix;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import javax.annotation.PostConstruct;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -41,14 +57,42 @@ public class FeatureExtractionService {
     @Autowired
     private ObjectMapper objectMapper;
     
-    public FeatureExtractionService() {
-        this.restTemplate = new RestTemplate();
+    // 特征响应格式: binary(小端float32二进制) / json(文本格式，便于调试)
+    @Value("${feature.extraction.response-format:binary}")
+    private String responseFormat;
+    
+    @Value("${museum.feature.model-version:1}")
+    private int modelVersion;
+    
+    /**
+     * Python服务是否支持直接接收图像字节，收到不支持的响应后置为false
+     */
+    private volatile boolean byteTransferSupported = true;
+    
+    /**
+     * Python服务是否提供批量提取端点
+     */
+    private volatile boolean batchSupported = true;
+    
+    @Autowired
+    private InstrumentedConnectionManager extractionConnectionManager;
+    
+    @Autowired
+    private ExtractorWorkerPool workerPool;
+    
+    @Autowired
+    private UnixSocketExtractionClient unixSocketClient;
+    
+    public FeatureExtractionService(@Qualifier("extractionRestTemplate") RestTemplate restTemplate) {
+        this.restTemplate = restTemplate;
     }
     
     @PostConstruct
     public void init() {
-        // 应用启动时检查Python服务是否可用
-        checkPythonService();
+        // 应用启动时检查Python服务是否可用，自动启动的工作进程由进程池等待就绪
+        if (!workerPool.isManaged()) {
+            checkPythonService();
+        }
     }
     
     private void checkPythonService() {
@@ -84,23 +128,175 @@ public class FeatureExtractionService {
         requestBody.put("image_path", imagePath);
         
         // 设置请求头
-        HttpHeaders headers = new HttpHeaders();
+        HttpHeaders headers = requestHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
         
         // 创建HTTP实体
         HttpEntity<Map<String, String>> requestEntity = new HttpEntity<>(requestBody, headers);
         
+        return workerPool.execute(baseUrl -> UnixSocketExtractionClient.isUnixAddress(baseUrl)
+                ? extractOverSocket(baseUrl, readImageFile(imagePath))
+                : requestExtraction(baseUrl, requestEntity));
+    }
+    
+    /**
+     * 直接将图像字节作为请求体发送给Python服务提取特征，无需临时文件和共享文件系统
+     * @param imageData 图像字节数组
+     * @return 提取的特征向量
+     * @throws ExtractorCapabilityException 如果Python服务版本过旧，不支持字节流请求
+     */
+    public float[] extractFeatures(byte[] imageData) {
+        if (!byteTransferSupported) {
+            throw new ExtractorCapabilityException("特征提取服务不支持字节流请求");
+        }
+        logger.info("正在从图像字节提取特征，大小: {} 字节", imageData.length);
+        
+        HttpHeaders headers = requestHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        HttpEntity<byte[]> requestEntity = new HttpEntity<>(imageData, headers);
+        
+        try {
+            return workerPool.execute(baseUrl -> UnixSocketExtractionClient.isUnixAddress(baseUrl)
+                    ? extractOverSocket(baseUrl, imageData)
+                    : requestExtraction(baseUrl, requestEntity));
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof HttpClientErrorException.BadRequest
+                    || e.getCause() instanceof HttpClientErrorException.UnsupportedMediaType) {
+                // 旧版Python服务只接受JSON格式的图像路径，后续请求直接走临时文件方式
+                byteTransferSupported = false;
+                logger.warn("特征提取服务不支持字节流请求，已切换为临时文件方式");
+                throw new ExtractorCapabilityException("特征提取服务不支持字节流请求", e);
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * 批量提取图像特征，多张图像在Python服务中合并为一次模型推理
+     * @param images 图像字节数组列表
+     * @return 与输入顺序一致的提取结果，单张图像失败不影响其他图像
+     * @throws ExtractorCapabilityException 如果Python服务版本过旧，不支持批量请求
+     */
+    public List<BatchResult> extractFeaturesBatch(List<byte[]> images) {
+        if (!batchSupported) {
+            throw new ExtractorCapabilityException("特征提取服务不支持批量请求");
+        }
+        logger.info("正在批量提取特征，图像数量: {}", images.size());
+        
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        for (int i = 0; i < images.size(); i++) {
+            String filename = "image" + i;
+            body.add("images", new ByteArrayResource(images.get(i)) {
+                @Override
+                public String getFilename() {
+                    return filename;
+                }
+            });
+        }
+        HttpHeaders headers = requestHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        
+        HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
+        try {
+            return workerPool.executeBatch(baseUrl -> UnixSocketExtractionClient.isUnixAddress(baseUrl)
+                    ? decodeBinaryBatch(unixSocketClient.extractBatch(baseUrl, images), images.size())
+                    : parseBatchResponse(restTemplate.exchange(baseUrl + "/extract_batch",
+                            HttpMethod.POST, requestEntity, byte[].class), images.size()));
+        } catch (HttpClientErrorException.NotFound | HttpClientErrorException.MethodNotAllowed e) {
+            // 旧版Python服务没有批量端点，后续请求逐张提取
+            batchSupported = false;
+            logger.warn("特征提取服务不支持批量请求，已切换为逐张提取");
+            throw new ExtractorCapabilityException("特征提取服务不支持批量请求", e);
+        } catch (Exception e) {
+            logger.error("调用特征提取服务批量端点时发生错误: " + e.getMessage());
+            throw new RuntimeException("批量特征提取失败: " + e.getMessage(), e);
+        }
+    }
+    
+    private List<BatchResult> parseBatchResponse(ResponseEntity<byte[]> response, int expectedCount) {
+        if (response.getBody() == null) {
+            throw new RuntimeException("批量特征提取服务返回空响应");
+        }
+        if (isBinary(response)) {
+            return decodeBinaryBatch(response.getBody(), expectedCount);
+        }
+        
+        try {
+            JsonNode rootNode = objectMapper.readTree(response.getBody());
+            JsonNode resultsNode = rootNode.get("results");
+            if (!rootNode.path("success").asBoolean() || resultsNode == null
+                    || !resultsNode.isArray() || resultsNode.size() != expectedCount) {
+                throw new RuntimeException("批量特征提取服务返回错误响应: " + rootNode.path("error").asText("未知错误"));
+            }
+            List<BatchResult> results = new ArrayList<>(expectedCount);
+            for (JsonNode item : resultsNode) {
+                if (item.path("success").asBoolean() && item.path("featureValues").isArray()) {
+                    results.add(new BatchResult(parseFeatureValues(item.get("featureValues")), null));
+                } else {
+                    results.add(new BatchResult(null, item.path("error").asText("未知错误")));
+                }
+            }
+            return results;
+        } catch (IOException e) {
+            throw new RuntimeException("批量特征提取响应解析失败: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * 批量提取中单张图像的结果，features与error二者有且只有一个不为null
+     */
+    public static final class BatchResult {
+        private final float[] features;
+        private final String error;
+        
+        public BatchResult(float[] features, String error) {
+            this.features = features;
+            this.error = error;
+        }
+        
+        public float[] getFeatures() {
+            return features;
+        }
+        
+        public String getError() {
+            return error;
+        }
+    }
+    
+    /**
+     * 通过Unix域套接字提取特征，响应固定为二进制格式
+     */
+    private float[] extractOverSocket(String address, byte[] imageData) {
+        return decodeBinaryFeatures(unixSocketClient.extract(address, imageData));
+    }
+    
+    private static byte[] readImageFile(String imagePath) {
+        try {
+            return Files.readAllBytes(Paths.get(imagePath));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("无法读取图像文件: " + imagePath, e);
+        }
+    }
+    
+    /**
+     * 发送特征提取请求并解析响应
+     */
+    private float[] requestExtraction(String baseUrl, HttpEntity<?> requestEntity) {
         try {
             // 发送POST请求到Python服务
-            ResponseEntity<String> response = restTemplate.exchange(
-                extractionServiceUrl + "/extract",
+            ResponseEntity<byte[]> response = restTemplate.exchange(
+                baseUrl + "/extract",
                 HttpMethod.POST,
                 requestEntity,
-                String.class  // 获取原始字符串响应
+                byte[].class  // 获取原始响应字节，按Content-Type解析
             );
             
             if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                String responseBody = response.getBody();
+                if (isBinary(response)) {
+                    // 二进制格式直接按小端float32解码
+                    return decodeBinaryFeatures(response.getBody());
+                }
+                String responseBody = new String(response.getBody(), StandardCharsets.UTF_8);
                 
                 // 记录接收到的原始JSON
                 // 避免日志过大，仅记录部分内容
@@ -118,26 +314,7 @@ public class FeatureExtractionService {
                         logger.info("[Java] 特征值数组节点类型: {}, 元素数: {}", 
                             featureValuesNode.getNodeType(), featureValuesNode.size());
                         
-                        // 直接从JSON节点创建float数组
-                        float[] featuresArray = new float[featureValuesNode.size()];
-                        
-                        for (int i = 0; i < featureValuesNode.size(); i++) {
-                            // 使用parseFloat避免任何类型转换问题
-                            try {
-                                // 获取字符串值并直接解析为float
-                                String valueStr = featureValuesNode.get(i).asText();
-                                featuresArray[i] = Float.parseFloat(valueStr);
-                                
-                                // 记录第一个元素的详细信息
-                                if (i == 0) {
-                                    logger.info("[Java] 特征首元素: 原始值=\"{}\", 转换后={}, 类型=float", 
-                                        valueStr, featuresArray[0]);
-                                }
-                            } catch (NumberFormatException e) {
-                                logger.error("无法解析特征值: " + featureValuesNode.get(i).asText(), e);
-                                throw new RuntimeException("特征解析失败: " + e.getMessage());
-                            }
-                        }
+                        float[] featuresArray = parseFeatureValues(featureValuesNode);
                         
                         logger.info("特征提取成功，特征向量长度: {}", featuresArray.length);
                         if (featuresArray.length > 0) {
@@ -157,8 +334,7 @@ public class FeatureExtractionService {
                 
                 throw new RuntimeException("特征提取失败: " + responseBody);
             } else {
-                logger.warn("特征提取服务返回非预期响应: {}, body: {}", 
-                    response.getStatusCode(), response.getBody());
+                logger.warn("特征提取服务返回非预期响应: {}", response.getStatusCode());
                 throw new RuntimeException("特征提取服务返回错误响应");
             }
         } catch (Exception e) {
@@ -167,24 +343,102 @@ public class FeatureExtractionService {
         }
     }
     
+    /**
+     * 构建请求头，按配置声明期望的响应格式
+     * 旧版Python服务忽略Accept头并始终返回JSON，响应按实际Content-Type解析
+     */
+    private HttpHeaders requestHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        if ("binary".equalsIgnoreCase(responseFormat)) {
+            headers.set(HttpHeaders.ACCEPT, "application/octet-stream, application/json;q=0.5");
+        } else {
+            headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+        }
+        return headers;
+    }
+    
+    private static boolean isBinary(ResponseEntity<byte[]> response) {
+        MediaType contentType = response.getHeaders().getContentType();
+        return contentType != null && MediaType.APPLICATION_OCTET_STREAM.isCompatibleWith(contentType);
+    }
+    
+    /**
+     * 解码二进制特征（与数据库中feature_bin格式相同的头部加小端float32数据）
+     */
+    private float[] decodeBinaryFeatures(byte[] data) {
+        int version = FeatureUtils.modelVersionOf(data);
+        if (version != modelVersion) {
+            logger.warn("特征提取服务的模型版本与库中特征不一致: {} vs {}", version, modelVersion);
+        }
+        return FeatureUtils.decodeFeatures(data);
+    }
+    
+    /**
+     * 解码二进制批量响应
+     * 格式: u32图像数量，随后每张图像为 u8状态(1成功/0失败) + u32长度 + 内容（二进制特征或UTF-8错误信息）
+     */
+    private List<BatchResult> decodeBinaryBatch(byte[] data, int expectedCount) {
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        int count = buffer.getInt();
+        if (count != expectedCount) {
+            throw new RuntimeException("批量特征提取结果数量不一致: " + count + " vs " + expectedCount);
+        }
+        List<BatchResult> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte status = buffer.get();
+            int length = buffer.getInt();
+            int start = buffer.position();
+            buffer.position(start + length);
+            if (status == 1) {
+                results.add(new BatchResult(decodeBinaryFeatures(Arrays.copyOfRange(data, start, start + length)), null));
+            } else {
+                results.add(new BatchResult(null, new String(data, start, length, StandardCharsets.UTF_8)));
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * 将featureValues数组节点解析为float数组
+     */
+    private float[] parseFeatureValues(JsonNode featureValuesNode) {
+        // 直接从JSON节点创建float数组
+        float[] featuresArray = new float[featureValuesNode.size()];
+        
+        for (int i = 0; i < featureValuesNode.size(); i++) {
+            // 使用parseFloat避免任何类型转换问题
+            try {
+                // 获取字符串值并直接解析为float
+                String valueStr = featureValuesNode.get(i).asText();
+                featuresArray[i] = Float.parseFloat(valueStr);
+                
+                // 记录第一个元素的详细信息
+                if (i == 0) {
+                    logger.info("[Java] 特征首元素: 原始值=\"{}\", 转换后={}, 类型=float", 
+                        valueStr, featuresArray[0]);
+                }
+            } catch (NumberFormatException e) {
+                logger.error("无法解析特征值: " + featureValuesNode.get(i).asText(), e);
+                throw new RuntimeException("特征解析失败: " + e.getMessage());
+            }
+        }
+        
+        return featuresArray;
+    }
+    
     /**
      * 检查Python服务健康状态
-     * @return 服务是否正常运行
+     * @return 是否至少有一个工作进程正常运行，状态由工作进程池定时检查
      */
     public boolean isServiceHealthy() {
-        try {
-            ResponseEntity<Map> response = restTemplate.getForEntity(
-                extractionServiceUrl + "/health", 
-                Map.class
-            );
-            
-            return response.getStatusCode() == HttpStatus.OK && 
-                   response.getBody() != null && 
-                   "ok".equals(response.getBody().get("status"));
-        } catch (Exception e) {
-            logger.warn("特征提取服务健康检查失败: " + e.getMessage());
-            return false;
-        }
+        return workerPool.isAnyHealthy();
+    }
+    
+    /**
+     * 特征提取服务连接池统计信息
+     */
+    public Map<String, Object> getClientStats() {
+        return extractionConnectionManager.getStats();
     }
     
     // 计算两个特征向量的余弦相似度
@@ -194,13 +448,7 @@ public class FeatureExtractionService {
                     features1.length + " vs " + features2.length);
         }
         
-        double dotProduct = 0.0;
-        for (int i = 0; i < features1.length; i++) {
-            dotProduct += features1[i] * features2[i];
-        }
-        
         // 由于特征向量已经通过L2归一化，所以不需要再除以向量模长
-        // 如果要保险，可以再次计算模长
-        return dotProduct;
+        return VectorKernels.dot(features1, features2);
     }
 }
@@ -0,0 +1,28 @@
+package com.example.museum.service;
+
+import java.io.IOException;
+
+/**
+ * 图像特征提取器
+ * 不同实现生成的特征向量维度和语义不同，只能与同一提取器生成的文物特征比较
+ */
+public interface FeatureExtractor {
+
+    /**
+     * 提取器名称
+     */
+    String getName();
+
+    /**
+     * 当前是否可以提取特征（不发起网络请求）
+     */
+    boolean isAvailable();
+
+    /**
+     * 提取图像特征，返回L2归一化的特征向量
+     * @param imageData 图像字节数组
+     * @param fileExtension 图像扩展名（如.jpg），部分实现用于临时文件
+     * @throws InvalidImageException 如果图像无法解析
+     */
+    float[] extract(byte[] imageData, String fileExtension) throws IOException;
+}
@@ -0,0 +1,130 @@
+package com.example.museum.service;
+
+import com.example.museum.entity.Artifact;
+import com.example.museum.mapper.ArtifactMapper;
+import com.example.museum.utils.FeatureUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 特征向量存储格式迁移服务
+ * 将文本格式（JSON数组）的feature列分批转换为二进制float32格式写入feature_bin列
+ * 迁移按文物ID游标分批进行，每批只处理feature_bin为空的记录，中断后重启即可从断点继续
+ */
+@Service
+public class FeatureMigrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeatureMigrationService.class);
+
+    @Autowired
+    private ArtifactMapper artifactMapper;
+
+    @Value("${museum.feature.migration.enabled:true}")
+    private boolean migrationEnabled;
+
+    @Value("${museum.feature.migration.batch-size:200}")
+    private int batchSize;
+
+    @Value("${museum.feature.migration.clear-text:false}")
+    private boolean clearText;
+
+    @Value("${museum.feature.model-version:" + FeatureUtils.DEFAULT_MODEL_VERSION + "}")
+    private int modelVersion;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private volatile long migratedRows;
+
+    private volatile long failedRows;
+
+    private volatile long remainingRows = -1;
+
+    /**
+     * 应用启动完成后在后台线程执行迁移，不阻塞服务启动
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (!migrationEnabled) {
+            return;
+        }
+        Thread thread = new Thread(this::migrate, "feature-migration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 执行一次完整迁移，同一时间只允许一个迁移任务运行
+     * @return 本次迁移成功转换的记录数
+     */
+    public long migrate() {
+        if (!running.compareAndSet(false, true)) {
+            logger.info("特征格式迁移已在进行中");
+            return 0;
+        }
+        long converted = 0;
+        try {
+            remainingRows = artifactMapper.countUnmigratedFeatures();
+            if (remainingRows == 0) {
+                logger.info("所有文物特征均已是二进制格式，无需迁移");
+                return 0;
+            }
+            logger.info("开始迁移文物特征为二进制格式 - 待迁移: {}, 批大小: {}, 清空文本列: {}",
+                remainingRows, batchSize, clearText);
+
+            long start = System.currentTimeMillis();
+            int lastId = 0;
+            while (true) {
+                List<Artifact> batch = artifactMapper.findUnmigratedFeatures(lastId, batchSize);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                for (Artifact artifact : batch) {
+                    lastId = artifact.getId();
+                    try {
+                        float[] features = FeatureUtils.stringToFloatFeatures(artifact.getFeature());
+                        byte[] featureBin = FeatureUtils.encodeFeatures(features, modelVersion);
+                        if (artifactMapper.updateFeatureBin(artifact.getId(), featureBin, clearText) > 0) {
+                            converted++;
+                            migratedRows++;
+                        }
+                    } catch (Exception e) {
+                        failedRows++;
+                        logger.warn("文物特征迁移失败，已跳过 - 文物ID: {}, 原因: {}", artifact.getId(), e.getMessage());
+                    }
+                }
+                logger.info("特征格式迁移进度 - 已转换: {}, 当前文物ID: {}", converted, lastId);
+            }
+
+            remainingRows = artifactMapper.countUnmigratedFeatures();
+            logger.info("特征格式迁移完成 - 转换: {}, 失败: {}, 剩余: {}, 耗时: {} ms",
+                converted, failedRows, remainingRows, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.error("特征格式迁移中断，重启后将从断点继续: {}", e.getMessage());
+        } finally {
+            running.set(false);
+        }
+        return converted;
+    }
+
+    /**
+     * 迁移状态
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("migratedRows", migratedRows);
+        status.put("failedRows", failedRows);
+        status.put("remainingRows", remainingRows);
+        return status;
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.museum.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 特征提取服务的熔断与并发控制
+ * 健康状态由后台定时探测和实际调用的成功、失败、耗时共同决定；
+ * 连续失败达到阈值后熔断，熔断期间直接拒绝请求，到期后放行一个试探请求；
+ * 并发上限按AIMD调整：耗时接近空载基线时缓慢增加，明显变慢或失败时按比例收缩，
+ * 超出上限的请求立即拒绝而不是排队等待
+ */
+@Service
+public class FeatureServiceGuard {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeatureServiceGuard.class);
+
+    /**
+     * 每隔多少次成功调用重新统计一次空载耗时基线
+     */
+    private static final int BASELINE_WINDOW = 500;
+
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    @Autowired
+    private FeatureExtractionService featureExtractionService;
+
+    @Value("${feature.extraction.guard.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${feature.extraction.guard.open-ms:10000}")
+    private long openMillis;
+
+    @Value("${feature.extraction.guard.probe-interval-ms:5000}")
+    private long probeIntervalMillis;
+
+    @Value("${feature.extraction.guard.initial-limit:8}")
+    private int initialLimit;
+
+    @Value("${feature.extraction.guard.min-limit:1}")
+    private int minLimit;
+
+    @Value("${feature.extraction.guard.max-limit:64}")
+    private int maxLimit;
+
+    @Value("${feature.extraction.guard.latency-tolerance:2.0}")
+    private double latencyTolerance;
+
+    @Value("${feature.extraction.guard.backoff-ratio:0.8}")
+    private double backoffRatio;
+
+    private ScheduledExecutorService probeExecutor;
+
+    // 以下状态均在this锁内读写
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialInFlight;
+    private int consecutiveFailures;
+    private double limit;
+    private int inFlight;
+    private long baselineNanos;
+    private long windowMinNanos = Long.MAX_VALUE;
+    private int windowSamples;
+    private double avgLatencyNanos;
+    private boolean lastProbeHealthy = true;
+    private long lastProbeAt;
+
+    private long successes;
+    private long failures;
+    private long rejectedOpen;
+    private long rejectedLimit;
+    private long hedgePermits;
+    private long hedgesRejected;
+
+    @PostConstruct
+    public void init() {
+        limit = initialLimit;
+        probeExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "feature-service-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        probeExecutor.scheduleWithFixedDelay(this::probe, probeIntervalMillis, probeIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        probeExecutor.shutdownNow();
+    }
+
+    /**
+     * 在熔断和并发控制下调用特征提取服务
+     * @throws FeatureServiceUnavailableException 熔断中或超出并发上限
+     */
+    public <T> T execute(Supplier<T> call) {
+        acquire();
+        long start = System.nanoTime();
+        boolean success = false;
+        boolean counted = true;
+        try {
+            T result = call.get();
+            success = true;
+            return result;
+        } catch (RuntimeException e) {
+            // 客户端错误（如图片无法解码）和协议回退不代表服务异常
+            counted = !isClientError(e);
+            throw e;
+        } finally {
+            release(System.nanoTime() - start, success, counted);
+        }
+    }
+
+    /**
+     * 服务当前是否可用（不发起网络请求）
+     */
+    public synchronized boolean isHealthy() {
+        return currentState() != State.OPEN;
+    }
+
+    private synchronized void acquire() {
+        State current = currentState();
+        if (current == State.OPEN || (current == State.HALF_OPEN && trialInFlight)) {
+            rejectedOpen++;
+            throw new FeatureServiceUnavailableException("特征提取服务暂不可用，请稍后再试");
+        }
+        if (inFlight >= (int) limit) {
+            rejectedLimit++;
+            throw new FeatureServiceUnavailableException("特征提取服务繁忙，请稍后再试");
+        }
+        inFlight++;
+        if (current == State.HALF_OPEN) {
+            trialInFlight = true;
+        }
+    }
+
+    /**
+     * 为对冲的重复请求占用一个额外的并发名额：只在熔断关闭且未达上限时成功，不影响熔断状态
+     * @return 是否占用成功，成功后须调用releaseHedge释放
+     */
+    public synchronized boolean tryAcquireHedge() {
+        if (currentState() != State.CLOSED || inFlight >= (int) limit) {
+            hedgesRejected++;
+            return false;
+        }
+        inFlight++;
+        hedgePermits++;
+        return true;
+    }
+
+    /**
+     * 释放对冲请求占用的并发名额，对冲请求的耗时不参与并发上限调整
+     */
+    public synchronized void releaseHedge() {
+        inFlight--;
+    }
+
+    private synchronized void release(long latencyNanos, boolean success, boolean counted) {
+        inFlight--;
+        boolean trial = state == State.HALF_OPEN && trialInFlight;
+        if (trial) {
+            trialInFlight = false;
+        }
+        if (!counted) {
+            return;
+        }
+        if (success) {
+            successes++;
+            consecutiveFailures = 0;
+            if (trial) {
+                state = State.CLOSED;
+                logger.info("特征提取服务已恢复，熔断关闭");
+            }
+            adjustLimit(latencyNanos);
+        } else {
+            failures++;
+            consecutiveFailures++;
+            limit = Math.max(minLimit, limit * backoffRatio);
+            if (trial || consecutiveFailures >= failureThreshold) {
+                open("连续失败" + consecutiveFailures + "次");
+            }
+        }
+    }
+
+    /**
+     * AIMD调整并发上限
+     */
+    private void adjustLimit(long latencyNanos) {
+        avgLatencyNanos = avgLatencyNanos == 0 ? latencyNanos : avgLatencyNanos * 0.9 + latencyNanos * 0.1;
+
+        // 空载基线取每个统计窗口内的最小耗时
+        windowMinNanos = Math.min(windowMinNanos, latencyNanos);
+        if (baselineNanos == 0) {
+            baselineNanos = latencyNanos;
+        }
+        if (++windowSamples >= BASELINE_WINDOW) {
+            baselineNanos = windowMinNanos;
+            windowMinNanos = Long.MAX_VALUE;
+            windowSamples = 0;
+        }
+        baselineNanos = Math.min(baselineNanos, latencyNanos);
+
+        if (latencyNanos > baselineNanos * latencyTolerance) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (inFlight + 1 >= limit / 2) {
+            // 只有并发确实用到一半以上时才放宽上限，避免空闲时上限无限增长
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    private void probe() {
+        boolean healthy = featureExtractionService.isServiceHealthy();
+        synchronized (this) {
+            lastProbeHealthy = healthy;
+            lastProbeAt = System.currentTimeMillis();
+            State current = currentState();
+            if (!healthy && current == State.CLOSED) {
+                open("健康检查失败");
+            } else if (healthy && current == State.OPEN) {
+                // 健康检查恢复后由下一个实际请求确认
+                state = State.HALF_OPEN;
+                trialInFlight = false;
+            }
+        }
+    }
+
+    private void open(String reason) {
+        if (state != State.OPEN) {
+            logger.warn("特征提取服务熔断 - 原因: {}, {} ms后重试", reason, openMillis);
+        }
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        trialInFlight = false;
+    }
+
+    private State currentState() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        return state;
+    }
+
+    private static boolean isClientError(RuntimeException e) {
+        if (e instanceof ExtractorCapabilityException || e instanceof IllegalArgumentException) {
+            return true;
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpClientErrorException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 熔断与并发控制统计信息
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", currentState().name());
+        stats.put("consecutiveFailures", consecutiveFailures);
+        stats.put("lastProbeHealthy", lastProbeHealthy);
+        stats.put("lastProbeAt", lastProbeAt);
+        stats.put("limit", (int) limit);
+        stats.put("inFlight", inFlight);
+        stats.put("hedgePermits", hedgePermits);
+        stats.put("hedgesRejected", hedgesRejected);
+        stats.put("baselineLatencyMillis", baselineNanos / 1_000_000.0);
+        stats.put("avgLatencyMillis", avgLatencyNanos / 1_000_000.0);
+        stats.put("successes", successes);
+        stats.put("failures", failures);
+        stats.put("rejectedOpen", rejectedOpen);
+        stats.put("rejectedLimit", rejectedLimit);
+        return stats;
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.museum.service;
+
+/**
+ * 特征提取服务不可用或繁忙时抛出，控制器应返回503
+ */
+public class FeatureServiceUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public FeatureServiceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.museum.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * 纯Java实现的轻量特征提取器，不依赖Python服务
+ * 特征由四部分组成：HSV联合颜色直方图、2x2分块的边缘方向直方图、全局颜色矩与边缘密度、2x2分块平均颜色。
+ * 直方图取平方根（Hellinger核）后各部分分别归一化并加权拼接，整体L2归一化后点积即余弦相似度。
+ * 区分能力远低于ResNet50，用于Python服务不可用时的降级检索和检索前的粗筛
+ */
+@Service
+public class HistogramFeatureExtractor implements FeatureExtractor {
+
+    public static final String NAME = "histogram";
+
+    /**
+     * 特征版本，特征算法变化时递增，已存储的旧版本特征会被重新计算
+     */
+    public static final int VERSION = 1;
+
+    private static final int HUE_BINS = 8;
+    private static final int SATURATION_BINS = 3;
+    private static final int VALUE_BINS = 3;
+    private static final int COLOR_BINS = HUE_BINS * SATURATION_BINS * VALUE_BINS;
+
+    private static final int ORIENTATION_BINS = 8;
+    private static final int GRID = 2;
+    private static final int EDGE_BINS = ORIENTATION_BINS * GRID * GRID;
+
+    // 每通道均值、标准差和边缘密度
+    private static final int MOMENT_DIMENSIONS = 7;
+    private static final int LAYOUT_DIMENSIONS = 3 * GRID * GRID;
+
+    public static final int DIMENSION = COLOR_BINS + EDGE_BINS + MOMENT_DIMENSIONS + LAYOUT_DIMENSIONS;
+
+    private static final float COLOR_WEIGHT = 1.0f;
+    private static final float EDGE_WEIGHT = 1.0f;
+    private static final float MOMENT_WEIGHT = 0.5f;
+    private static final float LAYOUT_WEIGHT = 0.5f;
+
+    /**
+     * 解码缩略图的短边长度，颜色和边缘统计不需要更高分辨率
+     */
+    private static final int THUMBNAIL_SIDE = 128;
+
+    /**
+     * 梯度幅值超过最大可能幅值的该比例时计为边缘像素
+     */
+    private static final float EDGE_THRESHOLD = 0.1f;
+
+    @Autowired
+    private ImagePreprocessor imagePreprocessor;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public float[] extract(byte[] imageData, String fileExtension) {
+        return extract(imagePreprocessor.decodeThumbnail(imageData, THUMBNAIL_SIDE));
+    }
+
+    /**
+     * 提取已解码图像的特征
+     */
+    public float[] extract(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] argb = image.getRGB(0, 0, width, height, null, 0, width);
+        int pixels = argb.length;
+
+        float[] feature = new float[DIMENSION];
+        float[] gray = new float[pixels];
+        double[] sum = new double[3];
+        double[] sumSquares = new double[3];
+        double[] layout = new double[LAYOUT_DIMENSIONS];
+        int[] layoutCounts = new int[GRID * GRID];
+
+        for (int y = 0; y < height; y++) {
+            int cellRow = y * GRID / height;
+            for (int x = 0; x < width; x++) {
+                int i = y * width + x;
+                int r = (argb[i] >> 16) & 0xFF;
+                int g = (argb[i] >> 8) & 0xFF;
+                int b = argb[i] & 0xFF;
+
+                feature[colorBin(r, g, b)]++;
+                gray[i] = 0.299f * r + 0.587f * g + 0.114f * b;
+
+                sum[0] += r;
+                sum[1] += g;
+                sum[2] += b;
+                sumSquares[0] += r * r;
+                sumSquares[1] += g * g;
+                sumSquares[2] += b * b;
+
+                int cell = cellRow * GRID + x * GRID / width;
+                layout[cell * 3] += r;
+                layout[cell * 3 + 1] += g;
+                layout[cell * 3 + 2] += b;
+                layoutCounts[cell]++;
+            }
+        }
+
+        // Sobel梯度方向直方图，按幅值加权，方向取[0, π)
+        int edgeOffset = COLOR_BINS;
+        int edgePixels = 0;
+        float maxMagnitude = (float) (4 * 255 * Math.sqrt(2));
+        for (int y = 1; y < height - 1; y++) {
+            int cellRow = y * GRID / height;
+            for (int x = 1; x < width - 1; x++) {
+                int i = y * width + x;
+                float gx = gray[i - width + 1] + 2 * gray[i + 1] + gray[i + width + 1]
+                        - gray[i - width - 1] - 2 * gray[i - 1] - gray[i + width - 1];
+                float gy = gray[i + width - 1] + 2 * gray[i + width] + gray[i + width + 1]
+                        - gray[i - width - 1] - 2 * gray[i - width] - gray[i - width + 1];
+                float magnitude = (float) Math.sqrt(gx * gx + gy * gy);
+                if (magnitude == 0) {
+                    continue;
+                }
+                if (magnitude > maxMagnitude * EDGE_THRESHOLD) {
+                    edgePixels++;
+                }
+                double angle = Math.atan2(gy, gx);
+                if (angle < 0) {
+                    angle += Math.PI;
+                }
+                int bin = Math.min(ORIENTATION_BINS - 1, (int) (angle / Math.PI * ORIENTATION_BINS));
+                int cell = cellRow * GRID + x * GRID / width;
+                feature[edgeOffset + cell * ORIENTATION_BINS + bin] += magnitude;
+            }
+        }
+
+        int momentOffset = edgeOffset + EDGE_BINS;
+        for (int c = 0; c < 3; c++) {
+            double mean = sum[c] / pixels;
+            double variance = Math.max(0, sumSquares[c] / pixels - mean * mean);
+            feature[momentOffset + c] = (float) (mean / 255);
+            feature[momentOffset + 3 + c] = (float) (Math.sqrt(variance) / 255);
+        }
+        feature[momentOffset + 6] = (float) edgePixels / pixels;
+
+        int layoutOffset = momentOffset + MOMENT_DIMENSIONS;
+        for (int cell = 0; cell < GRID * GRID; cell++) {
+            int count = Math.max(1, layoutCounts[cell]);
+            for (int c = 0; c < 3; c++) {
+                feature[layoutOffset + cell * 3 + c] = (float) (layout[cell * 3 + c] / count / 255);
+            }
+        }
+
+        sqrtInPlace(feature, 0, COLOR_BINS);
+        sqrtInPlace(feature, edgeOffset, EDGE_BINS);
+        normalizeBlock(feature, 0, COLOR_BINS, COLOR_WEIGHT);
+        normalizeBlock(feature, edgeOffset, EDGE_BINS, EDGE_WEIGHT);
+        normalizeBlock(feature, momentOffset, MOMENT_DIMENSIONS, MOMENT_WEIGHT);
+        normalizeBlock(feature, layoutOffset, LAYOUT_DIMENSIONS, LAYOUT_WEIGHT);
+        normalizeBlock(feature, 0, DIMENSION, 1.0f);
+        return feature;
+    }
+
+    private static int colorBin(int r, int g, int b) {
+        int max = Math.max(r, Math.max(g, b));
+        int min = Math.min(r, Math.min(g, b));
+        int delta = max - min;
+
+        float hue;
+        if (delta == 0) {
+            hue = 0;
+        } else if (max == r) {
+            hue = ((float) (g - b) / delta + 6) % 6;
+        } else if (max == g) {
+            hue = (float) (b - r) / delta + 2;
+        } else {
+            hue = (float) (r - g) / delta + 4;
+        }
+        float saturation = max == 0 ? 0 : (float) delta / max;
+        float value = max / 255f;
+
+        int h = Math.min(HUE_BINS - 1, (int) (hue / 6 * HUE_BINS));
+        int s = Math.min(SATURATION_BINS - 1, (int) (saturation * SATURATION_BINS));
+        int v = Math.min(VALUE_BINS - 1, (int) (value * VALUE_BINS));
+        return (h * SATURATION_BINS + s) * VALUE_BINS + v;
+    }
+
+    private static void sqrtInPlace(float[] values, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            values[i] = (float) Math.sqrt(values[i]);
+        }
+    }
+
+    private static void normalizeBlock(float[] values, int offset, int length, float weight) {
+        double norm = 0;
+        for (int i = offset; i < offset + length; i++) {
+            norm += values[i] * values[i];
+        }
+        if (norm == 0) {
+            return;
+        }
+        float scale = (float) (weight / Math.sqrt(norm));
+        for (int i = offset; i < offset + length; i++) {
+            values[i] *= scale;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.museum.service;
+
+import com.example.museum.entity.Artifact;
+import com.example.museum.mapper.ArtifactMapper;
+import com.example.museum.search.ExactSearchEngine;
+import com.example.museum.search.FilterMask;
+import com.example.museum.search.SearchHit;
+import com.example.museum.search.VectorSnapshot;
+import com.example.museum.utils.FeatureUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文物直方图特征索引
+ * 启动后在后台加载已存储的直方图特征，并为缺少特征（或特征版本过旧）的文物读取图片计算后写回数据库，
+ * 全部在内存中精确检索（特征只有百余维）。用于Python服务不可用时的降级检索，以及ResNet检索前的粗筛
+ */
+@Service
+public class HistogramIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistogramIndexService.class);
+
+    @Autowired
+    private ArtifactMapper artifactMapper;
+
+    @Autowired
+    private HistogramFeatureExtractor histogramFeatureExtractor;
+
+    @Autowired
+    private ArtifactImageLoader artifactImageLoader;
+
+    @Value("${museum.search.histogram.enabled:true}")
+    private boolean enabled;
+
+    private final AtomicBoolean building = new AtomicBoolean(false);
+
+    private volatile VectorSnapshot snapshot = VectorSnapshot.EMPTY;
+
+    private volatile long computedRows;
+
+    private volatile long failedRows;
+
+    private volatile long builtAt;
+
+    private final AtomicLong searches = new AtomicLong();
+
+    private final AtomicLong candidateQueries = new AtomicLong();
+
+    /**
+     * 索引版本号，每次发布新快照时递增，粗筛结果的缓存键包含该版本号
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * 应用启动完成后在后台线程构建索引（需要通过HTTP读取本服务提供的图片时，服务必须已启动）
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(this::rebuild, "histogram-index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 重新构建索引，同一时间只允许一个构建任务运行
+     */
+    public void rebuild() {
+        if (!building.compareAndSet(false, true)) {
+            logger.info("直方图特征索引已在构建中");
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            List<Artifact> sources = artifactMapper.findHistogramSources();
+            List<Artifact> missing = new ArrayList<>();
+            List<Integer> ids = new ArrayList<>(sources.size());
+            List<float[]> vectors = new ArrayList<>(sources.size());
+            for (Artifact artifact : sources) {
+                byte[] stored = artifact.getHistFeature();
+                if (stored != null && FeatureUtils.isBinaryFeatures(stored)
+                        && FeatureUtils.modelVersionOf(stored) == HistogramFeatureExtractor.VERSION) {
+                    ids.add(artifact.getId());
+                    vectors.add(FeatureUtils.decodeFeatures(stored));
+                } else {
+                    missing.add(artifact);
+                }
+            }
+            // 先发布已存储的特征，缺失部分计算完成后再整体替换
+            publish(ids, vectors);
+            logger.info("已加载文物直方图特征 - 数量: {}, 待计算: {}", ids.size(), missing.size());
+
+            for (Artifact artifact : missing) {
+                try {
+                    float[] feature = histogramFeatureExtractor.extract(artifactImageLoader.load(artifact.getImageUrl()), null);
+                    artifactMapper.updateHistFeature(artifact.getId(),
+                            FeatureUtils.encodeFeatures(feature, HistogramFeatureExtractor.VERSION));
+                    ids.add(artifact.getId());
+                    vectors.add(feature);
+                    computedRows++;
+                } catch (Exception e) {
+                    failedRows++;
+                    logger.debug("计算文物直方图特征失败 - 文物ID: {}, 原因: {}", artifact.getId(), e.getMessage());
+                }
+                if ((computedRows + failedRows) % 200 == 0) {
+                    logger.info("直方图特征计算进度 - 已计算: {}, 失败: {}", computedRows, failedRows);
+                }
+            }
+            if (!missing.isEmpty()) {
+                publish(ids, vectors);
+            }
+            logger.info("直方图特征索引构建完成 - 数量: {}, 新计算: {}, 失败: {}, 耗时: {} ms",
+                    ids.size(), computedRows, failedRows, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.error("直方图特征索引构建失败: {}", e.getMessage());
+        } finally {
+            building.set(false);
+        }
+    }
+
+    private void publish(List<Integer> ids, List<float[]> vectors) {
+        int count = ids.size();
+        int dimension = HistogramFeatureExtractor.DIMENSION;
+        // 按文物ID排序存放，便于按ID二分查找
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(ids.get(a), ids.get(b)));
+        int[] sortedIds = new int[count];
+        float[] matrix = new float[count * dimension];
+        for (int i = 0; i < count; i++) {
+            sortedIds[i] = ids.get(order[i]);
+            System.arraycopy(vectors.get(order[i]), 0, matrix, i * dimension, dimension);
+        }
+        snapshot = new VectorSnapshot(dimension, sortedIds, matrix);
+        builtAt = System.currentTimeMillis();
+        version.incrementAndGet();
+    }
+
+    /**
+     * 索引中是否有可检索的特征
+     */
+    public boolean isReady() {
+        return !snapshot.isEmpty();
+    }
+
+    /**
+     * 当前索引版本号
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * 已建立直方图特征的文物数量
+     */
+    public int size() {
+        return snapshot.size();
+    }
+
+    /**
+     * 按直方图特征检索相似文物（降级检索）
+     * @param filter 属性过滤位图，为null时不过滤
+     */
+    public List<SearchHit> search(float[] query, double threshold, int maxResults, FilterMask filter) {
+        searches.incrementAndGet();
+        return ExactSearchEngine.scan(snapshot, query, threshold, maxResults, filter);
+    }
+
+    /**
+     * 取直方图特征最相似的前count个文物ID，作为精确检索的候选集
+     */
+    public int[] candidates(float[] query, int count) {
+        candidateQueries.incrementAndGet();
+        List<SearchHit> hits = ExactSearchEngine.scan(snapshot, query, -1, count);
+        int[] ids = new int[hits.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = hits.get(i).getArtifactId();
+        }
+        return ids;
+    }
+
+    /**
+     * 直方图索引统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("building", building.get());
+        stats.put("vectors", snapshot.size());
+        stats.put("dimension", HistogramFeatureExtractor.DIMENSION);
+        stats.put("computedRows", computedRows);
+        stats.put("failedRows", failedRows);
+        stats.put("builtAt", builtAt);
+        stats.put("version", version.get());
+        stats.put("searches", searches.get());
+        stats.put("candidateQueries", candidateQueries.get());
+        return stats;
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.museum.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 发送给特征提取服务前的图像预处理
+ * 先只读取图像头部校验格式和尺寸，拒绝损坏或像素数过大的图像；
+ * 需要缩小时按整数步长降采样解码（不在内存中展开全尺寸图像），再平滑缩放到目标尺寸并重新编码为JPEG。
+ * 模型输入为短边256后中心裁剪224，缩放后的短边不小于min-short-side，避免影响特征
+ */
+@Service
+public class ImagePreprocessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImagePreprocessor.class);
+
+    @Value("${museum.image.preprocess.enabled:true}")
+    private boolean enabled;
+
+    // 发送给特征提取服务的图像长边上限
+    @Value("${museum.image.max-dimension:800}")
+    private int maxDimension;
+
+    // 缩放后短边的下限，与特征提取服务的Resize(256)一致
+    @Value("${museum.image.preprocess.min-short-side:256}")
+    private int minShortSide;
+
+    @Value("${museum.image.quality:90}")
+    private int quality;
+
+    // 允许的最大像素数，超过时不解码直接拒绝
+    @Value("${museum.image.max-pixels:40000000}")
+    private long maxPixels;
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong resized = new AtomicLong();
+    private final AtomicLong passedThrough = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    /**
+     * 预处理结果，data为发送给特征提取服务的图像字节
+     */
+    public static final class PreparedImage {
+        private final byte[] data;
+        private final String extension;
+
+        private PreparedImage(byte[] data, String extension) {
+            this.data = data;
+            this.extension = extension;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        /**
+         * 回退到临时文件方式时使用的扩展名，未重新编码时为null
+         */
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /**
+     * 校验并缩小图像
+     * ImageIO无法识别的格式（如WebP）原样返回，由特征提取服务解码
+     * @throws InvalidImageException 如果图像头部损坏或尺寸超出限制
+     */
+    public PreparedImage prepare(byte[] imageData) {
+        if (!enabled) {
+            return new PreparedImage(imageData, null);
+        }
+        long start = System.nanoTime();
+        processed.incrementAndGet();
+        bytesIn.addAndGet(imageData.length);
+        try {
+            PreparedImage result = doPrepare(imageData);
+            bytesOut.addAndGet(result.data.length);
+            return result;
+        } catch (InvalidImageException e) {
+            rejected.incrementAndGet();
+            throw e;
+        } finally {
+            totalNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private PreparedImage doPrepare(byte[] imageData) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(imageData))) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                return passThrough(imageData);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width;
+                int height;
+                try {
+                    width = reader.getWidth(0);
+                    height = reader.getHeight(0);
+                } catch (IOException | RuntimeException e) {
+                    throw new InvalidImageException("图像数据已损坏: " + e.getMessage(), e);
+                }
+                if (width <= 0 || height <= 0 || (long) width * height > maxPixels) {
+                    throw new InvalidImageException("图像尺寸超出限制: " + width + "x" + height);
+                }
+
+                double scale = targetScale(width, height);
+                if (scale >= 1.0 && "jpeg".equalsIgnoreCase(reader.getFormatName())) {
+                    // 尺寸已合适的JPEG直接发送，避免重复有损编码
+                    return passThrough(imageData);
+                }
+
+                int targetWidth = Math.max(1, (int) Math.round(width * scale));
+                int targetHeight = Math.max(1, (int) Math.round(height * scale));
+                // 降采样步长保证解码结果不小于目标尺寸的2倍，再由平滑缩放完成剩余部分，减少锯齿
+                int step = Math.max(1, (int) (1.0 / scale / 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+
+                BufferedImage decoded;
+                try {
+                    decoded = reader.read(0, param);
+                } catch (IOException | RuntimeException e) {
+                    // 如CMYK JPEG等ImageIO不支持的变体，交给特征提取服务解码
+                    logger.debug("ImageIO解码失败，原样发送图像: {}", e.getMessage());
+                    return passThrough(imageData);
+                }
+
+                byte[] encoded = encodeJpeg(resize(decoded, targetWidth, targetHeight));
+                if (encoded.length >= imageData.length) {
+                    return passThrough(imageData);
+                }
+                resized.incrementAndGet();
+                logger.debug("图像已缩小 - {}x{} -> {}x{}, {} -> {} 字节",
+                        width, height, targetWidth, targetHeight, imageData.length, encoded.length);
+                return new PreparedImage(encoded, ".jpg");
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            logger.debug("图像预处理失败，原样发送图像: {}", e.getMessage());
+            return passThrough(imageData);
+        }
+    }
+
+    /**
+     * 按整数步长降采样解码缩略图，解码结果的短边不小于minSide（原图更小时保持原尺寸）
+     * @throws InvalidImageException 如果ImageIO无法识别或解码图像，或尺寸超出限制
+     */
+    public BufferedImage decodeThumbnail(byte[] imageData, int minSide) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(imageData))) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new InvalidImageException("不支持的图像格式");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if (width <= 0 || height <= 0 || (long) width * height > maxPixels) {
+                    throw new InvalidImageException("图像尺寸超出限制: " + width + "x" + height);
+                }
+                int step = Math.max(1, Math.min(width, height) / Math.max(1, minSide));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            if (e instanceof InvalidImageException) {
+                throw (InvalidImageException) e;
+            }
+            throw new InvalidImageException("图像解码失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 长边不超过maxDimension且短边不小于minShortSide的缩放比例，不放大
+     */
+    private double targetScale(int width, int height) {
+        double scale = (double) maxDimension / Math.max(width, height);
+        scale = Math.max(scale, (double) minShortSide / Math.min(width, height));
+        return Math.min(1.0, scale);
+    }
+
+    private PreparedImage passThrough(byte[] imageData) {
+        passedThrough.incrementAndGet();
+        return new PreparedImage(imageData, null);
+    }
+
+    private static BufferedImage resize(BufferedImage source, int width, int height) {
+        // 统一转为不带透明通道的RGB，JPEG不支持透明通道
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(Math.max(1, Math.min(100, quality)) / 100f);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * 图像预处理统计信息
+     */
+    public Map<String, Object> getStats() {
+        long count = processed.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("maxDimension", maxDimension);
+        stats.put("processed", count);
+        stats.put("resized", resized.get());
+        stats.put("passedThrough", passedThrough.get());
+        stats.put("rejected", rejected.get());
+        stats.put("bytesIn", bytesIn.get());
+        stats.put("bytesOut", bytesOut.get());
+        stats.put("avgMillis", count == 0 ? 0 : totalNanos.get() / 1_000_000.0 / count);
+        return stats;
+    }
+}
@@ -1,19 +1,21 @@
 package com.example.museum.service;
 
-import com.example.museum.entity.Artifact;
+import com.example.museum.dto.SimilarArtifactDTO;
+import com.example.museum.search.AttributeFilter;
+import com.example.museum.search.FilterMask;
+import com.example.museum.search.SearchHit;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 /**
@@ -28,16 +30,35 @@ public class ImageSearchService {
     private ArtifactService artifactService;
     
     @Autowired
-    private FeatureExtractionService featureExtractionService;
+    private FeatureCacheService featureCacheService;
     
-    @Value("${museum.temp.path:temp}")
-    private String tempPath;
+    @Autowired
+    private SidecarFeatureExtractor sidecarFeatureExtractor;
+    
+    @Autowired
+    private HistogramFeatureExtractor histogramFeatureExtractor;
+    
+    @Autowired
+    private HistogramIndexService histogramIndexService;
+    
+    @Autowired
+    private PerceptualHashIndexService perceptualHashIndexService;
+    
+    // Python特征提取服务不可用时是否改用直方图特征检索
+    @Value("${museum.search.degraded.enabled:true}")
+    private boolean degradedSearchEnabled;
+    
+    // 批量以图搜图单次请求的最大图片数
+    @Value("${museum.search.batch.max-images:64}")
+    private int maxBatchImages;
+    
+    private final AtomicLong degradedSearches = new AtomicLong();
     
     /**
-     * 检查特征提取服务是否健康
+     * 检查特征提取服务是否健康（由后台探测和实际调用结果维护，不发起网络请求）
      */
     public boolean isFeatureServiceHealthy() {
-        return featureExtractionService.isServiceHealthy();
+        return sidecarFeatureExtractor.isAvailable();
     }
     
     /**
@@ -45,61 +66,30 @@ public class ImageSearchService {
      * @param image 上传的图片文件
      * @param threshold 相似度阈值
      * @param maxResults 最大结果数
+     * @param filter 属性过滤条件，为null时不过滤
      * @return 相似文物列表
      * @throws IOException 如果文件处理出错
      */
-    public List<Artifact> searchSimilarArtifacts(MultipartFile image, double threshold, int maxResults) throws IOException {
-        // 确保临时目录存在
-        File tempDir = new File(tempPath);
-        if (!tempDir.exists()) {
-            tempDir.mkdirs();
-        }
-        
-        // 保存上传的图片到临时文件
+    public List<SimilarArtifactDTO> searchSimilarArtifacts(MultipartFile image, double threshold, int maxResults,
+                                                           AttributeFilter filter) throws IOException {
         String originalFilename = image.getOriginalFilename();
         String fileExtension = originalFilename != null && originalFilename.contains(".") ?
                 originalFilename.substring(originalFilename.lastIndexOf(".")) : ".jpg";
-        String filename = UUID.randomUUID().toString() + fileExtension;
-        Path filePath = Paths.get(tempPath, filename);
+        byte[] imageData = image.getBytes();
         
-        try {
-            Files.copy(image.getInputStream(), filePath);
-            logger.info("图片已保存到临时路径: " + filePath);
-            
-            // 提取特征
-            float[] features = featureExtractionService.extractFeatures(filePath.toString());
-            logger.info("已成功提取特征，长度: " + features.length);
-            
-            // 将特征数组转换为JSON字符串
-            String featureJson = Arrays.toString(features);
-            
-            // 查找相似文物
-            return artifactService.findSimilarArtifacts(featureJson, threshold, maxResults);
-        } finally {
-            // 确保临时文件被删除
-            try {
-                Files.deleteIfExists(filePath);
-                logger.info("临时文件已删除: " + filePath);
-            } catch (IOException e) {
-                logger.warning("删除临时文件失败: " + e.getMessage());
-            }
-        }
+        return search(imageData, fileExtension, threshold, maxResults, filter);
     }
     
     /**
      * 使用图像字节数组搜索相似文物（简化版本，使用默认阈值）
      * @param imageData 图像字节数组
      * @param maxResults 最大结果数
+     * @param filter 属性过滤条件，为null时不过滤
      * @return 相似文物列表
      * @throws IOException 如果文件处理出错
      */
-    public List<Artifact> searchSimilarArtifacts(byte[] imageData, int maxResults) throws IOException {
-        // 确保临时目录存在
-        File tempDir = new File(tempPath);
-        if (!tempDir.exists()) {
-            tempDir.mkdirs();
-        }
-        
+    public List<SimilarArtifactDTO> searchSimilarArtifacts(byte[] imageData, int maxResults, AttributeFilter filter)
+            throws IOException {
         // 使用默认阈值0.6
         double threshold = 0.6;
         
@@ -126,53 +116,178 @@ public class ImageSearchService {
             }
         }
         
-        // 创建临时文件
-        String filename = UUID.randomUUID().toString() + fileExtension;
-        Path filePath = Paths.get(tempPath, filename);
+        // 记录图像数据的前几个字节，用于调试
+        StringBuilder hexHeader = new StringBuilder("图像数据头部(十六进制): ");
+        for (int i = 0; i < Math.min(16, imageData.length); i++) {
+            hexHeader.append(String.format("%02X ", imageData[i] & 0xFF));
+        }
+        logger.info(hexHeader.toString());
         
         try {
-            // 记录图像数据的前几个字节，用于调试
-            StringBuilder hexHeader = new StringBuilder("图像数据头部(十六进制): ");
-            for (int i = 0; i < Math.min(16, imageData.length); i++) {
-                hexHeader.append(String.format("%02X ", imageData[i] & 0xFF));
+            return search(imageData, fileExtension, threshold, maxResults, filter);
+        } catch (IOException | RuntimeException e) {
+            logger.severe("特征提取失败: " + e.getMessage());
+            throw e;
+        }
+    }
+    
+    /**
+     * 批量上传图片并分别查找相似文物
+     * 近重复图片直接返回对应文物，其余图片一次批量提取特征，再一起由检索引擎分块扫描全部向量
+     * @param images 上传的图片文件
+     * @param threshold 相似度阈值
+     * @param maxResults 每张图片的最大结果数
+     * @param filter 属性过滤条件，对全部图片生效，为null时不过滤
+     * @return 与images顺序一致的检索结果，单张图片失败不影响其他图片
+     * @throws IOException 如果文件读取出错
+     */
+    public List<BatchSearchResult> searchSimilarArtifactsBatch(List<MultipartFile> images, double threshold,
+                                                               int maxResults, AttributeFilter filter)
+            throws IOException {
+        if (images.size() > maxBatchImages) {
+            throw new IllegalArgumentException("单次最多上传" + maxBatchImages + "张图片");
+        }
+        BatchSearchResult[] results = new BatchSearchResult[images.size()];
+        List<byte[]> pendingData = new ArrayList<>(images.size());
+        List<Integer> pendingPositions = new ArrayList<>(images.size());
+        Map<byte[], String> extensions = new IdentityHashMap<>();
+        FilterMask mask = filter != null && perceptualHashIndexService.isReady()
+                ? artifactService.resolveFilter(filter) : null;
+        for (int i = 0; i < images.size(); i++) {
+            MultipartFile image = images.get(i);
+            String originalFilename = image.getOriginalFilename();
+            String fileExtension = originalFilename != null && originalFilename.contains(".") ?
+                    originalFilename.substring(originalFilename.lastIndexOf(".")) : ".jpg";
+            byte[] imageData = image.getBytes();
+            if (perceptualHashIndexService.isReady()) {
+                List<SearchHit> nearDuplicates = perceptualHashIndexService.findNearDuplicates(imageData, maxResults);
+                nearDuplicates.removeIf(hit -> hit.getSimilarity() < threshold
+                        || (mask != null && !mask.contains(hit.getArtifactId())));
+                if (!nearDuplicates.isEmpty()) {
+                    results[i] = BatchSearchResult.success(originalFilename,
+                            artifactService.findArtifactsForHits(nearDuplicates));
+                    continue;
+                }
             }
-            logger.info(hexHeader.toString());
-
-            // 将字节数组写入临时文件
-            Files.write(filePath, imageData);
-            logger.info("图片字节数据已保存到临时文件: " + filePath);
-            
-            // 检查文件是否被正确写入
-            File savedFile = filePath.toFile();
-            if (!savedFile.exists() || savedFile.length() == 0) {
-                throw new IOException("图像文件没有被正确保存或为空");
+            extensions.put(imageData, fileExtension);
+            pendingData.add(imageData);
+            pendingPositions.add(i);
+        }
+        
+        if (!pendingData.isEmpty()) {
+            List<FeatureExtractionService.BatchResult> extracted;
+            try {
+                extracted = featureCacheService.getOrExtractBatch(pendingData, missed -> {
+                    List<String> missedExtensions = new ArrayList<>(missed.size());
+                    for (byte[] imageData : missed) {
+                        missedExtensions.add(extensions.get(imageData));
+                    }
+                    return sidecarFeatureExtractor.extractBatch(missed, missedExtensions);
+                });
+            } catch (FeatureServiceUnavailableException e) {
+                if (!degradedSearchEnabled || !histogramIndexService.isReady()) {
+                    throw e;
+                }
+                logger.warning("特征提取服务不可用，批量检索使用直方图特征降级检索: " + e.getMessage());
+                for (int j = 0; j < pendingData.size(); j++) {
+                    int position = pendingPositions.get(j);
+                    String filename = images.get(position).getOriginalFilename();
+                    try {
+                        degradedSearches.incrementAndGet();
+                        float[] histogramFeature = histogramFeatureExtractor.extract(pendingData.get(j),
+                                extensions.get(pendingData.get(j)));
+                        results[position] = BatchSearchResult.success(filename, artifactService
+                                .findSimilarArtifactsByHistogram(histogramFeature, threshold, maxResults, filter));
+                    } catch (InvalidImageException ex) {
+                        results[position] = BatchSearchResult.failure(filename, ex.getMessage());
+                    }
+                }
+                return toList(results);
             }
             
-            logger.info("已保存临时文件，大小: " + savedFile.length() + " 字节");
-            
-            try {
-                // 提取特征
-                float[] features = featureExtractionService.extractFeatures(filePath.toString());
-                logger.info("已成功提取特征，长度: " + features.length);
-                
-                // 将特征数组转换为JSON字符串
-                String featureJson = Arrays.toString(features);
-                
-                // 查找相似文物
-                return artifactService.findSimilarArtifacts(featureJson, threshold, maxResults);
-            } catch (Exception e) {
-                logger.severe("特征提取失败: " + e.getMessage());
-                throw e;
+            List<float[]> features = new ArrayList<>(extracted.size());
+            List<Integer> featurePositions = new ArrayList<>(extracted.size());
+            for (int j = 0; j < extracted.size(); j++) {
+                int position = pendingPositions.get(j);
+                FeatureExtractionService.BatchResult result = extracted.get(j);
+                if (result.getFeatures() != null) {
+                    features.add(result.getFeatures());
+                    featurePositions.add(position);
+                } else {
+                    results[position] = BatchSearchResult.failure(images.get(position).getOriginalFilename(),
+                            "特征提取失败: " + result.getError());
+                }
             }
-        } finally {
-            // 确保临时文件被删除
-            try {
-                Files.deleteIfExists(filePath);
-                logger.info("临时文件已删除: " + filePath);
-            } catch (IOException e) {
-                logger.warning("删除临时文件失败: " + e.getMessage());
+            if (!features.isEmpty()) {
+                List<List<SimilarArtifactDTO>> similar = artifactService.findSimilarArtifactsBatch(
+                        features.toArray(new float[0][]), threshold, maxResults, filter);
+                for (int j = 0; j < similar.size(); j++) {
+                    int position = featurePositions.get(j);
+                    results[position] = BatchSearchResult.success(images.get(position).getOriginalFilename(),
+                            similar.get(j));
+                }
             }
         }
+        logger.info("批量以图搜图完成，图片数量: " + images.size());
+        return toList(results);
+    }
+    
+    private static List<BatchSearchResult> toList(BatchSearchResult[] results) {
+        List<BatchSearchResult> list = new ArrayList<>(results.length);
+        for (BatchSearchResult result : results) {
+            list.add(result);
+        }
+        return list;
+    }
+    
+    /**
+     * 提取查询图片特征并查找相似文物
+     * 查询图片是馆藏图片的近重复版本时直接返回对应文物；相同图片命中特征缓存时无需调用Python服务；
+     * Python服务熔断时改用直方图特征降级检索；各途径都只返回满足属性过滤条件的文物
+     */
+    private List<SimilarArtifactDTO> search(byte[] imageData, String fileExtension, double threshold, int maxResults,
+                                            AttributeFilter filter) throws IOException {
+        if (perceptualHashIndexService.isReady()) {
+            List<SearchHit> nearDuplicates = perceptualHashIndexService.findNearDuplicates(imageData, maxResults);
+            nearDuplicates.removeIf(hit -> hit.getSimilarity() < threshold);
+            if (filter != null && !nearDuplicates.isEmpty()) {
+                FilterMask mask = artifactService.resolveFilter(filter);
+                nearDuplicates.removeIf(hit -> !mask.contains(hit.getArtifactId()));
+            }
+            if (!nearDuplicates.isEmpty()) {
+                logger.info("命中近重复馆藏图片，跳过特征提取 - 文物ID: " + nearDuplicates.get(0).getArtifactId());
+                return artifactService.findArtifactsForHits(nearDuplicates);
+            }
+        }
+        float[] coarseFeature = artifactService.isPrefilterActive() ? coarseFeature(imageData) : null;
+        float[] features;
+        try {
+            features = featureCacheService.getOrExtract(imageData,
+                    () -> sidecarFeatureExtractor.extract(imageData, fileExtension));
+        } catch (FeatureServiceUnavailableException e) {
+            if (!degradedSearchEnabled || !histogramIndexService.isReady()) {
+                throw e;
+            }
+            logger.warning("特征提取服务不可用，使用直方图特征降级检索: " + e.getMessage());
+            degradedSearches.incrementAndGet();
+            float[] histogramFeature = coarseFeature != null ? coarseFeature
+                    : histogramFeatureExtractor.extract(imageData, fileExtension);
+            return artifactService.findSimilarArtifactsByHistogram(histogramFeature, threshold, maxResults, filter);
+        }
+        
+        // 查找相似文物
+        return artifactService.findSimilarArtifacts(features, coarseFeature, threshold, maxResults, filter);
+    }
+    
+    /**
+     * 计算用于粗筛的直方图特征，ImageIO无法解码的图片不粗筛
+     */
+    private float[] coarseFeature(byte[] imageData) {
+        try {
+            return histogramFeatureExtractor.extract(imageData, null);
+        } catch (InvalidImageException e) {
+            return null;
+        }
     }
     
     /**
@@ -180,17 +295,66 @@ public class ImageSearchService {
      * @param imagePath 图片路径
      * @param threshold 相似度阈值
      * @param maxResults 最大结果数
+     * @param filter 属性过滤条件，为null时不过滤
      * @return 相似文物列表
      */
-    public List<Artifact> searchSimilarArtifactsByPath(String imagePath, double threshold, int maxResults) {
+    public List<SimilarArtifactDTO> searchSimilarArtifactsByPath(String imagePath, double threshold, int maxResults,
+                                                                 AttributeFilter filter) {
         // 提取特征
-        float[] features = featureExtractionService.extractFeatures(imagePath);
+        float[] features = sidecarFeatureExtractor.extract(imagePath);
         logger.info("已成功提取特征，长度: " + features.length);
         
-        // 将特征数组转换为JSON字符串
-        String featureJson = Arrays.toString(features);
-        
         // 查找相似文物
-        return artifactService.findSimilarArtifacts(featureJson, threshold, maxResults);
+        return artifactService.findSimilarArtifacts(features, threshold, maxResults, filter);
+    }
+    
+    /**
+     * 降级检索统计信息
+     */
+    public Map<String, Object> getDegradedStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", degradedSearchEnabled);
+        stats.put("active", !sidecarFeatureExtractor.isAvailable() && histogramIndexService.isReady());
+        stats.put("searches", degradedSearches.get());
+        return stats;
+    }
+    
+    /**
+     * 批量检索中单张图片的结果，results与error二者有且只有一个不为null
+     */
+    public static final class BatchSearchResult {
+        private final String filename;
+        private final List<SimilarArtifactDTO> results;
+        private final String error;
+        
+        private BatchSearchResult(String filename, List<SimilarArtifactDTO> results, String error) {
+            this.filename = filename;
+            this.results = results;
+            this.error = error;
+        }
+        
+        static BatchSearchResult success(String filename, List<SimilarArtifactDTO> results) {
+            return new BatchSearchResult(filename, results, null);
+        }
+        
+        static BatchSearchResult failure(String filename, String error) {
+            return new BatchSearchResult(filename, null, error);
+        }
+        
+        public String getFilename() {
+            return filename;
+        }
+        
+        public boolean isSuccess() {
+            return error == null;
+        }
+        
+        public List<SimilarArtifactDTO> getResults() {
+            return results;
+        }
+        
+        public String getError() {
+            return error;
+        }
     }
 }
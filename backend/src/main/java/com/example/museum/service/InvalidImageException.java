@@ -0,0 +1,17 @@
+package com.example.museum.service;
+
+/**
+ * 上传的图像无法解析或尺寸超出限制时抛出，控制器应返回400
+ */
+public class InvalidImageException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InvalidImageException(String message) {
+        super(message);
+    }
+
+    public InvalidImageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,357 @@
+package com.example.museum.service;
+
+import com.example.museum.entity.Artifact;
+import com.example.museum.mapper.ArtifactMapper;
+import com.example.museum.search.ArtifactChangeHandler;
+import com.example.museum.search.BkTree;
+import com.example.museum.search.SearchHit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 馆藏图片近重复索引
+ * 启动后在后台加载已存储的感知哈希，为缺少哈希的文物读取图片计算后写回数据库，并按pHash建立BK树；
+ * 之后由增量更新线程通知文物的新增、修改和删除，在后台线程中逐条更新索引，并按refresh-interval-ms定期重建。
+ * 图片无法读取或解码的文物记录其图片地址，地址不变时定期重建不再重复下载，文物变更时才重试。
+ * 查询图片与某件文物的pHash和dHash距离都在阈值内时视为同一张馆藏图片的翻拍或重新压缩版本，
+ * 直接返回该文物，无需调用Python特征提取服务
+ */
+@Service
+public class PerceptualHashIndexService implements ArtifactChangeHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(PerceptualHashIndexService.class);
+
+    @Autowired
+    private ArtifactMapper artifactMapper;
+
+    @Autowired
+    private PerceptualHasher perceptualHasher;
+
+    @Autowired
+    private ArtifactImageLoader artifactImageLoader;
+
+    @Value("${museum.search.phash.enabled:true}")
+    private boolean enabled;
+
+    // 视为近重复的最大pHash汉明距离（共64位）
+    @Value("${museum.search.phash.max-distance:6}")
+    private int maxDistance;
+
+    // 同时要求dHash距离不超过该值，避免pHash偶然相近的不同图片被误判
+    @Value("${museum.search.phash.dhash-max-distance:10}")
+    private int dhashMaxDistance;
+
+    // 定期重建索引的间隔，0表示只在启动时构建
+    @Value("${museum.search.phash.refresh-interval-ms:600000}")
+    private long refreshIntervalMillis;
+
+    private final AtomicBoolean building = new AtomicBoolean(false);
+
+    // 插入BK树需串行执行，检索不加锁
+    private final Object treeLock = new Object();
+
+    private volatile BkTree tree = new BkTree();
+
+    /**
+     * 计算失败的文物及其图片地址
+     */
+    private final Map<Integer, String> failedImages = new ConcurrentHashMap<>();
+
+    /**
+     * 已加入索引的文物及其图片地址，文物变更时据此判断是否更换了图片
+     */
+    private volatile Map<Integer, String> indexedImages = new ConcurrentHashMap<>();
+
+    /**
+     * 重建期间变更的文物，新树替换旧树后按当前数据重新处理
+     */
+    private final Set<Integer> changedDuringBuild = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService changeExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "phash-index-changes");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile long computedRows;
+
+    private volatile long failedRows;
+
+    private volatile long skippedFailedRows;
+
+    private final AtomicLong incrementalUpdates = new AtomicLong();
+
+    private volatile long builtAt;
+
+    private final AtomicLong lookups = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong undecodable = new AtomicLong();
+
+    private final AtomicLong lookupNanos = new AtomicLong();
+
+    /**
+     * 应用启动完成后在后台线程构建索引并定期重建
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            rebuild();
+            while (refreshIntervalMillis > 0) {
+                try {
+                    Thread.sleep(refreshIntervalMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                rebuild();
+            }
+        }, "phash-index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 重新构建索引，同一时间只允许一个构建任务运行
+     */
+    public void rebuild() {
+        if (!building.compareAndSet(false, true)) {
+            logger.info("感知哈希索引已在构建中");
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            changedDuringBuild.clear();
+            List<Artifact> sources = artifactMapper.findPerceptualHashSources();
+            BkTree rebuilt = new BkTree();
+            Map<Integer, String> rebuiltImages = new ConcurrentHashMap<>();
+            Set<Integer> live = new HashSet<>();
+            int computed = 0;
+            int skipped = 0;
+            for (Artifact artifact : sources) {
+                live.add(artifact.getId());
+                if (artifact.getPhash() != null && artifact.getDhash() != null) {
+                    rebuilt.add(artifact.getPhash(), artifact.getDhash(), artifact.getId());
+                    rebuiltImages.put(artifact.getId(), artifact.getImageUrl());
+                    continue;
+                }
+                if (artifact.getImageUrl().equals(failedImages.get(artifact.getId()))) {
+                    // 同一图片已计算失败过，等文物变更后再重试
+                    skipped++;
+                    continue;
+                }
+                PerceptualHasher.Hashes hashes = compute(artifact);
+                if (hashes != null) {
+                    rebuilt.add(hashes.getPhash(), hashes.getDhash(), artifact.getId());
+                    rebuiltImages.put(artifact.getId(), artifact.getImageUrl());
+                    computed++;
+                }
+                if ((computedRows + failedRows) % 200 == 0) {
+                    logger.info("感知哈希计算进度 - 已计算: {}, 失败: {}", computedRows, failedRows);
+                }
+            }
+            failedImages.keySet().retainAll(live);
+            skippedFailedRows = skipped;
+            synchronized (treeLock) {
+                tree = rebuilt;
+                indexedImages = rebuiltImages;
+            }
+            builtAt = System.currentTimeMillis();
+            logger.info("感知哈希索引构建完成 - 数量: {}, 新计算: {}, 跳过此前失败: {}, 耗时: {} ms",
+                    rebuilt.size(), computed, skipped, builtAt - start);
+            // 构建期间变更的文物可能未反映在新树中
+            List<Integer> changed = new ArrayList<>(changedDuringBuild);
+            changedDuringBuild.removeAll(changed);
+            if (!changed.isEmpty()) {
+                refresh(changed);
+            }
+        } catch (Exception e) {
+            logger.error("感知哈希索引构建失败: {}", e.getMessage());
+        } finally {
+            building.set(false);
+        }
+    }
+
+    /**
+     * 下载文物图片计算感知哈希并写回数据库
+     * @return 图片无法读取或解码时记录失败并返回null
+     */
+    private PerceptualHasher.Hashes compute(Artifact artifact) {
+        try {
+            PerceptualHasher.Hashes hashes = perceptualHasher.hash(artifactImageLoader.load(artifact.getImageUrl()));
+            artifactMapper.updatePerceptualHash(artifact.getId(), hashes.getPhash(), hashes.getDhash());
+            failedImages.remove(artifact.getId());
+            computedRows++;
+            return hashes;
+        } catch (Exception e) {
+            failedImages.put(artifact.getId(), artifact.getImageUrl());
+            failedRows++;
+            logger.debug("计算文物感知哈希失败 - 文物ID: {}, 原因: {}", artifact.getId(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 文物新增、修改或删除后由增量更新线程调用，在后台线程中更新索引，不阻塞向量库同步
+     */
+    @Override
+    public void onArtifactsChanged(Collection<Integer> artifactIds) {
+        if (!enabled || artifactIds.isEmpty()) {
+            return;
+        }
+        List<Integer> ids = new ArrayList<>(artifactIds);
+        changeExecutor.submit(() -> {
+            try {
+                refresh(ids);
+            } catch (Exception e) {
+                logger.warn("感知哈希索引增量更新失败 - 变更数: {}, 原因: {}", ids.size(), e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 按数据库当前状态更新指定文物：已删除或没有图片的移出索引；图片地址变化或缺少哈希的重新计算
+     */
+    private void refresh(List<Integer> ids) {
+        if (building.get()) {
+            changedDuringBuild.addAll(ids);
+        }
+        Map<Integer, Artifact> sources = new LinkedHashMap<>();
+        for (Artifact artifact : artifactMapper.findPerceptualHashSourcesByIds(ids)) {
+            sources.put(artifact.getId(), artifact);
+        }
+        for (Integer id : ids) {
+            Artifact artifact = sources.get(id);
+            if (artifact == null) {
+                failedImages.remove(id);
+                synchronized (treeLock) {
+                    tree.remove(id);
+                    indexedImages.remove(id);
+                }
+                continue;
+            }
+            // 新入库的文物没有旧地址，以数据库中已有的哈希为准
+            String indexedImage = indexedImages.get(id);
+            boolean imageChanged = indexedImage != null && !Objects.equals(artifact.getImageUrl(), indexedImage);
+            PerceptualHasher.Hashes hashes;
+            if (artifact.getPhash() != null && artifact.getDhash() != null && !imageChanged) {
+                hashes = new PerceptualHasher.Hashes(artifact.getPhash(), artifact.getDhash());
+            } else {
+                hashes = compute(artifact);
+            }
+            synchronized (treeLock) {
+                if (hashes != null) {
+                    tree.add(hashes.getPhash(), hashes.getDhash(), id);
+                    indexedImages.put(id, artifact.getImageUrl());
+                } else {
+                    tree.remove(id);
+                    indexedImages.remove(id);
+                }
+            }
+        }
+        incrementalUpdates.addAndGet(ids.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        changeExecutor.shutdownNow();
+    }
+
+    /**
+     * 索引中是否有可检索的哈希
+     */
+    public boolean isReady() {
+        return enabled && tree.size() > 0;
+    }
+
+    /**
+     * 查找与查询图片近重复的文物，按距离从近到远排列；没有可信命中时返回空列表
+     * 相似度为1 - pHash距离/64
+     */
+    public List<SearchHit> findNearDuplicates(byte[] imageData, int maxResults) {
+        long start = System.nanoTime();
+        lookups.incrementAndGet();
+        try {
+            PerceptualHasher.Hashes query;
+            try {
+                query = perceptualHasher.hash(imageData);
+            } catch (InvalidImageException e) {
+                // 交给特征提取服务处理
+                undecodable.incrementAndGet();
+                return new ArrayList<>();
+            }
+            List<BkTree.Match> matches = new ArrayList<>();
+            for (BkTree.Match match : tree.search(query.getPhash(), maxDistance)) {
+                if (BkTree.distance(query.getDhash(), match.getSecondaryHash()) <= dhashMaxDistance) {
+                    matches.add(match);
+                }
+            }
+            if (matches.isEmpty()) {
+                return new ArrayList<>();
+            }
+            matches.sort(Comparator.comparingInt((BkTree.Match m) -> m.getDistance()
+                    + BkTree.distance(query.getDhash(), m.getSecondaryHash())));
+            List<SearchHit> result = new ArrayList<>(Math.min(maxResults, matches.size()));
+            for (BkTree.Match match : matches) {
+                if (result.size() >= maxResults) {
+                    break;
+                }
+                result.add(new SearchHit(match.getArtifactId(), 1.0 - match.getDistance() / 64.0));
+            }
+            hits.incrementAndGet();
+            return result;
+        } finally {
+            lookupNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 近重复索引统计信息
+     */
+    public Map<String, Object> getStats() {
+        long count = lookups.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("building", building.get());
+        stats.put("hashes", tree.size());
+        stats.put("maxDistance", maxDistance);
+        stats.put("dhashMaxDistance", dhashMaxDistance);
+        stats.put("computedRows", computedRows);
+        stats.put("failedRows", failedRows);
+        stats.put("failedImages", failedImages.size());
+        stats.put("skippedFailedRows", skippedFailedRows);
+        stats.put("incrementalUpdates", incrementalUpdates.get());
+        stats.put("removedNodes", tree.removedCount());
+        stats.put("builtAt", builtAt);
+        stats.put("lookups", count);
+        stats.put("hits", hits.get());
+        stats.put("undecodable", undecodable.get());
+        stats.put("avgMillis", count == 0 ? 0 : lookupNanos.get() / 1_000_000.0 / count);
+        return stats;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.museum.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * 计算图像的64位感知哈希，用于识别同一张馆藏图片的翻拍、缩放和重新压缩版本
+ * pHash：32x32灰度图做二维DCT，取左上8x8低频系数与中值比较；
+ * dHash：9x8灰度图中每行相邻像素比较亮度。两种哈希的汉明距离越小图像越接近
+ */
+@Service
+public class PerceptualHasher {
+
+    private static final int DCT_SIZE = 32;
+    private static final int LOW_FREQUENCY = 8;
+
+    /**
+     * 解码缩略图的短边长度，两种哈希的输入都只有几十像素
+     */
+    private static final int THUMBNAIL_SIDE = 64;
+
+    private static final double[][] DCT_COEFFICIENTS = new double[LOW_FREQUENCY][DCT_SIZE];
+
+    static {
+        for (int u = 0; u < LOW_FREQUENCY; u++) {
+            for (int x = 0; x < DCT_SIZE; x++) {
+                DCT_COEFFICIENTS[u][x] = Math.cos((2 * x + 1) * u * Math.PI / (2 * DCT_SIZE));
+            }
+        }
+    }
+
+    @Autowired
+    private ImagePreprocessor imagePreprocessor;
+
+    /**
+     * 一张图像的两种感知哈希
+     */
+    public static final class Hashes {
+        private final long phash;
+        private final long dhash;
+
+        public Hashes(long phash, long dhash) {
+            this.phash = phash;
+            this.dhash = dhash;
+        }
+
+        public long getPhash() {
+            return phash;
+        }
+
+        public long getDhash() {
+            return dhash;
+        }
+    }
+
+    /**
+     * @throws InvalidImageException 如果ImageIO无法解码图像
+     */
+    public Hashes hash(byte[] imageData) {
+        BufferedImage image = imagePreprocessor.decodeThumbnail(imageData, THUMBNAIL_SIDE);
+        return new Hashes(phash(image), dhash(image));
+    }
+
+    public static long phash(BufferedImage image) {
+        double[] gray = grayscale(image, DCT_SIZE, DCT_SIZE);
+
+        // 只需要低频部分，先对行再对列做一维DCT
+        double[] rows = new double[DCT_SIZE * LOW_FREQUENCY];
+        for (int y = 0; y < DCT_SIZE; y++) {
+            for (int u = 0; u < LOW_FREQUENCY; u++) {
+                double sum = 0;
+                for (int x = 0; x < DCT_SIZE; x++) {
+                    sum += gray[y * DCT_SIZE + x] * DCT_COEFFICIENTS[u][x];
+                }
+                rows[y * LOW_FREQUENCY + u] = sum;
+            }
+        }
+        double[] coefficients = new double[LOW_FREQUENCY * LOW_FREQUENCY];
+        for (int v = 0; v < LOW_FREQUENCY; v++) {
+            for (int u = 0; u < LOW_FREQUENCY; u++) {
+                double sum = 0;
+                for (int y = 0; y < DCT_SIZE; y++) {
+                    sum += rows[y * LOW_FREQUENCY + u] * DCT_COEFFICIENTS[v][y];
+                }
+                coefficients[v * LOW_FREQUENCY + u] = sum;
+            }
+        }
+
+        // 直流分量只反映整体亮度，不参与中值计算
+        double[] ac = Arrays.copyOfRange(coefficients, 1, coefficients.length);
+        Arrays.sort(ac);
+        double median = (ac[ac.length / 2 - 1] + ac[ac.length / 2]) / 2;
+        long hash = 0;
+        for (int i = 0; i < coefficients.length; i++) {
+            if (coefficients[i] > median) {
+                hash |= 1L << i;
+            }
+        }
+        return hash;
+    }
+
+    public static long dhash(BufferedImage image) {
+        double[] gray = grayscale(image, 9, 8);
+        long hash = 0;
+        int bit = 0;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                if (gray[y * 9 + x] > gray[y * 9 + x + 1]) {
+                    hash |= 1L << bit;
+                }
+                bit++;
+            }
+        }
+        return hash;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * 按区域平均缩小为width x height的灰度图，结果与缩放插值方式无关，保证同一图像的哈希稳定
+     */
+    private static double[] grayscale(BufferedImage image, int width, int height) {
+        int sourceWidth = image.getWidth();
+        int sourceHeight = image.getHeight();
+        int[] argb = image.getRGB(0, 0, sourceWidth, sourceHeight, null, 0, sourceWidth);
+        double[] sums = new double[width * height];
+        int[] counts = new int[width * height];
+        for (int y = 0; y < sourceHeight; y++) {
+            int row = y * height / sourceHeight;
+            for (int x = 0; x < sourceWidth; x++) {
+                int pixel = argb[y * sourceWidth + x];
+                int cell = row * width + x * width / sourceWidth;
+                sums[cell] += 0.299 * ((pixel >> 16) & 0xFF) + 0.587 * ((pixel >> 8) & 0xFF) + 0.114 * (pixel & 0xFF);
+                counts[cell]++;
+            }
+        }
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] = counts[i] == 0 ? 0 : sums[i] / counts[i];
+        }
+        return sums;
+    }
+}
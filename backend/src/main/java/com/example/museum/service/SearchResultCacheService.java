@@ -0,0 +1,172 @@
+package com.example.museum.service;
+
+import com.example.museum.dto.SimilarArtifactDTO;
+import com.example.museum.search.ArtifactVectorStore;
+import com.example.museum.search.SearchHit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 以图搜图结果缓存
+ * 键为量化后的查询向量、阈值、结果数和过滤条件；每条结果记录计算时的向量库版本号，
+ * 文物数据变更后版本号递增，旧结果在读取时即判定失效，无需扫描整个缓存。
+ * 只缓存命中的(文物ID, 相似度)，每次返回前按ID读取当前文物记录，点赞数等不影响排序的字段变化无需使缓存失效
+ */
+@Service
+public class SearchResultCacheService {
+
+    @Autowired
+    private ArtifactVectorStore artifactVectorStore;
+
+    @Value("${museum.search.result-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${museum.search.result-cache.max-entries:500}")
+    private int maxEntries;
+
+    /**
+     * 查询向量量化步长，差异小于该值的分量视为相同
+     */
+    @Value("${museum.search.result-cache.quantization-step:0.0001}")
+    private double quantizationStep;
+
+    private final LinkedHashMap<ResultKey, CachedResult> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong staleEvictions = new AtomicLong();
+
+    /**
+     * 获取检索结果，未命中或已失效时调用loader重新检索
+     * @param filters 过滤条件，需实现equals/hashCode，没有过滤时传null
+     * @param loader 检索逻辑，返回按相似度排序的命中
+     * @param hydrator 按命中读取当前文物记录并转换为结果
+     */
+    public List<SimilarArtifactDTO> getOrCompute(float[] query, double threshold, int maxResults, Object filters,
+                                                 Supplier<List<SearchHit>> loader,
+                                                 Function<List<SearchHit>, List<SimilarArtifactDTO>> hydrator) {
+        if (!enabled) {
+            return hydrator.apply(loader.get());
+        }
+        // 先读取版本号再计算，计算期间发生的变更会使本次结果直接过期
+        long generation = artifactVectorStore.getGeneration();
+        ResultKey key = new ResultKey(fingerprint(query), threshold, maxResults, filters);
+
+        synchronized (cache) {
+            CachedResult cached = cache.get(key);
+            if (cached != null) {
+                if (cached.generation == generation) {
+                    hits.incrementAndGet();
+                    return hydrator.apply(cached.hits);
+                }
+                cache.remove(key);
+                staleEvictions.incrementAndGet();
+            }
+        }
+
+        misses.incrementAndGet();
+        List<SearchHit> searchHits = Collections.unmodifiableList(new ArrayList<>(loader.get()));
+        synchronized (cache) {
+            cache.put(key, new CachedResult(searchHits, generation));
+            while (cache.size() > maxEntries) {
+                cache.remove(cache.keySet().iterator().next());
+            }
+        }
+        return hydrator.apply(searchHits);
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> getStats() {
+        int size;
+        synchronized (cache) {
+            size = cache.size();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("size", size);
+        stats.put("maxEntries", maxEntries);
+        stats.put("generation", artifactVectorStore.getGeneration());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("staleEvictions", staleEvictions.get());
+        return stats;
+    }
+
+    private int[] fingerprint(float[] query) {
+        int[] quantized = new int[query.length];
+        for (int i = 0; i < query.length; i++) {
+            quantized[i] = (int) Math.round(query[i] / quantizationStep);
+        }
+        return quantized;
+    }
+
+    private static final class ResultKey {
+        private final int[] fingerprint;
+        private final double threshold;
+        private final int maxResults;
+        private final Object filters;
+        private final int hash;
+
+        private ResultKey(int[] fingerprint, double threshold, int maxResults, Object filters) {
+            this.fingerprint = fingerprint;
+            this.threshold = threshold;
+            this.maxResults = maxResults;
+            this.filters = filters;
+            this.hash = 31 * Objects.hash(threshold, maxResults, filters) + Arrays.hashCode(fingerprint);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ResultKey)) {
+                return false;
+            }
+            ResultKey other = (ResultKey) o;
+            return hash == other.hash
+                    && maxResults == other.maxResults
+                    && Double.compare(threshold, other.threshold) == 0
+                    && Objects.equals(filters, other.filters)
+                    && Arrays.equals(fingerprint, other.fingerprint);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class CachedResult {
+        private final List<SearchHit> hits;
+        private final long generation;
+
+        private CachedResult(List<SearchHit> hits, long generation) {
+            this.hits = hits;
+            this.generation = generation;
+        }
+    }
+}
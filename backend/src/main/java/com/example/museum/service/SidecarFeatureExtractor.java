@@ -0,0 +1,193 @@
+package com.example.museum.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 通过Python特征提取服务（ResNet50）提取特征
+ * 先校验并缩小图像，默认将图像字节直接发送给Python服务；配置为file模式或Python服务不支持字节流时回退到临时文件方式
+ */
+@Service
+public class SidecarFeatureExtractor implements FeatureExtractor {
+
+    private static final Logger logger = LoggerFactory.getLogger(SidecarFeatureExtractor.class);
+
+    public static final String NAME = "resnet50";
+
+    @Autowired
+    private FeatureExtractionService featureExtractionService;
+
+    @Autowired
+    private FeatureServiceGuard featureServiceGuard;
+
+    @Autowired
+    private FeatureExtractionBatcher featureExtractionBatcher;
+
+    @Autowired
+    private ImagePreprocessor imagePreprocessor;
+
+    @Value("${museum.temp.path:temp}")
+    private String tempPath;
+
+    // 图像传输方式: bytes(直接发送图像字节) / file(写入临时文件后发送路径)
+    @Value("${feature.extraction.transfer-mode:bytes}")
+    private String transferMode;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * 熔断器未打开时可用
+     */
+    @Override
+    public boolean isAvailable() {
+        return featureServiceGuard.isHealthy();
+    }
+
+    /**
+     * @throws FeatureServiceUnavailableException 熔断中或超出并发上限
+     */
+    @Override
+    public float[] extract(byte[] originalData, String originalExtension) throws IOException {
+        ImagePreprocessor.PreparedImage prepared = imagePreprocessor.prepare(originalData);
+        return extractPrepared(prepared.getData(),
+                prepared.getExtension() != null ? prepared.getExtension() : originalExtension);
+    }
+
+    /**
+     * 批量提取多张图像的特征，预处理后一次发送给Python服务的批量端点，在一次模型推理中完成
+     * Python服务不支持批量请求或配置为file模式时逐张提取；单张图像无法解析或提取失败不影响其他图像
+     * @param originals 图像字节数组列表
+     * @param extensions 与originals对应的图像扩展名
+     * @return 与originals顺序一致的提取结果
+     * @throws FeatureServiceUnavailableException 熔断中或超出并发上限
+     */
+    public List<FeatureExtractionService.BatchResult> extractBatch(List<byte[]> originals, List<String> extensions) {
+        List<FeatureExtractionService.BatchResult> results = new ArrayList<>(originals.size());
+        List<byte[]> images = new ArrayList<>(originals.size());
+        List<String> imageExtensions = new ArrayList<>(originals.size());
+        List<Integer> positions = new ArrayList<>(originals.size());
+        for (int i = 0; i < originals.size(); i++) {
+            results.add(null);
+            try {
+                ImagePreprocessor.PreparedImage prepared = imagePreprocessor.prepare(originals.get(i));
+                images.add(prepared.getData());
+                imageExtensions.add(prepared.getExtension() != null ? prepared.getExtension() : extensions.get(i));
+                positions.add(i);
+            } catch (InvalidImageException e) {
+                results.set(i, new FeatureExtractionService.BatchResult(null, e.getMessage()));
+            }
+        }
+        if (images.isEmpty()) {
+            return results;
+        }
+        if ("bytes".equalsIgnoreCase(transferMode) && images.size() > 1) {
+            try {
+                List<FeatureExtractionService.BatchResult> extracted = featureServiceGuard.execute(
+                        () -> featureExtractionService.extractFeaturesBatch(images));
+                for (int j = 0; j < positions.size(); j++) {
+                    results.set(positions.get(j), extracted.get(j));
+                }
+                logger.info("已批量提取特征，图像数量: {}", images.size());
+                return results;
+            } catch (ExtractorCapabilityException e) {
+                logger.warn("特征提取服务不支持批量请求，回退到逐张提取");
+            }
+        }
+        for (int j = 0; j < positions.size(); j++) {
+            try {
+                results.set(positions.get(j), new FeatureExtractionService.BatchResult(
+                        extractPrepared(images.get(j), imageExtensions.get(j)), null));
+            } catch (FeatureServiceUnavailableException e) {
+                throw e;
+            } catch (IOException | RuntimeException e) {
+                results.set(positions.get(j), new FeatureExtractionService.BatchResult(null, e.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 提取已预处理图像的特征
+     */
+    private float[] extractPrepared(byte[] imageData, String fileExtension) throws IOException {
+        if ("bytes".equalsIgnoreCase(transferMode)) {
+            try {
+                float[] features = featureServiceGuard.execute(
+                        () -> featureExtractionBatcher.extract(imageData));
+                logger.info("已成功提取特征，长度: {}", features.length);
+                return features;
+            } catch (ExtractorCapabilityException e) {
+                logger.warn("特征提取服务不支持字节流请求，回退到临时文件方式");
+            }
+        }
+        return extractFromTempFile(imageData, fileExtension);
+    }
+
+    /**
+     * 提取服务器本地图片文件的特征
+     */
+    public float[] extract(String imagePath) {
+        return featureServiceGuard.execute(() -> featureExtractionService.extractFeatures(imagePath));
+    }
+
+    /**
+     * 将图片写入临时文件并调用Python服务提取特征，完成后删除临时文件
+     * @param imageData 图像字节数组
+     * @param fileExtension 临时文件扩展名
+     * @return 特征向量
+     * @throws IOException 如果文件处理出错
+     */
+    private float[] extractFromTempFile(byte[] imageData, String fileExtension) throws IOException {
+        // 确保临时目录存在
+        File tempDir = new File(tempPath);
+        if (!tempDir.exists()) {
+            tempDir.mkdirs();
+        }
+
+        // 创建临时文件
+        String filename = UUID.randomUUID().toString() + fileExtension;
+        Path filePath = Paths.get(tempPath, filename);
+
+        try {
+            // 将字节数组写入临时文件
+            Files.write(filePath, imageData);
+            logger.info("图片字节数据已保存到临时文件: {}", filePath);
+
+            // 检查文件是否被正确写入
+            File savedFile = filePath.toFile();
+            if (!savedFile.exists() || savedFile.length() == 0) {
+                throw new IOException("图像文件没有被正确保存或为空");
+            }
+
+            logger.info("已保存临时文件，大小: {} 字节", savedFile.length());
+
+            // 提取特征
+            float[] features = extract(filePath.toString());
+            logger.info("已成功提取特征，长度: {}", features.length);
+            return features;
+        } finally {
+            // 确保临时文件被删除
+            try {
+                Files.deleteIfExists(filePath);
+                logger.info("临时文件已删除: {}", filePath);
+            } catch (IOException e) {
+                logger.warn("删除临时文件失败: {}", e.getMessage());
+            }
+        }
+    }
+}
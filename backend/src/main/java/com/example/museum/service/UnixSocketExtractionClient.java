@@ -0,0 +1,342 @@
+package com.example.museum.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
+
+import javax.annotation.PreDestroy;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.net.SocketTimeoutException;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 通过Unix域套接字与同机的Python特征提取服务通信，省去HTTP协议解析和TCP回环开销
+ * 服务地址形如 unix:/path/to/extractor.sock，协议为小端长度前缀的二进制帧：
+ * 请求 u32帧长度 + u8操作码 + 数据，响应 u32帧长度 + u8状态 + 数据，帧长度包含操作码/状态字节。
+ * 提取单张图像时数据为图像字节，响应为FeatureUtils二进制特征；
+ * 批量提取时数据为 u32数量 + (u32长度 + 图像字节)*，响应与HTTP批量端点的二进制格式相同
+ */
+@Service
+public class UnixSocketExtractionClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(UnixSocketExtractionClient.class);
+
+    public static final String SCHEME = "unix:";
+
+    private static final byte OP_EXTRACT = 1;
+    private static final byte OP_EXTRACT_BATCH = 2;
+    private static final byte OP_HEALTH = 3;
+
+    private static final byte STATUS_OK = 0;
+    private static final byte STATUS_INVALID_INPUT = 1;
+
+    private static final int FRAME_HEADER_BYTES = 5;
+
+    /**
+     * 单帧最大长度，防止异常数据导致分配过大的缓冲区
+     */
+    private static final int MAX_FRAME_BYTES = 64 * 1024 * 1024;
+
+    @Value("${museum.feature.extraction.timeout:30}")
+    private int readTimeoutSeconds;
+
+    // 每个套接字保留的空闲连接数量上限，与HTTP连接池的单路由上限一致
+    @Value("${feature.extraction.client.max-per-route:20}")
+    private int maxIdlePerSocket;
+
+    private final Map<String, Deque<Connection>> idleConnections = new ConcurrentHashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong connectionsOpened = new AtomicLong();
+    private final AtomicLong ioErrors = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    /**
+     * 服务地址是否为Unix域套接字
+     */
+    public static boolean isUnixAddress(String address) {
+        return address != null && address.startsWith(SCHEME);
+    }
+
+    /**
+     * 提取单张图像特征
+     * @return 二进制特征数据
+     * @throws IllegalArgumentException 如果图像无法解码
+     * @throws ResourceAccessException 如果套接字通信失败
+     */
+    public byte[] extract(String address, byte[] imageData) {
+        return call(address, OP_EXTRACT, ByteBuffer.wrap(imageData));
+    }
+
+    /**
+     * 批量提取特征
+     * @return 批量二进制结果
+     */
+    public byte[] extractBatch(String address, List<byte[]> images) {
+        ByteBuffer[] payload = new ByteBuffer[images.size() * 2 + 1];
+        payload[0] = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, images.size());
+        for (int i = 0; i < images.size(); i++) {
+            payload[i * 2 + 1] = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, images.get(i).length);
+            payload[i * 2 + 2] = ByteBuffer.wrap(images.get(i));
+        }
+        return call(address, OP_EXTRACT_BATCH, payload);
+    }
+
+    /**
+     * 检查套接字上的服务是否正常响应
+     */
+    public boolean isHealthy(String address) {
+        try {
+            call(address, OP_HEALTH);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private byte[] call(String address, byte op, ByteBuffer... payload) {
+        long payloadBytes = remaining(payload);
+        if (payloadBytes + 1 > MAX_FRAME_BYTES) {
+            throw new IllegalArgumentException("图像数据过大: " + payloadBytes + " 字节");
+        }
+        requests.incrementAndGet();
+        Connection connection = null;
+        try {
+            connection = borrow(address);
+            Frame response;
+            try {
+                response = connection.exchange(op, payload);
+            } catch (IOException e) {
+                if (!connection.reused || connection.responseBytes > 0 || !isConnectionClosed(e)) {
+                    throw e;
+                }
+                // 空闲连接已被服务端关闭（如工作进程重启），且尚未收到任何响应数据，用新连接重试一次
+                connection.close();
+                rewind(payload);
+                connection = open(address);
+                response = connection.exchange(op, payload);
+            }
+            release(address, connection);
+            connection = null;
+
+            if (response.status == STATUS_OK) {
+                return response.payload;
+            }
+            String message = new String(response.payload, StandardCharsets.UTF_8);
+            if (response.status == STATUS_INVALID_INPUT) {
+                throw new IllegalArgumentException("特征提取失败: " + message);
+            }
+            throw new RuntimeException("特征提取服务返回错误: " + message);
+        } catch (IOException e) {
+            ioErrors.incrementAndGet();
+            if (connection != null) {
+                connection.close();
+            }
+            throw new ResourceAccessException("特征提取服务套接字通信失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 是否为对端已关闭连接：读到EOF，或读写时连接被重置。超时不属于此类，服务端可能仍在处理请求，不能重发
+     */
+    private static boolean isConnectionClosed(IOException e) {
+        if (e instanceof SocketTimeoutException) {
+            return false;
+        }
+        if (e instanceof EOFException) {
+            return true;
+        }
+        String message = e.getMessage();
+        return message != null && (message.contains("Connection reset") || message.contains("Broken pipe"));
+    }
+
+    private static long remaining(ByteBuffer[] buffers) {
+        long total = 0;
+        for (ByteBuffer buffer : buffers) {
+            total += buffer.remaining();
+        }
+        return total;
+    }
+
+    private static void rewind(ByteBuffer[] buffers) {
+        for (ByteBuffer buffer : buffers) {
+            buffer.rewind();
+        }
+    }
+
+    private Connection borrow(String address) throws IOException {
+        Deque<Connection> idle = idleConnections.get(address);
+        Connection connection = idle != null ? idle.pollFirst() : null;
+        if (connection != null) {
+            connection.reused = true;
+            return connection;
+        }
+        return open(address);
+    }
+
+    private Connection open(String address) throws IOException {
+        UnixDomainSocketAddress socketAddress = UnixDomainSocketAddress.of(address.substring(SCHEME.length()));
+        SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.connect(socketAddress);
+            channel.configureBlocking(false);
+            connectionsOpened.incrementAndGet();
+            return new Connection(channel, Selector.open());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void release(String address, Connection connection) {
+        Deque<Connection> idle = idleConnections.computeIfAbsent(address, key -> new ConcurrentLinkedDeque<>());
+        if (idle.size() < maxIdlePerSocket) {
+            idle.offerFirst(connection);
+        } else {
+            connection.close();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Deque<Connection> idle : idleConnections.values()) {
+            Connection connection;
+            while ((connection = idle.pollFirst()) != null) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * 套接字通信统计信息
+     */
+    public Map<String, Object> getStats() {
+        int idle = 0;
+        for (Deque<Connection> connections : idleConnections.values()) {
+            idle += connections.size();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requests", requests.get());
+        stats.put("connectionsOpened", connectionsOpened.get());
+        stats.put("idleConnections", idle);
+        stats.put("ioErrors", ioErrors.get());
+        stats.put("bytesSent", bytesSent.get());
+        stats.put("bytesReceived", bytesReceived.get());
+        return stats;
+    }
+
+    private static final class Frame {
+        private final byte status;
+        private final byte[] payload;
+
+        private Frame(byte status, byte[] payload) {
+            this.status = status;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * 一条非阻塞套接字连接，同一时间只处理一个请求，读写通过Selector实现超时
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private final Selector selector;
+        private final SelectionKey key;
+        private boolean reused;
+        /**
+         * 当前请求已收到的响应字节数
+         */
+        private long responseBytes;
+
+        private Connection(SocketChannel channel, Selector selector) throws IOException {
+            this.channel = channel;
+            this.selector = selector;
+            this.key = channel.register(selector, 0);
+        }
+
+        private Frame exchange(byte op, ByteBuffer[] payload) throws IOException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(readTimeoutSeconds);
+            responseBytes = 0;
+
+            long payloadBytes = remaining(payload);
+            ByteBuffer[] buffers = new ByteBuffer[payload.length + 1];
+            buffers[0] = ByteBuffer.allocate(FRAME_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt((int) payloadBytes + 1).put(op).flip();
+            System.arraycopy(payload, 0, buffers, 1, payload.length);
+            writeFully(buffers, deadline);
+            bytesSent.addAndGet(payloadBytes + FRAME_HEADER_BYTES);
+
+            ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(header, deadline);
+            header.flip();
+            int length = header.getInt();
+            byte status = header.get();
+            if (length < 1 || length > MAX_FRAME_BYTES) {
+                throw new IOException("无效的响应帧长度: " + length);
+            }
+            byte[] body = new byte[length - 1];
+            readFully(ByteBuffer.wrap(body), deadline);
+            bytesReceived.addAndGet(length + 4L);
+            return new Frame(status, body);
+        }
+
+        private void writeFully(ByteBuffer[] buffers, long deadline) throws IOException {
+            while (remaining(buffers) > 0) {
+                if (channel.write(buffers) == 0) {
+                    await(SelectionKey.OP_WRITE, deadline);
+                }
+            }
+        }
+
+        private void readFully(ByteBuffer buffer, long deadline) throws IOException {
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer);
+                if (read < 0) {
+                    throw new EOFException("特征提取服务关闭了连接");
+                }
+                responseBytes += read;
+                if (read == 0) {
+                    await(SelectionKey.OP_READ, deadline);
+                }
+            }
+        }
+
+        private void await(int ops, long deadline) throws IOException {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                throw new SocketTimeoutException("等待特征提取服务响应超时");
+            }
+            key.interestOps(ops);
+            selector.select(remainingMillis);
+            selector.selectedKeys().clear();
+        }
+
+        private void close() {
+            try {
+                selector.close();
+                channel.close();
+            } catch (IOException e) {
+                logger.debug("关闭特征提取服务套接字连接失败: {}", e.getMessage());
+            }
+        }
+    }
+}
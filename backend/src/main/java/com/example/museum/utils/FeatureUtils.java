@@ -2,6 +2,9 @@ package com.example.museum.utils;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 /**
  * 特征向量工具类
  */
@@ -9,6 +12,32 @@ public class FeatureUtils {
     
     private static final ObjectMapper objectMapper = new ObjectMapper();
     
+    /**
+     * 二进制特征格式魔数 "FV"
+     */
+    private static final byte MAGIC_0 = 'F';
+    private static final byte MAGIC_1 = 'V';
+    
+    /**
+     * 二进制特征格式版本
+     */
+    private static final byte FORMAT_VERSION = 1;
+    
+    /**
+     * 元素类型：小端float32
+     */
+    private static final byte ELEMENT_FLOAT32 = 1;
+    
+    /**
+     * 二进制头部长度：魔数(2) + 格式版本(1) + 元素类型(1) + 模型版本(2) + 保留(2) + 维度(4)
+     */
+    public static final int BINARY_HEADER_SIZE = 12;
+    
+    /**
+     * 当前特征提取模型版本（ResNet50 ImageNet V1权重）
+     */
+    public static final int DEFAULT_MODEL_VERSION = 1;
+    
     /**
      * 将特征向量转换为数据库存储的字符串
      * @param features 特征向量
@@ -35,6 +64,85 @@ public class FeatureUtils {
         }
     }
     
+    /**
+     * 将数据库中的字符串直接解析为float特征向量，避免double中转
+     * @param featuresString 特征向量的字符串表示
+     * @return float特征向量数组
+     */
+    public static float[] stringToFloatFeatures(String featuresString) {
+        try {
+            return objectMapper.readValue(featuresString, float[].class);
+        } catch (Exception e) {
+            throw new RuntimeException("字符串转特征向量失败", e);
+        }
+    }
+
+    /**
+     * 将特征向量编码为二进制格式（小端float32，带头部）
+     * @param features 特征向量
+     * @param modelVersion 生成该特征的模型版本
+     * @return 二进制表示
+     */
+    public static byte[] encodeFeatures(float[] features, int modelVersion) {
+        if (modelVersion < 0 || modelVersion > 0xFFFF) {
+            throw new IllegalArgumentException("模型版本超出范围: " + modelVersion);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BINARY_HEADER_SIZE + features.length * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MAGIC_0).put(MAGIC_1).put(FORMAT_VERSION).put(ELEMENT_FLOAT32);
+        buffer.putShort((short) modelVersion);
+        buffer.putShort((short) 0);
+        buffer.putInt(features.length);
+        buffer.asFloatBuffer().put(features);
+        return buffer.array();
+    }
+    
+    /**
+     * 将二进制格式解码为特征向量
+     * @param data 二进制表示
+     * @return float特征向量数组
+     */
+    public static float[] decodeFeatures(byte[] data) {
+        ByteBuffer buffer = checkBinaryHeader(data);
+        int dimension = buffer.getInt(8);
+        float[] features = new float[dimension];
+        buffer.position(BINARY_HEADER_SIZE);
+        buffer.asFloatBuffer().get(features);
+        return features;
+    }
+    
+    /**
+     * 读取二进制特征中记录的模型版本
+     * @param data 二进制表示
+     * @return 模型版本
+     */
+    public static int modelVersionOf(byte[] data) {
+        return checkBinaryHeader(data).getShort(4) & 0xFFFF;
+    }
+    
+    /**
+     * 判断字节数组是否为本工具类编码的二进制特征
+     */
+    public static boolean isBinaryFeatures(byte[] data) {
+        return data != null && data.length >= BINARY_HEADER_SIZE
+                && data[0] == MAGIC_0 && data[1] == MAGIC_1;
+    }
+    
+    private static ByteBuffer checkBinaryHeader(byte[] data) {
+        if (!isBinaryFeatures(data)) {
+            throw new IllegalArgumentException("不是有效的二进制特征数据");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.get(2) != FORMAT_VERSION || buffer.get(3) != ELEMENT_FLOAT32) {
+            throw new IllegalArgumentException("不支持的二进制特征格式版本: " + buffer.get(2));
+        }
+        int dimension = buffer.getInt(8);
+        if (dimension < 0 || data.length != BINARY_HEADER_SIZE + (long) dimension * Float.BYTES) {
+            throw new IllegalArgumentException("二进制特征长度与维度不一致");
+        }
+        return buffer;
+    }
+    
     /**
      * 计算两个特征向量间的余弦相似度
      * @param features1 第一个特征向量
@@ -1,17 +1,24 @@
+import contextlib
+import io
 import os
+import struct
 import sys
+import time
 import logging
+import socketserver
 import traceback
 import torch
 import numpy as np
 from torchvision import models, transforms
 from PIL import Image
 import json
-from flask import Flask, request, jsonify
+from flask import Flask, Response, request, jsonify
+from werkzeug.serving import WSGIRequestHandler
 
 # 配置日志
+# 默认INFO级别，排查问题时可通过FEATURE_LOG_LEVEL=DEBUG开启逐请求的详细日志
 logging.basicConfig(
-    level=logging.DEBUG,  # 修改为DEBUG级别以获取更多信息
+    level=getattr(logging, os.environ.get('FEATURE_LOG_LEVEL', 'INFO').upper(), logging.INFO),
     format='%(asctime)s - %(name)s - %(levelname)s - %(message)s',
     handlers=[
         logging.FileHandler("feature_extractor.log", encoding='utf-8'),  # 添加编码
@@ -40,9 +47,51 @@ except ImportError as e:
 
 app = Flask(__name__)
 
+# 推理精度: float32(默认，吞吐约为float64的两倍) / float64(与早期入库特征的计算方式完全一致，用于对比)
+PRECISION = os.environ.get('FEATURE_PRECISION', 'float32').lower()
+MODEL_DTYPE = torch.float64 if PRECISION == 'float64' else torch.float32
+
+# 单次推理使用的intra-op线程数，默认使用全部CPU核
+TORCH_THREADS = int(os.environ.get('TORCH_THREADS', str(os.cpu_count() or 1)))
+torch.set_num_threads(TORCH_THREADS)
+
+# 启动时的预热推理次数，避免首个请求承担内存分配和算子初始化的开销
+WARMUP_ITERATIONS = int(os.environ.get('FEATURE_WARMUP_ITERATIONS', '2'))
+
 # 全局变量，用于存储模型
 model = None  # 去掉global声明，避免作用域问题
 
+# 特征模型版本，写入二进制响应头部，需与Java端museum.feature.model-version一致
+MODEL_VERSION = int(os.environ.get('FEATURE_MODEL_VERSION', '1'))
+
+# 二进制特征格式，与Java端FeatureUtils.encodeFeatures一致：
+# 'F' 'V' 格式版本(1) 元素类型(1=float32) u16模型版本 2字节保留 i32维度，随后为小端float32数据
+BINARY_HEADER = struct.Struct('<2sBBHHi')
+BINARY_MIMETYPE = 'application/octet-stream'
+
+def wants_binary():
+    """客户端是否优先接受二进制格式（未声明时默认返回JSON，便于调试）"""
+    best = request.accept_mimetypes.best_match(['application/json', BINARY_MIMETYPE])
+    return best == BINARY_MIMETYPE
+
+def encode_features(features):
+    """将特征向量编码为带头部的小端float32二进制"""
+    data = np.ascontiguousarray(features, dtype='<f4')
+    return BINARY_HEADER.pack(b'FV', 1, 1, MODEL_VERSION, 0, data.shape[0]) + data.tobytes()
+
+def encode_batch(features, errors):
+    """批量结果二进制格式：u32数量，每项为 u8状态(1成功/0失败) + u32长度 + 二进制特征或UTF-8错误信息"""
+    parts = [struct.pack('<I', len(features))]
+    for feature, error in zip(features, errors):
+        if feature is None:
+            payload = error.encode('utf-8')
+            parts.append(struct.pack('<BI', 0, len(payload)))
+        else:
+            payload = encode_features(feature)
+            parts.append(struct.pack('<BI', 1, len(payload)))
+        parts.append(payload)
+    return b''.join(parts)
+
 # 自定义JSON编码器，确保numpy类型正确序列化
 class NumpyEncoder(json.JSONEncoder):
     def default(self, obj):
@@ -60,20 +109,11 @@ def load_model():
         try:
             # 加载ResNet50（移除最后一层）
             model_temp = models.resnet50(weights=models.ResNet50_Weights.IMAGENET1K_V1)
-            
-            # 检查模型参数类型，在模型加载阶段确保是double类型
-            logger.debug(f"原始模型参数类型: {next(model_temp.parameters()).dtype}")
-            
-            # 强制模型参数为double (float64)类型
-            model_temp = model_temp.double()
-            logger.info(f"转换后模型参数类型: {next(model_temp.parameters()).dtype}")
+            model_temp = model_temp.to(MODEL_DTYPE)
                 
             model = torch.nn.Sequential(*list(model_temp.children())[:-1])
             model.eval()
-            
-            # 再次验证模型状态
-            model_dtype = next(model.parameters()).dtype
-            logger.info(f"最终模型参数类型: {model_dtype}, 确认是torch.float64: {model_dtype == torch.float64}")
+            logger.info(f"Model loaded - dtype: {MODEL_DTYPE}, threads: {torch.get_num_threads()}")
         except Exception as e:
             logger.error(f"Failed to load model: {e}")
             logger.error(traceback.format_exc())
@@ -88,188 +128,121 @@ preprocess = transforms.Compose([
 ])
 
 def extract_features(image_path):
-    """提取图像特征向量"""
-    # 确保模型已加载
-    load_model()
-    
-    # 确保numpy已导入到当前作用域
-    import numpy as np
-    
+    """提取图像文件的特征向量（兼容旧的图像路径模式）"""
     # 检查文件存在
     if not os.path.exists(image_path):
         raise FileNotFoundError(f"Image file not found: {image_path}")
     
+    logger.debug(f"Processing image: {image_path}")
+    with open(image_path, 'rb') as f:
+        image_bytes = f.read()
+    return extract_features_from_bytes(image_bytes)
+
+def extract_features_from_bytes(image_bytes):
+    """直接从内存中的图像字节提取特征向量"""
+    features, errors = extract_features_batch([image_bytes])
+    if features[0] is None:
+        raise ValueError(errors[0])
+    return features[0]
+
+def preprocess_bytes(image_bytes):
+    """解码图像字节并预处理为模型输入张量（不含batch维度）"""
+    if len(image_bytes) == 0:
+        raise ValueError("Image data is empty")
     try:
-        logger.info(f"Processing image: {image_path}")
-        
-        # 检查文件大小
-        file_size = os.path.getsize(image_path)
-        logger.info(f"Image file size: {file_size} bytes")
-        
-        if file_size == 0:
-            raise ValueError("Image file is empty")
-            
-        # 检查文件头部，确保是JPEG格式
-        with open(image_path, 'rb') as f:
-            header = f.read(10)
-            hex_header = ' '.join(f"{b:02X}" for b in header)
-            logger.info(f"File header (hex): {hex_header}")
-            
-            if not (header[0] == 0xFF and header[1] == 0xD8):
-                logger.warning("File doesn't have JPEG header markers (FF D8)")
-        
+        image = Image.open(io.BytesIO(image_bytes)).convert("RGB")
+        return preprocess(image)
+    except Exception as e:
+        logger.warning(f"PIL could not decode image, trying OpenCV: {e}")
+        import cv2
+        img = cv2.imdecode(np.frombuffer(image_bytes, dtype=np.uint8), cv2.IMREAD_COLOR)
+        if img is None:
+            raise ValueError("Could not decode the image data")
+        img = cv2.cvtColor(img, cv2.COLOR_BGR2RGB)
+        img = cv2.resize(img, (224, 224))
+        img = img.astype(np.float32) / 255.0
+        img = (img - np.array([0.485, 0.456, 0.406], dtype=np.float32)) / np.array([0.229, 0.224, 0.225], dtype=np.float32)
+        return torch.from_numpy(img.transpose((2, 0, 1)).copy())
+
+def extract_features_batch(images_bytes):
+    """批量提取特征：所有可解码的图像合并为一次模型推理
+    
+    返回 (features, errors) 两个与输入等长的列表，每个位置二者有且只有一个不为None
+    """
+    load_model()
+    
+    count = len(images_bytes)
+    features = [None] * count
+    errors = [None] * count
+    tensors = []
+    indices = []
+    for i, image_bytes in enumerate(images_bytes):
         try:
-            # 打开并预处理图像 - 使用更健壮的方式
-            image = Image.open(image_path).convert("RGB")
-            logger.info(f"Image opened successfully - Size: {image.size}, Mode: {image.mode}")
-            
-            # 转换为双精度类型的输入 - 验证类型转换是否成功
-            input_tensor = preprocess(image).unsqueeze(0)
-            logger.debug(f"处理前输入张量类型: {input_tensor.dtype}")
-            
-            # 确保输入是double类型
-            input_tensor = input_tensor.double()
-            logger.info(f"处理后输入张量类型: {input_tensor.dtype}, 是否为double: {input_tensor.dtype == torch.float64}")
-            
-            # 提取特征前记录模型参数类型
-            model_dtype = next(model.parameters()).dtype
-            logger.info(f"预测前模型参数类型: {model_dtype}")
-            
-            # 提取特征
-            with torch.no_grad():
-                features = model(input_tensor)
-                logger.info(f"原始输出特征类型: {features.dtype}")
-                
-                # 强制转换为double类型
-                if features.dtype != torch.float64:
-                    features = features.double()
-                    logger.info(f"转换后输出特征类型: {features.dtype}")
-                    
-                features = features.squeeze().cpu().numpy()
-            
-            # 记录特征类型和形状
-            logger.info(f"[Python] 特征数据类型: {features.dtype} | numpy类型: {type(features)}")
-            
-            # L2归一化（余弦相似度优化）
-            features = features / np.linalg.norm(features)
-            
-            # 显式检查numpy数组的dtype是否为float64
-            if features.dtype != np.float64:
-                logger.warning(f"特征数据类型不是float64，正在转换: {features.dtype} -> float64")
-                features = features.astype(np.float64)
-            
-            logger.info(f"[Python] 特征数据类型: {features.dtype} | numpy类型: {type(features)}")
-            
-            # 明确转换为float64 (double)类型
-            features_double = features.astype(np.float64)
-            logger.info(f"Converted features to double - shape: {features_double.shape}, dtype: {features_double.dtype}")
-            
-            # 检查第一个元素确认类型
-            if len(features_double) > 0:
-                first_elem = features_double[0]
-                logger.info(f"[Python] 首元素类型: {type(first_elem)} | 值: {first_elem}")
-            
-            return features_double
+            tensors.append(preprocess_bytes(image_bytes))
+            indices.append(i)
         except Exception as e:
-            logger.error(f"Error in PIL/Torch processing: {e}")
-            logger.error(traceback.format_exc())
-            
-            # 尝试备用方法
-            logger.info("Trying alternative method with OpenCV")
-            import cv2
-            
-            # 使用OpenCV读取图像
-            img = cv2.imread(image_path)
-            if img is None:
-                raise ValueError("OpenCV could not read the image file")
-                
-            logger.info(f"Image loaded with OpenCV - Shape: {img.shape}")
-            
-            # OpenCV读取的是BGR，需要转换为RGB
-            img = cv2.cvtColor(img, cv2.COLOR_BGR2RGB)
-            
-            # 调整大小为ResNet输入尺寸
-            img = cv2.resize(img, (224, 224))
-            
-            # 转换为双精度浮点数
-            img = img.astype(np.float64) / 255.0
-            img = (img - np.array([0.485, 0.456, 0.406], dtype=np.float64)) / np.array([0.229, 0.224, 0.225], dtype=np.float64)
-            img = img.transpose((2, 0, 1))  # (H,W,C) -> (C,H,W)
-            img = np.expand_dims(img, axis=0)  # 添加batch维度
-            
-            input_tensor = torch.from_numpy(img).double()  # 确保使用double
-            logger.info(f"Alternative input tensor dtype: {input_tensor.dtype}")
-            
-            # 提取特征
-            with torch.no_grad():
-                features = model(input_tensor)
-                logger.info(f"Alternative raw feature tensor dtype: {features.dtype}")
-                features = features.squeeze().cpu().numpy()
-                
-            # L2归一化
-            features = features / np.linalg.norm(features)
-            
-            # 确保是double类型
-            features_double = features.astype(np.float64)
-            logger.info(f"Alternative feature extraction successful - shape: {features_double.shape}, dtype: {features_double.dtype}")
-            
-            return features_double
-            
-    except Exception as e:
-        logger.error(f"Feature extraction failed: {e}")
-        logger.error(traceback.format_exc())
-        raise
+            logger.error(f"Failed to decode image {i} in batch: {e}")
+            errors[i] = f"图像数据无效: {str(e)}"
+    
+    if tensors:
+        with torch.inference_mode():
+            output = model(torch.stack(tensors).to(MODEL_DTYPE))
+        # 归一化在float64下进行，减少float32推理带来的误差
+        output = output.reshape(output.shape[0], -1).cpu().numpy().astype(np.float64)
+        # 逐行L2归一化
+        output = output / np.linalg.norm(output, axis=1, keepdims=True)
+        for row, i in enumerate(indices):
+            features[i] = output[row]
+    
+    logger.debug(f"Batch extraction finished - images: {count}, decoded: {len(indices)}")
+    return features, errors
+
+def warm_up():
+    """用空白图像执行几次推理，完成内存分配和算子初始化"""
+    load_model()
+    dummy = torch.zeros((1, 3, 224, 224), dtype=MODEL_DTYPE)
+    for i in range(WARMUP_ITERATIONS):
+        start = time.perf_counter()
+        with torch.inference_mode():
+            model(dummy)
+        logger.info(f"Warm-up inference {i + 1}/{WARMUP_ITERATIONS}: {(time.perf_counter() - start) * 1000:.1f} ms")
 
 @app.route('/extract', methods=['POST'])
 def extract():
     """API端点：提取图像特征"""
-    logger.info("Received feature extraction request")
+    logger.debug("Received feature extraction request")
     
     try:
-        # 验证请求格式
-        if not request.is_json:
-            logger.error("Invalid request: Not JSON")
-            return jsonify({'error': '请求必须是JSON格式'}), 400
-            
-        if 'image_path' not in request.json:
-            logger.error("Invalid request: Missing image_path")
-            return jsonify({'error': '未提供图像路径'}), 400
+        # 支持三种请求格式：
+        # 1. 请求体为图像字节（application/octet-stream 或 image/*），直接在内存中解码
+        # 2. multipart表单的image字段
+        # 3. JSON格式的image_path（旧模式，需要与Java服务共享文件系统）
+        if request.is_json:
+            if 'image_path' not in request.json:
+                logger.error("Invalid request: Missing image_path")
+                return jsonify({'error': '未提供图像路径'}), 400
+                
+            image_path = request.json['image_path']
+            logger.debug(f"Extracting features for image: {image_path}")
             
-        image_path = request.json['image_path']
-        logger.info(f"Extracting features for image: {image_path}")
-        
-        # 提取特征
-        features_array = extract_features(image_path)
-        
-        # 确认数据类型并记录详细的调试信息
-        logger.info(f"Features array type before conversion: {type(features_array).__name__}")
-        logger.info(f"Features array dtype: {features_array.dtype}")
+            # 提取特征
+            features_array = extract_features(image_path)
+        elif 'image' in request.files:
+            logger.debug("Extracting features from multipart upload")
+            features_array = extract_features_from_bytes(request.files['image'].read())
+        elif request.mimetype == 'application/octet-stream' or request.mimetype.startswith('image/'):
+            logger.debug("Extracting features from request body")
+            features_array = extract_features_from_bytes(request.get_data())
+        else:
+            logger.error(f"Invalid request content type: {request.mimetype}")
+            return jsonify({'error': '请求必须是图像字节、multipart表单或JSON格式'}), 415
         
-        # 检查第一个特征值的具体类型
-        if len(features_array) > 0:
-            first_item = features_array[0]
-            logger.info(f"[Python] 序列化前：首元素类型: {type(first_item)} | 值: {first_item}")
+        if wants_binary():
+            return Response(encode_features(features_array), mimetype=BINARY_MIMETYPE)
         
-        # 更彻底的类型转换 - 不使用numpy.tolist()，改用手动转换为Python内置float
-        try:
-            features_list = [float(x) for x in features_array]
-            logger.info(f"手动转换为内置float成功，长度: {len(features_list)}")
-            if features_list:
-                logger.info(f"手动转换后首元素类型: {type(features_list[0]).__name__}, 值: {features_list[0]}")
-        except Exception as e:
-            logger.error(f"手动转换为内置float失败: {e}")
-            # 非常保守的备选方案
-            features_list = []
-            for x in features_array:
-                try:
-                    # 使用字符串中转，确保类型转换
-                    features_list.append(float(str(x)))
-                except Exception as inner_e:
-                    logger.error(f"转换元素 {x} 失败: {inner_e}")
-                    features_list.append(0.0)  # 使用默认值
-        
-        # 使用字符串格式化
-        feature_values = [f"{float(x):.16f}" for x in features_list]
+        # JSON格式用于调试，特征值以字符串形式返回
+        feature_values = [f"{float(x):.16f}" for x in features_array]
+        logger.debug(f"Returning JSON features - length: {len(feature_values)}")
         
         # 确保返回时不使用numpy特定类型
         response_data = {
@@ -277,13 +250,15 @@ def extract():
             'featureValues': feature_values
         }
         
-        # 检查并记录最终响应数据类型
-        if feature_values and len(feature_values) > 0:
-            logger.info(f"[Python] 最终响应首元素: 类型={type(feature_values[0]).__name__}, 值={feature_values[0]}")
-            
         # 使用标准JSON序列化，不使用custom encoder
         return jsonify(response_data)
 
+    except ValueError as e:
+        logger.error(f"Invalid image data: {str(e)}")
+        return jsonify({
+            'success': False,
+            'error': f"图像数据无效: {str(e)}"
+        }), 422
     except FileNotFoundError as e:
         logger.error(f"File not found: {str(e)}")
         return jsonify({
@@ -298,20 +273,139 @@ def extract():
             'error': f"特征提取失败: {str(e)}"
         }), 500
 
+@app.route('/extract_batch', methods=['POST'])
+def extract_batch():
+    """API端点：批量提取图像特征，multipart表单中的每个images字段为一张图像"""
+    files = request.files.getlist('images')
+    logger.debug(f"Received batch feature extraction request - images: {len(files)}")
+    if not files:
+        return jsonify({'success': False, 'error': '未提供图像'}), 400
+    
+    try:
+        features, errors = extract_features_batch([f.read() for f in files])
+        if wants_binary():
+            return Response(encode_batch(features, errors), mimetype=BINARY_MIMETYPE)
+        
+        results = []
+        for feature, error in zip(features, errors):
+            if feature is None:
+                results.append({'success': False, 'error': error})
+            else:
+                results.append({
+                    'success': True,
+                    'featureValues': [f"{float(x):.16f}" for x in feature]
+                })
+        return jsonify({'success': True, 'results': results})
+    except Exception as e:
+        logger.error(f"Error during batch feature extraction: {str(e)}")
+        logger.error(traceback.format_exc())
+        return jsonify({
+            'success': False,
+            'error': f"批量特征提取失败: {str(e)}"
+        }), 500
+
 @app.route('/health', methods=['GET'])
 def health_check():
     """健康检查端点"""
     return jsonify({'status': 'ok', 'message': 'Service is running'})
 
+# Unix域套接字协议，与Java端UnixSocketExtractionClient一致（小端）：
+# 请求 u32帧长度 + u8操作码 + 数据，响应 u32帧长度 + u8状态 + 数据，帧长度包含操作码/状态字节
+SOCKET_FRAME_HEADER = struct.Struct('<IB')
+SOCKET_MAX_FRAME_BYTES = 64 * 1024 * 1024
+SOCKET_OP_EXTRACT = 1
+SOCKET_OP_EXTRACT_BATCH = 2
+SOCKET_OP_HEALTH = 3
+SOCKET_STATUS_OK = 0
+SOCKET_STATUS_INVALID_INPUT = 1
+SOCKET_STATUS_ERROR = 2
+
+def handle_socket_request(op, payload):
+    """处理一个套接字请求，返回 (状态, 响应数据)"""
+    try:
+        if op == SOCKET_OP_EXTRACT:
+            return SOCKET_STATUS_OK, encode_features(extract_features_from_bytes(payload))
+        if op == SOCKET_OP_EXTRACT_BATCH:
+            # u32数量 + (u32长度 + 图像字节)*
+            (count,) = struct.unpack_from('<I', payload)
+            offset = 4
+            images = []
+            for _ in range(count):
+                (length,) = struct.unpack_from('<I', payload, offset)
+                offset += 4
+                images.append(payload[offset:offset + length])
+                offset += length
+            features, errors = extract_features_batch(images)
+            return SOCKET_STATUS_OK, encode_batch(features, errors)
+        if op == SOCKET_OP_HEALTH:
+            return SOCKET_STATUS_OK, b''
+        return SOCKET_STATUS_INVALID_INPUT, f"Unknown operation: {op}".encode('utf-8')
+    except (ValueError, struct.error) as e:
+        return SOCKET_STATUS_INVALID_INPUT, str(e).encode('utf-8')
+    except Exception as e:
+        logger.error(f"Socket request failed: {e}")
+        logger.error(traceback.format_exc())
+        return SOCKET_STATUS_ERROR, str(e).encode('utf-8')
+
+class ExtractionRequestHandler(socketserver.StreamRequestHandler):
+    """一条连接上顺序处理多个请求，客户端关闭连接时结束"""
+
+    def handle(self):
+        while True:
+            header = self.rfile.read(SOCKET_FRAME_HEADER.size)
+            if len(header) < SOCKET_FRAME_HEADER.size:
+                return
+            length, op = SOCKET_FRAME_HEADER.unpack(header)
+            if length < 1 or length > SOCKET_MAX_FRAME_BYTES:
+                logger.warning(f"Invalid socket frame length: {length}")
+                return
+            payload = self.rfile.read(length - 1)
+            if len(payload) < length - 1:
+                return
+            status, body = handle_socket_request(op, payload)
+            self.wfile.write(SOCKET_FRAME_HEADER.pack(len(body) + 1, status) + body)
+
+def serve_unix_socket(path):
+    """在Unix域套接字上提供服务，只允许当前用户访问"""
+    with contextlib.suppress(FileNotFoundError):
+        os.remove(path)
+    server = socketserver.ThreadingUnixStreamServer(path, ExtractionRequestHandler)
+    server.daemon_threads = True
+    os.chmod(path, 0o600)
+    logger.info(f"Service starting on unix:{path}")
+    try:
+        server.serve_forever()
+    finally:
+        server.server_close()
+        # 套接字文件可能已被其他进程清理
+        with contextlib.suppress(FileNotFoundError):
+            os.remove(path)
+
 if __name__ == '__main__':
     logger.info("Starting feature extraction service...")
-    # 预加载模型
+    # 预加载模型并预热
     try:
-        load_model()
+        warm_up()
         logger.info("Model pre-loaded successfully")
     except Exception as e:
         logger.error(f"Model pre-loading failed: {e}")
     
-    # 启动Flask服务
-    app.run(host='localhost', port=5000, debug=False)
-    logger.info("Service started on http://localhost:5000")
+    # 设置FEATURE_SOCKET时改用Unix域套接字二进制协议（对应Java端 unix: 服务地址）
+    socket_path = os.environ.get('FEATURE_SOCKET')
+    if socket_path:
+        serve_unix_socket(socket_path)
+        sys.exit(0)
+
+    host = os.environ.get('FEATURE_HOST', 'localhost')
+    port = int(os.environ.get('FEATURE_PORT', '5000'))
+    try:
+        # 优先使用多线程的waitress服务器
+        from waitress import serve
+        logger.info(f"Service starting on http://{host}:{port} (waitress)")
+        serve(app, host=host, port=port, threads=int(os.environ.get('FEATURE_SERVER_THREADS', '8')))
+    except ImportError:
+        # 未安装waitress时使用Flask自带服务器
+        # 使用HTTP/1.1以支持长连接，Java端连接池可复用TCP连接
+        WSGIRequestHandler.protocol_version = "HTTP/1.1"
+        logger.info(f"Service starting on http://{host}:{port} (flask)")
+        app.run(host=host, port=port, debug=False, threaded=True)
@@ -0,0 +1,103 @@
+"""特征提取回归测试
+
+验证当前推理模式（默认float32）生成的特征与库中已有特征（float64推理）保持兼容：
+对同一批图像，两种模式得到的特征余弦相似度不低于容差，且批量与单张提取结果一致。
+
+运行: python -m unittest test_feature_extractor.py
+可选环境变量:
+    FEATURE_TEST_IMAGES     用于测试的真实图像目录（默认使用随机生成的图像）
+    FEATURE_TEST_TOLERANCE  最小余弦相似度（默认0.9999）
+"""
+import io
+import os
+import unittest
+
+import numpy as np
+import torch
+from PIL import Image
+from torchvision import models
+
+import feature_extractor
+
+TOLERANCE = float(os.environ.get('FEATURE_TEST_TOLERANCE', '0.9999'))
+
+
+def synthetic_images(count=6, seed=42):
+    """生成带渐变和噪声的JPEG图像"""
+    rng = np.random.default_rng(seed)
+    images = []
+    for i in range(count):
+        height, width = 240 + 40 * i, 320 - 20 * i
+        gradient = np.linspace(0, 255, width, dtype=np.float64)[None, :, None]
+        noise = rng.normal(0, 40, size=(height, width, 3))
+        pixels = np.clip(gradient * rng.uniform(0.2, 1.0, size=3) + noise, 0, 255).astype(np.uint8)
+        buffer = io.BytesIO()
+        Image.fromarray(pixels).save(buffer, format='JPEG', quality=90)
+        images.append(buffer.getvalue())
+    return images
+
+
+def load_test_images():
+    directory = os.environ.get('FEATURE_TEST_IMAGES')
+    if not directory:
+        return synthetic_images()
+    images = []
+    for name in sorted(os.listdir(directory)):
+        if name.lower().endswith(('.jpg', '.jpeg', '.png')):
+            with open(os.path.join(directory, name), 'rb') as f:
+                images.append(f.read())
+    return images
+
+
+def reference_features(images_bytes):
+    """按早期入库特征的方式计算：float64模型，逐张推理"""
+    resnet = models.resnet50(weights=models.ResNet50_Weights.IMAGENET1K_V1).double()
+    reference_model = torch.nn.Sequential(*list(resnet.children())[:-1]).eval()
+    results = []
+    for image_bytes in images_bytes:
+        image = Image.open(io.BytesIO(image_bytes)).convert("RGB")
+        with torch.no_grad():
+            output = reference_model(feature_extractor.preprocess(image).unsqueeze(0).double())
+        vector = output.squeeze().numpy()
+        results.append(vector / np.linalg.norm(vector))
+    return results
+
+
+class FeatureCompatibilityTest(unittest.TestCase):
+
+    @classmethod
+    def setUpClass(cls):
+        cls.images = load_test_images()
+        cls.reference = reference_features(cls.images)
+
+    def test_batch_features_match_reference(self):
+        features, errors = feature_extractor.extract_features_batch(self.images)
+        self.assertTrue(all(error is None for error in errors), errors)
+        similarities = [float(np.dot(f, r)) for f, r in zip(features, self.reference)]
+        print(f"precision={feature_extractor.PRECISION}, min cosine={min(similarities):.8f}")
+        self.assertGreaterEqual(min(similarities), TOLERANCE)
+
+    def test_single_matches_batch(self):
+        batch, _ = feature_extractor.extract_features_batch(self.images)
+        for image_bytes, batch_vector in zip(self.images, batch):
+            single = feature_extractor.extract_features_from_bytes(image_bytes)
+            self.assertGreaterEqual(float(np.dot(single, batch_vector)), TOLERANCE)
+
+    def test_binary_encoding_round_trip(self):
+        vector = feature_extractor.extract_features_from_bytes(self.images[0])
+        encoded = feature_extractor.encode_features(vector)
+        header = feature_extractor.BINARY_HEADER.unpack_from(encoded)
+        self.assertEqual(header[0], b'FV')
+        self.assertEqual(header[5], vector.shape[0])
+        decoded = np.frombuffer(encoded, dtype='<f4', offset=feature_extractor.BINARY_HEADER.size)
+        np.testing.assert_allclose(decoded, vector, rtol=1e-6, atol=1e-7)
+
+    def test_invalid_image_reported_per_item(self):
+        features, errors = feature_extractor.extract_features_batch([b'not an image', self.images[0]])
+        self.assertIsNone(features[0])
+        self.assertIsNotNone(errors[0])
+        self.assertIsNotNone(features[1])
+
+
+if __name__ == '__main__':
+    unittest.main()
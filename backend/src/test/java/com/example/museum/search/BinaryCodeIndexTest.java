@@ -0,0 +1,155 @@
+package com.example.museum.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 二值编码索引测试：汉明距离计算、截断候选集以及粗排+重排的召回率
+ */
+class BinaryCodeIndexTest {
+
+    private static final int DIMENSION = 64;
+
+    @Test
+    void testDistancesMatchEncodedCodes() {
+        VectorSnapshot snapshot = randomSnapshot(new Random(20), 500);
+        for (String encoding : new String[]{BinaryCodeIndex.SIGN, BinaryCodeIndex.HYPERPLANE}) {
+            BinaryCodeIndex index = BinaryCodeIndex.build(snapshot, encoding, 128, 42);
+            assertEquals(snapshot.size(), index.size());
+            assertEquals(BinaryCodeIndex.SIGN.equals(encoding) ? DIMENSION : 128, index.getBits());
+
+            long[][] codes = new long[snapshot.size()][];
+            for (int row = 0; row < snapshot.size(); row++) {
+                assertEquals(snapshot.idAt(row), index.idAt(row));
+                codes[row] = index.encode(snapshot.vectorAt(row));
+            }
+            float[] query = randomUnitVector(new Random(1));
+            long[] queryCode = index.encode(query);
+            int[] distances = index.distances(queryCode).clone();
+            for (int row = 0; row < snapshot.size(); row++) {
+                assertEquals(hamming(queryCode, codes[row]), distances[row], encoding + " row=" + row);
+            }
+            // 库中向量与自身编码的距离为0
+            assertEquals(0, index.distances(codes[7])[7]);
+        }
+    }
+
+    @Test
+    void testShortlistKeepsNearestCodes() {
+        VectorSnapshot snapshot = randomSnapshot(new Random(21), 1000);
+        BinaryCodeIndex index = BinaryCodeIndex.build(snapshot, BinaryCodeIndex.SIGN, 0, 42);
+        long[] query = index.encode(randomUnitVector(new Random(2)));
+        int[] distances = index.distances(query).clone();
+
+        for (int size : new int[]{1, 10, 100, 999}) {
+            int[] rows = index.shortlist(query, size, null);
+            assertEquals(size, rows.length);
+            Set<Integer> selected = new HashSet<>();
+            int worstSelected = 0;
+            for (int row : rows) {
+                assertTrue(selected.add(row), "重复的行号: " + row);
+                worstSelected = Math.max(worstSelected, distances[row]);
+            }
+            for (int row = 0; row < distances.length; row++) {
+                if (!selected.contains(row)) {
+                    assertTrue(distances[row] >= worstSelected, "size=" + size + " row=" + row);
+                }
+            }
+        }
+        assertEquals(snapshot.size(), index.shortlist(query, snapshot.size() + 10, null).length);
+    }
+
+    @Test
+    void testShortlistRespectsFilter() {
+        VectorSnapshot snapshot = randomSnapshot(new Random(22), 300);
+        BinaryCodeIndex index = BinaryCodeIndex.build(snapshot, BinaryCodeIndex.HYPERPLANE, 64, 42);
+        long[] words = new long[(snapshot.size() + 64) / 64 + 1];
+        for (int id = 1; id <= snapshot.size(); id += 3) {
+            words[id >>> 6] |= 1L << id;
+        }
+        FilterMask filter = new FilterMask(words);
+        long[] query = index.encode(randomUnitVector(new Random(3)));
+
+        int[] rows = index.shortlist(query, 20, filter);
+        assertEquals(20, rows.length);
+        for (int row : rows) {
+            assertTrue(filter.contains(index.idAt(row)));
+        }
+        // 候选数量超过满足条件的文物数时返回全部满足条件的行
+        assertEquals(filter.cardinality(), index.shortlist(query, 1000, filter).length);
+    }
+
+    @Test
+    void testRerankedShortlistRecall() {
+        VectorSnapshot snapshot = randomSnapshot(new Random(23), 3000);
+        Random random = new Random(4);
+        int k = 10;
+        int queries = 50;
+        for (String encoding : new String[]{BinaryCodeIndex.SIGN, BinaryCodeIndex.HYPERPLANE}) {
+            BinaryCodeIndex index = BinaryCodeIndex.build(snapshot, encoding, 256, 42);
+            int found = 0;
+            for (int q = 0; q < queries; q++) {
+                float[] query = randomUnitVector(random);
+                Set<Integer> exactIds = new HashSet<>();
+                for (SearchHit hit : ExactSearchEngine.scan(snapshot, query, -1, k)) {
+                    exactIds.add(hit.getArtifactId());
+                }
+                ScoreHeap reranked = new ScoreHeap(k + 1, true);
+                for (int row : index.shortlist(index.encode(query), 300, null)) {
+                    reranked.offer(index.idAt(row), (float) snapshot.dot(query, row), k);
+                }
+                for (int i = 0; i < reranked.size(); i++) {
+                    if (exactIds.contains(reranked.rowAt(i))) {
+                        found++;
+                    }
+                }
+            }
+            // 随机取300行作为候选时召回率约为0.1；均匀随机数据是二值编码最不利的情况
+            double recall = found / (double) (queries * k);
+            assertTrue(recall >= 0.7, encoding + " 粗排+重排 recall@" + k + " 过低: " + recall);
+        }
+    }
+
+    @Test
+    void testUnknownEncodingRejected() {
+        VectorSnapshot snapshot = randomSnapshot(new Random(24), 10);
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodeIndex.build(snapshot, "pq", 64, 42));
+    }
+
+    private static int hamming(long[] a, long[] b) {
+        int distance = 0;
+        for (int i = 0; i < a.length; i++) {
+            distance += Long.bitCount(a[i] ^ b[i]);
+        }
+        return distance;
+    }
+
+    private static VectorSnapshot randomSnapshot(Random random, int count) {
+        int[] ids = new int[count];
+        float[] vectors = new float[count * DIMENSION];
+        for (int i = 0; i < count; i++) {
+            ids[i] = i + 1;
+            System.arraycopy(randomUnitVector(random), 0, vectors, i * DIMENSION, DIMENSION);
+        }
+        return new VectorSnapshot(DIMENSION, ids, vectors);
+    }
+
+    private static float[] randomUnitVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        double norm = 0;
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+}
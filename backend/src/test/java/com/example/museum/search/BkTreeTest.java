@@ -0,0 +1,133 @@
+package com.example.museum.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BK树检索结果与暴力比较一致性测试
+ */
+class BkTreeTest {
+
+    @Test
+    void testSearchMatchesBruteForce() {
+        Random random = new Random(19);
+        Map<Integer, Long> hashes = new HashMap<>();
+        BkTree tree = new BkTree();
+        long[] bases = new long[20];
+        for (int i = 0; i < bases.length; i++) {
+            bases[i] = random.nextLong();
+        }
+        // 围绕少量基准哈希随机翻转若干位，使检索半径内有足够多的命中
+        for (int id = 1; id <= 3000; id++) {
+            long hash = flipBits(random, bases[random.nextInt(bases.length)], random.nextInt(16));
+            hashes.put(id, hash);
+            tree.add(hash, ~hash, id);
+        }
+        assertEquals(hashes.size(), tree.size());
+
+        for (int q = 0; q < 50; q++) {
+            long query = flipBits(random, bases[random.nextInt(bases.length)], random.nextInt(8));
+            for (int radius : new int[]{0, 4, 10, 20}) {
+                assertEquals(bruteForce(hashes, query, radius), searchIds(tree, query, radius),
+                        "radius=" + radius);
+            }
+        }
+    }
+
+    @Test
+    void testMatchCarriesHashesAndDistance() {
+        BkTree tree = new BkTree();
+        tree.add(0b1011L, 42L, 7);
+        BkTree.Match match = tree.search(0b0011L, 1).get(0);
+        assertEquals(7, match.getArtifactId());
+        assertEquals(0b1011L, match.getHash());
+        assertEquals(42L, match.getSecondaryHash());
+        assertEquals(1, match.getDistance());
+        assertTrue(tree.search(0b0000L, 2).isEmpty());
+    }
+
+    @Test
+    void testRemoveHidesEntry() {
+        BkTree tree = new BkTree();
+        tree.add(0L, 0L, 1);
+        tree.add(1L, 0L, 2);
+        tree.add(3L, 0L, 3);
+
+        assertTrue(tree.remove(1));
+        assertFalse(tree.remove(1));
+        assertFalse(tree.contains(1));
+        assertEquals(2, tree.size());
+        assertEquals(1, tree.removedCount());
+        // 根节点被删除后其子树仍可检索
+        assertEquals(Set.of(2, 3), searchIds(tree, 0L, 2));
+        assertFalse(tree.remove(99));
+    }
+
+    @Test
+    void testAddReplacesExistingEntry() {
+        BkTree tree = new BkTree();
+        tree.add(0L, 0L, 1);
+        tree.add(-1L, 0L, 1);
+
+        assertTrue(tree.contains(1));
+        assertEquals(1, tree.size());
+        assertEquals(1, tree.removedCount());
+        assertTrue(tree.search(0L, 10).isEmpty());
+        assertEquals(Set.of(1), searchIds(tree, -1L, 0));
+    }
+
+    @Test
+    void testRandomUpdatesMatchBruteForce() {
+        Random random = new Random(23);
+        Map<Integer, Long> hashes = new HashMap<>();
+        BkTree tree = new BkTree();
+        for (int step = 0; step < 5000; step++) {
+            int id = random.nextInt(500);
+            if (random.nextInt(4) == 0) {
+                assertEquals(hashes.remove(id) != null, tree.remove(id));
+            } else {
+                long hash = random.nextLong() & 0xFFFFL;
+                hashes.put(id, hash);
+                tree.add(hash, 0L, id);
+            }
+        }
+        assertEquals(hashes.size(), tree.size());
+        for (int q = 0; q < 50; q++) {
+            long query = random.nextLong() & 0xFFFFL;
+            assertEquals(bruteForce(hashes, query, 3), searchIds(tree, query, 3));
+        }
+    }
+
+    private static Set<Integer> searchIds(BkTree tree, long hash, int radius) {
+        Set<Integer> ids = new HashSet<>();
+        for (BkTree.Match match : tree.search(hash, radius)) {
+            assertTrue(ids.add(match.getArtifactId()), "重复命中: " + match.getArtifactId());
+            assertEquals(BkTree.distance(hash, match.getHash()), match.getDistance());
+        }
+        return ids;
+    }
+
+    private static Set<Integer> bruteForce(Map<Integer, Long> hashes, long query, int radius) {
+        Set<Integer> ids = new HashSet<>();
+        for (Map.Entry<Integer, Long> entry : hashes.entrySet()) {
+            if (BkTree.distance(query, entry.getValue()) <= radius) {
+                ids.add(entry.getKey());
+            }
+        }
+        return ids;
+    }
+
+    private static long flipBits(Random random, long hash, int count) {
+        for (int i = 0; i < count; i++) {
+            hash ^= 1L << random.nextInt(64);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.museum.search;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 精确检索测试：批量检索与逐个检索结果一致，覆盖并行分段、阈值和过滤条件
+ */
+class ExactSearchEngineTest {
+
+    private static final int DIMENSION = 48;
+
+    private static final int VECTORS = 3000;
+
+    private ExactSearchEngine engine;
+
+    private VectorSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        engine = new ExactSearchEngine();
+        ReflectionTestUtils.setField(engine, "residentVectors", true);
+        ReflectionTestUtils.setField(engine, "parallelism", 2);
+        ReflectionTestUtils.setField(engine, "maxQueryParallelism", 4);
+        // 每段行数较小，使测试数据也会拆分为多段并行扫描
+        ReflectionTestUtils.setField(engine, "minRowsPerTask", 500);
+        engine.init();
+
+        Random random = new Random(25);
+        int[] ids = new int[VECTORS];
+        float[] vectors = new float[VECTORS * DIMENSION];
+        for (int i = 0; i < VECTORS; i++) {
+            // 文物ID不连续，验证行号与ID的映射
+            ids[i] = i * 2 + 1;
+            System.arraycopy(randomUnitVector(random), 0, vectors, i * DIMENSION, DIMENSION);
+        }
+        snapshot = new VectorSnapshot(DIMENSION, ids, vectors);
+        engine.rebuild(snapshot);
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void testSearchMatchesScan() {
+        Random random = new Random(1);
+        for (int q = 0; q < 20; q++) {
+            float[] query = randomUnitVector(random);
+            assertSameHits(ExactSearchEngine.scan(snapshot, query, -1, 10), engine.search(query, -1, 10, null));
+        }
+    }
+
+    @Test
+    void testBatchEqualsSingle() {
+        float[][] queries = randomQueries(new Random(2), 7);
+        for (int maxResults : new int[]{1, 10, 50}) {
+            List<List<SearchHit>> batch = engine.searchBatch(queries, -1, maxResults, null);
+            assertEquals(queries.length, batch.size());
+            for (int q = 0; q < queries.length; q++) {
+                assertSameHits(engine.search(queries[q], -1, maxResults, null), batch.get(q));
+            }
+        }
+    }
+
+    @Test
+    void testBatchEqualsSingleWithThreshold() {
+        float[][] queries = randomQueries(new Random(3), 5);
+        List<List<SearchHit>> batch = engine.searchBatch(queries, 0.3, 100, null);
+        for (int q = 0; q < queries.length; q++) {
+            List<SearchHit> single = engine.search(queries[q], 0.3, 100, null);
+            assertSameHits(single, batch.get(q));
+            for (SearchHit hit : batch.get(q)) {
+                assertTrue(hit.getSimilarity() >= 0.3);
+            }
+        }
+    }
+
+    @Test
+    void testBatchEqualsSingleWithFilter() {
+        float[][] queries = randomQueries(new Random(4), 6);
+        // 宽过滤条件按顺序扫描，窄过滤条件按位图定位行
+        for (int step : new int[]{3, 97}) {
+            FilterMask filter = everyNth(step);
+            List<List<SearchHit>> batch = engine.searchBatch(queries, -1, 10, filter);
+            for (int q = 0; q < queries.length; q++) {
+                assertSameHits(engine.search(queries[q], -1, 10, filter), batch.get(q));
+                for (SearchHit hit : batch.get(q)) {
+                    assertTrue(filter.contains(hit.getArtifactId()));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testBatchHandlesEdgeCases() {
+        assertTrue(engine.searchBatch(new float[0][], -1, 10, null).isEmpty());
+
+        List<List<SearchHit>> empty = engine.searchBatch(randomQueries(new Random(5), 2), -1, 0, null);
+        assertEquals(2, empty.size());
+        assertTrue(empty.get(0).isEmpty() && empty.get(1).isEmpty());
+
+        float[][] mismatched = {new float[DIMENSION], new float[DIMENSION + 1]};
+        assertThrows(IllegalArgumentException.class, () -> engine.searchBatch(mismatched, -1, 10, null));
+    }
+
+    private FilterMask everyNth(int step) {
+        long[] words = new long[(VECTORS * 2 + 64) / 64 + 1];
+        for (int row = 0; row < VECTORS; row += step) {
+            int id = snapshot.idAt(row);
+            words[id >>> 6] |= 1L << id;
+        }
+        return new FilterMask(words);
+    }
+
+    /**
+     * 批量检索的分块点积与逐个点积累加顺序不同，分数允许舍入误差
+     */
+    private static void assertSameHits(List<SearchHit> expected, List<SearchHit> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getArtifactId(), actual.get(i).getArtifactId(), "rank " + i);
+            assertEquals(expected.get(i).getSimilarity(), actual.get(i).getSimilarity(), 1e-5, "rank " + i);
+        }
+    }
+
+    private static float[][] randomQueries(Random random, int count) {
+        float[][] queries = new float[count][];
+        for (int q = 0; q < count; q++) {
+            queries[q] = randomUnitVector(random);
+        }
+        return queries;
+    }
+
+    private static float[] randomUnitVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        double norm = 0;
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.museum.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HNSW召回率测试：以精确检索结果为基准，固定随机种子保证可重复
+ */
+class HnswIndexTest {
+
+    private static final int DIMENSION = 32;
+    private static final int VECTORS = 3000;
+    private static final int QUERIES = 100;
+    private static final int K = 10;
+
+    @Test
+    void testRecallAgainstExactSearch() {
+        VectorSnapshot snapshot = randomSnapshot(new Random(42), VECTORS);
+        HnswIndex index = new HnswIndex(snapshot, 16, 200, 42);
+        for (int row = 0; row < snapshot.size(); row++) {
+            index.insert(row);
+        }
+        assertEquals(VECTORS, index.size());
+
+        double recall = recallAtK(snapshot, index, 128, new Random(7));
+        assertTrue(recall >= 0.95, "HNSW recall@" + K + " 过低: " + recall);
+    }
+
+    @Test
+    void testConcurrentInsertRecall() {
+        VectorSnapshot snapshot = randomSnapshot(new Random(43), VECTORS);
+        HnswIndex index = new HnswIndex(snapshot, 16, 200, 42);
+        IntStream.range(0, snapshot.size()).parallel().forEach(index::insert);
+        assertEquals(VECTORS, index.size());
+
+        double recall = recallAtK(snapshot, index, 128, new Random(8));
+        assertTrue(recall >= 0.95, "并发构建的HNSW recall@" + K + " 过低: " + recall);
+    }
+
+    @Test
+    void testEmptyIndexReturnsNoResults() {
+        VectorSnapshot snapshot = randomSnapshot(new Random(1), 10);
+        HnswIndex index = new HnswIndex(snapshot, 16, 200, 42);
+        assertTrue(index.search(snapshot.vectorAt(0), 10, null).isEmpty());
+    }
+
+    private static double recallAtK(VectorSnapshot snapshot, HnswIndex index, int ef, Random random) {
+        int found = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            float[] query = randomUnitVector(random);
+            Set<Integer> exactIds = new HashSet<>();
+            for (SearchHit hit : ExactSearchEngine.scan(snapshot, query, -1, K)) {
+                exactIds.add(hit.getArtifactId());
+            }
+            ScoreHeap results = index.search(query, ef, null);
+            while (results.size() > K) {
+                results.pop();
+            }
+            for (int i = 0; i < results.size(); i++) {
+                if (exactIds.contains(snapshot.idAt(results.rowAt(i)))) {
+                    found++;
+                }
+            }
+        }
+        return found / (double) (QUERIES * K);
+    }
+
+    static VectorSnapshot randomSnapshot(Random random, int count) {
+        int[] ids = new int[count];
+        float[] vectors = new float[count * DIMENSION];
+        for (int i = 0; i < count; i++) {
+            ids[i] = i + 1;
+            System.arraycopy(randomUnitVector(random), 0, vectors, i * DIMENSION, DIMENSION);
+        }
+        return new VectorSnapshot(DIMENSION, ids, vectors);
+    }
+
+    static float[] randomUnitVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        double norm = 0;
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+}
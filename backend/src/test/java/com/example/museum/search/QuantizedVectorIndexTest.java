@@ -0,0 +1,146 @@
+package com.example.museum.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 标量量化索引测试：各量化方式的近似点积误差、前k名与精确检索的一致性
+ */
+class QuantizedVectorIndexTest {
+
+    private static final int DIMENSION = 96;
+
+    private static final String[] MODES = {
+            QuantizedVectorIndex.INT8, QuantizedVectorIndex.INT8_PER_DIMENSION, QuantizedVectorIndex.FP16};
+
+    @Test
+    void testScoresApproximateExactDot() {
+        VectorSnapshot snapshot = randomSnapshot(new Random(21), 500);
+        Random random = new Random(5);
+        for (String mode : MODES) {
+            QuantizedVectorIndex index = QuantizedVectorIndex.build(snapshot, mode);
+            assertEquals(mode, index.getMode());
+            assertEquals(snapshot.size(), index.size());
+            assertEquals(DIMENSION, index.getDimension());
+            float tolerance = QuantizedVectorIndex.FP16.equals(mode) ? 1e-3f : 0.03f;
+            for (int q = 0; q < 20; q++) {
+                float[] query = randomUnitVector(random);
+                QuantizedVectorIndex.Query prepared = index.prepare(query);
+                for (int row = 0; row < snapshot.size(); row++) {
+                    assertEquals(snapshot.dot(query, row), index.score(prepared, row), tolerance,
+                            mode + " row=" + row);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testQuantizedMemoryIsSmaller() {
+        VectorSnapshot snapshot = randomSnapshot(new Random(22), 200);
+        for (String mode : MODES) {
+            QuantizedVectorIndex index = QuantizedVectorIndex.build(snapshot, mode);
+            assertTrue(index.memoryBytes() < snapshot.memoryBytes(), mode);
+        }
+    }
+
+    @Test
+    void testTopAgreesWithExactSearch() {
+        VectorSnapshot snapshot = randomSnapshot(new Random(23), 2000);
+        int k = 10;
+        int queries = 50;
+        for (String mode : MODES) {
+            QuantizedVectorIndex index = QuantizedVectorIndex.build(snapshot, mode);
+            Random random = new Random(6);
+            int found = 0;
+            for (int q = 0; q < queries; q++) {
+                float[] query = randomUnitVector(random);
+                Set<Integer> exactIds = new HashSet<>();
+                for (SearchHit hit : ExactSearchEngine.scan(snapshot, query, -1, k)) {
+                    exactIds.add(hit.getArtifactId());
+                }
+                ScoreHeap top = index.top(index.prepare(query), k, null);
+                assertEquals(k, top.size());
+                for (int i = 0; i < top.size(); i++) {
+                    if (exactIds.contains(index.idAt(top.rowAt(i)))) {
+                        found++;
+                    }
+                }
+            }
+            double overlap = found / (double) (queries * k);
+            assertTrue(overlap >= 0.85, mode + " overlap@" + k + " 过低: " + overlap);
+        }
+    }
+
+    @Test
+    void testTopRespectsFilter() {
+        VectorSnapshot snapshot = randomSnapshot(new Random(24), 300);
+        QuantizedVectorIndex index = QuantizedVectorIndex.build(snapshot, QuantizedVectorIndex.INT8);
+        long[] words = new long[(snapshot.size() + 64) / 64 + 1];
+        for (int id = 2; id <= snapshot.size(); id += 5) {
+            words[id >>> 6] |= 1L << id;
+        }
+        FilterMask filter = new FilterMask(words);
+        ScoreHeap top = index.top(index.prepare(randomUnitVector(new Random(7))), 1000, filter);
+        assertEquals(filter.cardinality(), top.size());
+        for (int i = 0; i < top.size(); i++) {
+            assertTrue(filter.contains(index.idAt(top.rowAt(i))));
+        }
+    }
+
+    @Test
+    void testConstantDimensionsAndZeroVectors() {
+        int[] ids = {1, 2, 3};
+        float[] vectors = new float[ids.length * DIMENSION];
+        for (int d = 0; d < DIMENSION; d++) {
+            // 第一行为零向量，其余行第0维取值相同
+            vectors[DIMENSION + d] = d == 0 ? 0.5f : 0.1f;
+            vectors[2 * DIMENSION + d] = d == 0 ? 0.5f : -0.1f;
+        }
+        VectorSnapshot snapshot = new VectorSnapshot(DIMENSION, ids, vectors);
+        float[] query = randomUnitVector(new Random(8));
+        for (String mode : MODES) {
+            QuantizedVectorIndex index = QuantizedVectorIndex.build(snapshot, mode);
+            QuantizedVectorIndex.Query prepared = index.prepare(query);
+            for (int row = 0; row < ids.length; row++) {
+                float score = index.score(prepared, row);
+                assertFalse(Float.isNaN(score), mode + " row=" + row);
+                assertEquals(snapshot.dot(query, row), score, 0.03, mode + " row=" + row);
+            }
+        }
+    }
+
+    @Test
+    void testUnknownModeRejected() {
+        VectorSnapshot snapshot = randomSnapshot(new Random(25), 10);
+        assertThrows(IllegalArgumentException.class, () -> QuantizedVectorIndex.build(snapshot, "int4"));
+    }
+
+    private static VectorSnapshot randomSnapshot(Random random, int count) {
+        int[] ids = new int[count];
+        float[] vectors = new float[count * DIMENSION];
+        for (int i = 0; i < count; i++) {
+            ids[i] = i + 1;
+            System.arraycopy(randomUnitVector(random), 0, vectors, i * DIMENSION, DIMENSION);
+        }
+        return new VectorSnapshot(DIMENSION, ids, vectors);
+    }
+
+    private static float[] randomUnitVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        double norm = 0;
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+}
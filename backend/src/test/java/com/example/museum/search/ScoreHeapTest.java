@@ -0,0 +1,103 @@
+package com.example.museum.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScoreHeapTest {
+
+    @Test
+    void testMinHeapPopsAscending() {
+        ScoreHeap heap = new ScoreHeap(2, true);
+        float[] scores = {0.5f, -0.2f, 0.9f, 0.1f, 0.7f, 0.3f, -1f, 0.8f};
+        for (int i = 0; i < scores.length; i++) {
+            heap.push(i, scores[i]);
+        }
+        assertEquals(scores.length, heap.size());
+
+        float previous = Float.NEGATIVE_INFINITY;
+        while (!heap.isEmpty()) {
+            float score = heap.topScore();
+            int row = heap.pop();
+            assertEquals(scores[row], score);
+            assertTrue(score >= previous);
+            previous = score;
+        }
+    }
+
+    @Test
+    void testMaxHeapPopsDescending() {
+        ScoreHeap heap = new ScoreHeap(4, false);
+        Random random = new Random(7);
+        for (int i = 0; i < 100; i++) {
+            heap.push(i, random.nextFloat());
+        }
+        float previous = Float.POSITIVE_INFINITY;
+        while (!heap.isEmpty()) {
+            float score = heap.topScore();
+            heap.pop();
+            assertTrue(score <= previous);
+            previous = score;
+        }
+    }
+
+    @Test
+    void testOfferKeepsTopScores() {
+        int capacity = 10;
+        ScoreHeap heap = new ScoreHeap(capacity + 1, true);
+        Random random = new Random(11);
+        float[] scores = new float[1000];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = random.nextFloat() * 2 - 1;
+            heap.offer(i, scores[i], capacity);
+            assertTrue(heap.size() <= capacity);
+        }
+
+        float[] sorted = scores.clone();
+        Arrays.sort(sorted);
+        // 堆顶为保留结果中的最小分数，即全体第capacity大的分数
+        assertEquals(capacity, heap.size());
+        assertEquals(sorted[sorted.length - capacity], heap.topScore());
+        for (int i = 0; i < heap.size(); i++) {
+            assertEquals(scores[heap.rowAt(i)], heap.scoreAt(i));
+            assertTrue(heap.scoreAt(i) >= sorted[sorted.length - capacity]);
+        }
+    }
+
+    @Test
+    void testOfferEvictsLowestScore() {
+        ScoreHeap heap = new ScoreHeap(4, true);
+        assertTrue(heap.offer(1, 0.3f, 3));
+        assertTrue(heap.offer(2, 0.1f, 3));
+        assertTrue(heap.offer(3, 0.2f, 3));
+        assertEquals(2, heap.topRow());
+
+        // 不高于堆顶的分数不被保留
+        assertFalse(heap.offer(4, 0.1f, 3));
+        assertFalse(heap.offer(5, 0.05f, 3));
+        assertEquals(2, heap.topRow());
+
+        assertTrue(heap.offer(6, 0.5f, 3));
+        assertEquals(3, heap.size());
+        assertEquals(3, heap.pop());
+        assertEquals(1, heap.pop());
+        assertEquals(6, heap.pop());
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    void testClearAndReuse() {
+        ScoreHeap heap = new ScoreHeap(4, true);
+        for (int i = 0; i < 20; i++) {
+            heap.push(i, i);
+        }
+        heap.clear();
+        assertTrue(heap.isEmpty());
+        heap.push(42, 1f);
+        assertEquals(42, heap.topRow());
+        assertEquals(1, heap.size());
+    }
+}
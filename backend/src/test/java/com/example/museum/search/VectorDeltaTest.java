@@ -0,0 +1,86 @@
+package com.example.museum.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 增量合并进基础快照的结果与按ID重建的快照一致性测试
+ */
+class VectorDeltaTest {
+
+    private static final int DIMENSION = 4;
+
+    @Test
+    void testApplyToMatchesRebuild() {
+        Random random = new Random(6);
+        for (int round = 0; round < 50; round++) {
+            TreeMap<Integer, float[]> expected = new TreeMap<>();
+            for (int id = 1; id <= 200; id++) {
+                if (random.nextInt(3) > 0) {
+                    expected.put(id * 2, randomVector(random));
+                }
+            }
+            VectorSnapshot base = toSnapshot(expected);
+
+            // 随机删除、修改已有文物，并新增ID落在基础快照之前、之间和之后的文物
+            Map<Integer, float[]> changes = new HashMap<>();
+            for (int i = 0; i < random.nextInt(40); i++) {
+                int id = random.nextInt(410);
+                float[] vector = random.nextInt(3) == 0 ? null : randomVector(random);
+                changes.put(id, vector);
+                if (vector == null) {
+                    expected.remove(id);
+                } else {
+                    expected.put(id, vector);
+                }
+            }
+
+            VectorSnapshot merged = VectorDelta.applyTo(base, VectorDelta.of(changes, DIMENSION), DIMENSION);
+            assertEquals(expected.size(), merged.size(), "round=" + round);
+            int row = 0;
+            for (Map.Entry<Integer, float[]> entry : expected.entrySet()) {
+                assertEquals(entry.getKey(), merged.idAt(row));
+                assertArrayEquals(entry.getValue(), merged.vectorAt(row));
+                row++;
+            }
+        }
+    }
+
+    @Test
+    void testApplyToDeletingEverythingIsEmpty() {
+        TreeMap<Integer, float[]> vectors = new TreeMap<>();
+        vectors.put(1, new float[]{1, 0, 0, 0});
+        vectors.put(5, new float[]{0, 1, 0, 0});
+        Map<Integer, float[]> changes = new HashMap<>();
+        changes.put(1, null);
+        changes.put(5, null);
+        VectorSnapshot merged = VectorDelta.applyTo(toSnapshot(vectors), VectorDelta.of(changes, DIMENSION), DIMENSION);
+        assertTrue(merged.isEmpty());
+    }
+
+    private static VectorSnapshot toSnapshot(TreeMap<Integer, float[]> vectors) {
+        int[] ids = new int[vectors.size()];
+        float[] matrix = new float[vectors.size() * DIMENSION];
+        int row = 0;
+        for (Map.Entry<Integer, float[]> entry : vectors.entrySet()) {
+            ids[row] = entry.getKey();
+            System.arraycopy(entry.getValue(), 0, matrix, row * DIMENSION, DIMENSION);
+            row++;
+        }
+        return new VectorSnapshot(DIMENSION, ids, matrix);
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = random.nextFloat();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.museum.search.kernel;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * SIMD内核与标量实现的一致性测试
+ * 长度覆盖不足一个向量宽度的尾部和非向量宽度整数倍的维度，偏移量不为0
+ */
+class VectorKernelTest {
+
+    private static final int[] LENGTHS = {0, 1, 3, 7, 8, 9, 15, 16, 17, 31, 33, 63, 65, 127, 129, 513, 2047, 2048, 2050};
+
+    private static final int[] DIMENSIONS = {1, 3, 7, 17, 33, 65, 130, 2048};
+
+    private static VectorKernel simd;
+
+    private final VectorKernel scalar = new ScalarVectorKernel();
+
+    @BeforeAll
+    static void loadSimdKernel() {
+        try {
+            simd = new SimdVectorKernel();
+            simd.dot(new float[1], 0, new float[1], 0, 1);
+        } catch (Throwable e) {
+            simd = null;
+        }
+    }
+
+    @Test
+    void testDotMatchesScalar() {
+        assumeSimd();
+        Random random = new Random(1);
+        for (int length : LENGTHS) {
+            for (int offset : new int[]{0, 1, 5}) {
+                float[] a = randomFloats(random, length + offset + 3);
+                float[] b = randomFloats(random, length + offset + 7);
+                float expected = scalar.dot(a, offset, b, offset + 2, length);
+                float actual = simd.dot(a, offset, b, offset + 2, length);
+                assertClose(expected, actual, length, "dot length=" + length + " offset=" + offset);
+            }
+        }
+    }
+
+    @Test
+    void testSquaredL2MatchesScalar() {
+        assumeSimd();
+        Random random = new Random(2);
+        for (int length : LENGTHS) {
+            float[] a = randomFloats(random, length + 1);
+            float[] b = randomFloats(random, length + 3);
+            float expected = scalar.squaredL2(a, 1, b, 3, length);
+            float actual = simd.squaredL2(a, 1, b, 3, length);
+            assertClose(expected, actual, length, "squaredL2 length=" + length);
+        }
+    }
+
+    @Test
+    void testDotInt8MatchesScalar() {
+        assumeSimd();
+        Random random = new Random(3);
+        for (int length : LENGTHS) {
+            for (int offset : new int[]{0, 1, 6}) {
+                byte[] a = randomBytes(random, length + offset);
+                byte[] b = randomBytes(random, length + offset + 3);
+                assertEquals(scalar.dotInt8(a, offset, b, offset + 3, length),
+                        simd.dotInt8(a, offset, b, offset + 3, length),
+                        "dotInt8 length=" + length + " offset=" + offset);
+            }
+        }
+    }
+
+    @Test
+    void testDotInt8ExtremeValues() {
+        assumeSimd();
+        byte[] a = new byte[2048];
+        byte[] b = new byte[2048];
+        Arrays.fill(a, (byte) -128);
+        Arrays.fill(b, (byte) -128);
+        assertEquals(scalar.dotInt8(a, 0, b, 0, a.length), simd.dotInt8(a, 0, b, 0, a.length));
+        Arrays.fill(b, (byte) 127);
+        assertEquals(scalar.dotInt8(a, 0, b, 0, a.length), simd.dotInt8(a, 0, b, 0, a.length));
+    }
+
+    @Test
+    void testDotBatchMatchesScalar() {
+        assumeSimd();
+        Random random = new Random(4);
+        for (int dimension : DIMENSIONS) {
+            for (int rowCount : new int[]{1, 3, 4, 5, 9}) {
+                int firstRow = 2;
+                float[] query = randomFloats(random, dimension);
+                float[] matrix = randomFloats(random, (firstRow + rowCount) * dimension);
+                float[] expected = new float[rowCount + 1];
+                float[] actual = new float[rowCount + 1];
+                scalar.dotBatch(query, matrix, firstRow, rowCount, dimension, expected, 1);
+                simd.dotBatch(query, matrix, firstRow, rowCount, dimension, actual, 1);
+                assertEquals(0f, actual[0], "dotBatch写出了输出区间之外的元素");
+                for (int r = 1; r <= rowCount; r++) {
+                    assertClose(expected[r], actual[r], dimension,
+                            "dotBatch dimension=" + dimension + " rows=" + rowCount + " row=" + r);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testDotTileMatchesScalar() {
+        assumeSimd();
+        Random random = new Random(5);
+        for (int dimension : DIMENSIONS) {
+            for (int queryCount : new int[]{1, 2, 3, 5}) {
+                for (int rowCount : new int[]{1, 3, 4, 7}) {
+                    int firstRow = 1;
+                    float[] queries = randomFloats(random, queryCount * dimension);
+                    float[] matrix = randomFloats(random, (firstRow + rowCount) * dimension);
+                    float[] expected = new float[queryCount * rowCount];
+                    float[] actual = new float[queryCount * rowCount];
+                    scalar.dotTile(queries, queryCount, matrix, firstRow, rowCount, dimension, expected);
+                    simd.dotTile(queries, queryCount, matrix, firstRow, rowCount, dimension, actual);
+                    for (int i = 0; i < expected.length; i++) {
+                        assertClose(expected[i], actual[i], dimension, "dotTile dimension=" + dimension +
+                                " queries=" + queryCount + " rows=" + rowCount + " index=" + i);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testDotTileMatchesSingleDot() {
+        Random random = new Random(6);
+        int dimension = 65;
+        int queryCount = 3;
+        int rowCount = 5;
+        float[] queries = randomFloats(random, queryCount * dimension);
+        float[] matrix = randomFloats(random, rowCount * dimension);
+        float[] out = new float[queryCount * rowCount];
+        VectorKernels.dotTile(queries, queryCount, matrix, 0, rowCount, dimension, out);
+        for (int q = 0; q < queryCount; q++) {
+            for (int r = 0; r < rowCount; r++) {
+                float expected = scalar.dot(queries, q * dimension, matrix, r * dimension, dimension);
+                assertClose(expected, out[q * rowCount + r], dimension, "query=" + q + " row=" + r);
+            }
+        }
+    }
+
+    private static void assumeSimd() {
+        assumeTrue(simd != null, "jdk.incubator.vector模块不可用，跳过SIMD内核测试");
+    }
+
+    /**
+     * 累加顺序不同会带来舍入误差，容差随长度增长
+     */
+    private static void assertClose(float expected, float actual, int length, String message) {
+        float tolerance = 1e-5f * Math.max(1, length) + 1e-4f * Math.abs(expected);
+        assertEquals(expected, actual, tolerance, message);
+    }
+
+    private static float[] randomFloats(Random random, int length) {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = random.nextFloat() * 2 - 1;
+        }
+        return values;
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] values = new byte[length];
+        random.nextBytes(values);
+        return values;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.museum.utils;
+
+import com.example.museum.entity.Artifact;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 二进制特征编解码测试
+ */
+class FeatureUtilsTest {
+
+    @Test
+    void testBinaryRoundTrip() {
+        Random random = new Random(2);
+        for (int dimension : new int[]{0, 1, 7, 512, 2048}) {
+            float[] features = new float[dimension];
+            for (int i = 0; i < dimension; i++) {
+                features[i] = random.nextFloat() * 2 - 1;
+            }
+            byte[] data = FeatureUtils.encodeFeatures(features, 3);
+            assertEquals(FeatureUtils.BINARY_HEADER_SIZE + dimension * Float.BYTES, data.length);
+            assertTrue(FeatureUtils.isBinaryFeatures(data));
+            assertEquals(3, FeatureUtils.modelVersionOf(data));
+            // 按位比较，float32存储不应有任何精度损失
+            assertArrayEquals(features, FeatureUtils.decodeFeatures(data));
+        }
+    }
+
+    @Test
+    void testSpecialValuesRoundTrip() {
+        float[] features = {0f, -0f, Float.MIN_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE,
+                Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NaN};
+        float[] decoded = FeatureUtils.decodeFeatures(FeatureUtils.encodeFeatures(features, 1));
+        for (int i = 0; i < features.length; i++) {
+            assertEquals(Float.floatToRawIntBits(features[i]), Float.floatToRawIntBits(decoded[i]), "index " + i);
+        }
+    }
+
+    @Test
+    void testLittleEndianLayout() {
+        byte[] data = FeatureUtils.encodeFeatures(new float[]{1.5f, -2f}, 0x1234);
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals('F', buffer.get(0));
+        assertEquals('V', buffer.get(1));
+        assertEquals(0x1234, buffer.getShort(4) & 0xFFFF);
+        assertEquals(2, buffer.getInt(8));
+        assertEquals(1.5f, buffer.getFloat(12));
+        assertEquals(-2f, buffer.getFloat(16));
+    }
+
+    @Test
+    void testModelVersionRange() {
+        assertEquals(0xFFFF, FeatureUtils.modelVersionOf(FeatureUtils.encodeFeatures(new float[1], 0xFFFF)));
+        assertThrows(IllegalArgumentException.class, () -> FeatureUtils.encodeFeatures(new float[1], -1));
+        assertThrows(IllegalArgumentException.class, () -> FeatureUtils.encodeFeatures(new float[1], 0x10000));
+    }
+
+    @Test
+    void testRejectsInvalidData() {
+        assertFalse(FeatureUtils.isBinaryFeatures(null));
+        assertFalse(FeatureUtils.isBinaryFeatures(new byte[4]));
+        assertFalse(FeatureUtils.isBinaryFeatures("[0.1, 0.2, 0.3]".getBytes()));
+        assertThrows(IllegalArgumentException.class, () -> FeatureUtils.decodeFeatures(new byte[16]));
+
+        byte[] data = FeatureUtils.encodeFeatures(new float[]{1f, 2f, 3f}, 1);
+        // 截断的数据
+        assertThrows(IllegalArgumentException.class,
+                () -> FeatureUtils.decodeFeatures(Arrays.copyOf(data, data.length - 1)));
+        // 未知的格式版本
+        byte[] unknownVersion = data.clone();
+        unknownVersion[2] = 99;
+        assertThrows(IllegalArgumentException.class, () -> FeatureUtils.decodeFeatures(unknownVersion));
+        // 维度与数据长度不一致
+        byte[] wrongDimension = data.clone();
+        ByteBuffer.wrap(wrongDimension).order(ByteOrder.LITTLE_ENDIAN).putInt(8, 4);
+        assertThrows(IllegalArgumentException.class, () -> FeatureUtils.decodeFeatures(wrongDimension));
+        byte[] negativeDimension = data.clone();
+        ByteBuffer.wrap(negativeDimension).order(ByteOrder.LITTLE_ENDIAN).putInt(8, -1);
+        assertThrows(IllegalArgumentException.class, () -> FeatureUtils.decodeFeatures(negativeDimension));
+    }
+
+    @Test
+    void testRejectsOverflowingDimension() {
+        // 0x40000003 * 4 按int计算溢出为12，头部加12字节正好与数据长度相等
+        byte[] data = FeatureUtils.encodeFeatures(new float[3], 1);
+        ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).putInt(8, 0x40000003);
+        assertThrows(IllegalArgumentException.class, () -> FeatureUtils.decodeFeatures(data));
+        assertThrows(IllegalArgumentException.class, () -> FeatureUtils.modelVersionOf(data));
+    }
+
+    @Test
+    void testArtifactPrefersBinaryAndFallsBackToText() {
+        float[] binary = {0.25f, 0.5f};
+        Artifact artifact = new Artifact();
+        artifact.setFeature("[0.1, 0.2, 0.3]");
+        assertArrayEquals(new float[]{0.1f, 0.2f, 0.3f}, artifact.getFeatureVector());
+
+        artifact.setFeatureVector(binary, 1);
+        assertArrayEquals(binary, artifact.getFeatureVector());
+
+        // 之后写入的文本特征不能被旧的二进制特征遮蔽
+        artifact.setFeature("[0.4, 0.6]");
+        assertNull(artifact.getFeatureBin());
+        assertArrayEquals(new float[]{0.4f, 0.6f}, artifact.getFeatureVector());
+
+        artifact.setFeatureVector(null, 1);
+        artifact.setFeature(null);
+        assertNull(artifact.getFeatureVector());
+    }
+}